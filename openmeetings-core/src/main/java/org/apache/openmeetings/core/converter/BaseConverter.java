@@ -18,25 +18,36 @@
  */
 package org.apache.openmeetings.core.converter;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.apache.openmeetings.core.data.record.listener.async.BaseStreamWriter.TIME_TO_WAIT_FOR_FRAME;
 import static org.apache.openmeetings.util.OmFileHelper.EXTENSION_FLV;
+import static org.apache.openmeetings.util.OmFileHelper.EXTENSION_IDX;
+import static org.apache.openmeetings.util.OmFileHelper.EXTENSION_INIT_MP4;
 import static org.apache.openmeetings.util.OmFileHelper.EXTENSION_JPG;
+import static org.apache.openmeetings.util.OmFileHelper.EXTENSION_M3U8;
+import static org.apache.openmeetings.util.OmFileHelper.EXTENSION_M4S;
 import static org.apache.openmeetings.util.OmFileHelper.getRecordingMetaData;
 import static org.apache.openmeetings.util.OmFileHelper.getStreamsSubDir;
 import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_IMAGEMAGIC_PATH;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_RECORDING_HLS;
 import static org.apache.openmeetings.util.OpenmeetingsVariables.webAppRootKey;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.directory.api.util.Strings;
+import org.apache.openmeetings.core.data.record.listener.async.StreamCompletionRegistry;
 import org.apache.openmeetings.db.dao.basic.ConfigurationDao;
 import org.apache.openmeetings.db.dao.record.RecordingMetaDataDao;
 import org.apache.openmeetings.db.dao.record.RecordingMetaDeltaDao;
@@ -45,6 +56,7 @@ import org.apache.openmeetings.db.entity.record.RecordingMetaData;
 import org.apache.openmeetings.db.entity.record.RecordingMetaData.Status;
 import org.apache.openmeetings.db.entity.record.RecordingMetaDelta;
 import org.apache.openmeetings.util.OmFileHelper;
+import org.apache.openmeetings.util.OpenmeetingsVariables;
 import org.apache.openmeetings.util.process.ConverterProcessResult;
 import org.apache.openmeetings.util.process.ProcessHelper;
 import org.red5.io.flv.impl.FLVWriter;
@@ -55,6 +67,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 public abstract class BaseConverter {
 	private static final Logger log = Red5LoggerFactory.getLogger(BaseConverter.class, webAppRootKey);
 	private static final Pattern p = Pattern.compile("\\d{2,5}(x)\\d{2,5}");
+	private static final String HLS_SEGMENT_DURATION = "6";
+	public static final String PIPE_INPUT = "pipe:0";
 	public final static String EXEC_EXT = System.getProperty("os.name").toUpperCase().indexOf("WINDOWS") < 0 ? "" : ".exe";
 
 	@Autowired
@@ -87,6 +101,10 @@ public abstract class BaseConverter {
 		return getPath("ffmpeg_path", "ffmpeg");
 	}
 
+	protected String getPathToFFPROBE() {
+		return getPath("ffmpeg_path", "ffprobe");
+	}
+
 	protected String getPathToSoX() {
 		return getPath("sox_path", "sox");
 	}
@@ -135,17 +153,12 @@ public abstract class BaseConverter {
 		}
 	}
 
-	protected String[] mergeAudioToWaves(List<File> waveFiles, File wav) throws IOException {
-		List<String> argv = new ArrayList<>();
-
-		argv.add(getPathToSoX());
-		argv.add("-m");
-		for (File arg : waveFiles) {
-			argv.add(arg.getCanonicalPath());
+	protected WaveMixer getMixer(List<File> waveFiles) {
+		WaveMixer mixer = new WaveMixer();
+		for (File wav : waveFiles) {
+			mixer.add(wav);
 		}
-		argv.add(wav.getCanonicalPath());
-
-		return argv.toArray(new String[0]);
+		return mixer;
 	}
 
 	protected void stripAudioFirstPass(Recording recording, List<ConverterProcessResult> returnLog,
@@ -155,19 +168,18 @@ public abstract class BaseConverter {
 				, metaDataDao.getAudioMetaDataByRecording(recording.getId()));
 	}
 
-	private String[] addSoxPad(List<ConverterProcessResult> returnLog, String job, double length, double position, File inFile, File outFile) throws IOException {
-		//FIXME need to check this
-		if (length < 0 || position < 0) {
-			log.debug("::addSoxPad " + job + " Invalid parameters: "
-					+ " length = " + length + "; position = " + position + "; inFile = " + inFile);
+	private static ConverterProcessResult fillGaps(WaveGapFiller filler, File inFile, File outFile) {
+		ConverterProcessResult res = new ConverterProcessResult("fillGap", null, null);
+		res.setCommand(String.format("fill %s seconds of silence: %s -> %s", filler.getLength(), inFile, outFile));
+		try {
+			filler.fill(inFile, outFile);
+			res.setExitCode(ConverterProcessResult.ZERO);
+		} catch (IOException e) {
+			log.error("::fillGap Error while filling gaps in " + inFile, e);
+			res.setError(e.getMessage());
+			res.setException(e.toString());
 		}
-		length = length < 0 ? 0 : length;
-		position = position < 0 ? 0 : position;
-
-		String[] argv = new String[] { getPathToSoX(), inFile.getCanonicalPath(), outFile.getCanonicalPath(), "pad", "" + length, "" + position };
-
-		returnLog.add(ProcessHelper.executeScript(job, argv));
-		return argv;
+		return res;
 	}
 
 	private static File getMetaFlvSer(RecordingMetaData metaData) {
@@ -188,7 +200,19 @@ public abstract class BaseConverter {
 
 	protected RecordingMetaData waitForTheStream(long metaId) throws InterruptedException {
 		RecordingMetaData metaData = metaDataDao.get(metaId);
+		CompletableFuture<Long> written = StreamCompletionRegistry.get(metaId);
+		if (metaData.getStreamStatus() != Status.STOPPED && written != null) {
+			// stream is being written on this node, no need to poll
+			log.debug("### waiting for the stream to be closed " + metaId);
+			try {
+				written.get(TIME_TO_WAIT_FOR_FRAME, TimeUnit.MILLISECONDS);
+			} catch (ExecutionException|TimeoutException e) {
+				log.warn("### stream was not closed in time " + metaId, e);
+			}
+			metaData = metaDataDao.get(metaId);
+		}
 		if (metaData.getStreamStatus() != Status.STOPPED) {
+			// stream was started before restart, status and files are checked
 			log.debug("### meta Stream not yet written to disk " + metaId);
 			long counter = 0;
 			long maxTimestamp = 0;
@@ -280,54 +304,37 @@ public abstract class BaseConverter {
 				if (outputWav.exists() && outputWav.length() != 0) {
 					metaData.setAudioValid(true);
 					// Strip Wave to Full Length
-					File outputGapFullWav = outputWav;
+					String hashFileFullName = metaData.getStreamName() + "_FULL_WAVE.wav";
+					File outputFullWav = new File(streamFolder, hashFileFullName);
+					WaveGapFiller filler = new WaveGapFiller();
 
 					// Fix Start/End in Audio
-					List<RecordingMetaDelta> metaDeltas = metaDeltaDao.getByMetaId(metaId);
-
-					int counter = 0;
-
-					for (RecordingMetaDelta metaDelta : metaDeltas) {
-						File inputFile = outputGapFullWav;
-
-						// Strip Wave to Full Length
-						String hashFileGapsFullName = metaData.getStreamName() + "_GAP_FULL_WAVE_" + counter + ".wav";
-						outputGapFullWav = new File(streamFolder, hashFileGapsFullName);
-
-						metaDelta.setWaveOutPutName(hashFileGapsFullName);
-
-						String[] argv_sox = null;
-
-						if (metaDelta.getDeltaTime() != null) {
-							double gapSeconds = diffSeconds(metaDelta.getDeltaTime());
-							if (metaDelta.isStartPadding()) {
-								argv_sox = addSoxPad(returnLog, "fillGap", gapSeconds, 0, inputFile, outputGapFullWav);
-							} else if (metaDelta.isEndPadding()) {
-								argv_sox = addSoxPad(returnLog, "fillGap", 0, gapSeconds, inputFile, outputGapFullWav);
-							}
+					for (RecordingMetaDelta metaDelta : metaDeltaDao.getByMetaId(metaId)) {
+						if (metaDelta.getDeltaTime() == null || !(metaDelta.isStartPadding() || metaDelta.isEndPadding())) {
+							continue;
 						}
-
-						if (argv_sox != null) {
-							log.debug("START fillGap ################# Delta-ID :: " + metaDelta.getId());
-
-							metaDeltaDao.update(metaDelta);
-							counter++;
+						double gapSeconds = diffSeconds(metaDelta.getDeltaTime());
+						if (gapSeconds < 0) {
+							log.debug("::fillGap Invalid delta: " + gapSeconds + "; Delta-ID :: " + metaDelta.getId());
+						}
+						if (metaDelta.isStartPadding()) {
+							filler.addStart(gapSeconds);
 						} else {
-							outputGapFullWav = inputFile;
+							filler.addEnd(gapSeconds);
 						}
+						log.debug("fillGap ################# Delta-ID :: " + metaDelta.getId());
+						metaDelta.setWaveOutPutName(hashFileFullName);
+						metaDeltaDao.update(metaDelta);
 					}
 
-					// Strip Wave to Full Length
-					String hashFileFullName = metaData.getStreamName() + "_FULL_WAVE.wav";
-					File outputFullWav = new File(streamFolder, hashFileFullName);
-
 					// Calculate delta at beginning
 					double startPad = diffSeconds(metaData.getRecordStart(), recording.getRecordStart());
 
 					// Calculate delta at ending
 					double endPad = diffSeconds(recording.getRecordEnd(), metaData.getRecordEnd());
 
-					addSoxPad(returnLog, "addStartEndToAudio", startPad, endPad, outputGapFullWav, outputFullWav);
+					filler.addStart(startPad).addEnd(endPad);
+					returnLog.add(fillGaps(filler, outputWav, outputFullWav));
 
 					// Fix for Audio Length - Invalid Audio Length in Recorded Files
 					// Audio must match 100% the Video
@@ -354,29 +361,58 @@ public abstract class BaseConverter {
 		return String.format("%sx%s", r.getWidth(), r.getHeight());
 	}
 
-	protected List<String> addMp4OutParams(Recording r, List<String> argv, String mp4path) {
+	protected List<String> addVideoParams(Recording r, List<String> argv) {
 		argv.addAll(Arrays.asList(
 				"-c:v", "h264", //
 				"-crf", "24",
 				"-pix_fmt", "yuv420p",
 				"-preset", "medium",
 				"-profile:v", "baseline",
+				"-s", getDimensions(r) //
+				));
+		return argv;
+	}
+
+	/**
+	 * @param encodeVideo - if <code>false</code> video stream is copied as is
+	 */
+	protected List<String> addMp4OutParams(Recording r, List<String> argv, String mp4path, boolean encodeVideo) {
+		if (encodeVideo) {
+			addVideoParams(r, argv);
+		} else {
+			argv.addAll(Arrays.asList("-c:v", "copy"));
+		}
+		argv.addAll(Arrays.asList(
 				"-c:a", "libfaac",
 				"-c:a", "libfdk_aac",
 				"-ar", "22050",
 				"-b:a", "32k", //FIXME add quality constants
-				"-s", getDimensions(r), //
+				"-movflags", "+faststart",
 				mp4path
 				));
 		return argv;
 	}
 
 	protected String convertToMp4(Recording r, List<String> _argv, List<ConverterProcessResult> returnLog) throws IOException {
-		//TODO add faststart, move filepaths to helpers
+		return convertToMp4(r, _argv, null, true, returnLog);
+	}
+
+	/**
+	 * @param audio - if not <code>null</code> mixed audio is written to the standard input of ffmpeg,
+	 *                {@link #PIPE_INPUT} should be used as input file name in <code>_argv</code>
+	 * @param encodeVideo - if <code>false</code> video stream is copied as is
+	 */
+	protected String convertToMp4(Recording r, List<String> _argv, WaveMixer audio, boolean encodeVideo, List<ConverterProcessResult> returnLog) throws IOException {
+		//TODO move filepaths to helpers
 		String mp4path = r.getFile().getCanonicalPath();
 		List<String> argv = new ArrayList<>(Arrays.asList(getPathToFFMPEG(), "-y"));
 		argv.addAll(_argv);
-		returnLog.add(ProcessHelper.executeScript("generate MP4", addMp4OutParams(r, argv, mp4path).toArray(new String[]{})));
+		String[] cmd = addMp4OutParams(r, argv, mp4path, encodeVideo).toArray(new String[]{});
+		if (audio == null) {
+			returnLog.add(ProcessHelper.executeScript("generate MP4", cmd));
+		} else {
+			returnLog.add(ProcessHelper.executeScript("generate MP4", cmd, os -> audio.mix(os)));
+		}
 		return mp4path;
 	}
 
@@ -397,6 +433,58 @@ public abstract class BaseConverter {
 		returnLog.add(ProcessHelper.executeScript("generate preview JPG", argv));
 	}
 
+	/**
+	 * Stores additional representations of the MP4 allowing player to start and seek without
+	 * downloading the whole file (if enabled by {@link OpenmeetingsVariables#CONFIG_RECORDING_HLS}):
+	 * HLS playlist of fragmented MP4 segments stored in single file and addressed by byte ranges,
+	 * and index of key frames of the MP4 (one "time,offset" line per key frame)
+	 */
+	protected void convertToHls(Recording r, String mp4path, List<ConverterProcessResult> returnLog) throws IOException {
+		if (1 != configurationDao.getConfValue(CONFIG_RECORDING_HLS, Integer.class, "0")) {
+			return;
+		}
+		File playlist = r.getFile(EXTENSION_M3U8);
+		File segments = r.getFile(EXTENSION_M4S);
+		File init = r.getFile(EXTENSION_INIT_MP4);
+		File index = r.getFile(EXTENSION_IDX);
+		String[] argv = new String[] {
+				getPathToFFMPEG(), "-y"
+				, "-i", mp4path
+				, "-c", "copy"
+				, "-f", "hls"
+				, "-hls_time", HLS_SEGMENT_DURATION
+				, "-hls_playlist_type", "vod"
+				, "-hls_segment_type", "fmp4"
+				, "-hls_flags", "single_file"
+				, "-hls_fmp4_init_filename", init.getName()
+				, "-hls_segment_filename", segments.getCanonicalPath()
+				, playlist.getCanonicalPath()};
+		ConverterProcessResult res = ProcessHelper.executeScript("generate HLS", argv);
+		returnLog.add(res);
+		if (!res.isOk()) {
+			// partial playlist should not be served
+			deleteFileIfExists(playlist);
+			deleteFileIfExists(segments);
+			deleteFileIfExists(init);
+			return;
+		}
+		res = ProcessHelper.executeScript("generate key frame index", new String[] {
+				getPathToFFPROBE(), "-v", "error"
+				, "-select_streams", "v:0"
+				, "-skip_frame", "nokey"
+				, "-show_entries", "frame=pts_time,pkt_pos"
+				, "-of", "csv=p=0"
+				, mp4path});
+		if (res.isOk()) {
+			Files.write(index.toPath(), res.getOut().getBytes(UTF_8));
+			// index is stored in the file, there is no need to keep it in conversion log
+			res.setOut(String.format("Index is stored to %s", index.getName()));
+		} else {
+			deleteFileIfExists(index);
+		}
+		returnLog.add(res);
+	}
+
 	protected static Dimension getDimension(String txt) {
 		Matcher matcher = p.matcher(txt);
 
@@ -19,6 +19,10 @@
 package org.apache.openmeetings.core.converter;
 
 import static org.apache.openmeetings.util.OmFileHelper.EXTENSION_PDF;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_OFFICE_MAX_TASKS;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_OFFICE_POOL_SIZE;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_OFFICE_QUEUE_SIZE;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_OFFICE_TIMEOUT;
 import static org.apache.openmeetings.util.OpenmeetingsVariables.webAppRootKey;
 
 import java.io.File;
@@ -30,7 +34,6 @@ import org.apache.openmeetings.util.process.ConverterProcessResultList;
 import org.apache.wicket.util.string.Strings;
 import org.artofsolving.jodconverter.OfficeDocumentConverter;
 import org.artofsolving.jodconverter.office.DefaultOfficeManagerConfiguration;
-import org.artofsolving.jodconverter.office.OfficeException;
 import org.artofsolving.jodconverter.office.OfficeManager;
 import org.red5.logging.Red5LoggerFactory;
 import org.slf4j.Logger;
@@ -38,15 +41,80 @@ import org.springframework.beans.factory.annotation.Autowired;
 
 public class DocumentConverter {
 	private static final Logger log = Red5LoggerFactory.getLogger(DocumentConverter.class, webAppRootKey);
+	private static final int OFFICE_PORT = 2002;
 
 	@Autowired
 	private ConfigurationDao configurationDao;
 	@Autowired
 	private ImageConverter imageConverter;
+	private OfficePool pool;
+
+	/**
+	 * Office process converting documents via JOD Library (external library),
+	 * each worker listens on its own port
+	 */
+	private static class JodWorker implements OfficePool.Worker {
+		private final String officePath;
+		private final int port;
+		private final long timeout;
+		private OfficeManager officeManager;
+		private OfficeDocumentConverter converter;
+
+		JodWorker(String officePath, int port, long timeout) {
+			this.officePath = officePath;
+			this.port = port;
+			this.timeout = timeout;
+		}
+
+		@Override
+		public void start() {
+			DefaultOfficeManagerConfiguration configuration = new DefaultOfficeManagerConfiguration();
+			if (!Strings.isEmpty(officePath)) {
+				configuration.setOfficeHome(officePath);
+			}
+			configuration.setPortNumber(port);
+			configuration.setTaskExecutionTimeout(timeout);
+			// throws IllegalStateException if there is no office installed
+			officeManager = configuration.buildOfficeManager();
+			officeManager.start();
+			converter = new OfficeDocumentConverter(officeManager);
+		}
+
+		@Override
+		public void convert(File in, File out) {
+			converter.convert(in, out);
+		}
+
+		@Override
+		public boolean isRunning() {
+			return officeManager.isRunning();
+		}
+
+		@Override
+		public void stop() {
+			if (officeManager != null) {
+				officeManager.stop();
+			}
+		}
+	}
+
+	private synchronized OfficePool getPool() {
+		if (pool == null) {
+			String officePath = configurationDao.getConfValue("office.path", String.class, null);
+			int size = Math.max(1, configurationDao.getConfValue(CONFIG_OFFICE_POOL_SIZE, Integer.class, "1"));
+			int queueSize = Math.max(0, configurationDao.getConfValue(CONFIG_OFFICE_QUEUE_SIZE, Integer.class, "20"));
+			long timeout = 1000L * Math.max(1, configurationDao.getConfValue(CONFIG_OFFICE_TIMEOUT, Integer.class, "120"));
+			int maxTasks = Math.max(1, configurationDao.getConfValue(CONFIG_OFFICE_MAX_TASKS, Integer.class, "200"));
+			pool = new OfficePool(idx -> new JodWorker(officePath, OFFICE_PORT + idx, timeout), size, queueSize, timeout, maxTasks);
+		}
+		return pool;
+	}
 
 	public ConverterProcessResultList convertPDF(FileItem f, String ext) throws Exception {
-		ConverterProcessResultList list = new ConverterProcessResultList();
+		return convertPDF(new ConverterProcessResultList(), f, ext);
+	}
 
+	public ConverterProcessResultList convertPDF(ConverterProcessResultList list, FileItem f, String ext) throws Exception {
 		boolean fullProcessing = !EXTENSION_PDF.equals(ext);
 		File original = f.getFile(ext);
 		File pdf = f.getFile(EXTENSION_PDF);
@@ -61,26 +129,11 @@ public class DocumentConverter {
 	}
 
 	/**
-	 * Generates PDF using JOD Library (external library)
+	 * Generates PDF using pool of office processes
 	 */
 	public ConverterProcessResult doJodConvert(File in, File out) {
 		try {
-			String officePath = configurationDao.getConfValue("office.path", String.class, null);
-			DefaultOfficeManagerConfiguration configuration = new DefaultOfficeManagerConfiguration();
-			if (!Strings.isEmpty(officePath)) {
-				configuration.setOfficeHome(officePath);
-			}
-			OfficeManager officeManager = configuration.buildOfficeManager();
-			officeManager.start();
-			OfficeDocumentConverter converter = new OfficeDocumentConverter(officeManager);
-			try {
-				converter.convert(in, out);
-			} catch (OfficeException ex) {
-				log.error("doJodConvert", ex);
-				return new ConverterProcessResult("doJodConvert", ex.getMessage(), ex);
-			} finally {
-				officeManager.stop();
-			}
+			getPool().convert(in, out);
 		} catch (Exception ex) {
 			log.error("doJodConvert", ex);
 			return new ConverterProcessResult("doJodConvert", ex.getMessage(), ex);
@@ -89,4 +142,11 @@ public class DocumentConverter {
 		result.setExitCode(0);
 		return result;
 	}
+
+	public synchronized void destroy() {
+		if (pool != null) {
+			pool.destroy();
+			pool = null;
+		}
+	}
 }
@@ -26,12 +26,11 @@ import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
-import java.util.ArrayList;
-import java.util.List;
 
 import org.apache.openmeetings.db.entity.file.FileExplorerItem;
 import org.apache.openmeetings.db.entity.file.FileItem.Type;
 import org.apache.openmeetings.util.process.ConverterProcessResult;
+import org.apache.openmeetings.util.process.ConverterProcessResultList;
 import org.apache.openmeetings.util.process.ProcessHelper;
 import org.red5.logging.Red5LoggerFactory;
 import org.slf4j.Logger;
@@ -39,8 +38,11 @@ import org.slf4j.Logger;
 public class FlvExplorerConverter extends BaseConverter {
 	private static final Logger log = Red5LoggerFactory.getLogger(FlvExplorerConverter.class, webAppRootKey);
 
-	public List<ConverterProcessResult> convertToMP4(FileExplorerItem f, String ext) {
-		List<ConverterProcessResult> logs = new ArrayList<>();
+	public ConverterProcessResultList convertToMP4(FileExplorerItem f, String ext) {
+		return convertToMP4(new ConverterProcessResultList(), f, ext);
+	}
+
+	public ConverterProcessResultList convertToMP4(ConverterProcessResultList logs, FileExplorerItem f, String ext) {
 		try {
 			File mp4 = f.getFile(EXTENSION_MP4);
 			f.setType(Type.Video);
@@ -60,7 +62,7 @@ public class FlvExplorerConverter extends BaseConverter {
 					, "-pix_fmt", "yuv420p" //
 					, mp4.getCanonicalPath() };
 			ConverterProcessResult res = ProcessHelper.executeScript("uploadVideo ID :: " + f.getHash(), args);
-			logs.add(res);
+			logs.addItem("uploadVideo", res);
 			if (sameExt && tmp != null) {
 				if (res.isOk()) {
 					Files.delete(tmp);
@@ -80,10 +82,10 @@ public class FlvExplorerConverter extends BaseConverter {
 					"-f", "rawvideo", "-s", dim.width + "x" + dim.height,
 					jpeg.getCanonicalPath() };
 
-			logs.add(ProcessHelper.executeScript("previewUpload ID :: " + f.getHash(), args));
+			logs.addItem("previewUpload", ProcessHelper.executeScript("previewUpload ID :: " + f.getHash(), args));
 		} catch (Exception err) {
 			log.error("[convertToFLV]", err);
-			logs.add(new ConverterProcessResult("convertToMP4", err.getMessage(), err));
+			logs.addItem("convertToMP4", new ConverterProcessResult("convertToMP4", err.getMessage(), err));
 		}
 
 		return logs;
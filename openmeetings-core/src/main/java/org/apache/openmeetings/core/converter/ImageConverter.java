@@ -20,9 +20,13 @@ package org.apache.openmeetings.core.converter;
 
 import static org.apache.openmeetings.util.OmFileHelper.DOC_PAGE_PREFIX;
 import static org.apache.openmeetings.util.OmFileHelper.EXTENSION_JPG;
+import static org.apache.openmeetings.util.OmFileHelper.EXTENSION_PDF;
 import static org.apache.openmeetings.util.OmFileHelper.EXTENSION_PNG;
+import static org.apache.openmeetings.util.OmFileHelper.PROFILE_SIZES;
+import static org.apache.openmeetings.util.OmFileHelper.getProfileThumbName;
 import static org.apache.openmeetings.util.OmFileHelper.getUploadProfilesUserDir;
 import static org.apache.openmeetings.util.OmFileHelper.profileFileName;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_CONVERTER_THREADS_PAGE;
 import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_DOCUMENT_DPI;
 import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_DOCUMENT_QUALITY;
 import static org.apache.openmeetings.util.OpenmeetingsVariables.webAppRootKey;
@@ -30,8 +34,19 @@ import static org.apache.openmeetings.util.OpenmeetingsVariables.webAppRootKey;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.openmeetings.core.util.PriorityExecutor;
 import org.apache.openmeetings.db.dao.basic.ConfigurationDao;
 import org.apache.openmeetings.db.dao.user.UserDao;
 import org.apache.openmeetings.db.entity.file.FileItem;
@@ -47,15 +62,25 @@ import org.springframework.beans.factory.annotation.Autowired;
 public class ImageConverter extends BaseConverter {
 	private static final Logger log = Red5LoggerFactory.getLogger(ImageConverter.class, webAppRootKey);
 	private static final String PAGE_TMPLT = DOC_PAGE_PREFIX + "-%04d." + EXTENSION_PNG;
+	// pages rendered before document is reported as converted
+	private static final int FIRST_PAGES = 3;
+	private static final int CHUNK_PAGES = 10;
+	private static final long PAGE_WAIT = 60; // seconds
 
 	@Autowired
 	private UserDao userDao;
 	@Autowired
 	private ConfigurationDao cfgDao;
+	// pages are rendered by the same pool both in background and on demand, pages requested on demand go first
+	private PriorityExecutor pages;
+	// pages being rendered on demand, concurrent requests of the same page wait for single rendering
+	private final Map<String, Future<ConverterProcessResult>> rendering = new ConcurrentHashMap<>();
 
 	public ConverterProcessResultList convertImage(FileItem f, String ext) throws IOException {
-		ConverterProcessResultList returnMap = new ConverterProcessResultList();
+		return convertImage(new ConverterProcessResultList(), f, ext);
+	}
 
+	public ConverterProcessResultList convertImage(ConverterProcessResultList returnMap, FileItem f, String ext) throws IOException {
 		File jpg = f.getFile(EXTENSION_JPG);
 		if (!EXTENSION_JPG.equals(ext)) {
 			File img = f.getFile(ext);
@@ -96,6 +121,11 @@ public class ImageConverter extends BaseConverter {
 		}
 
 		String pictureuri = destinationFile.getName();
+		// smaller versions are generated once, so they can be served without scaling on every request
+		for (int size : PROFILE_SIZES) {
+			File thumb = new File(destinationFile.getParentFile(), getProfileThumbName(pictureuri, size));
+			returnMap.addItem("thumbnail " + size, thumbnail(destinationFile, thumb, size));
+		}
 		User us = userDao.get(userId);
 		us.setUpdated(new java.util.Date());
 		us.setPictureuri(pictureuri);
@@ -145,6 +175,15 @@ public class ImageConverter extends BaseConverter {
 		return ProcessHelper.executeScript("convertSingleJpg", argv);
 	}
 
+	private ConverterProcessResult thumbnail(File in, File out, int size) throws IOException {
+		String[] argv = new String[] { getPathToConvert()
+				, in.getCanonicalPath()
+				, "-thumbnail", String.format("%1$dx%1$d>", size)
+				, out.getCanonicalPath()
+				};
+		return ProcessHelper.executeScript("thumbnail", argv);
+	}
+
 	public ConverterProcessResult resize(File in, File out, Integer width, Integer height) throws IOException {
 		String[] argv = new String[] { getPathToConvert()
 				, "-resize", (width == null ? "" : width) + (height == null ? "" : "x" + height)
@@ -153,15 +192,65 @@ public class ImageConverter extends BaseConverter {
 		return ProcessHelper.executeScript("resize", argv);
 	}
 
+	private synchronized PriorityExecutor getPagesPool() {
+		if (pages == null) {
+			int threads = Math.max(1, cfgDao.getConfValue(CONFIG_CONVERTER_THREADS_PAGE, Integer.class, "2"));
+			pages = new PriorityExecutor("convert-page-", threads);
+		}
+		return pages;
+	}
+
+	private int getPageCount(ConverterProcessResultList list, File pdf) throws IOException {
+		ConverterProcessResult res = ProcessHelper.executeScript("get PDF page count"
+				, new String[] {getPathToIdentify(), "-ping", "-format", "%n\n", pdf.getCanonicalPath()});
+		list.addItem("get PDF page count", res);
+		if (res.isOk() && res.getOut() != null) {
+			try {
+				return Integer.parseInt(res.getOut().trim().split("\\s+")[0]);
+			} catch (NumberFormatException e) {
+				log.warn("Unexpected page count: {}", res.getOut());
+			}
+		}
+		return -1;
+	}
+
 	/**
-	 * Converts PDF document to the series of images
+	 * Renders pages of PDF document, every page is moved to the folder of the document
+	 * as soon as it is complete, so partially written images are never served
 	 *
 	 * @param pdf - input PDF document
+	 * @param from - the first page to render, zero based
+	 * @param to - the last page to render, inclusive
 	 * @return - result of conversion
 	 * @throws IOException in case IO exception occured
 	 */
-	public ConverterProcessResultList convertDocument(ConverterProcessResultList list, FileItem f, File pdf) throws IOException {
-		log.debug("convertDocument");
+	private ConverterProcessResult renderPages(File pdf, int from, int to) throws IOException {
+		File dir = pdf.getParentFile();
+		File tmp = new File(dir, "render-" + UUID.randomUUID().toString());
+		tmp.mkdirs();
+		try {
+			String[] argv = new String[] {
+				getPathToConvert()
+				, "-density", getDpi()
+				, String.format("%s[%d-%d]", pdf.getCanonicalPath(), from, to)
+				, "-quality", getQuality()
+				, "-scene", "" + from
+				, new File(tmp, PAGE_TMPLT).getCanonicalPath()
+				};
+			ConverterProcessResult res = ProcessHelper.executeScript(String.format("convertDocument %d-%d", from, to), argv);
+			File[] list = tmp.listFiles();
+			if (res.isOk() && list != null) {
+				for (File page : list) {
+					Files.move(page.toPath(), new File(dir, page.getName()).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				}
+			}
+			return res;
+		} finally {
+			FileUtils.deleteQuietly(tmp);
+		}
+	}
+
+	private ConverterProcessResult renderAll(File pdf) throws IOException {
 		String[] argv = new String[] {
 			getPathToConvert()
 			, "-density", getDpi()
@@ -169,22 +258,107 @@ public class ImageConverter extends BaseConverter {
 			, "-quality", getQuality()
 			, new File(pdf.getParentFile(), PAGE_TMPLT).getCanonicalPath()
 			};
-		ConverterProcessResult res = ProcessHelper.executeScript("convertDocument", argv);
+		return ProcessHelper.executeScript("convertDocument", argv);
+	}
+
+	/**
+	 * Converts PDF document to the series of images
+	 *
+	 * First pages are rendered immediately, the rest are rendered in background
+	 * in parallel chunks, page requested before it was rendered is rendered
+	 * on demand by {@link #getPage(FileItem, int)}
+	 *
+	 * @param pdf - input PDF document
+	 * @return - result of conversion
+	 * @throws IOException in case IO exception occured
+	 */
+	public ConverterProcessResultList convertDocument(ConverterProcessResultList list, FileItem f, File pdf) throws IOException {
+		log.debug("convertDocument");
+		int count = getPageCount(list, pdf);
+		if (count < 1) {
+			// page count is unknown, all pages are rendered at once
+			ConverterProcessResult res = renderAll(pdf);
+			list.addItem("convert PDF to images", res);
+			if (res.isOk()) {
+				File[] pages = pdf.getParentFile().listFiles(new FileFilter() {
+					@Override
+					public boolean accept(File f) {
+						return f.isFile() && f.getName().startsWith(DOC_PAGE_PREFIX) && f.getName().endsWith(EXTENSION_PNG);
+					}
+				});
+				if (pages == null || pages.length == 0) {
+					f.setCount(0);
+				} else {
+					f.setCount(pages.length);
+				}
+				list.addItem("get PNG page dimensions", initSize(f, pages[0]));
+			}
+			return list;
+		}
+		f.setCount(count);
+		int first = Math.min(count, FIRST_PAGES);
+		ConverterProcessResult res = renderPages(pdf, 0, first - 1);
 		list.addItem("convert PDF to images", res);
 		if (res.isOk()) {
-			File[] pages = pdf.getParentFile().listFiles(new FileFilter() {
-				@Override
-				public boolean accept(File f) {
-					return f.isFile() && f.getName().startsWith(DOC_PAGE_PREFIX) && f.getName().endsWith(EXTENSION_PNG);
-				}
-			});
-			if (pages == null || pages.length == 0) {
-				f.setCount(0);
-			} else {
-				f.setCount(pages.length);
+			list.addItem("get PNG page dimensions", initSize(f, new File(pdf.getParentFile(), String.format(PAGE_TMPLT, 0))));
+			for (int from = first; from < count; from += CHUNK_PAGES) {
+				final int _from = from, to = Math.min(count, from + CHUNK_PAGES) - 1;
+				getPagesPool().submit(() -> {
+					try {
+						ConverterProcessResult r = renderPages(pdf, _from, to);
+						if (!r.isOk()) {
+							log.warn("Pages {}-{} of {} were not rendered, will be rendered on demand: {}", _from, to, pdf, r.getError());
+						}
+						return r;
+					} catch (Exception e) {
+						log.error("Unexpected error while rendering pages", e);
+						throw e;
+					}
+				}, false);
 			}
-			list.addItem("get PNG page dimensions", initSize(f, pages[0]));
 		}
 		return list;
 	}
+
+	/**
+	 * @param f - converted document
+	 * @param page - zero based page number
+	 * @return image of the page, page which is not rendered yet is rendered on demand
+	 */
+	public File getPage(FileItem f, int page) {
+		File img = f.getFile("" + page);
+		File pdf = f.getFile(EXTENSION_PDF);
+		if (img == null || img.exists() || page < 0 || page >= f.getCount() || pdf == null || !pdf.exists()) {
+			return img;
+		}
+		String key = String.format("%s_%d", f.getHash(), page);
+		Future<ConverterProcessResult> cur = rendering.computeIfAbsent(key, k -> {
+			log.debug("Page {} of {} is rendered on demand", page, f.getHash());
+			return getPagesPool().submit(() -> {
+				try {
+					return renderPages(pdf, page, page);
+				} finally {
+					rendering.remove(k);
+				}
+			}, true);
+		});
+		try {
+			cur.get(PAGE_WAIT, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException | CancellationException e) {
+			log.error("Unexpected error while rendering page", e);
+		} catch (TimeoutException e) {
+			log.warn("Page {} of {} was not rendered in time", page, f.getHash());
+		}
+		return img;
+	}
+
+	public synchronized void destroy() {
+		// pages not rendered will be rendered on demand
+		if (pages != null) {
+			pages.shutdownNow();
+			pages = null;
+		}
+	}
 }
@@ -24,7 +24,6 @@ import static org.apache.openmeetings.util.OmFileHelper.getStreamsHibernateDir;
 import static org.apache.openmeetings.util.OpenmeetingsVariables.webAppRootKey;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
@@ -61,35 +60,29 @@ public class InterviewConverter extends BaseConverter implements IRecordingConve
 	@Autowired
 	private FileItemLogDao logDao;
 
-	private String[] mergeAudioToWaves(List<File> waveFiles, File wav,
-			List<RecordingMetaData> metaDataList, ReConverterParams rcv) throws IOException {
-		String[] cmdSox = new String[waveFiles.size() + 5];
-		cmdSox[0] = this.getPathToSoX();
-		cmdSox[1] = "-m";
-
-		int counter = 2;
+	private static WaveMixer getMixer(List<File> waveFiles, List<RecordingMetaData> metaDataList, ReConverterParams rcv) {
+		WaveMixer mixer = new WaveMixer();
 		for (File _wav : waveFiles) {
+			Integer gain = null;
 			for (RecordingMetaData metaData : metaDataList) {
 				String hashFileFullNameStored = metaData.getFullWavAudioData();
 
 				if (hashFileFullNameStored.equals(_wav.getName())) {
 					if (metaData.getInteriewPodId() == 1) {
-						cmdSox[counter] = "-v " + rcv.leftSideLoud;
-						counter++;
+						gain = rcv.leftSideLoud;
 					}
 					if (metaData.getInteriewPodId() == 2) {
-						cmdSox[counter] = "-v " + rcv.rightSideLoud;
-						counter++;
+						gain = rcv.rightSideLoud;
 					}
 				}
 			}
-			cmdSox[counter] = _wav.getCanonicalPath();
-			counter++;
+			if (gain == null) {
+				mixer.add(_wav);
+			} else {
+				mixer.add(_wav, gain);
+			}
 		}
-
-		cmdSox[counter] = wav.getCanonicalPath();
-
-		return cmdSox;
+		return mixer;
 	}
 
 	@Override
@@ -118,21 +111,16 @@ public class InterviewConverter extends BaseConverter implements IRecordingConve
 			// Merge Wave to Full Length
 			File streamFolderGeneral = getStreamsHibernateDir();
 
-			File wav = new File(streamFolder, "INTERVIEW_" + r.getId() + "_FINAL_WAVE.wav");
-			deleteFileIfExists(wav);
-
+			File wav = null;
+			WaveMixer mixer = null;
 			if (waveFiles.size() == 1) {
 				wav = waveFiles.get(0);
 			} else if (waveFiles.size() > 0) {
-				String[] argv_full_sox;
-				if (reconversion) {
-					argv_full_sox = mergeAudioToWaves(waveFiles, wav, metaDataList, rcv);
-				} else {
-					argv_full_sox = mergeAudioToWaves(waveFiles, wav);
-				}
-
-				logs.add(ProcessHelper.executeScript("mergeAudioToWaves", argv_full_sox));
+				// mixed audio is streamed directly to ffmpeg
+				mixer = reconversion ? getMixer(waveFiles, metaDataList, rcv) : getMixer(waveFiles);
 			} else {
+				wav = new File(streamFolder, "INTERVIEW_" + r.getId() + "_FINAL_WAVE.wav");
+				deleteFileIfExists(wav);
 				// create default Audio to merge it.
 				// strip to content length
 				File outputWav = new File(streamFolderGeneral, "one_second.wav");
@@ -237,7 +225,7 @@ public class InterviewConverter extends BaseConverter implements IRecordingConve
 					args.add("-i"); args.add(pods[i]);
 				}
 			}
-			args.add("-i"); args.add(wav.getCanonicalPath());
+			args.add("-i"); args.add(wav == null ? PIPE_INPUT : wav.getCanonicalPath());
 			args.add("-filter_complex");
 			args.add(String.format("[0:v]scale=%1$d:%2$d,pad=2*%1$d:%2$d[left];[1:v]scale=%1$d:%2$d[right];[left][right]overlay=main_w/2:0%3$s"
 					, flvWidth, flvHeight, shortest ? ":shortest=1" : ""));
@@ -254,9 +242,10 @@ public class InterviewConverter extends BaseConverter implements IRecordingConve
 			r.setWidth(2 * flvWidth);
 			r.setHeight(flvHeight);
 
-			String mp4path = convertToMp4(r, args, logs);
+			String mp4path = convertToMp4(r, args, mixer, true, logs);
 
 			convertToJpg(r, mp4path, logs);
+			convertToHls(r, mp4path, logs);
 
 			updateDuration(r);
 			r.setStatus(Recording.Status.PROCESSED);
@@ -0,0 +1,295 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.core.converter;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_CONVERTER_THREADS_VIDEO;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_RECORDING_LIVE_CONVERSION;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_RECORDING_SEGMENT_LENGTH;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.webAppRootKey;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.openmeetings.db.dao.basic.ConfigurationDao;
+import org.apache.openmeetings.db.dao.record.RecordingMetaDataDao;
+import org.apache.openmeetings.db.entity.record.Recording;
+import org.apache.openmeetings.db.entity.record.RecordingMetaData;
+import org.apache.openmeetings.util.process.ConverterProcessResult;
+import org.apache.openmeetings.util.process.ProcessHelper;
+import org.red5.logging.Red5LoggerFactory;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Encodes screen sharing of the recording while meeting is running.
+ *
+ * Stream writer cuts the screen sharing into segments of fixed length (starting with keyframe),
+ * every closed segment is encoded in the background. When recording is stopped only the last
+ * segment need to be encoded, {@link RecordingConverter} concatenates encoded segments
+ * and muxes them with the audio without re-encoding the video.
+ *
+ * Segments of the stream not finished for {@link #STALE_TIMEOUT} after the last one was added
+ * (conversion has failed or was never started) are removed by periodic cleanup.
+ */
+public class LiveTranscoder extends BaseConverter {
+	private static final Logger log = Red5LoggerFactory.getLogger(LiveTranscoder.class, webAppRootKey);
+	private static final String SEGMENT_EXT = ".mp4";
+	public static final long STALE_TIMEOUT = 60 * 60 * 1000L; // 1 hour
+	private static final long CLEANUP_PERIOD = 5 * 60 * 1000L; // 5 minutes
+
+	@Autowired
+	private ConfigurationDao cfgDao;
+	@Autowired
+	private RecordingMetaDataDao metaDataDao;
+	private final Map<Long, Stream> streams = new ConcurrentHashMap<>();
+	private ExecutorService executor;
+	private ScheduledExecutorService cleaner;
+
+	public LiveTranscoder() {
+	}
+
+	public LiveTranscoder(ConfigurationDao cfgDao, RecordingMetaDataDao metaDataDao) {
+		this.cfgDao = cfgDao;
+		this.metaDataDao = metaDataDao;
+	}
+
+	private static class Stream {
+		private final List<Segment> segments = new CopyOnWriteArrayList<>();
+		private volatile long updated = System.currentTimeMillis();
+		private volatile boolean discarded = false;
+	}
+
+	private static class Segment {
+		private final File flv;
+		private final File mp4;
+		private final int start;
+		private final int end;
+		private final Future<ConverterProcessResult> job;
+
+		Segment(File flv, File mp4, int start, int end, Future<ConverterProcessResult> job) {
+			this.flv = flv;
+			this.mp4 = mp4;
+			this.start = start;
+			this.end = end;
+			this.job = job;
+		}
+	}
+
+	public boolean isEnabled() {
+		return 1 == cfgDao.getConfValue(CONFIG_RECORDING_LIVE_CONVERSION, Integer.class, "0");
+	}
+
+	/**
+	 * @return length of the segment in milliseconds
+	 */
+	public int getSegmentLength() {
+		return 1000 * Math.max(10, cfgDao.getConfValue(CONFIG_RECORDING_SEGMENT_LENGTH, Integer.class, "300"));
+	}
+
+	private synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			int threads = Math.max(1, cfgDao.getConfValue(CONFIG_CONVERTER_THREADS_VIDEO, Integer.class, "1"));
+			executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS
+					, new LinkedBlockingQueue<>(), new CustomizableThreadFactory("live-transcoder-"));
+			((ThreadPoolExecutor)executor).allowCoreThreadTimeOut(true);
+			cleaner = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("live-transcoder-cleanup-"));
+			cleaner.scheduleWithFixedDelay(() -> cleanup(System.currentTimeMillis()), CLEANUP_PERIOD, CLEANUP_PERIOD, TimeUnit.MILLISECONDS);
+		}
+		return executor;
+	}
+
+	/**
+	 * @param start - timestamp of the first frame of the current segment
+	 * @param timeStamp - timestamp of the frame being written
+	 * @param keyframe - <code>true</code> if the frame is keyframe
+	 * @param segmentLength - length of the segment in milliseconds
+	 * @return <code>true</code> if current segment should be closed and the frame should start the next one
+	 */
+	public static boolean isSegmentComplete(int start, int timeStamp, boolean keyframe, int segmentLength) {
+		return keyframe && timeStamp - start >= segmentLength;
+	}
+
+	/**
+	 * Schedules encoding of the segment
+	 *
+	 * @param metaDataId - id of screen sharing stream
+	 * @param flv - closed segment
+	 * @param start - timestamp of the first frame of the segment in the stream
+	 * @param end - timestamp of the first frame of the next segment, -1 for the last segment
+	 */
+	public void addSegment(Long metaDataId, File flv, int start, int end) {
+		File mp4 = new File(flv.getParentFile(), flv.getName().replaceFirst("\\.flv$", "") + SEGMENT_EXT);
+		Stream stream = streams.computeIfAbsent(metaDataId, id -> new Stream());
+		Future<ConverterProcessResult> job = getExecutor().submit(() -> {
+			try {
+				return encode(metaDataId, flv, mp4);
+			} finally {
+				if (stream.discarded) {
+					// stream was discarded while the segment was being encoded
+					deleteFileIfExists(flv);
+					deleteFileIfExists(mp4);
+				}
+			}
+		});
+		stream.segments.add(new Segment(flv, mp4, start, end, job));
+		stream.updated = System.currentTimeMillis();
+		log.debug("Segment {} of stream {} is scheduled", flv.getName(), metaDataId);
+	}
+
+	protected ConverterProcessResult encode(Long metaDataId, File flv, File mp4) throws IOException {
+		Recording r = metaDataDao.get(metaDataId).getRecording();
+		// the same dimensions are used by RecordingConverter
+		Recording dim = new Recording();
+		dim.setWidth(r.getWidth() / 16 * 16);
+		dim.setHeight(r.getHeight() / 16 * 16);
+		List<String> argv = new ArrayList<>(Arrays.asList(getPathToFFMPEG(), "-y", "-i", flv.getCanonicalPath(), "-an"));
+		addVideoParams(dim, argv);
+		argv.add(mp4.getCanonicalPath());
+		return ProcessHelper.executeScript("encodeSegment", argv.toArray(new String[argv.size()]));
+	}
+
+	protected ConverterProcessResult concat(File list, File out) throws IOException {
+		return ProcessHelper.executeScript("concatSegments", new String[] {
+				getPathToFFMPEG(), "-y"
+				, "-f", "concat", "-safe", "0"
+				, "-i", list.getCanonicalPath()
+				, "-c", "copy"
+				, out.getCanonicalPath()});
+	}
+
+	/**
+	 * Waits for all segments of the stream to be encoded and concatenates them
+	 *
+	 * @param screen - screen sharing stream
+	 * @param out - resulting video
+	 * @param logs - results of the encoding will be added here
+	 * @return <code>true</code> if video was created, <code>false</code> if stream was not encoded
+	 *         during recording or any segment has failed, full conversion should be performed in this case
+	 */
+	public boolean finish(RecordingMetaData screen, File out, List<ConverterProcessResult> logs) {
+		Stream stream = streams.remove(screen.getId());
+		if (stream == null || stream.segments.isEmpty()) {
+			return false;
+		}
+		List<Segment> list = stream.segments;
+		boolean ok = true;
+		File concat = new File(out.getParentFile(), screen.getStreamName() + "_segments.txt");
+		try {
+			StringBuilder sb = new StringBuilder("ffconcat version 1.0\n");
+			for (Segment s : list) {
+				ConverterProcessResult res = s.job.get();
+				logs.add(res);
+				ok &= res.isOk();
+				sb.append("file '").append(s.mp4.getName()).append("'\n");
+				if (s.end > s.start) {
+					// gaps between segments are preserved
+					sb.append(String.format(Locale.ROOT, "duration %.3f%n", diffSeconds(s.end - s.start)));
+				}
+			}
+			if (ok) {
+				Files.write(concat.toPath(), sb.toString().getBytes(UTF_8));
+				ConverterProcessResult res = concat(concat, out);
+				logs.add(res);
+				ok = res.isOk();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			ok = false;
+		} catch (Exception e) {
+			log.error("Unexpected error while finishing live conversion of: " + screen.getId(), e);
+			ok = false;
+		} finally {
+			deleteFileIfExists(concat);
+			for (Segment s : list) {
+				deleteFileIfExists(s.flv);
+				deleteFileIfExists(s.mp4);
+			}
+		}
+		return ok;
+	}
+
+	/**
+	 * Removes segments of the stream, used if the recording will not be converted
+	 *
+	 * @param metaDataId - id of screen sharing stream
+	 */
+	public void discard(Long metaDataId) {
+		Stream stream = streams.remove(metaDataId);
+		if (stream == null) {
+			return;
+		}
+		log.debug("Segments of stream {} are discarded", metaDataId);
+		stream.discarded = true;
+		for (Segment s : stream.segments) {
+			// files of the segment being encoded are removed by its job
+			s.job.cancel(false);
+			deleteFileIfExists(s.flv);
+			deleteFileIfExists(s.mp4);
+		}
+	}
+
+	/**
+	 * Discards streams not finished for {@link #STALE_TIMEOUT}, is called periodically
+	 *
+	 * @param now - current time in milliseconds
+	 */
+	public void cleanup(long now) {
+		for (Map.Entry<Long, Stream> e : streams.entrySet()) {
+			if (now - e.getValue().updated > STALE_TIMEOUT) {
+				log.warn("Live conversion of stream {} was not finished, segments are removed", e.getKey());
+				discard(e.getKey());
+			}
+		}
+	}
+
+	/**
+	 * @return number of streams being encoded
+	 */
+	public int getStreamCount() {
+		return streams.size();
+	}
+
+	public synchronized void destroy() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+		if (cleaner != null) {
+			cleaner.shutdownNow();
+			cleaner = null;
+		}
+	}
+}
@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.core.converter;
+
+import static org.apache.openmeetings.util.OpenmeetingsVariables.webAppRootKey;
+
+import java.io.File;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.IntFunction;
+
+import org.red5.logging.Red5LoggerFactory;
+import org.slf4j.Logger;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Pool of long-living office workers used to convert documents.
+ *
+ * Workers are started on first use and kept running, so conversion does not pay
+ * office startup time. The number of conversions waiting for a free worker is bounded,
+ * every conversion has its own timeout. Worker is restarted if it has crashed or has
+ * not completed conversion in time, and is recycled after given number of conversions.
+ */
+public class OfficePool {
+	private static final Logger log = Red5LoggerFactory.getLogger(OfficePool.class, webAppRootKey);
+
+	public interface Worker {
+		void start() throws Exception;
+
+		void convert(File in, File out) throws Exception;
+
+		boolean isRunning();
+
+		void stop();
+	}
+
+	private static class Slot {
+		private final int idx;
+		private Worker worker;
+		private int tasks;
+
+		Slot(int idx) {
+			this.idx = idx;
+		}
+	}
+
+	private final IntFunction<Worker> factory;
+	private final long timeout;
+	private final int maxTasks;
+	private final BlockingQueue<Slot> idle;
+	private final Semaphore permits;
+	private final ExecutorService exec;
+	private volatile boolean destroyed = false;
+
+	/**
+	 * @param factory - creates worker with given index
+	 * @param size - number of workers
+	 * @param queueSize - max number of conversions waiting for a free worker
+	 * @param timeout - max time in milliseconds to wait for a free worker and to perform conversion
+	 * @param maxTasks - number of conversions performed by worker before it is restarted
+	 */
+	public OfficePool(IntFunction<Worker> factory, int size, int queueSize, long timeout, int maxTasks) {
+		this.factory = factory;
+		this.timeout = timeout;
+		this.maxTasks = maxTasks;
+		idle = new ArrayBlockingQueue<>(size);
+		for (int i = 0; i < size; ++i) {
+			idle.add(new Slot(i));
+		}
+		permits = new Semaphore(size + queueSize);
+		exec = Executors.newFixedThreadPool(size, new CustomizableThreadFactory("office-"));
+	}
+
+	public void convert(File in, File out) throws Exception {
+		if (!permits.tryAcquire()) {
+			throw new RejectedExecutionException("Too many documents are waiting for conversion");
+		}
+		try {
+			Slot s = idle.poll(timeout, TimeUnit.MILLISECONDS);
+			if (s == null) {
+				throw new TimeoutException("No office worker became available in time");
+			}
+			try {
+				convert(s, in, out);
+			} finally {
+				release(s);
+			}
+		} finally {
+			permits.release();
+		}
+	}
+
+	private void convert(Slot s, File in, File out) throws Exception {
+		if (s.worker == null) {
+			log.debug("Starting office worker {}", s.idx);
+			Worker w = factory.apply(s.idx);
+			try {
+				w.start();
+			} catch (Exception e) {
+				stop(w);
+				throw e;
+			}
+			s.worker = w;
+			s.tasks = 0;
+		}
+		final Worker w = s.worker;
+		Future<?> f = exec.submit(() -> {
+			w.convert(in, out);
+			return null;
+		});
+		try {
+			f.get(timeout, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			log.warn("Office worker {} has not completed conversion in time, will be restarted", s.idx);
+			f.cancel(true);
+			stop(w);
+			s.worker = null;
+			throw e;
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception) {
+				throw (Exception)e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	private void release(Slot s) {
+		Worker w = s.worker;
+		if (w != null) {
+			++s.tasks;
+			// crashed and recycled workers are started again on next use
+			if (destroyed || !w.isRunning() || s.tasks >= maxTasks) {
+				log.debug("Stopping office worker {}, tasks performed: {}", s.idx, s.tasks);
+				stop(w);
+				s.worker = null;
+			}
+		}
+		idle.offer(s);
+	}
+
+	private static void stop(Worker w) {
+		try {
+			w.stop();
+		} catch (Exception e) {
+			log.warn("Unexpected error while stopping office worker", e);
+		}
+	}
+
+	public void destroy() {
+		destroyed = true;
+		exec.shutdownNow();
+		for (Slot s : idle) {
+			if (s.worker != null) {
+				stop(s.worker);
+				s.worker = null;
+			}
+		}
+	}
+}
@@ -52,6 +52,8 @@ public class RecordingConverter extends BaseConverter implements IRecordingConve
 	private RecordingMetaDataDao metaDataDao;
 	@Autowired
 	private FileItemLogDao logDao;
+	@Autowired
+	private LiveTranscoder liveTranscoder;
 
 	@Override
 	public void startConversion(Long id) {
@@ -87,15 +89,15 @@ public class RecordingConverter extends BaseConverter implements IRecordingConve
 			stripAudioFirstPass(r, logs, waveFiles, streamFolder);
 
 			// Merge Wave to Full Length
-			File wav = new File(streamFolder, screenMetaData.getStreamName() + "_FINAL_WAVE.wav");
-
+			File wav = null;
+			WaveMixer mixer = null;
 			if (waveFiles.size() == 1) {
 				wav = waveFiles.get(0);
 			} else if (waveFiles.size() > 0) {
-				String[] argv_full_sox = mergeAudioToWaves(waveFiles, wav);
-
-				logs.add(ProcessHelper.executeScript("mergeAudioToWaves", argv_full_sox));
+				// mixed audio is streamed directly to ffmpeg
+				mixer = getMixer(waveFiles);
 			} else {
+				wav = new File(streamFolder, screenMetaData.getStreamName() + "_FINAL_WAVE.wav");
 				// create default Audio to merge it. strip to content length
 				String oneSecWav = new File(getStreamsHibernateDir(), "one_second.wav").getCanonicalPath();
 
@@ -106,8 +108,10 @@ public class RecordingConverter extends BaseConverter implements IRecordingConve
 
 				logs.add(ProcessHelper.executeScript("generateSampleAudio", cmd));
 			}
-			screenMetaData.setFullWavAudioData(wav.getName());
-			metaDataDao.update(screenMetaData);
+			if (wav != null) {
+				screenMetaData.setFullWavAudioData(wav.getName());
+				metaDataDao.update(screenMetaData);
+			}
 
 			// Merge Audio with Video / Calculate resulting FLV
 
@@ -133,12 +137,17 @@ public class RecordingConverter extends BaseConverter implements IRecordingConve
 			r.setWidth(flvWidth);
 			r.setHeight(flvHeight);
 
+			// screen sharing might be already encoded during the recording
+			File liveVideo = new File(streamFolder, screenMetaData.getStreamName() + "_LIVE.mp4");
+			boolean live = liveTranscoder.finish(screenMetaData, liveVideo, logs);
 			String mp4path = convertToMp4(r, Arrays.asList(
 					"-itsoffset", formatMillis(diff(screenMetaData.getRecordStart(), r.getRecordStart())),
-					"-i", inputScreenFullFlv, "-i", wav.getCanonicalPath()
-					), logs);
+					"-i", live ? liveVideo.getCanonicalPath() : inputScreenFullFlv, "-i", wav == null ? PIPE_INPUT : wav.getCanonicalPath()
+					), mixer, !live, logs);
+			deleteFileIfExists(liveVideo);
 
 			convertToJpg(r, mp4path, logs);
+			convertToHls(r, mp4path, logs);
 
 			updateDuration(r);
 			r.setStatus(Recording.Status.PROCESSED);
@@ -158,6 +167,11 @@ public class RecordingConverter extends BaseConverter implements IRecordingConve
 		} catch (Exception err) {
 			log.error("[startConversion]", err);
 			r.setStatus(Recording.Status.ERROR);
+			// segments encoded during the recording will not be used
+			RecordingMetaData screen = metaDataDao.getScreenMetaDataByRecording(r.getId());
+			if (screen != null) {
+				liveTranscoder.discard(screen.getId());
+			}
 		}
 		recordingDao.update(r);
 	}
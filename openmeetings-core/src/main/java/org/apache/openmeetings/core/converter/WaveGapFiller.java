@@ -0,0 +1,323 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.core.converter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Inserts silence into PCM WAV file.
+ *
+ * All gaps are applied in single pass: input is read once and output is written once
+ * using fixed size buffer, so the cost does not depend on the number of gaps
+ * (the same can be done with the chain of <code>sox in out pad length position</code> calls,
+ * but each call rewrites the whole file).
+ */
+public class WaveGapFiller {
+	public static final double END = Double.MAX_VALUE;
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final long MAX_RIFF_SIZE = 0xFFFFFFFFL;
+	private static final int HEADER_SIZE = 12; // RIFF + size + WAVE
+	private static final int CHUNK_HEADER_SIZE = 8;
+	private static final int FORMAT_PCM = 1;
+	private final List<Gap> gaps = new ArrayList<>();
+
+	private static class Gap {
+		private final double position;
+		private final double length;
+
+		Gap(double position, double length) {
+			this.position = position;
+			this.length = length;
+		}
+	}
+
+	/**
+	 * Basic info about the PCM data
+	 */
+	public static class Format {
+		private byte[] fmt;
+		private int channels;
+		private int sampleRate;
+		private int blockAlign;
+		private int bitsPerSample;
+		private long dataOffset;
+		private long dataSize;
+
+		public int getChannels() {
+			return channels;
+		}
+
+		public int getSampleRate() {
+			return sampleRate;
+		}
+
+		public int getBlockAlign() {
+			return blockAlign;
+		}
+
+		public int getBitsPerSample() {
+			return bitsPerSample;
+		}
+
+		public long getDataOffset() {
+			return dataOffset;
+		}
+
+		public long getDataSize() {
+			return dataSize;
+		}
+
+		public long getFrames() {
+			return dataSize / blockAlign;
+		}
+
+		public double getDuration() {
+			return (double)getFrames() / sampleRate;
+		}
+
+		private Format copy(long dataOffset, long dataSize) {
+			Format f = new Format();
+			f.fmt = fmt;
+			f.channels = channels;
+			f.sampleRate = sampleRate;
+			f.blockAlign = blockAlign;
+			f.bitsPerSample = bitsPerSample;
+			f.dataOffset = dataOffset;
+			f.dataSize = dataSize;
+			return f;
+		}
+
+		private long toFrames(double seconds) {
+			return Math.round(seconds * sampleRate);
+		}
+	}
+
+	/**
+	 * Adds silence at the given position
+	 *
+	 * @param position - position in the input file (in seconds), {@link #END} to append silence
+	 * @param length - length of the silence (in seconds)
+	 * @return this for chaining
+	 */
+	public WaveGapFiller add(double position, double length) {
+		if (length > 0) {
+			gaps.add(new Gap(Math.max(0, position), length));
+		}
+		return this;
+	}
+
+	public WaveGapFiller addStart(double length) {
+		return add(0, length);
+	}
+
+	public WaveGapFiller addEnd(double length) {
+		return add(END, length);
+	}
+
+	/**
+	 * @return total length of the silence to be added (in seconds)
+	 */
+	public double getLength() {
+		double length = 0;
+		for (Gap g : gaps) {
+			length += g.length;
+		}
+		return length;
+	}
+
+	/**
+	 * Writes input file with all the gaps inserted to the output file
+	 *
+	 * @param in - PCM WAV file
+	 * @param out - resulting file, will be overwritten
+	 * @return format of the resulting file
+	 * @throws IOException in case input is not PCM WAV or is too big
+	 */
+	public Format fill(File in, File out) throws IOException {
+		try (InputStream is = new BufferedInputStream(new FileInputStream(in), BUFFER_SIZE)) {
+			Format f = readFormat(is, in.length());
+			Gap[] sorted = gaps.toArray(new Gap[gaps.size()]);
+			// stable, gaps at the same position are inserted in order of addition
+			Arrays.sort(sorted, (g1, g2) -> Double.compare(g1.position, g2.position));
+			long frames = f.getFrames();
+			long silence = 0;
+			for (Gap g : sorted) {
+				silence += f.toFrames(g.length);
+			}
+			long dataSize = (frames + silence) * f.blockAlign;
+			if (HEADER_SIZE + 2 * CHUNK_HEADER_SIZE + f.fmt.length + dataSize > MAX_RIFF_SIZE) {
+				throw new IOException("Resulting WAV file is too big");
+			}
+			try (OutputStream os = new BufferedOutputStream(new FileOutputStream(out), BUFFER_SIZE)) {
+				writeHeader(os, f, dataSize);
+				byte[] buf = new byte[BUFFER_SIZE - BUFFER_SIZE % f.blockAlign];
+				byte[] zero = new byte[buf.length];
+				if (f.bitsPerSample == 8) {
+					// unsigned samples
+					Arrays.fill(zero, (byte)0x80);
+				}
+				long pos = 0;
+				for (Gap g : sorted) {
+					long gapPos = Math.min(frames, f.toFrames(Math.min(g.position, f.getDuration())));
+					copy(is, os, (gapPos - pos) * f.blockAlign, buf);
+					pos = gapPos;
+					write(os, f.toFrames(g.length) * f.blockAlign, zero);
+				}
+				copy(is, os, (frames - pos) * f.blockAlign, buf);
+			}
+			return f.copy(HEADER_SIZE + 2 * CHUNK_HEADER_SIZE + f.fmt.length, dataSize);
+		}
+	}
+
+	public static Format getFormat(File in) throws IOException {
+		try (InputStream is = new BufferedInputStream(new FileInputStream(in))) {
+			return readFormat(is, in.length());
+		}
+	}
+
+	/**
+	 * Reads WAV header, stream is positioned at the beginning of PCM data
+	 */
+	static Format readFormat(InputStream is, long fileSize) throws IOException {
+		byte[] b = new byte[HEADER_SIZE];
+		readFully(is, b, b.length);
+		if (!"RIFF".equals(new String(b, 0, 4, "US-ASCII")) || !"WAVE".equals(new String(b, 8, 4, "US-ASCII"))) {
+			throw new IOException("Not a WAV file");
+		}
+		Format f = new Format();
+		long offset = HEADER_SIZE;
+		byte[] ch = new byte[CHUNK_HEADER_SIZE];
+		while (true) {
+			readFully(is, ch, ch.length);
+			offset += CHUNK_HEADER_SIZE;
+			String id = new String(ch, 0, 4, "US-ASCII");
+			long size = readInt(ch, 4) & MAX_RIFF_SIZE;
+			if ("fmt ".equals(id)) {
+				f.fmt = new byte[(int)size];
+				readFully(is, f.fmt, f.fmt.length);
+				int format = readShort(f.fmt, 0);
+				f.channels = readShort(f.fmt, 2);
+				f.sampleRate = readInt(f.fmt, 4);
+				f.blockAlign = readShort(f.fmt, 12);
+				f.bitsPerSample = readShort(f.fmt, 14);
+				if (format != FORMAT_PCM && format != 0xFFFE) {
+					throw new IOException("Only PCM WAV files are supported, format: " + format);
+				}
+				if (f.blockAlign < 1 || f.sampleRate < 1) {
+					throw new IOException("Invalid WAV format");
+				}
+				skip(is, size & 1);
+				offset += size + (size & 1);
+			} else if ("data".equals(id)) {
+				if (f.fmt == null) {
+					throw new IOException("Format chunk is missing");
+				}
+				f.dataOffset = offset;
+				// size is not set if WAV was written to the pipe
+				long available = fileSize - offset;
+				f.dataSize = size == 0 || size == MAX_RIFF_SIZE || size > available ? available : size;
+				f.dataSize -= f.dataSize % f.blockAlign;
+				return f;
+			} else {
+				skip(is, size + (size & 1));
+				offset += size + (size & 1);
+			}
+		}
+	}
+
+	static void writeHeader(OutputStream os, Format f, long dataSize) throws IOException {
+		os.write("RIFF".getBytes("US-ASCII"));
+		writeInt(os, (int)(4 + 2 * CHUNK_HEADER_SIZE + f.fmt.length + dataSize));
+		os.write("WAVE".getBytes("US-ASCII"));
+		os.write("fmt ".getBytes("US-ASCII"));
+		writeInt(os, f.fmt.length);
+		os.write(f.fmt);
+		os.write("data".getBytes("US-ASCII"));
+		writeInt(os, (int)dataSize);
+	}
+
+	private static void copy(InputStream is, OutputStream os, long count, byte[] buf) throws IOException {
+		while (count > 0) {
+			int len = is.read(buf, 0, (int)Math.min(buf.length, count));
+			if (len < 0) {
+				throw new EOFException("Unexpected end of WAV data");
+			}
+			os.write(buf, 0, len);
+			count -= len;
+		}
+	}
+
+	private static void write(OutputStream os, long count, byte[] zero) throws IOException {
+		while (count > 0) {
+			int len = (int)Math.min(zero.length, count);
+			os.write(zero, 0, len);
+			count -= len;
+		}
+	}
+
+	private static void skip(InputStream is, long count) throws IOException {
+		while (count > 0) {
+			long skipped = is.skip(count);
+			if (skipped < 1) {
+				if (is.read() < 0) {
+					throw new EOFException("Unexpected end of WAV file");
+				}
+				skipped = 1;
+			}
+			count -= skipped;
+		}
+	}
+
+	private static void readFully(InputStream is, byte[] b, int len) throws IOException {
+		int off = 0;
+		while (off < len) {
+			int r = is.read(b, off, len - off);
+			if (r < 0) {
+				throw new EOFException("Unexpected end of WAV file");
+			}
+			off += r;
+		}
+	}
+
+	private static int readShort(byte[] b, int off) {
+		return (b[off] & 0xFF) | (b[off + 1] & 0xFF) << 8;
+	}
+
+	private static int readInt(byte[] b, int off) {
+		return readShort(b, off) | readShort(b, off + 2) << 16;
+	}
+
+	private static void writeInt(OutputStream os, int v) throws IOException {
+		os.write(v & 0xFF);
+		os.write(v >> 8 & 0xFF);
+		os.write(v >> 16 & 0xFF);
+		os.write(v >> 24 & 0xFF);
+	}
+}
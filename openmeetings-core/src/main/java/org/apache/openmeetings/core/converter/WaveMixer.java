@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.core.converter;
+
+import static org.apache.openmeetings.core.converter.WaveGapFiller.readFormat;
+import static org.apache.openmeetings.core.converter.WaveGapFiller.writeHeader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.openmeetings.core.converter.WaveGapFiller.Format;
+
+/**
+ * Mixes several 16-bit PCM WAV files of the same sample rate and number of channels.
+ *
+ * Tracks are read block by block and the result is written to the stream
+ * (e.g. stdin of the encoder), so no intermediate file is required. Length of the result
+ * is the length of the longest track. Same as <code>sox -m</code> tracks without explicit gain
+ * are scaled by 1/N, resulting samples are clipped to the valid range.
+ */
+public class WaveMixer {
+	private static final int BLOCK_FRAMES = 8 * 1024;
+	private static final int BITS = 16;
+	private final List<Track> tracks = new ArrayList<>();
+
+	private static class Track {
+		private final File file;
+		private final Double gain;
+		private Format format;
+		private InputStream is;
+		private long remaining;
+
+		Track(File file, Double gain) {
+			this.file = file;
+			this.gain = gain;
+		}
+	}
+
+	public WaveMixer add(File wav) {
+		tracks.add(new Track(wav, null));
+		return this;
+	}
+
+	/**
+	 * @param wav - track to be added
+	 * @param gain - volume multiplier, 1 to keep the track as is
+	 * @return this for chaining
+	 */
+	public WaveMixer add(File wav, double gain) {
+		tracks.add(new Track(wav, gain));
+		return this;
+	}
+
+	public int size() {
+		return tracks.size();
+	}
+
+	public Format mix(File out) throws IOException {
+		try (OutputStream os = new BufferedOutputStream(new FileOutputStream(out))) {
+			return mix(os);
+		}
+	}
+
+	/**
+	 * Writes WAV header and mixed PCM data to the stream, stream is not closed
+	 *
+	 * @param os - stream to write to
+	 * @return format of the written data
+	 * @throws IOException in case tracks can't be read or have different formats
+	 */
+	public Format mix(OutputStream os) throws IOException {
+		if (tracks.isEmpty()) {
+			throw new IOException("Nothing to mix");
+		}
+		try {
+			Format f = open();
+			int channels = f.getChannels();
+			long frames = 0;
+			for (Track t : tracks) {
+				frames = Math.max(frames, t.format.getFrames());
+			}
+			long dataSize = frames * f.getBlockAlign();
+			writeHeader(os, f, dataSize);
+
+			int samples = BLOCK_FRAMES * channels;
+			byte[] in = new byte[samples * 2];
+			byte[] out = new byte[samples * 2];
+			float[] acc = new float[samples];
+			double defGain = 1. / tracks.size();
+			for (long pos = 0; pos < frames; pos += BLOCK_FRAMES) {
+				int count = (int)Math.min(BLOCK_FRAMES, frames - pos) * channels;
+				for (int i = 0; i < count; ++i) {
+					acc[i] = 0;
+				}
+				for (Track t : tracks) {
+					int read = read(t, in, count * 2) / 2;
+					float gain = (float)(t.gain == null ? defGain : t.gain);
+					for (int i = 0; i < read; ++i) {
+						acc[i] += gain * (short)((in[2 * i] & 0xFF) | in[2 * i + 1] << 8);
+					}
+				}
+				for (int i = 0; i < count; ++i) {
+					int v = Math.round(acc[i]);
+					if (v > Short.MAX_VALUE) {
+						v = Short.MAX_VALUE;
+					} else if (v < Short.MIN_VALUE) {
+						v = Short.MIN_VALUE;
+					}
+					out[2 * i] = (byte)v;
+					out[2 * i + 1] = (byte)(v >> 8);
+				}
+				os.write(out, 0, count * 2);
+			}
+			os.flush();
+			return f;
+		} finally {
+			close();
+		}
+	}
+
+	private Format open() throws IOException {
+		Format f = null;
+		for (Track t : tracks) {
+			t.is = new BufferedInputStream(new FileInputStream(t.file));
+			t.format = readFormat(t.is, t.file.length());
+			t.remaining = t.format.getDataSize();
+			if (t.format.getBitsPerSample() != BITS) {
+				throw new IOException(String.format("Only %s-bit PCM is supported, %s has %s-bit samples", BITS, t.file, t.format.getBitsPerSample()));
+			}
+			if (f == null) {
+				f = t.format;
+			} else if (f.getSampleRate() != t.format.getSampleRate() || f.getChannels() != t.format.getChannels()) {
+				throw new IOException(String.format("Unable to mix tracks of different formats: %s and %s", tracks.get(0).file, t.file));
+			}
+		}
+		return f;
+	}
+
+	/**
+	 * @return number of bytes read, less than requested at the end of the track
+	 */
+	private static int read(Track t, byte[] b, int len) throws IOException {
+		len = (int)Math.min(len, t.remaining);
+		int off = 0;
+		while (off < len) {
+			int r = t.is.read(b, off, len - off);
+			if (r < 0) {
+				break;
+			}
+			off += r;
+		}
+		t.remaining -= off;
+		return off;
+	}
+
+	private void close() {
+		for (Track t : tracks) {
+			if (t.is != null) {
+				try {
+					t.is.close();
+				} catch (IOException e) {
+					// no-op
+				}
+				t.is = null;
+			}
+		}
+	}
+}
@@ -0,0 +1,339 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.core.data.chat;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.apache.openmeetings.core.util.WriteBehindQueue;
+import org.apache.openmeetings.db.dao.basic.ChatDao;
+import org.apache.openmeetings.db.entity.basic.ChatMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Recent chat messages are kept in memory: history shown on room enter and on chat open
+ * is served from bounded per room, per user and global buffers instead of the database.
+ *
+ * New messages are added to the buffers and can be delivered immediately, they are stored
+ * by the background writer in batches (see {@link WriteBehindQueue}). Messages are written in order,
+ * pending messages are written synchronously when too many of them are queued, before
+ * the chat is cleaned and on shutdown, so only messages of the last {@link #FLUSH_DELAY}
+ * can be lost in case of crash. Messages requiring moderation are stored synchronously,
+ * since moderators accept them by id.
+ *
+ * Messages waiting to be stored have temporary negative ids.
+ *
+ * History of the room is evicted when the last client leaves the room (see {@link #evict(Long)}),
+ * histories of at most {@link #MAX_USERS} recently active users are kept. Buffers are per node,
+ * same as chat delivery: messages sent via other nodes of the cluster are not added to them,
+ * so buffers expire after {@link #MAX_AGE} and are reloaded from the database.
+ */
+public class ChatManager {
+	public static final int HISTORY_SIZE = 30;
+	// messages requiring moderation are not visible to all the users, so more messages are kept
+	private static final int CAPACITY = 3 * HISTORY_SIZE;
+	private static final long FLUSH_DELAY = 1000; // 1 second
+	private static final int BATCH_SIZE = 100;
+	private static final int MAX_PENDING = 5000;
+	static final long MAX_AGE = 60 * 1000L;
+	static final int MAX_USERS = 1000;
+
+	@Autowired
+	private ChatDao chatDao;
+	private final Map<Long, History> rooms = new ConcurrentHashMap<>();
+	private final Map<Long, History> users = new LinkedHashMap<Long, History>(16, .75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, History> eldest) {
+			return size() > MAX_USERS;
+		}
+	};
+	private History global = null;
+	private final WriteBehindQueue<ChatMessage> pending = new WriteBehindQueue<>("chat messages", MAX_PENDING, BATCH_SIZE
+			, ChatManager::copy, list -> chatDao.update(list), (m, c) -> m.setId(c.getId()));
+	private final AtomicLong tempId = new AtomicLong();
+	private ScheduledExecutorService writer;
+
+	/**
+	 * Ring buffer of the most recent messages of one scope
+	 */
+	private static class History {
+		private final ChatMessage[] items = new ChatMessage[CAPACITY];
+		private int head = 0; // index of the next message
+		private int size = 0;
+		private final long created = System.currentTimeMillis();
+
+		/**
+		 * @param list - messages ordered from newest to oldest
+		 */
+		private History(List<ChatMessage> list) {
+			for (int i = Math.min(list.size(), CAPACITY) - 1; i >= 0; --i) {
+				add(list.get(i));
+			}
+		}
+
+		private boolean isValid() {
+			return System.currentTimeMillis() - created < MAX_AGE;
+		}
+
+		private synchronized void add(ChatMessage m) {
+			items[head] = m;
+			head = (head + 1) % CAPACITY;
+			size = Math.min(size + 1, CAPACITY);
+		}
+
+		/**
+		 * @return up to <code>count</code> messages matching the filter, ordered from newest to oldest
+		 */
+		private synchronized List<ChatMessage> get(int count, Predicate<ChatMessage> filter) {
+			List<ChatMessage> list = new ArrayList<>(Math.min(count, size));
+			for (int i = 1; i <= size && list.size() < count; ++i) {
+				ChatMessage m = items[(head - i + CAPACITY) % CAPACITY];
+				if (filter.test(m)) {
+					list.add(m);
+				}
+			}
+			return list;
+		}
+
+		private synchronized ChatMessage get(long id) {
+			for (int i = 0; i < size; ++i) {
+				ChatMessage m = items[(head - 1 - i + CAPACITY) % CAPACITY];
+				if (m.getId() != null && m.getId() == id) {
+					return m;
+				}
+			}
+			return null;
+		}
+	}
+
+	private History load(Supplier<List<ChatMessage>> loader) {
+		// pending messages should be stored first, otherwise they will be missing in the loaded history
+		if (pending.size() > 0) {
+			flush();
+		}
+		return new History(loader.get());
+	}
+
+	private History getRoomHistory(Long roomId) {
+		return rooms.compute(roomId, (id, h) -> h != null && h.isValid() ? h : load(() -> chatDao.getRoom(id, 0, CAPACITY, true)));
+	}
+
+	private History getUserHistory(Long userId) {
+		synchronized (users) {
+			History h = users.get(userId);
+			if (h != null && h.isValid()) {
+				return h;
+			}
+		}
+		History h = load(() -> chatDao.getUser(userId, 0, CAPACITY));
+		synchronized (users) {
+			// history might be loaded by the other thread meanwhile, messages might be already added to it
+			History cur = users.get(userId);
+			if (cur != null && cur.isValid()) {
+				return cur;
+			}
+			users.put(userId, h);
+		}
+		return h;
+	}
+
+	private synchronized History getGlobalHistory() {
+		if (global == null || !global.isValid()) {
+			global = load(() -> chatDao.getGlobal(0, CAPACITY));
+		}
+		return global;
+	}
+
+	private synchronized ScheduledExecutorService getWriter() {
+		if (writer == null) {
+			ScheduledThreadPoolExecutor stpe = new ScheduledThreadPoolExecutor(1, new CustomizableThreadFactory("chat-writer-"));
+			stpe.scheduleWithFixedDelay(this::flush, FLUSH_DELAY, FLUSH_DELAY, TimeUnit.MILLISECONDS);
+			writer = stpe;
+		}
+		return writer;
+	}
+
+	/**
+	 * Adds new message to the history and schedules it to be stored
+	 *
+	 * @param m - new message
+	 * @return the message, ready to be sent to the users
+	 */
+	public ChatMessage add(ChatMessage m) {
+		if (m.getSent() == null) {
+			m.setSent(new Date());
+		}
+		// history of the scope should be loaded before message is added, otherwise it will be missing
+		History h;
+		if (m.getToRoom() != null) {
+			h = getRoomHistory(m.getToRoom().getId());
+		} else if (m.getToUser() != null) {
+			h = getUserHistory(m.getToUser().getId());
+			if (!m.getToUser().getId().equals(m.getFromUser().getId())) {
+				getUserHistory(m.getFromUser().getId()).add(m);
+			}
+		} else {
+			h = getGlobalHistory();
+		}
+		if (m.isNeedModeration()) {
+			m = chatDao.update(m);
+		} else {
+			m.setId(-tempId.incrementAndGet());
+			pending.add(m);
+			getWriter();
+		}
+		h.add(m);
+		return m;
+	}
+
+	private static ChatMessage copy(ChatMessage m) {
+		ChatMessage c = new ChatMessage();
+		c.setFromUser(m.getFromUser());
+		c.setToRoom(m.getToRoom());
+		c.setToUser(m.getToUser());
+		c.setMessage(m.getMessage());
+		c.setSent(m.getSent());
+		c.setNeedModeration(m.isNeedModeration());
+		return c;
+	}
+
+	/**
+	 * Stores all the pending messages
+	 */
+	public void flush() {
+		pending.flush();
+	}
+
+	/**
+	 * @return number of messages waiting to be stored
+	 */
+	public int getPendingCount() {
+		return pending.size();
+	}
+
+	public List<ChatMessage> getGlobal(int count) {
+		return getGlobalHistory().get(count, m -> true);
+	}
+
+	/**
+	 * @param roomId - id of the room
+	 * @param count - maximum number of messages
+	 * @param all - messages requiring moderation will be included if <code>true</code>
+	 * @return recent messages of the room ordered from newest to oldest
+	 */
+	public List<ChatMessage> getRoom(long roomId, int count, boolean all) {
+		return getRoomHistory(roomId).get(count, m -> all || !m.isNeedModeration());
+	}
+
+	/**
+	 * @return recent private messages of the user sent after the <code>date</code>, ordered from newest to oldest
+	 */
+	public List<ChatMessage> getUserRecent(long userId, Date date, int count) {
+		return getUserHistory(userId).get(count, m -> m.getSent().after(date));
+	}
+
+	/**
+	 * @return message of the room, <code>null</code> if not found
+	 */
+	public ChatMessage get(long roomId, long id) {
+		ChatMessage m = getRoomHistory(roomId).get(id);
+		if (m == null && id > 0) {
+			m = chatDao.get(id);
+		}
+		return m;
+	}
+
+	/**
+	 * Marks message as accepted by moderator, both in the history and in the database
+	 */
+	public ChatMessage accept(ChatMessage m) {
+		m.setNeedModeration(false);
+		if (m.getToRoom() != null && m.getId() != null) {
+			ChatMessage h = getRoomHistory(m.getToRoom().getId()).get(m.getId());
+			if (h != null) {
+				h.setNeedModeration(false);
+			}
+		}
+		return chatDao.update(m);
+	}
+
+	public void deleteGlobal() {
+		flush();
+		chatDao.deleteGlobal();
+		synchronized (this) {
+			global = null;
+		}
+	}
+
+	/**
+	 * Removes the history of the room, should be called when the last client leaves the room
+	 *
+	 * @param roomId - id of the room
+	 */
+	public void evict(Long roomId) {
+		rooms.remove(roomId);
+	}
+
+	/**
+	 * @return number of users having history in memory
+	 */
+	public int getUserHistoryCount() {
+		synchronized (users) {
+			return users.size();
+		}
+	}
+
+	public void deleteRoom(Long roomId) {
+		flush();
+		chatDao.deleteRoom(roomId);
+		rooms.remove(roomId);
+	}
+
+	public void deleteUser(Long userId) {
+		flush();
+		chatDao.deleteUser(userId);
+		// messages are stored in the history of both sender and recipient
+		synchronized (users) {
+			users.clear();
+		}
+	}
+
+	public void destroy() {
+		synchronized (this) {
+			if (writer != null) {
+				writer.shutdown();
+				writer = null;
+			}
+		}
+		flush();
+	}
+}
@@ -20,8 +20,12 @@ package org.apache.openmeetings.core.data.conference;
 
 import static org.apache.openmeetings.util.OpenmeetingsVariables.webAppRootKey;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
@@ -34,6 +38,7 @@ import javax.persistence.criteria.Root;
 import org.apache.openmeetings.db.dao.room.RoomDao;
 import org.apache.openmeetings.db.dao.server.ISessionManager;
 import org.apache.openmeetings.db.dto.basic.SearchResult;
+import org.apache.openmeetings.db.dto.room.RoomCountDTO;
 import org.apache.openmeetings.db.entity.room.Room;
 import org.apache.openmeetings.db.entity.room.RoomGroup;
 import org.red5.logging.Red5LoggerFactory;
@@ -81,9 +86,7 @@ public class RoomManager {
 			List<Room> rooms = this.getRoomsInternatl(start, max, orderby,
 					asc);
 
-			for (Room room : rooms) {
-				room.setCurrentusers(sessionManager.getClientListByRoom(room.getId()));
-			}
+			setCurrentUsers(rooms);
 
 			sResult.setResult(rooms);
 			return sResult;
@@ -98,9 +101,7 @@ public class RoomManager {
 			List<Room> rooms = this.getRoomsInternatl(start, max, orderby,
 					asc);
 
-			for (Room room : rooms) {
-				room.setCurrentusers(sessionManager.getClientListByRoom(room.getId()));
-			}
+			setCurrentUsers(rooms);
 
 			return rooms;
 		} catch (Exception ex2) {
@@ -113,9 +114,7 @@ public class RoomManager {
 		try {
 			List<Room> rooms = this.getRoomsInternatlbyType(start, max, orderby, asc, externalType);
 
-			for (Room room : rooms) {
-				room.setCurrentusers(sessionManager.getClientListByRoom(room.getId()));
-			}
+			setCurrentUsers(rooms);
 
 			return rooms;
 		} catch (Exception ex2) {
@@ -124,6 +123,101 @@ public class RoomManager {
 		return null;
 	}
 
+	/**
+	 * Only occupied rooms are asked for the list of clients, number of users in each room
+	 * is taken from the index of the session store. Full lists are the contract of the
+	 * methods above, {@link #getRoomsByOccupancy(int, int, boolean, int, String)} returns counts only
+	 */
+	private void setCurrentUsers(List<Room> rooms) {
+		if (rooms == null) {
+			return;
+		}
+		Map<Long, Integer> occupancy = sessionManager.getRoomOccupancy();
+		for (Room room : rooms) {
+			room.setCurrentusers(occupancy.containsKey(room.getId())
+					? sessionManager.getClientListByRoom(room.getId()) : new ArrayList<>());
+		}
+	}
+
+	/**
+	 * Gets summaries of the rooms ordered by number of current users, rooms with the same number of users
+	 * are ordered by id. Counters are taken from the index of the session store, no clients are listed.
+	 * Used by room web service (GET /room/occupancy)
+	 *
+	 * @param start - first record
+	 * @param max - max number of records
+	 * @param asc - order of the rooms
+	 * @param minUsers - only rooms having at least this number of users are returned, <code>0</code> to get all rooms
+	 * @param externalType - only rooms of this external type are returned, <code>null</code> to get rooms of any type
+	 * @return id, name, capacity and number of current users of each room
+	 */
+	public List<RoomCountDTO> getRoomsByOccupancy(int start, int max, boolean asc, int minUsers, String externalType) {
+		Map<Long, Integer> occupancy = sessionManager.getRoomOccupancy();
+		List<RoomCountDTO> result = new ArrayList<>();
+		List<Room> rooms = getRoomsInternatlByOccupancy(occupancy, start, max, asc, minUsers, externalType);
+		if (rooms != null) {
+			for (Room r : rooms) {
+				RoomCountDTO c = new RoomCountDTO();
+				c.setRoomId(r.getId());
+				c.setRoomName(r.getName());
+				c.setMaxUser(r.getNumberOfPartizipants());
+				c.setRoomCount(occupancy.getOrDefault(r.getId(), 0));
+				result.add(c);
+			}
+		}
+		return result;
+	}
+
+	private List<Room> getRoomsInternatlByOccupancy(Map<Long, Integer> occupancy, int start, int max, boolean asc, int minUsers, String externalType) {
+		try {
+			List<Long> occupied = new ArrayList<>();
+			for (Map.Entry<Long, Integer> e : occupancy.entrySet()) {
+				if (e.getValue() >= minUsers) {
+					occupied.add(e.getKey());
+				}
+			}
+			if (minUsers > 0 && occupied.isEmpty()) {
+				return new ArrayList<>();
+			}
+			StringBuilder hql = new StringBuilder("SELECT r.id FROM Room r WHERE r.deleted = false");
+			if (externalType != null) {
+				hql.append(" AND r.externalType = :externalType");
+			}
+			if (minUsers > 0) {
+				hql.append(" AND r.id IN :ids");
+			}
+			TypedQuery<Long> q = em.createQuery(hql.toString(), Long.class);
+			if (externalType != null) {
+				q.setParameter("externalType", externalType);
+			}
+			if (minUsers > 0) {
+				q.setParameter("ids", occupied);
+			}
+			List<Long> ids = new ArrayList<>(q.getResultList());
+			Comparator<Long> byUsers = Comparator.comparing(id -> occupancy.getOrDefault(id, 0));
+			ids.sort((asc ? byUsers : byUsers.reversed()).thenComparing(Comparator.naturalOrder()));
+			if (start >= ids.size()) {
+				return new ArrayList<>();
+			}
+			List<Long> page = ids.subList(start, Math.min(ids.size(), start + max));
+			Map<Long, Room> byId = new HashMap<>();
+			for (Room r : roomDao.get(page)) {
+				byId.put(r.getId(), r);
+			}
+			List<Room> rooms = new ArrayList<>(page.size());
+			for (Long id : page) {
+				Room r = byId.get(id);
+				if (r != null) {
+					rooms.add(r);
+				}
+			}
+			return rooms;
+		} catch (Exception ex2) {
+			log.error("[getRoomsByOccupancy] ", ex2);
+		}
+		return null;
+	}
+
 	public Long selectMaxFromRooms(String search) {
 		try {
 			if (search.length() == 0) {
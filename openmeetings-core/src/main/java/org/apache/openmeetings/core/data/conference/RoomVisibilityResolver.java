@@ -0,0 +1,216 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.core.data.conference;
+
+import static org.apache.openmeetings.util.OpenmeetingsVariables.webAppRootKey;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.openmeetings.db.dao.label.LabelDao;
+import org.apache.openmeetings.db.dao.room.RoomDao;
+import org.apache.openmeetings.db.entity.room.Room;
+import org.apache.openmeetings.db.entity.room.RoomGroup;
+import org.apache.openmeetings.db.entity.user.GroupUser;
+import org.apache.openmeetings.db.entity.user.User;
+import org.apache.openmeetings.db.util.ChangeVersions;
+import org.red5.logging.Red5LoggerFactory;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Resolves the list of rooms visible to the user: personal rooms, appointed rooms,
+ * rooms of user's groups and public rooms.
+ *
+ * Personal and group rooms are cached per user, public rooms are cached globally,
+ * cached lists are valid until rooms or groups are changed (see {@link ChangeVersions})
+ * or user's group membership is changed. Since versions are local to the node, cached
+ * lists also expire after {@link #MAX_AGE} to limit staleness in cluster.
+ * Appointed rooms depend on the current time and are always queried.
+ */
+public class RoomVisibilityResolver {
+	private static final Logger log = Red5LoggerFactory.getLogger(RoomVisibilityResolver.class, webAppRootKey);
+	public static final String TYPE_MY = "my";
+	public static final String TYPE_PRIVATE = "private";
+	public static final String TYPE_PUBLIC = "public";
+	static final long MAX_AGE = 60 * 1000L;
+	static final int MAX_USERS = 1000;
+	private static final Set<Long> NO_GROUPS = Collections.emptySet();
+
+	@Autowired
+	private RoomDao roomDao;
+	@Autowired
+	private ChangeVersions versions;
+	private final Map<Long, Entry> users = new LinkedHashMap<Long, Entry>(16, .75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+			return size() > MAX_USERS;
+		}
+	};
+	private Entry publicRooms = null;
+
+	public static class VisibleRoom {
+		private final Room room;
+		private final String type;
+		private final String group;
+		private final boolean first;
+
+		public VisibleRoom(Room room, String type, String group, boolean first) {
+			this.room = room;
+			this.type = type;
+			this.group = group;
+			this.first = first;
+		}
+
+		public Room getRoom() {
+			return room;
+		}
+
+		public String getType() {
+			return type;
+		}
+
+		/**
+		 * @return name of the group for group rooms, <code>null</code> otherwise
+		 */
+		public String getGroup() {
+			return group;
+		}
+
+		/**
+		 * @return <code>true</code> for the first room of the group
+		 */
+		public boolean isFirst() {
+			return first;
+		}
+	}
+
+	private static class Entry {
+		private final long rooms;
+		private final long groups;
+		private final Set<Long> groupIds;
+		private final long created = System.currentTimeMillis();
+		private final List<VisibleRoom> personal;
+		private final List<VisibleRoom> group;
+
+		Entry(long rooms, long groups, Set<Long> groupIds, List<VisibleRoom> personal, List<VisibleRoom> group) {
+			this.rooms = rooms;
+			this.groups = groups;
+			this.groupIds = groupIds;
+			this.personal = personal;
+			this.group = group;
+		}
+
+		boolean isValid(long rooms, long groups, Set<Long> groupIds) {
+			return this.rooms == rooms && this.groups == groups && this.groupIds.equals(groupIds)
+					&& System.currentTimeMillis() - created < MAX_AGE;
+		}
+	}
+
+	private static Set<Long> getGroupIds(User u) {
+		Set<Long> ids = new TreeSet<>();
+		for (GroupUser gu : u.getGroupUsers()) {
+			ids.add(gu.getGroup().getId());
+		}
+		return ids;
+	}
+
+	/**
+	 * @param u - user with group membership fetched
+	 * @return rooms visible to the user in the order they should be displayed
+	 */
+	public List<VisibleRoom> getRooms(User u) {
+		Entry e = getUserEntry(u);
+		List<VisibleRoom> result = new ArrayList<>(e.personal);
+		for (Room r : roomDao.getAppointedRoomsByUser(u.getId())) {
+			result.add(new VisibleRoom(r, TYPE_MY, null, false));
+		}
+		result.addAll(e.group);
+		result.addAll(getPublicEntry().group);
+		return result;
+	}
+
+	private Entry getUserEntry(User u) {
+		// versions are read before the data, so changes made during the load will invalidate the entry
+		long rooms = versions.getRooms(), groups = versions.getGroups();
+		Set<Long> groupIds = getGroupIds(u);
+		synchronized (users) {
+			Entry e = users.get(u.getId());
+			if (e != null && e.isValid(rooms, groups, groupIds)) {
+				return e;
+			}
+		}
+		log.debug("Rooms visible to user {} will be reloaded", u.getId());
+		List<VisibleRoom> personal = Arrays.asList(
+				new VisibleRoom(roomDao.getUserRoom(u.getId(), Room.Type.conference, LabelDao.getString(1306L, u.getLanguageId())), TYPE_MY, null, false)
+				, new VisibleRoom(roomDao.getUserRoom(u.getId(), Room.Type.restricted, LabelDao.getString(1307L, u.getLanguageId())), TYPE_MY, null, false));
+		List<VisibleRoom> group = new ArrayList<>();
+		Set<String> added = new HashSet<>();
+		Long prevGroupId = null;
+		for (RoomGroup rg : roomDao.getGroupRooms(groupIds)) {
+			Long groupId = rg.getGroup().getId();
+			if (!added.add(groupId + "_" + rg.getRoom().getId())) {
+				continue;
+			}
+			group.add(new VisibleRoom(rg.getRoom(), TYPE_PRIVATE, rg.getGroup().getName(), !groupId.equals(prevGroupId)));
+			prevGroupId = groupId;
+		}
+		Entry e = new Entry(rooms, groups, groupIds, personal, group);
+		synchronized (users) {
+			users.put(u.getId(), e);
+		}
+		return e;
+	}
+
+	private Entry getPublicEntry() {
+		long rooms = versions.getRooms();
+		synchronized (this) {
+			if (publicRooms != null && publicRooms.isValid(rooms, 0, NO_GROUPS)) {
+				return publicRooms;
+			}
+		}
+		List<VisibleRoom> list = new ArrayList<>();
+		for (Room r : roomDao.getPublicRooms()) {
+			list.add(new VisibleRoom(r, TYPE_PUBLIC, null, false));
+		}
+		Entry e = new Entry(rooms, 0, NO_GROUPS, new ArrayList<>(), list);
+		synchronized (this) {
+			publicRooms = e;
+		}
+		return e;
+	}
+
+	/**
+	 * @return number of users having cached rooms
+	 */
+	public int size() {
+		synchronized (users) {
+			return users.size();
+		}
+	}
+}
@@ -0,0 +1,354 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.core.data.file;
+
+import static org.apache.openmeetings.util.OmFileHelper.getFileExt;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_CONVERTER_THREADS_DOCUMENT;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_CONVERTER_THREADS_IMAGE;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_CONVERTER_THREADS_VIDEO;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.webAppRootKey;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.openmeetings.core.converter.DocumentConverter;
+import org.apache.openmeetings.core.converter.FlvExplorerConverter;
+import org.apache.openmeetings.core.converter.ImageConverter;
+import org.apache.openmeetings.core.session.ServerUtil;
+import org.apache.openmeetings.core.util.WebSocketHelper;
+import org.apache.openmeetings.db.dao.basic.ConfigurationDao;
+import org.apache.openmeetings.db.dao.file.FileExplorerItemDao;
+import org.apache.openmeetings.db.dao.file.FileItemLogDao;
+import org.apache.openmeetings.db.entity.file.FileExplorerItem;
+import org.apache.openmeetings.db.entity.file.FileExplorerItem.ConversionStatus;
+import org.apache.openmeetings.util.message.RoomMessage;
+import org.apache.openmeetings.util.message.TextRoomMessage;
+import org.apache.openmeetings.util.process.ConverterProcessResult;
+import org.apache.openmeetings.util.process.ConverterProcessResultList;
+import org.red5.logging.Red5LoggerFactory;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import com.github.openjson.JSONObject;
+
+/**
+ * Converts uploaded files in the background.
+ *
+ * Each type of converter has its own bounded pool of workers, so long video conversions
+ * will not block images and documents. Conversion state is stored in
+ * {@link FileExplorerItem#getConversionStatus()}, jobs interrupted by restart are
+ * resumed by {@link #resume()} on the node performed them, every state change is being sent to the room as
+ * {@link RoomMessage.Type#fileConversion} message.
+ *
+ * Items with the same content hash share converted files, conversion is performed only once,
+ * all other items are just completed with the results of the first one. While conversion is running
+ * every completed step is sent to the room, so the progress can be displayed.
+ */
+public class FileConversionQueue {
+	private static final Logger log = Red5LoggerFactory.getLogger(FileConversionQueue.class, webAppRootKey);
+	private static final List<ConversionStatus> PENDING = Arrays.asList(ConversionStatus.QUEUED, ConversionStatus.RUNNING);
+	// conversions of other nodes not updated for this time are considered abandoned
+	public static final long STALE_TIMEOUT = 12 * 60 * 60 * 1000L;
+
+	private enum Converter {
+		document(CONFIG_CONVERTER_THREADS_DOCUMENT, "1")
+		, image(CONFIG_CONVERTER_THREADS_IMAGE, "2")
+		, video(CONFIG_CONVERTER_THREADS_VIDEO, "1");
+
+		private final String key;
+		private final String def;
+
+		private Converter(String key, String def) {
+			this.key = key;
+			this.def = def;
+		}
+	}
+
+	@Autowired
+	private ConfigurationDao cfgDao;
+	@Autowired
+	private FileExplorerItemDao fileDao;
+	@Autowired
+	private FileItemLogDao fileLogDao;
+	@Autowired
+	private FlvExplorerConverter flvExplorerConverter;
+	@Autowired
+	private ImageConverter imageConverter;
+	@Autowired
+	private DocumentConverter generatePDF;
+	@Autowired
+	private ServerUtil serverUtil;
+	private final Map<Converter, ExecutorService> pools = new EnumMap<>(Converter.class);
+	// hashes of the content being converted, jobs of the same content wait for the running one without blocking workers
+	private final Map<String, CompletableFuture<Void>> converting = new ConcurrentHashMap<>();
+
+	/**
+	 * @return item with the same content already converted, <code>null</code> if there is no such item
+	 */
+	private FileExplorerItem getConverted(FileExplorerItem f) {
+		for (FileExplorerItem c : fileDao.getAllByHash(f.getHash())) {
+			if (!c.isDeleted() && !c.getId().equals(f.getId()) && c.getType() == f.getType() && ConversionStatus.DONE == c.getConversionStatus()) {
+				return c;
+			}
+		}
+		return null;
+	}
+
+	private static void copyResults(FileExplorerItem src, FileExplorerItem f) {
+		f.setCount(src.getCount());
+		f.setWidth(src.getWidth());
+		f.setHeight(src.getHeight());
+		f.setStorageSize(src.getStorageSize());
+		f.setConversionStatus(ConversionStatus.DONE);
+	}
+
+	private static Converter getConverter(FileExplorerItem f) {
+		if (f.getType() == null) {
+			return null;
+		}
+		switch (f.getType()) {
+			case Presentation:
+				return Converter.document;
+			case Image:
+				return Converter.image;
+			case Video:
+				return Converter.video;
+			default:
+				return null;
+		}
+	}
+
+	private synchronized ExecutorService getPool(Converter c) {
+		ExecutorService exec = pools.get(c);
+		if (exec == null) {
+			int threads = Math.max(1, cfgDao.getConfValue(c.key, Integer.class, c.def));
+			ThreadPoolExecutor tpe = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS
+					, new LinkedBlockingQueue<>(), new CustomizableThreadFactory("convert-" + c.name() + "-"));
+			tpe.allowCoreThreadTimeOut(true);
+			exec = tpe;
+			pools.put(c, exec);
+		}
+		return exec;
+	}
+
+	/**
+	 * @return <code>true</code> if file need to be converted
+	 */
+	public static boolean isConvertable(FileExplorerItem f) {
+		return getConverter(f) != null;
+	}
+
+	/**
+	 * Stores the item in QUEUED state and schedules its conversion
+	 *
+	 * @param f - item with original file already stored
+	 * @param roomId - room conversion state should be sent to, can be <code>null</code>
+	 * @return updated item
+	 */
+	public FileExplorerItem add(FileExplorerItem f, Long roomId) {
+		Converter c = getConverter(f);
+		if (c == null) {
+			return fileDao.update(f);
+		}
+		FileExplorerItem src = getConverted(f);
+		if (src != null) {
+			log.debug("Content of {} was already converted, results will be reused", f.getName());
+			copyResults(src, f);
+			f = fileDao.update(f);
+			sendStatus(f, roomId);
+			return f;
+		}
+		f.setConversionStatus(ConversionStatus.QUEUED);
+		f.setConversionServer(serverUtil.getServerId());
+		f = fileDao.update(f);
+		sendStatus(f, roomId);
+		submit(c, f.getId(), roomId);
+		return f;
+	}
+
+	private void submit(Converter c, Long id, Long roomId) {
+		getPool(c).execute(() -> convert(c, id, roomId));
+	}
+
+	private void convert(Converter c, Long id, Long roomId) {
+		FileExplorerItem f = fileDao.get(id);
+		if (f == null || f.isDeleted()) {
+			log.debug("File {} was removed before conversion", id);
+			return;
+		}
+		String hash = f.getHash();
+		CompletableFuture<Void> job = new CompletableFuture<>();
+		CompletableFuture<Void> running = hash == null ? null : converting.putIfAbsent(hash, job);
+		if (running != null) {
+			log.debug("Same content is being converted, {} will be re-scheduled when it is complete", id);
+			running.whenComplete((v, e) -> {
+				try {
+					submit(c, id, roomId);
+				} catch (RejectedExecutionException ex) {
+					log.debug("Conversion queue is shut down, {} will be resumed on next start", id);
+				}
+			});
+			return;
+		}
+		try {
+			// same content might be converted while this job was waiting
+			FileExplorerItem src = getConverted(f);
+			if (src != null) {
+				copyResults(src, f);
+				f = fileDao.update(f);
+				sendStatus(f, roomId);
+				return;
+			}
+			convert(f, roomId);
+		} finally {
+			if (hash != null) {
+				converting.remove(hash, job);
+			}
+			job.complete(null);
+		}
+	}
+
+	private void convert(FileExplorerItem f, Long roomId) {
+		Long id = f.getId();
+		f.setConversionStatus(ConversionStatus.RUNNING);
+		f.setConversionServer(serverUtil.getServerId());
+		f = fileDao.update(f);
+		sendStatus(f, roomId);
+		boolean error = true;
+		try {
+			ConverterProcessResultList logs = new ConverterProcessResultList();
+			final FileExplorerItem _f = f;
+			logs.setListener(step -> sendProgress(_f, roomId, step, logs.size()));
+			convert(logs, f);
+			for (Entry<String, ConverterProcessResult> entry : logs.getJobs().entrySet()) {
+				fileLogDao.add(entry.getValue().getProcess(), f, entry.getValue());
+			}
+			error = logs.hasError();
+		} catch (Exception e) {
+			log.error("Unexpected error while converting file: " + id, e);
+		}
+		f.setConversionStatus(error ? ConversionStatus.FAILED : ConversionStatus.DONE);
+		f.setStorageSize(StorageAccounting.getStorageSize(f));
+		f = fileDao.update(f);
+		sendStatus(f, roomId);
+	}
+
+	private void convert(ConverterProcessResultList result, FileExplorerItem f) throws Exception {
+		String ext = getFileExt(f.getName());
+		switch (getConverter(f)) {
+			case document:
+				// convert to pdf and images
+				generatePDF.convertPDF(result, f, ext);
+				break;
+			case image:
+				// convert it to JPG
+				imageConverter.convertImage(result, f, ext);
+				break;
+			case video:
+				flvExplorerConverter.convertToMP4(result, f, ext);
+				break;
+		}
+	}
+
+	private static void sendStatus(FileExplorerItem f, Long roomId) {
+		send(f, roomId, new JSONObject());
+	}
+
+	/**
+	 * Sends the step of conversion just completed
+	 *
+	 * @param step - name of the step
+	 * @param done - number of steps completed
+	 */
+	private static void sendProgress(FileExplorerItem f, Long roomId, String step, int done) {
+		send(f, roomId, new JSONObject().put("step", step).put("done", done));
+	}
+
+	private static void send(FileExplorerItem f, Long roomId, JSONObject msg) {
+		if (roomId == null) {
+			return;
+		}
+		try {
+			WebSocketHelper.sendRoom(new TextRoomMessage(roomId, f.getInsertedBy(), RoomMessage.Type.fileConversion
+					, msg
+						.put("id", f.getId())
+						.put("status", f.getConversionStatus().name())
+						.toString()));
+		} catch (Exception e) {
+			log.warn("Unable to send conversion status of file: " + f.getId(), e);
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if conversion was started by the node with given id
+	 * or was abandoned by other node (not updated for {@link #STALE_TIMEOUT})
+	 */
+	public static boolean isResumable(FileExplorerItem f, String serverId, long now) {
+		if (serverId == null ? f.getConversionServer() == null : serverId.equals(f.getConversionServer())) {
+			return true;
+		}
+		Date updated = f.getUpdated() == null ? f.getInserted() : f.getUpdated();
+		return updated == null || now - updated.getTime() > STALE_TIMEOUT;
+	}
+
+	/**
+	 * Re-schedules conversions interrupted by restart of this node,
+	 * conversions being performed by other nodes of the cluster are skipped
+	 */
+	public void resume() {
+		String serverId = serverUtil.getServerId();
+		long now = System.currentTimeMillis();
+		int count = 0;
+		for (FileExplorerItem f : fileDao.getByConversionStatus(PENDING)) {
+			Converter c = getConverter(f);
+			if (c == null || !isResumable(f, serverId, now)) {
+				continue;
+			}
+			if (!Objects.equals(serverId, f.getConversionServer())) {
+				log.info("Conversion of {} abandoned by {} will be taken over", f.getId(), f.getConversionServer());
+				f.setConversionServer(serverId);
+				f = fileDao.update(f);
+			}
+			submit(c, f.getId(), f.getRoomId());
+			++count;
+		}
+		log.debug("{} interrupted conversions will be resumed", count);
+	}
+
+	public synchronized void destroy() {
+		// interrupted conversions remain QUEUED/RUNNING and will be resumed on next start
+		for (ExecutorService exec : pools.values()) {
+			exec.shutdownNow();
+		}
+		pools.clear();
+	}
+}
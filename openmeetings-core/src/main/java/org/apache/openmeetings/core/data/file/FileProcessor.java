@@ -22,17 +22,21 @@ import static org.apache.openmeetings.util.OmFileHelper.getFileExt;
 import static org.apache.openmeetings.util.OpenmeetingsVariables.webAppRootKey;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
-import java.util.List;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.UUID;
 
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.io.FileUtils;
-import org.apache.openmeetings.core.converter.DocumentConverter;
-import org.apache.openmeetings.core.converter.FlvExplorerConverter;
-import org.apache.openmeetings.core.converter.ImageConverter;
-import org.apache.openmeetings.db.dao.file.FileExplorerItemDao;
 import org.apache.openmeetings.db.entity.file.FileExplorerItem;
 import org.apache.openmeetings.db.entity.file.FileItem.Type;
+import org.apache.openmeetings.db.util.ContentLocks;
+import org.apache.openmeetings.util.OmFileHelper;
 import org.apache.openmeetings.util.StoredFile;
 import org.apache.openmeetings.util.process.ConverterProcessResult;
 import org.apache.openmeetings.util.process.ConverterProcessResultList;
@@ -45,25 +49,29 @@ public class FileProcessor {
 
 	//Spring loaded Beans
 	@Autowired
-	private FlvExplorerConverter flvExplorerConverter;
+	private FileConversionQueue conversionQueue;
 	@Autowired
-	private FileExplorerItemDao fileDao;
-	@Autowired
-	private ImageConverter imageConverter;
-	@Autowired
-	private DocumentConverter generatePDF;
+	private StorageAccounting storage;
 
-	//FIXME TODO this method need to be refactored to throw exceptions
 	public ConverterProcessResultList processFile(FileExplorerItem f, InputStream is) throws Exception {
-		ConverterProcessResultList returnError = new ConverterProcessResultList();
+		return processFile(f, is, f.getRoomId());
+	}
 
-		// Generate a random string to prevent any problems with
-		// foreign characters and duplicates
-		String hash = UUID.randomUUID().toString();
+	/**
+	 * Stores uploaded file, conversion is performed asynchronously by {@link FileConversionQueue}.
+	 * Content is addressed by its SHA-256, so identical uploads share stored and converted files
+	 *
+	 * @param f - item to be stored
+	 * @param is - content of the file
+	 * @param roomId - room conversion state should be sent to, can be <code>null</code>
+	 */
+	//FIXME TODO this method need to be refactored to throw exceptions
+	public ConverterProcessResultList processFile(FileExplorerItem f, InputStream is, Long roomId) throws Exception {
+		ConverterProcessResultList returnError = new ConverterProcessResultList();
 
 		String ext = getFileExt(f.getName());
 		log.debug("file extension: " + ext);
-		StoredFile storedFile = new StoredFile(hash, ext);
+		StoredFile storedFile = new StoredFile(f.getName(), ext);
 
 		// Check variable to see if this file is a presentation
 		// check if this is a a file that can be converted by
@@ -92,36 +100,46 @@ public class FileProcessor {
 		} else if (isPdf || canBeConverted) {
 			f.setType(Type.Presentation);
 		}
-		f.setHash(hash);
-
-		File file = f.getFile(ext);
-		log.debug("writing file to: " + file);
-		if (!file.getParentFile().exists() && !file.getParentFile().mkdirs()) {
-			returnError.addItem("No parent", new ConverterProcessResult("Unable to create parent for file: " + file.getCanonicalPath()));
-			return returnError;
+		// content hash is calculated while upload is being stored
+		File temp = new File(OmFileHelper.getUploadFilesDir(), String.format("upload_%s.tmp", UUID.randomUUID()));
+		MessageDigest md = getDigest();
+		try (InputStream dis = new DigestInputStream(is, md)) {
+			FileUtils.copyInputStreamToFile(dis, temp);
 		}
-		FileUtils.copyInputStreamToFile(is, file);
-
-
-		log.debug("canBeConverted: " + canBeConverted);
-		if (canBeConverted || isPdf) {
-			// convert to pdf and images
-			returnError = generatePDF.convertPDF(f, ext);
-		} else if (isChart) {
-			log.debug("uploaded chart file");
-		} else if (isImage) {
-			// convert it to JPG
-			log.debug("##### convert it to JPG: ");
-			returnError = imageConverter.convertImage(f, ext);
-		} else if (isVideo) {
-			List<ConverterProcessResult> returnList = flvExplorerConverter.convertToMP4(f, ext);
+		f.setHash(Hex.encodeHexString(md.digest()));
 
-			int i = 0;
-			for (ConverterProcessResult returnMap : returnList) {
-				returnError.addItem("processVideo " + i++, returnMap);
+		File file = f.getFile(ext);
+		// content is stored and item is saved under the lock, so content can't be removed in between
+		synchronized (ContentLocks.get(f.getHash())) {
+			try {
+				if (storage.isQuotaExceeded(f, temp.length())) {
+					log.debug("Storage quota is exceeded, file is rejected: {}", f.getName());
+					returnError.addItem("quotaExceeded", new ConverterProcessResult("Storage quota is exceeded"));
+					return returnError;
+				}
+				if (file.exists()) {
+					log.debug("same content is already stored: " + file);
+				} else {
+					log.debug("writing file to: " + file);
+					if (!file.getParentFile().exists() && !file.getParentFile().mkdirs()) {
+						returnError.addItem("No parent", new ConverterProcessResult("Unable to create parent for file: " + file.getCanonicalPath()));
+						return returnError;
+					}
+					Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				}
+
+				f.setStorageSize(StorageAccounting.getStorageSize(f));
+				f = conversionQueue.add(f, roomId);
+				if (!file.exists() && temp.exists()) {
+					// content was removed by other node deleting its last reference before this item was saved
+					log.warn("Content was removed while being uploaded, restoring: {}", file);
+					file.getParentFile().mkdirs();
+					Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				}
+			} finally {
+				FileUtils.deleteQuietly(temp);
 			}
 		}
-		f = fileDao.update(f);
 		log.debug("fileId: " + f.getId());
 
 		// has to happen at the end, otherwise it will be overwritten
@@ -131,4 +149,12 @@ public class FileProcessor {
 
 		return returnError;
 	}
+
+	private static MessageDigest getDigest() throws IOException {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+	}
 }
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.core.data.file;
+
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_STORAGE_QUOTA_GROUP;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_STORAGE_QUOTA_ROOM;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_STORAGE_QUOTA_USER;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.webAppRootKey;
+
+import java.io.File;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.openmeetings.db.dao.basic.ConfigurationDao;
+import org.apache.openmeetings.db.dao.file.FileExplorerItemDao;
+import org.apache.openmeetings.db.dao.file.StorageUsageDao;
+import org.apache.openmeetings.db.entity.file.FileExplorerItem;
+import org.apache.openmeetings.db.entity.file.StorageUsage;
+import org.apache.openmeetings.db.entity.file.StorageUsage.Type;
+import org.apache.openmeetings.util.InitializationContainer;
+import org.apache.openmeetings.util.OmFileHelper;
+import org.red5.logging.Red5LoggerFactory;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Storage used by the files of users, rooms and groups.
+ *
+ * Size of the item is stored on upload and on conversion, usage counters are updated
+ * by {@link FileExplorerItemDao} every time the item is stored. {@link #reconcile()} is
+ * called periodically to fix the drift: sizes of the items are checked against the filesystem,
+ * i.e. pages rendered on demand, and counters are recalculated.
+ * Every counter is locked while it is recalculated, so concurrent updates are not lost.
+ *
+ * Quotas are set in megabytes, 0 means unlimited.
+ */
+public class StorageAccounting {
+	private static final Logger log = Red5LoggerFactory.getLogger(StorageAccounting.class, webAppRootKey);
+	private static final int PAGE_SIZE = 100;
+	private static final long MB = 1024 * 1024L;
+
+	@Autowired
+	private ConfigurationDao cfgDao;
+	@Autowired
+	private FileExplorerItemDao fileDao;
+	@Autowired
+	private StorageUsageDao usageDao;
+
+	/**
+	 * @return number of bytes occupied by stored and converted content of the item
+	 */
+	public static long getStorageSize(FileExplorerItem f) {
+		if (f.getHash() == null || f.getType() == null) {
+			return 0;
+		}
+		switch (f.getType()) {
+			case Image:
+			case Presentation:
+			case Video:
+			{
+				File dir = new File(OmFileHelper.getUploadFilesDir(), f.getHash());
+				return dir.exists() ? OmFileHelper.getSize(dir) : 0;
+			}
+			case WmlFile:
+			{
+				File file = f.getFile();
+				return file != null && file.exists() ? file.length() : 0;
+			}
+			default:
+				return 0;
+		}
+	}
+
+	private boolean isExceeded(String key, Type type, Long scopeId, long bytes) {
+		if (scopeId == null) {
+			return false;
+		}
+		long quota = cfgDao.getConfValue(key, Long.class, "0");
+		return quota > 0 && usageDao.get(type, scopeId) + bytes > quota * MB;
+	}
+
+	/**
+	 * @param f - item to be added
+	 * @param bytes - size of the item
+	 * @return <code>true</code> if adding the item will exceed the quota of its owner, room or group
+	 */
+	public boolean isQuotaExceeded(FileExplorerItem f, long bytes) {
+		if (f.getOwnerId() != null) {
+			return isExceeded(CONFIG_STORAGE_QUOTA_USER, Type.USER, f.getOwnerId(), bytes);
+		}
+		return isExceeded(CONFIG_STORAGE_QUOTA_ROOM, Type.ROOM, f.getRoomId(), bytes)
+				|| isExceeded(CONFIG_STORAGE_QUOTA_GROUP, Type.GROUP, f.getGroupId(), bytes);
+	}
+
+	/**
+	 * Fixes stored sizes of the items and recalculates all the usage counters
+	 */
+	public void reconcile() {
+		log.debug("StorageAccounting.reconcile");
+		if (!InitializationContainer.initComplete) {
+			return;
+		}
+		try {
+			int fixed = 0;
+			for (int start = 0; ; start += PAGE_SIZE) {
+				List<FileExplorerItem> list = fileDao.getWithStorage(start, PAGE_SIZE);
+				for (FileExplorerItem f : list) {
+					long size = getStorageSize(f);
+					if (f.getStorageSize() == null || f.getStorageSize() != size) {
+						fileDao.setStorageSize(f.getId(), size);
+						++fixed;
+					}
+				}
+				if (list.size() < PAGE_SIZE) {
+					break;
+				}
+			}
+			int drift = 0;
+			List<StorageUsage> counters = usageDao.get();
+			for (Type type : Type.values()) {
+				// scopes having items or counters, every counter is recalculated under its lock
+				Set<Long> scopes = fileDao.getStorageScopes(type);
+				for (StorageUsage u : counters) {
+					if (u.getType() == type) {
+						scopes.add(u.getScopeId());
+					}
+				}
+				for (Long scopeId : scopes) {
+					if (usageDao.reconcile(type, scopeId)) {
+						++drift;
+					}
+				}
+			}
+			log.debug("... DONE StorageAccounting.reconcile, sizes fixed: {}, counters fixed: {}", fixed, drift);
+		} catch (Exception e) {
+			log.error("Unexpected exception while reconciling storage usage", e);
+		}
+	}
+}
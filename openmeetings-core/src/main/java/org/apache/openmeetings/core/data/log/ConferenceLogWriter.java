@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.core.data.log;
+
+import static org.apache.openmeetings.util.OpenmeetingsVariables.webAppRootKey;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.openmeetings.core.util.WriteBehindQueue;
+import org.apache.openmeetings.db.dao.log.ConferenceLogDao;
+import org.apache.openmeetings.db.entity.log.ConferenceLog;
+import org.apache.openmeetings.db.entity.log.ConferenceLog.Type;
+import org.red5.logging.Red5LoggerFactory;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Stores {@link ConferenceLog} events in the background, so connecting clients and
+ * users entering and leaving the room do not wait for the database.
+ *
+ * Events are put into the bounded queue and written in batches, once per {@link #FLUSH_DELAY}
+ * or as soon as {@link #BATCH_SIZE} events are queued (see {@link WriteBehindQueue}). Events not fitting
+ * into the full queue are dropped and counted. Pending events are written on shutdown.
+ */
+public class ConferenceLogWriter {
+	private static final Logger log = Red5LoggerFactory.getLogger(ConferenceLogWriter.class, webAppRootKey);
+	private static final long FLUSH_DELAY = 1000; // 1 second
+	private static final int BATCH_SIZE = 100;
+	private static final int QUEUE_SIZE = 10000;
+	private static final long SHUTDOWN_TIMEOUT = 10; // seconds
+
+	@Autowired
+	private ConferenceLogDao logDao;
+	private final int batchSize;
+	private final long flushDelay;
+	private final WriteBehindQueue<ConferenceLog> queue;
+	private final AtomicBoolean flushRequested = new AtomicBoolean();
+	private ScheduledExecutorService writer;
+	private boolean destroyed = false;
+
+	public ConferenceLogWriter() {
+		this(null, QUEUE_SIZE, BATCH_SIZE, FLUSH_DELAY);
+	}
+
+	/**
+	 * @param logDao - dao to store events
+	 * @param queueSize - max number of events waiting to be stored
+	 * @param batchSize - max number of events stored in one transaction
+	 * @param flushDelay - max time in milliseconds event waits before being stored
+	 */
+	public ConferenceLogWriter(ConferenceLogDao logDao, int queueSize, int batchSize, long flushDelay) {
+		this.logDao = logDao;
+		this.batchSize = batchSize;
+		this.flushDelay = flushDelay;
+		queue = new WriteBehindQueue<>("conference log events", queueSize, batchSize
+				, ConferenceLogWriter::copy, list -> this.logDao.add(list));
+	}
+
+	private synchronized ScheduledExecutorService getWriter() {
+		if (writer == null && !destroyed) {
+			ScheduledThreadPoolExecutor stpe = new ScheduledThreadPoolExecutor(1, new CustomizableThreadFactory("conference-log-writer-"));
+			stpe.scheduleWithFixedDelay(this::flush, flushDelay, flushDelay, TimeUnit.MILLISECONDS);
+			writer = stpe;
+		}
+		return writer;
+	}
+
+	/**
+	 * Schedules event to be stored, never blocks
+	 *
+	 * @return <code>false</code> if the queue is full and the event was dropped
+	 */
+	public boolean add(Type type, Long userId, String streamid, Long roomId, String userip, String scopeName) {
+		ConferenceLog l = ConferenceLogDao.create(type, userId, streamid, roomId, userip, scopeName);
+		if (!queue.offer(l)) {
+			return false;
+		}
+		ScheduledExecutorService w = getWriter();
+		if (w == null) {
+			// writer is already destroyed
+			flush();
+		} else if (queue.size() >= batchSize && flushRequested.compareAndSet(false, true)) {
+			try {
+				w.execute(() -> {
+					flushRequested.set(false);
+					flush();
+				});
+			} catch (Exception e) {
+				// writer is being shut down, event will be stored by destroy
+				flushRequested.set(false);
+			}
+		}
+		return true;
+	}
+
+	private static ConferenceLog copy(ConferenceLog l) {
+		ConferenceLog c = new ConferenceLog();
+		c.setType(l.getType());
+		c.setInserted(l.getInserted());
+		c.setUserId(l.getUserId());
+		c.setStreamid(l.getStreamid());
+		c.setScopeName(l.getScopeName());
+		c.setRoomId(l.getRoomId());
+		c.setUserip(l.getUserip());
+		return c;
+	}
+
+	/**
+	 * Stores all the queued events
+	 *
+	 * @return <code>true</code> if all the events were stored
+	 */
+	public boolean flush() {
+		return queue.flush();
+	}
+
+	/**
+	 * @return number of events waiting to be stored
+	 */
+	public int getQueued() {
+		return queue.size();
+	}
+
+	/**
+	 * @return number of events dropped since start
+	 */
+	public long getDropped() {
+		return queue.getDropped();
+	}
+
+	/**
+	 * @return number of events stored since start
+	 */
+	public long getWritten() {
+		return queue.getWritten();
+	}
+
+	public void destroy() {
+		ScheduledExecutorService w;
+		synchronized (this) {
+			destroyed = true;
+			w = writer;
+			writer = null;
+		}
+		if (w != null) {
+			w.shutdown();
+			try {
+				w.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (!flush()) {
+			log.error("{} conference log events were not stored on shutdown", queue.size());
+		}
+	}
+}
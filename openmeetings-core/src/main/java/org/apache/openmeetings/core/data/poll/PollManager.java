@@ -0,0 +1,435 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.core.data.poll;
+
+import static org.apache.openmeetings.util.OpenmeetingsVariables.webAppRootKey;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.openmeetings.core.util.WebSocketHelper;
+import org.apache.openmeetings.core.util.WriteBehindQueue;
+import org.apache.openmeetings.db.dao.room.PollDao;
+import org.apache.openmeetings.db.entity.room.RoomPoll;
+import org.apache.openmeetings.db.entity.room.RoomPollAnswer;
+import org.apache.openmeetings.db.entity.user.User;
+import org.apache.openmeetings.util.message.RoomMessage;
+import org.apache.openmeetings.util.message.TextRoomMessage;
+import org.red5.logging.Red5LoggerFactory;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import com.github.openjson.JSONArray;
+import com.github.openjson.JSONObject;
+
+/**
+ * Results of the active polls are kept in memory: votes are counted per room, users already voted
+ * are tracked, so counting the votes and displaying the results require no database access.
+ *
+ * Answers are stored by the background writer in batches (see {@link WriteBehindQueue}), pending answers
+ * are written before the poll is closed or deleted and on shutdown. Changed results are sent to the room as
+ * {@link RoomMessage.Type#pollVoted} message with aggregated counts at most once per {@link #PUSH_DELAY},
+ * no matter how many votes were made. Results are loaded from the database on first access,
+ * so they are restored after restart.
+ *
+ * State is local to the node: counts are reloaded from the database every {@link #RELOAD_DELAY}, so polls
+ * created, closed and voted on the other nodes of the cluster are picked up, and votes are checked
+ * against the stored answers before being accepted. Only aggregated counts are loaded, users are checked
+ * for stored votes on demand and the result is cached until the next reload.
+ * State of the room is evicted when the room empties.
+ */
+public class PollManager {
+	private static final Logger log = Red5LoggerFactory.getLogger(PollManager.class, webAppRootKey);
+	public static final int NUMERIC_MAX = 10;
+	private static final long FLUSH_DELAY = 1000; // 1 second
+	private static final long PUSH_DELAY = 1000; // 1 second
+	private static final long RELOAD_DELAY = 5000; // 5 seconds
+	private static final int BATCH_SIZE = 100;
+	private static final int MAX_PENDING = 5000;
+
+	@Autowired
+	private PollDao pollDao;
+	private final Map<Long, Tally> rooms = new ConcurrentHashMap<>();
+	private final WriteBehindQueue<RoomPollAnswer> queue = new WriteBehindQueue<>("poll answers", MAX_PENDING, BATCH_SIZE
+			, PollManager::copy, list -> pollDao.addAnswers(list));
+	private ScheduledExecutorService writer;
+
+	/**
+	 * State of the room polls, all access should be synchronized on the tally
+	 */
+	private static class Tally {
+		private final RoomPoll poll; // active poll without answers, null if there is no active poll
+		private final int[] counts;
+		private final Set<Long> voters = new HashSet<>(); // users known to have voted
+		private final Set<Long> notVoted = new HashSet<>(); // users checked to have no stored vote
+		private boolean archived; // room has archived polls
+		private boolean closed = false;
+		private boolean dirty = false;
+
+		/**
+		 * @param counts - answer, point and number of votes for each distinct answer
+		 */
+		private Tally(RoomPoll poll, List<Object[]> counts, boolean archived) {
+			this.poll = poll;
+			this.archived = archived;
+			this.counts = new int[poll != null && RoomPoll.Type.numeric == poll.getType() ? NUMERIC_MAX : 2];
+			for (Object[] c : counts) {
+				int idx = index((Boolean)c[0], (Integer)c[1]);
+				if (idx > -1) {
+					this.counts[idx] += ((Number)c[2]).intValue();
+				}
+			}
+		}
+
+		private boolean isActive() {
+			return poll != null && !closed;
+		}
+
+		private boolean isActive(Long pollId) {
+			return isActive() && poll.getId().equals(pollId);
+		}
+
+		/**
+		 * @return index of the counter of the answer, -1 if answer is invalid
+		 */
+		private int index(Boolean answer, Integer point) {
+			if (poll == null) {
+				return -1;
+			}
+			if (RoomPoll.Type.numeric == poll.getType()) {
+				return point != null && point > 0 && point <= NUMERIC_MAX ? point - 1 : -1;
+			}
+			return answer == null ? -1 : (answer ? 0 : 1);
+		}
+	}
+
+	public PollManager() {
+		this(null);
+	}
+
+	/**
+	 * @param pollDao - dao to load and store the polls
+	 */
+	public PollManager(PollDao pollDao) {
+		this.pollDao = pollDao;
+	}
+
+	private static RoomPoll copy(RoomPoll p) {
+		RoomPoll c = new RoomPoll();
+		c.setId(p.getId());
+		c.setName(p.getName());
+		c.setQuestion(p.getQuestion());
+		c.setCreated(p.getCreated());
+		c.setArchived(p.isArchived());
+		c.setType(p.getType());
+		c.setCreator(p.getCreator());
+		c.setRoom(p.getRoom());
+		return c;
+	}
+
+	private static RoomPollAnswer copy(RoomPollAnswer a) {
+		RoomPollAnswer c = new RoomPollAnswer();
+		c.setRoomPoll(a.getRoomPoll());
+		c.setVotedUser(a.getVotedUser());
+		c.setAnswer(a.getAnswer());
+		c.setPointList(a.getPointList());
+		c.setVoteDate(a.getVoteDate());
+		return c;
+	}
+
+	private Tally load(Long roomId) {
+		RoomPoll p = pollDao.getStateByRoom(roomId);
+		log.debug("Results of the poll of room {} are loaded, active: {}", roomId, p != null);
+		return new Tally(p, p == null ? new ArrayList<>() : pollDao.countAnswers(p.getId()), pollDao.hasArchived(roomId));
+	}
+
+	private Tally getTally(Long roomId) {
+		return rooms.computeIfAbsent(roomId, id -> {
+			// state is reloaded by the writer
+			getWriter();
+			return load(id);
+		});
+	}
+
+	private synchronized ScheduledExecutorService getWriter() {
+		if (writer == null) {
+			ScheduledThreadPoolExecutor stpe = new ScheduledThreadPoolExecutor(1, new CustomizableThreadFactory("poll-writer-"));
+			stpe.scheduleWithFixedDelay(this::flush, FLUSH_DELAY, FLUSH_DELAY, TimeUnit.MILLISECONDS);
+			stpe.scheduleWithFixedDelay(this::push, PUSH_DELAY, PUSH_DELAY, TimeUnit.MILLISECONDS);
+			stpe.scheduleWithFixedDelay(this::reload, RELOAD_DELAY, RELOAD_DELAY, TimeUnit.MILLISECONDS);
+			writer = stpe;
+		}
+		return writer;
+	}
+
+	/**
+	 * @return active poll of the room without answers, <code>null</code> if there is no active poll
+	 */
+	public RoomPoll getPoll(Long roomId) {
+		Tally t = getTally(roomId);
+		synchronized (t) {
+			return t.isActive() ? t.poll : null;
+		}
+	}
+
+	public boolean hasPoll(Long roomId) {
+		return getPoll(roomId) != null;
+	}
+
+	public boolean hasArchived(Long roomId) {
+		Tally t = getTally(roomId);
+		synchronized (t) {
+			return t.archived;
+		}
+	}
+
+	public boolean hasVoted(Long roomId, Long userId) {
+		Tally t = getTally(roomId);
+		synchronized (t) {
+			if (!t.isActive() || t.notVoted.contains(userId)) {
+				return false;
+			}
+			if (t.voters.contains(userId)) {
+				return true;
+			}
+		}
+		boolean voted = pollDao.hasVoted(roomId, userId);
+		synchronized (t) {
+			if (voted) {
+				t.voters.add(userId);
+			} else if (!t.voters.contains(userId)) {
+				t.notVoted.add(userId);
+			}
+			return t.isActive() && t.voters.contains(userId);
+		}
+	}
+
+	/**
+	 * @return number of votes for each answer of the active poll, <code>null</code>
+	 * if the poll is not the active poll of the room
+	 */
+	public int[] getCounts(Long roomId, Long pollId) {
+		Tally t = getTally(roomId);
+		synchronized (t) {
+			return t.isActive(pollId) ? t.counts.clone() : null;
+		}
+	}
+
+	/**
+	 * Counts the vote and schedules it to be stored
+	 *
+	 * @param roomId - id of the room
+	 * @param userId - id of the user
+	 * @param answer - answer of the yes/no poll
+	 * @param point - answer of the numeric poll
+	 * @return <code>false</code> if there is no active poll, the answer is invalid or the user has already voted
+	 */
+	public boolean vote(Long roomId, Long userId, Boolean answer, Integer point) {
+		Tally t = getTally(roomId);
+		synchronized (t) {
+			if (!t.isActive() || t.index(answer, point) < 0 || t.voters.contains(userId)) {
+				log.debug("Vote of user {} in room {} is rejected", userId, roomId);
+				return false;
+			}
+		}
+		// user might have voted on the other node
+		if (pollDao.hasVoted(roomId, userId)) {
+			log.debug("User {} has already voted in room {}", userId, roomId);
+			synchronized (t) {
+				t.voters.add(userId);
+			}
+			return false;
+		}
+		RoomPollAnswer a = new RoomPollAnswer();
+		int idx;
+		synchronized (t) {
+			idx = t.index(answer, point);
+			if (!t.isActive() || idx < 0 || !t.voters.add(userId)) {
+				log.debug("Vote of user {} in room {} is rejected", userId, roomId);
+				return false;
+			}
+			t.notVoted.remove(userId);
+			t.counts[idx]++;
+			t.dirty = true;
+			a.setRoomPoll(t.poll);
+		}
+		User u = new User();
+		u.setId(userId);
+		a.setVotedUser(u);
+		a.setAnswer(answer);
+		a.setPointList(point);
+		a.setVoteDate(new Date());
+		if (!queue.add(a)) {
+			synchronized (t) {
+				t.voters.remove(userId);
+				t.notVoted.add(userId);
+				t.counts[idx]--;
+			}
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Closes active poll of the room, stores and activates the new one
+	 *
+	 * @param p - new poll
+	 * @return stored poll
+	 */
+	public RoomPoll create(RoomPoll p) {
+		Long roomId = p.getRoom().getId();
+		close(roomId);
+		p = pollDao.update(p);
+		rooms.put(roomId, new Tally(copy(p), new ArrayList<>(), hasArchived(roomId)));
+		return p;
+	}
+
+	/**
+	 * Archives active poll of the room, no votes are accepted after this call
+	 *
+	 * @return <code>true</code> if poll was closed
+	 */
+	public boolean close(Long roomId) {
+		Tally t = getTally(roomId);
+		boolean active;
+		synchronized (t) {
+			active = t.isActive();
+			t.closed = true;
+		}
+		flush();
+		boolean result = pollDao.close(roomId);
+		rooms.put(roomId, new Tally(null, new ArrayList<>(), active || hasArchived(t)));
+		return result;
+	}
+
+	private static boolean hasArchived(Tally t) {
+		synchronized (t) {
+			return t.archived;
+		}
+	}
+
+	public boolean delete(RoomPoll p) {
+		Long roomId = p.getRoom().getId();
+		Tally t = getTally(roomId);
+		synchronized (t) {
+			if (t.isActive(p.getId())) {
+				t.closed = true;
+			}
+		}
+		flush();
+		boolean result = pollDao.delete(p);
+		// state will be reloaded on next access
+		rooms.remove(roomId);
+		return result;
+	}
+
+	/**
+	 * Removes the state of the room, should be called when the room empties
+	 */
+	public void evict(Long roomId) {
+		rooms.remove(roomId);
+	}
+
+	/**
+	 * Reloads the state of all the rooms from the database, so changes made by the other nodes are picked up.
+	 * Pending answers are stored first, state is kept if they can't be stored.
+	 */
+	public void reload() {
+		if (!flush()) {
+			return;
+		}
+		for (Map.Entry<Long, Tally> e : rooms.entrySet()) {
+			Tally old = e.getValue();
+			try {
+				Tally t = load(e.getKey());
+				synchronized (old) {
+					boolean same = t.isActive() && old.isActive(t.poll.getId());
+					if (same) {
+						// answers made after the flush are not stored yet, users not voted might have voted on the other node
+						t.voters.addAll(old.voters);
+					}
+					t.dirty = t.isActive() && (old.dirty || !same || !Arrays.equals(old.counts, t.counts));
+				}
+				rooms.replace(e.getKey(), old, t);
+			} catch (Exception err) {
+				log.warn("Unable to reload poll state of room: " + e.getKey(), err);
+			}
+		}
+	}
+
+	/**
+	 * Sends updated results of the active polls to the rooms
+	 */
+	public void push() {
+		for (Map.Entry<Long, Tally> e : rooms.entrySet()) {
+			Tally t = e.getValue();
+			JSONObject o;
+			synchronized (t) {
+				if (!t.dirty || !t.isActive()) {
+					continue;
+				}
+				t.dirty = false;
+				o = new JSONObject().put("id", t.poll.getId()).put("counts", new JSONArray(t.counts));
+			}
+			try {
+				WebSocketHelper.sendRoom(new TextRoomMessage(e.getKey(), null, RoomMessage.Type.pollVoted, o.toString()));
+			} catch (Exception err) {
+				log.warn("Unable to send poll results to room: " + e.getKey(), err);
+			}
+		}
+	}
+
+	/**
+	 * Stores all the pending answers
+	 *
+	 * @return <code>true</code> if all the answers were stored
+	 */
+	public boolean flush() {
+		return queue.flush();
+	}
+
+	/**
+	 * @return number of answers waiting to be stored
+	 */
+	public int getPendingCount() {
+		return queue.size();
+	}
+
+	public void destroy() {
+		synchronized (this) {
+			if (writer != null) {
+				writer.shutdown();
+				writer = null;
+			}
+		}
+		if (!flush()) {
+			log.error("{} poll answers were not stored on shutdown", queue.size());
+		}
+	}
+}
@@ -21,6 +21,8 @@ package org.apache.openmeetings.core.data.record.converter;
 import static org.apache.openmeetings.util.OpenmeetingsVariables.webAppRootKey;
 
 import org.apache.openmeetings.core.converter.InterviewConverter;
+import org.apache.openmeetings.core.data.record.listener.async.StreamCompletionRegistry;
+import org.apache.openmeetings.db.dao.record.RecordingMetaDataDao;
 import org.red5.logging.Red5LoggerFactory;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -32,18 +34,21 @@ public class InterviewConverterTask {
 	@Autowired
 	private TaskExecutor taskExecutor;
 	@Autowired
+	private RecordingMetaDataDao metaDataDao;
+	@Autowired
 	private InterviewConverter interviewConverter;
 
 	public void startConversionThread(final Long recordingId) {
 		try {
 			log.debug("[-1-]" + taskExecutor);
 
-			taskExecutor.execute(new Runnable() {
-				@Override
-				public void run() {
-					interviewConverter.startConversion(recordingId);
-				}
-			});
+			// conversion is started as soon as all the streams are written, no thread is blocked while waiting
+			StreamCompletionRegistry.whenComplete(metaDataDao.getByRecording(recordingId))
+				.thenRun(() -> taskExecutor.execute(() -> interviewConverter.startConversion(recordingId)))
+				.exceptionally(err -> {
+					log.error("[startConversionThread]", err);
+					return null;
+				});
 		} catch (Exception err) {
 			log.error("[startConversionThread]", err);
 		}
@@ -22,6 +22,7 @@ import static org.apache.openmeetings.util.OpenmeetingsVariables.webAppRootKey;
 
 import java.util.Date;
 
+import org.apache.openmeetings.core.converter.LiveTranscoder;
 import org.apache.openmeetings.core.data.record.listener.async.BaseStreamWriter;
 import org.apache.openmeetings.core.data.record.listener.async.CachedEvent;
 import org.apache.openmeetings.core.data.record.listener.async.StreamAudioWriter;
@@ -43,10 +44,10 @@ public class StreamListener implements IStreamListener {
 
 	public StreamListener(boolean isAudio, String streamName, IScope scope, Long metaDataId,
 			boolean isScreenData, boolean isInterview, RecordingMetaDataDao metaDataDao
-			, RecordingMetaDeltaDao metaDeltaDao) {
+			, RecordingMetaDeltaDao metaDeltaDao, LiveTranscoder transcoder) {
 		streamWriter = isAudio
 			? new StreamAudioWriter(streamName, scope, metaDataId, isScreenData, isInterview, metaDataDao, metaDeltaDao)
-			: new StreamVideoWriter(streamName, scope, metaDataId, isScreenData, metaDataDao);
+			: new StreamVideoWriter(streamName, scope, metaDataId, isScreenData, metaDataDao, transcoder);
 	}
 
 	@Override
@@ -79,16 +79,23 @@ public abstract class BaseStreamWriter implements Runnable {
 		this.metaDataId = metaDataId;
 		this.metaDataDao = metaDataDao;
 		this.scope = scope;
+		StreamCompletionRegistry.register(metaDataId);
 		try {
-			init();
-		} catch (IOException ex) {
-			log.error("##REC:: [BaseStreamWriter] Could not init Thread", ex);
-		}
-		RecordingMetaData metaData = metaDataDao.get(metaDataId);
-		metaData.setStreamStatus(Status.STARTED);
-		metaDataDao.update(metaData);
+			try {
+				init();
+			} catch (IOException ex) {
+				log.error("##REC:: [BaseStreamWriter] Could not init Thread", ex);
+			}
+			RecordingMetaData metaData = metaDataDao.get(metaDataId);
+			metaData.setStreamStatus(Status.STARTED);
+			metaDataDao.update(metaData);
 
-		open();
+			open();
+		} catch (RuntimeException|Error err) {
+			// stream will never be written, converters should not wait for it
+			StreamCompletionRegistry.complete(metaDataId);
+			throw err;
+		}
 	}
 
 	/**
@@ -99,21 +106,24 @@ public abstract class BaseStreamWriter implements Runnable {
 	 */
 	private void init() throws IOException {
 		file = new File(OmFileHelper.getStreamsSubDir(scope.getName()), OmFileHelper.getName(streamName, EXTENSION_FLV));
+		writer = createWriter(file);
+	}
 
+	protected ITagWriter createWriter(File f) throws IOException {
 		IStreamableFileFactory factory = (IStreamableFileFactory) ScopeUtils.getScopeService(scope, IStreamableFileFactory.class,
 				StreamableFileFactory.class);
 
-		if (!file.isFile()) {
+		if (!f.isFile()) {
 			// Maybe the (previously existing) file has been deleted
-			file.createNewFile();
+			f.createNewFile();
 
-		} else if (!file.canWrite()) {
+		} else if (!f.canWrite()) {
 			throw new IOException("The file is read-only");
 		}
 
-		IStreamableFileService service = factory.getService(file);
-		IStreamableFile flv = service.getStreamableFile(file);
-		writer = flv.getWriter();
+		IStreamableFileService service = factory.getService(f);
+		IStreamableFile flv = service.getStreamableFile(f);
+		return flv.getWriter();
 	}
 
 	private void open() {
@@ -169,19 +179,28 @@ public abstract class BaseStreamWriter implements Runnable {
 	 */
 	public void closeStream() {
 		try {
-			writer.close();
-		} catch (Exception err) {
-			log.error("[closeStream, close writer]", err);
-		}
-		internalCloseStream();
-		// Write the complete Bit to the meta data, the converter task will wait for this bit!
-		try {
-			RecordingMetaData metaData = metaDataDao.get(metaDataId);
-			log.debug("##REC:: Stream Status was: {} has been written for: {}", metaData.getStreamStatus(), metaDataId);
-			metaData.setStreamStatus(Status.STOPPED);
-			metaDataDao.update(metaData);
-		} catch (Exception err) {
-			log.error("##REC:: [closeStream, complete Bit]", err);
+			try {
+				writer.close();
+			} catch (Exception err) {
+				log.error("[closeStream, close writer]", err);
+			}
+			try {
+				internalCloseStream();
+			} catch (Exception err) {
+				log.error("##REC:: [closeStream, internalCloseStream]", err);
+			}
+			// Write the complete Bit to the meta data, the converter task will wait for this bit!
+			try {
+				RecordingMetaData metaData = metaDataDao.get(metaDataId);
+				log.debug("##REC:: Stream Status was: {} has been written for: {}", metaData.getStreamStatus(), metaDataId);
+				metaData.setStreamStatus(Status.STOPPED);
+				metaDataDao.update(metaData);
+			} catch (Exception err) {
+				log.error("##REC:: [closeStream, complete Bit]", err);
+			}
+		} finally {
+			// converters waiting for this stream will be notified
+			StreamCompletionRegistry.complete(metaDataId);
 		}
 	}
 
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.core.data.record.listener.async;
+
+import static org.apache.openmeetings.util.OpenmeetingsVariables.webAppRootKey;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.openmeetings.db.entity.record.RecordingMetaData;
+import org.red5.logging.Red5LoggerFactory;
+import org.slf4j.Logger;
+
+/**
+ * Keeps track of recording streams being written on this node.
+ *
+ * Future of the stream is completed by {@link BaseStreamWriter#closeStream()}, so converters
+ * can be notified instead of polling the status of {@link RecordingMetaData}.
+ * Streams written before restart are unknown, status stored in DB should be checked for them.
+ * Streams not closed in time are completed by timeout and forgotten, so converters are not
+ * stuck and the registry doesn't grow.
+ */
+public class StreamCompletionRegistry {
+	private static final Logger log = Red5LoggerFactory.getLogger(StreamCompletionRegistry.class, webAppRootKey);
+	private static final Map<Long, CompletableFuture<Long>> streams = new ConcurrentHashMap<>();
+	private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread t = new Thread(r, "stream-completion-timer");
+		t.setDaemon(true);
+		return t;
+	});
+
+	private StreamCompletionRegistry() {}
+
+	/**
+	 * Marks the stream as being written on this node, called by the writer as soon as it is created
+	 *
+	 * @param metaDataId - id of {@link RecordingMetaData}
+	 */
+	public static void register(Long metaDataId) {
+		streams.computeIfAbsent(metaDataId, id -> new CompletableFuture<>());
+	}
+
+	/**
+	 * Marks the stream as written, called by the writer as soon as it is closed or failed to start
+	 *
+	 * @param metaDataId - id of {@link RecordingMetaData}
+	 */
+	public static void complete(Long metaDataId) {
+		CompletableFuture<Long> f = streams.remove(metaDataId);
+		if (f != null) {
+			f.complete(metaDataId);
+		}
+	}
+
+	/**
+	 * @param metaDataId - id of {@link RecordingMetaData}
+	 * @return future completed as soon as stream is written, <code>null</code> if stream
+	 *         is not being written on this node
+	 */
+	public static CompletableFuture<Long> get(Long metaDataId) {
+		return streams.get(metaDataId);
+	}
+
+	/**
+	 * @param list - streams of the recording
+	 * @return future completed as soon as all the streams being written on this node are complete,
+	 *         or {@link BaseStreamWriter#TIME_TO_WAIT_FOR_FRAME} is elapsed
+	 */
+	public static CompletableFuture<Void> whenComplete(List<RecordingMetaData> list) {
+		return whenComplete(list, BaseStreamWriter.TIME_TO_WAIT_FOR_FRAME);
+	}
+
+	/**
+	 * @param list - streams of the recording
+	 * @param timeout - time in milliseconds to wait for the streams to be closed
+	 * @return future completed as soon as all the streams being written on this node are complete,
+	 *         or timeout is elapsed
+	 */
+	public static CompletableFuture<Void> whenComplete(List<RecordingMetaData> list, long timeout) {
+		List<Long> ids = new ArrayList<>();
+		List<CompletableFuture<Long>> futures = new ArrayList<>();
+		for (RecordingMetaData m : list) {
+			CompletableFuture<Long> f = get(m.getId());
+			if (f != null) {
+				ids.add(m.getId());
+				futures.add(f);
+			}
+		}
+		if (futures.isEmpty()) {
+			return CompletableFuture.completedFuture(null);
+		}
+		// Java 8 has no orTimeout, streams still pending after timeout are completed here
+		timer.schedule(() -> {
+			for (Long id : ids) {
+				if (streams.containsKey(id)) {
+					log.warn("Stream {} was not closed in {} ms, converter will not wait for it", id, timeout);
+					complete(id);
+				}
+			}
+		}, timeout, TimeUnit.MILLISECONDS);
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()]));
+	}
+}
@@ -19,14 +19,19 @@
 package org.apache.openmeetings.core.data.record.listener.async;
 
 import static org.apache.openmeetings.util.OpenmeetingsVariables.webAppRootKey;
+import static org.red5.io.IoConstants.TYPE_VIDEO;
 import static org.red5.server.net.rtmp.event.VideoData.FrameType.KEYFRAME;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Date;
 
 import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.openmeetings.core.converter.LiveTranscoder;
 import org.apache.openmeetings.db.dao.record.RecordingMetaDataDao;
 import org.apache.openmeetings.db.entity.record.RecordingMetaData;
 import org.red5.io.ITag;
+import org.red5.io.ITagWriter;
 import org.red5.io.flv.impl.Tag;
 import org.red5.logging.Red5LoggerFactory;
 import org.red5.server.api.scope.IScope;
@@ -35,11 +40,55 @@ import org.slf4j.Logger;
 public class StreamVideoWriter extends BaseStreamWriter {
 	private static final Logger log = Red5LoggerFactory.getLogger(StreamVideoWriter.class, webAppRootKey);
 	private Date startedSessionScreenTimeDate = null;
+	// screen sharing is additionally written in segments to be encoded during the recording
+	private final LiveTranscoder transcoder;
+	private final int segmentLength;
+	private ITagWriter segmentWriter = null;
+	private File segment = null;
+	private int segmentStart = 0;
+	private int segmentCount = 0;
 
 	public StreamVideoWriter(String streamName, IScope scope, Long metaDataId, boolean isScreenData,
-			RecordingMetaDataDao metaDataDao) {
+			RecordingMetaDataDao metaDataDao, LiveTranscoder transcoder) {
 
 		super(streamName, scope, metaDataId, isScreenData, metaDataDao);
+		boolean live = transcoder != null && transcoder.isEnabled() && metaDataDao.get(metaDataId).isScreenData();
+		this.transcoder = live ? transcoder : null;
+		this.segmentLength = live ? transcoder.getSegmentLength() : 0;
+	}
+
+	private void writeSegment(CachedEvent streampacket, IoBuffer data, int timeStamp) throws IOException {
+		if (transcoder == null || TYPE_VIDEO != streampacket.getDataType()) {
+			return;
+		}
+		boolean keyframe = KEYFRAME == streampacket.getFrameType();
+		if (segmentWriter != null && LiveTranscoder.isSegmentComplete(segmentStart, timeStamp, keyframe, segmentLength)) {
+			closeSegment(timeStamp);
+		}
+		if (segmentWriter == null) {
+			if (!keyframe) {
+				return;
+			}
+			segment = new File(file.getParentFile(), String.format("%s_segment_%s.flv", streamName, segmentCount++));
+			segmentWriter = createWriter(segment);
+			segmentStart = timeStamp;
+		}
+		ITag tag = new Tag();
+		tag.setDataType(streampacket.getDataType());
+		tag.setBodySize(data.limit());
+		tag.setTimestamp(timeStamp - segmentStart);
+		tag.setBody(data);
+		segmentWriter.writeTag(tag);
+	}
+
+	private void closeSegment(int end) {
+		try {
+			segmentWriter.close();
+			transcoder.addSegment(metaDataId, segment, segmentStart, end);
+		} catch (Exception e) {
+			log.error("[closeSegment]", e);
+		}
+		segmentWriter = null;
 	}
 
 	@Override
@@ -87,6 +136,7 @@ public class StreamVideoWriter extends BaseStreamWriter {
 			tag.setBody(data);
 
 			writer.writeTag(tag);
+			writeSegment(streampacket, streampacket.getData().asReadOnlyBuffer(), timeStamp);
 		} catch (Exception e) {
 			log.error("[packetReceived]", e);
 		}
@@ -94,5 +144,9 @@ public class StreamVideoWriter extends BaseStreamWriter {
 
 	@Override
 	protected void internalCloseStream() {
+		if (segmentWriter != null) {
+			// the tail is encoded, the rest was encoded during the recording
+			closeSegment(-1);
+		}
 	}
 }
@@ -21,6 +21,9 @@ package org.apache.openmeetings.core.ldap;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.apache.openmeetings.db.util.LocaleHelper.validateCountry;
 import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_DEFAULT_GROUP_ID;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_LDAP_CACHE_TTL;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_LDAP_POOL_SIZE;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_LDAP_POOL_TIMEOUT;
 import static org.apache.openmeetings.util.OpenmeetingsVariables.webAppRootKey;
 
 import java.io.Closeable;
@@ -32,7 +35,9 @@ import java.io.InputStreamReader;
 import java.io.Reader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.directory.api.ldap.model.cursor.CursorException;
 import org.apache.directory.api.ldap.model.cursor.CursorLdapReferralException;
@@ -72,6 +77,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 /**
  * Management of optional LDAP Login
  *
+ * Parsed configuration and connection pools are kept per {@link LdapConfig}, until
+ * the config is edited ({@link #invalidate(Long)}) or its file is modified. Admin bound
+ * connections used for search and bind connections used to check user passwords are
+ * pooled separately. Dn and attributes of the user are cached for short time, so
+ * repeated logins only need one bind.
+ *
  * @author o.becherer
  *
  */
@@ -105,6 +116,8 @@ public class LdapLoginManagement {
 	private static final String LDAP_KEY_PHONE = "telephoneNumber";
 	private static final String LDAP_KEY_TIMEZONE = "timezone";
 	private static final String LDAP_KEY_GROUP = "memberOf";
+	private static final long MAX_IDLE = 5 * 60 * 1000L;
+	private static final int USER_CACHE_SIZE = 1000;
 
 	public enum AuthType {
 		NONE
@@ -133,6 +146,72 @@ public class LdapLoginManagement {
 	private GroupDao groupDao;
 	@Autowired
 	private TimezoneUtil timezoneUtil;
+	private final Map<Long, Domain> domains = new ConcurrentHashMap<>();
+	private LdapUserCache userCache;
+
+	private static class Domain {
+		private final LdapConfig ldapCfg;
+		private final Properties config;
+		private final LdapOptions options;
+		private final long modified;
+		private final LdapPool adminPool;
+		private final LdapPool userPool;
+
+		Domain(LdapConfig ldapCfg, Properties config, long modified, int size, long timeout) {
+			this.ldapCfg = ldapCfg;
+			this.config = config;
+			this.modified = modified;
+			options = new LdapOptions(config);
+			String name = String.format("ldap-%s", ldapCfg.getId());
+			adminPool = new LdapPool(name + "-admin", new LdapPool.Factory() {
+				@Override
+				public LdapConnection create() throws LdapException {
+					LdapConnection conn = connect(options);
+					try {
+						bindAdmin(conn, options);
+					} catch (LdapException | RuntimeException e) {
+						closeQuietly(conn);
+						throw e;
+					}
+					return conn;
+				}
+
+				@Override
+				public boolean validate(LdapConnection conn) {
+					return conn.isAuthenticated() || Strings.isEmpty(options.adminDn);
+				}
+			}, size, timeout, MAX_IDLE);
+			userPool = new LdapPool(name + "-user", new LdapPool.Factory() {
+				@Override
+				public LdapConnection create() throws LdapException {
+					return connect(options);
+				}
+
+				@Override
+				public boolean validate(LdapConnection conn) {
+					// every user is bound before connection is used
+					return true;
+				}
+			}, size, timeout, MAX_IDLE);
+		}
+
+		void destroy() {
+			adminPool.destroy();
+			userPool.destroy();
+		}
+	}
+
+	private static LdapConnection connect(LdapOptions options) {
+		return new LdapNetworkConnection(options.host, options.port, options.secure);
+	}
+
+	private static void closeQuietly(LdapConnection conn) {
+		try {
+			conn.close();
+		} catch (IOException e) {
+			log.warn("Error while closing LDAP connection", e);
+		}
+	}
 
 	private static void bindAdmin(LdapConnection conn, LdapOptions options) throws LdapException {
 		if (!Strings.isEmpty(options.adminDn)) {
@@ -179,14 +258,18 @@ public class LdapLoginManagement {
 			boolean authenticated = true;
 			Dn userDn = null;
 			Entry entry = null;
+			LdapUserCache.User cached = getUserCache().get(domainId, login);
+			if (cached != null) {
+				userDn = cached.getDn();
+				entry = cached.getEntry();
+			}
 			switch (w.options.type) {
 				case SEARCHANDBIND:
-				{
-					bindAdmin(w.conn, w.options);
+				if (userDn == null) {
 					Dn baseDn = new Dn(w.options.searchBase);
 					String searchQ = String.format(w.options.searchQuery, login);
 
-					try (EntryCursor cursor = new EntryCursorImpl(w.conn.search(
+					try (EntryCursor cursor = new EntryCursorImpl(w.admin().search(
 							new SearchRequestImpl()
 								.setBase(baseDn)
 								.setFilter(searchQ)
@@ -214,18 +297,19 @@ public class LdapLoginManagement {
 						log.error("NONE users found in LDAP");
 						throw new OmException(-10L);
 					}
-					w.conn.bind(userDn, passwd);
 				}
+					w.user().bind(userDn, passwd);
 					break;
 				case SIMPLEBIND:
 				{
 					userDn = new Dn(String.format(w.options.userDn, login));
-					w.conn.bind(userDn, passwd);
+					w.user().bind(userDn, passwd);
 				}
 					break;
 				case NONE:
 				default:
 					authenticated = false;
+					entry = null;
 					break;
 			}
 			u = authenticated ? userDao.getByLogin(login, Type.ldap, domainId) : userDao.login(login, passwd);
@@ -235,10 +319,10 @@ public class LdapLoginManagement {
 				throw new OmException(-10L);
 			}
 			if (authenticated && entry == null) {
-				if (w.options.useAdminForAttrs) {
-					bindAdmin(w.conn, w.options);
-				}
-				entry = w.conn.lookup(userDn);
+				entry = w.attrs().lookup(userDn);
+			}
+			if (authenticated) {
+				getUserCache().put(domainId, login, userDn, entry);
 			}
 			switch (w.options.prov) {
 				case AUTOUPDATE:
@@ -253,8 +337,11 @@ public class LdapLoginManagement {
 				default:
 					break;
 			}
+			w.complete();
 		} catch (LdapAuthenticationException ae) {
 			log.error("Not authenticated.", ae);
+			// cached Dn might be outdated
+			getUserCache().remove(domainId, login);
 			throw new OmException(-10L);
 		} catch (OmException e) {
 			throw e;
@@ -267,10 +354,9 @@ public class LdapLoginManagement {
 
 	public void importUsers(Long domainId, boolean print) throws OmException {
 		try (LdapWorker w = new LdapWorker(domainId)) {
-			bindAdmin(w.conn, w.options);
 			Dn baseDn = new Dn(w.options.searchBase);
 
-			try (EntryCursor cursor = new EntryCursorImpl(w.conn.search(
+			try (EntryCursor cursor = new EntryCursorImpl(w.admin().search(
 					new SearchRequestImpl()
 						.setBase(baseDn)
 						.setFilter(w.options.importQuery)
@@ -294,6 +380,7 @@ public class LdapLoginManagement {
 					}
 				}
 			}
+			w.complete();
 		} catch (LdapAuthenticationException ae) {
 			log.error("Not authenticated.", ae);
 			throw new OmException(-10L);
@@ -305,30 +392,129 @@ public class LdapLoginManagement {
 		}
 	}
 
-	private class LdapWorker implements Closeable {
-		LdapConnection conn = null;
-		Properties config = new Properties();
-		LdapOptions options = null;
-		Long domainId = null;
-		LdapConfig ldapCfg = null;
+	private synchronized LdapUserCache getUserCache() {
+		if (userCache == null) {
+			userCache = new LdapUserCache(1000L * cfgDao.getConfValue(CONFIG_LDAP_CACHE_TTL, Long.class, "60"), USER_CACHE_SIZE);
+		}
+		return userCache;
+	}
 
-		public LdapWorker(Long domainId) throws Exception {
-			this.domainId = domainId;
-			ldapCfg = ldapConfigDao.get(domainId);
-			try (InputStream is = new FileInputStream(new File(OmFileHelper.getConfDir(), ldapCfg.getConfigFileName()));
+	private static File getConfigFile(LdapConfig ldapCfg) {
+		return new File(OmFileHelper.getConfDir(), ldapCfg.getConfigFileName());
+	}
+
+	private Domain getDomain(Long domainId) throws Exception {
+		Domain d = domains.get(domainId);
+		if (d != null && d.modified == getConfigFile(d.ldapCfg).lastModified()) {
+			return d;
+		}
+		synchronized (domains) {
+			d = domains.get(domainId);
+			if (d != null && d.modified == getConfigFile(d.ldapCfg).lastModified()) {
+				return d;
+			}
+			LdapConfig ldapCfg = ldapConfigDao.get(domainId);
+			File f = getConfigFile(ldapCfg);
+			long modified = f.lastModified();
+			Properties config = new Properties();
+			try (InputStream is = new FileInputStream(f);
 					Reader r = new InputStreamReader(is, UTF_8))
 			{
 				config.load(r);
 				if (config.isEmpty()) {
 					throw new RuntimeException("Error on LdapLogin : Configurationdata couldnt be retrieved!");
 				}
-				options = new LdapOptions(config);
+				Domain nd = new Domain(ldapCfg, config, modified
+						, Math.max(1, cfgDao.getConfValue(CONFIG_LDAP_POOL_SIZE, Integer.class, "8"))
+						, 1000L * cfgDao.getConfValue(CONFIG_LDAP_POOL_TIMEOUT, Long.class, "10"));
+				Domain old = domains.put(domainId, nd);
+				if (old != null) {
+					old.destroy();
+				}
+				getUserCache().clear(domainId);
+				return nd;
 			} catch (Exception e) {
 				log.error("Error on LdapLogin : Configurationdata couldn't be retrieved!");
 				throw e;
 			}
+		}
+	}
+
+	/**
+	 * Drops cached configuration, connections and users of the domain,
+	 * should be called every time {@link LdapConfig} is modified
+	 *
+	 * @param domainId - id of modified {@link LdapConfig}
+	 */
+	public void invalidate(Long domainId) {
+		if (domainId == null) {
+			return;
+		}
+		Domain d = domains.remove(domainId);
+		if (d != null) {
+			d.destroy();
+		}
+		getUserCache().clear(domainId);
+	}
+
+	public void destroy() {
+		for (Domain d : domains.values()) {
+			d.destroy();
+		}
+		domains.clear();
+	}
+
+	private class LdapWorker implements Closeable {
+		final Domain d;
+		final Properties config;
+		final LdapOptions options;
+		final Long domainId;
+		final LdapConfig ldapCfg;
+		private LdapConnection admin = null;
+		private LdapConnection user = null;
+		private boolean completed = false;
+
+		public LdapWorker(Long domainId) throws Exception {
+			this.domainId = domainId;
+			d = getDomain(domainId);
+			ldapCfg = d.ldapCfg;
+			config = d.config;
+			options = d.options;
+		}
+
+		/**
+		 * @return connection bound as admin
+		 */
+		LdapConnection admin() throws LdapException {
+			if (admin == null) {
+				admin = d.adminPool.borrow();
+			}
+			return admin;
+		}
+
+		/**
+		 * @return connection to bind user
+		 */
+		LdapConnection user() throws LdapException {
+			if (user == null) {
+				user = d.userPool.borrow();
+			}
+			return user;
+		}
 
-			conn = new LdapNetworkConnection(options.host, options.port, options.secure);
+		/**
+		 * Marks the work as finished without errors, connections are returned to the pools
+		 * for reuse only in this case, otherwise their state is unknown and they are closed
+		 */
+		void complete() {
+			completed = true;
+		}
+
+		/**
+		 * @return connection to be used to get attributes of the user
+		 */
+		LdapConnection attrs() throws LdapException {
+			return options.useAdminForAttrs || user == null ? admin() : user;
 		}
 
 		public User getUser(Entry entry, User u) throws LdapException, CursorException, OmException, IOException {
@@ -387,7 +573,7 @@ public class LdapLoginManagement {
 				Dn baseDn = new Dn(options.searchBase);
 				String searchQ = String.format(options.groupQuery, u.getLogin());
 
-				try (EntryCursor cursor = new EntryCursorImpl(conn.search(
+				try (EntryCursor cursor = new EntryCursorImpl(attrs().search(
 						new SearchRequestImpl()
 							.setBase(baseDn)
 							.setFilter(searchQ)
@@ -433,8 +619,11 @@ public class LdapLoginManagement {
 
 		@Override
 		public void close() throws IOException {
-			if (conn != null) {
-				conn.close();
+			if (admin != null) {
+				d.adminPool.release(admin, completed);
+			}
+			if (user != null) {
+				d.userPool.release(user, completed);
 			}
 		}
 	}
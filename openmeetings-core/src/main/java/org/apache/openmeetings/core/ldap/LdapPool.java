@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.core.ldap;
+
+import static org.apache.openmeetings.util.OpenmeetingsVariables.webAppRootKey;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.ldap.client.api.LdapConnection;
+import org.red5.logging.Red5LoggerFactory;
+import org.slf4j.Logger;
+
+/**
+ * Bounded pool of connections to one LDAP server.
+ *
+ * Number of connections borrowed at the same time is limited by pool size, callers
+ * wait given time for free connection. Idle connections are checked before reuse,
+ * the ones closed by server, kept idle for too long or returned broken are dropped
+ * and replaced by new ones.
+ */
+public class LdapPool {
+	private static final Logger log = Red5LoggerFactory.getLogger(LdapPool.class, webAppRootKey);
+
+	public interface Factory {
+		/**
+		 * @return new connection ready to be used
+		 */
+		LdapConnection create() throws LdapException;
+
+		/**
+		 * @return <code>true</code> if idle connection can be used again
+		 */
+		boolean validate(LdapConnection conn);
+	}
+
+	private static class Idle {
+		private final LdapConnection conn;
+		private final long since = System.currentTimeMillis();
+
+		Idle(LdapConnection conn) {
+			this.conn = conn;
+		}
+	}
+
+	private final String name;
+	private final Factory factory;
+	private final int size;
+	private final long timeout;
+	private final long maxIdle;
+	private final BlockingQueue<Idle> idle;
+	private final Semaphore permits;
+	private volatile boolean destroyed = false;
+
+	/**
+	 * @param name - name of the pool used in logs
+	 * @param factory - creates and validates connections
+	 * @param size - max number of connections
+	 * @param timeout - time in milliseconds to wait for free connection
+	 * @param maxIdle - time in milliseconds idle connection is kept
+	 */
+	public LdapPool(String name, Factory factory, int size, long timeout, long maxIdle) {
+		this.name = name;
+		this.factory = factory;
+		this.size = size;
+		this.timeout = timeout;
+		this.maxIdle = maxIdle;
+		idle = new LinkedBlockingQueue<>(size);
+		permits = new Semaphore(size, true);
+	}
+
+	/**
+	 * Gets idle connection or creates new one, connection have to be returned by {@link #release(LdapConnection, boolean)}
+	 *
+	 * @return connection
+	 * @throws LdapException in case there is no free connection or new connection can't be created
+	 */
+	public LdapConnection borrow() throws LdapException {
+		if (destroyed) {
+			throw new LdapException(String.format("Pool %s is destroyed", name));
+		}
+		try {
+			if (!permits.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+				throw new LdapException(String.format("No free connection in pool %s", name));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new LdapException(String.format("Interrupted while waiting for connection in pool %s", name));
+		}
+		try {
+			Idle i;
+			while ((i = idle.poll()) != null) {
+				if (System.currentTimeMillis() - i.since < maxIdle && i.conn.isConnected() && factory.validate(i.conn)) {
+					return i.conn;
+				}
+				close(i.conn);
+			}
+			return factory.create();
+		} catch (LdapException | RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * @param conn - connection previously borrowed from this pool
+	 * @param reuse - <code>false</code> if connection is in unknown state and should be closed
+	 */
+	public void release(LdapConnection conn, boolean reuse) {
+		try {
+			if (!reuse || destroyed || !conn.isConnected() || !idle.offer(new Idle(conn))) {
+				close(conn);
+			}
+		} finally {
+			permits.release();
+		}
+	}
+
+	public int getIdle() {
+		return idle.size();
+	}
+
+	public int getActive() {
+		return size - permits.availablePermits();
+	}
+
+	private void close(LdapConnection conn) {
+		try {
+			conn.close();
+		} catch (Exception e) {
+			log.warn("Error while closing connection of pool {}", name, e);
+		}
+	}
+
+	public void destroy() {
+		destroyed = true;
+		Idle i;
+		while ((i = idle.poll()) != null) {
+			close(i.conn);
+		}
+	}
+}
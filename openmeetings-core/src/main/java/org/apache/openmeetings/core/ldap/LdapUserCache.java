@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.core.ldap;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.name.Dn;
+
+/**
+ * Short living LRU cache of LDAP users resolved during login.
+ *
+ * Stores Dn found by search and attributes of the user, so repeated logins only need
+ * to bind with the password. Passwords are never cached.
+ */
+public class LdapUserCache {
+	private final long ttl;
+	private final int maxSize;
+	private final LinkedHashMap<String, User> cache = new LinkedHashMap<>(16, .75f, true);
+
+	public static class User {
+		private final Dn dn;
+		private final Entry entry;
+		private final long expires;
+
+		User(Dn dn, Entry entry, long expires) {
+			this.dn = dn;
+			this.entry = entry;
+			this.expires = expires;
+		}
+
+		public Dn getDn() {
+			return dn;
+		}
+
+		public Entry getEntry() {
+			return entry;
+		}
+	}
+
+	/**
+	 * @param ttl - time in milliseconds entries are valid
+	 * @param maxSize - max number of stored entries
+	 */
+	public LdapUserCache(long ttl, int maxSize) {
+		this.ttl = ttl;
+		this.maxSize = maxSize;
+	}
+
+	private static String getKey(Long domainId, String login) {
+		return String.format("%s_%s", domainId, login);
+	}
+
+	/**
+	 * @return cached user or <code>null</code> if there is no such user or it is expired
+	 */
+	public synchronized User get(Long domainId, String login) {
+		String key = getKey(domainId, login);
+		User u = cache.get(key);
+		if (u != null && u.expires < System.currentTimeMillis()) {
+			cache.remove(key);
+			u = null;
+		}
+		return u;
+	}
+
+	/**
+	 * @param entry - attributes of the user, can be <code>null</code> if not known yet
+	 */
+	public synchronized void put(Long domainId, String login, Dn dn, Entry entry) {
+		if (ttl < 1) {
+			return;
+		}
+		cache.put(getKey(domainId, login), new User(dn, entry, System.currentTimeMillis() + ttl));
+		Iterator<User> iter = cache.values().iterator();
+		while (cache.size() > maxSize && iter.hasNext()) {
+			iter.next();
+			iter.remove();
+		}
+	}
+
+	public synchronized void remove(Long domainId, String login) {
+		cache.remove(getKey(domainId, login));
+	}
+
+	/**
+	 * Removes all users of the domain
+	 */
+	public synchronized void clear(Long domainId) {
+		String prefix = getKey(domainId, "");
+		cache.keySet().removeIf(k -> k.startsWith(prefix));
+	}
+
+	public synchronized int size() {
+		return cache.size();
+	}
+}
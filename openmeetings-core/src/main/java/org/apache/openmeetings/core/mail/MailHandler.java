@@ -26,10 +26,14 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import javax.activation.DataHandler;
 import javax.mail.Authenticator;
@@ -39,7 +43,6 @@ import javax.mail.MessagingException;
 import javax.mail.Multipart;
 import javax.mail.PasswordAuthentication;
 import javax.mail.Session;
-import javax.mail.Transport;
 import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeBodyPart;
 import javax.mail.internet.MimeMessage;
@@ -57,6 +60,7 @@ import org.red5.logging.Red5LoggerFactory;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
 
 /**
  *
@@ -70,6 +74,7 @@ public class MailHandler {
 	private static final Logger log = Red5LoggerFactory.getLogger(MailHandler.class, webAppRootKey);
 	private static final int MAIL_SEND_TIMEOUT = 60 * 60 * 1000; // 1 hour
 	private static final int MAXIMUM_ERROR_COUNT = 5;
+	private static final long RETRY_BASE_DELAY = 60 * 1000; // 1 minute
 
 	@Autowired
 	private ConfigurationDao cfgDao;
@@ -85,8 +90,24 @@ public class MailHandler {
 	private String mailAuthPass;
 	private boolean mailTls;
 	private boolean mailAddReplyTo;
-	private int smtpConnectionTimeOut;
-	private int smtpTimeOut;
+	private int smtpConnectionTimeOut = 30000;
+	private int smtpTimeOut = 30000;
+	private int poolSize = 3;
+	private int batchSize = 50;
+	private int sendRate = 0;
+	private Session session;
+	private SmtpTransportPool pool;
+	private String smtpCfg;
+	private long nextSendSlot = 0;
+
+	public MailHandler() {
+	}
+
+	public MailHandler(ConfigurationDao cfgDao, MailMessageDao mailMessageDao, TaskExecutor taskExecutor) {
+		this.cfgDao = cfgDao;
+		this.mailMessageDao = mailMessageDao;
+		this.taskExecutor = taskExecutor;
+	}
 
 	private void init() {
 		smtpServer = cfgDao.getConfValue("smtp_server", String.class, null);
@@ -98,6 +119,16 @@ public class MailHandler {
 		mailAddReplyTo = "1".equals(cfgDao.getConfValue("inviter.email.as.replyto", String.class, "1"));
 		smtpConnectionTimeOut = cfgDao.getConfValue("mail.smtp.connection.timeout", Integer.class, "30000");
 		smtpTimeOut = cfgDao.getConfValue("mail.smtp.timeout", Integer.class, "30000");
+		poolSize = Math.max(1, cfgDao.getConfValue("mail.smtp.pool.size", Integer.class, "3"));
+		batchSize = Math.max(1, cfgDao.getConfValue("mail.send.batch.size", Integer.class, "50"));
+		sendRate = Math.max(0, cfgDao.getConfValue("mail.send.rate", Integer.class, "0"));
+		String cfg = String.format("%s:%s:%s:%s:%s:%s:%s:%s:%s", smtpServer, smtpPort, from, mailAuthUser, mailAuthPass
+				, mailTls, smtpConnectionTimeOut, smtpTimeOut, poolSize);
+		if (!cfg.equals(smtpCfg)) {
+			// connections are being kept open until SMTP settings are changed
+			smtpCfg = cfg;
+			reset();
+		}
 	}
 
 	public void init(String smtpServer, String smtpPort, String from, String mailAuthUser, String mailAuthPass, boolean mailTls, boolean mailAddReplyTo) {
@@ -108,6 +139,59 @@ public class MailHandler {
 		this.mailAuthPass = mailAuthPass;
 		this.mailTls = mailTls;
 		this.mailAddReplyTo = mailAddReplyTo;
+		reset();
+	}
+
+	private synchronized void reset() {
+		if (pool != null) {
+			pool.close();
+		}
+		session = null;
+		pool = null;
+	}
+
+	private synchronized Session getSession() {
+		if (smtpServer == null) {
+			init();
+		}
+		if (session == null) {
+			Properties props = new Properties(System.getProperties());
+
+			props.put("mail.smtp.host", smtpServer);
+			props.put("mail.smtp.port", smtpPort);
+			if (mailTls) {
+				props.put("mail.smtp.starttls.enable", "true");
+			}
+			props.put("mail.smtp.connectiontimeout", smtpConnectionTimeOut);
+			props.put("mail.smtp.timeout", smtpTimeOut);
+
+			// Check for Authentication
+			if (!Strings.isEmpty(mailAuthUser) && !Strings.isEmpty(mailAuthPass)) {
+				// use SMTP Authentication
+				props.put("mail.smtp.auth", "true");
+				session = Session.getInstance(props, new Authenticator() {
+					@Override
+					protected PasswordAuthentication getPasswordAuthentication() {
+						return new PasswordAuthentication(mailAuthUser, mailAuthPass);
+					}
+				});
+			} else {
+				// not use SMTP Authentication
+				session = Session.getInstance(props, null);
+			}
+		}
+		return session;
+	}
+
+	private synchronized SmtpTransportPool getPool() {
+		if (pool == null) {
+			pool = new SmtpTransportPool(getSession(), poolSize);
+		}
+		return pool;
+	}
+
+	public void destroy() {
+		reset();
 	}
 
 	protected MimeMessage appendIcsBody(MimeMessage msg, MailMessage m) throws Exception {
@@ -160,37 +244,8 @@ public class MailHandler {
 
 	public MimeMessage getBasicMimeMessage() throws Exception {
 		log.debug("getBasicMimeMessage");
-		if (smtpServer == null) {
-			init();
-		}
-		Properties props = new Properties(System.getProperties());
-
-		props.put("mail.smtp.host", smtpServer);
-		props.put("mail.smtp.port", smtpPort);
-		if (mailTls) {
-			props.put("mail.smtp.starttls.enable", "true");
-		}
-		props.put("mail.smtp.connectiontimeout", smtpConnectionTimeOut);
-		props.put("mail.smtp.timeout", smtpTimeOut);
-
-		// Check for Authentication
-		Session session = null;
-		if (!Strings.isEmpty(mailAuthUser) && !Strings.isEmpty(mailAuthPass)) {
-			// use SMTP Authentication
-			props.put("mail.smtp.auth", "true");
-			session = Session.getDefaultInstance(props, new Authenticator() {
-				@Override
-				protected PasswordAuthentication getPasswordAuthentication() {
-					return new PasswordAuthentication(mailAuthUser, mailAuthPass);
-				}
-			});
-		} else {
-			// not use SMTP Authentication
-			session = Session.getInstance(props, null);
-		}
-
 		// Building MimeMessage
-		MimeMessage msg = new MimeMessage(session);
+		MimeMessage msg = new MimeMessage(getSession());
 		msg.setFrom(new InternetAddress(from));
 		return msg;
 	}
@@ -230,29 +285,10 @@ public class MailHandler {
 				m.setStatus(Status.SENDING);
 				mailMessageDao.update(m, null);
 			}
-			taskExecutor.execute(new Runnable() {
-				@Override
-				public void run() {
-					log.debug("Message sending in progress");
-					log.debug("  To: " + m.getRecipients());
-					log.debug("  Subject: " + m.getSubject());
-
-					// -- Send the message --
-					try {
-						Transport.send(getMimeMessage(m));
-						m.setLastError("");
-						m.setStatus(Status.DONE);
-					} catch (Exception e) {
-						log.error("Error while sending message", e);
-						m.setErrorCount(m.getErrorCount() + 1);
-						StringWriter sw = new StringWriter();
-						e.printStackTrace(new PrintWriter(sw));
-						m.setLastError(sw.getBuffer().toString());
-						m.setStatus(m.getErrorCount() < MAXIMUM_ERROR_COUNT ? Status.NONE : Status.ERROR);
-					}
-					if (m.getId() != null) {
-						mailMessageDao.update(m, null);
-					}
+			taskExecutor.execute(() -> {
+				doSend(m);
+				if (m.getId() != null) {
+					mailMessageDao.update(m, null);
 				}
 			});
 		} else {
@@ -261,6 +297,93 @@ public class MailHandler {
 		}
 	}
 
+	private void doSend(MailMessage m) {
+		log.debug("Message sending in progress");
+		log.debug("  To: " + m.getRecipients());
+		log.debug("  Subject: " + m.getSubject());
+
+		// -- Send the message --
+		try {
+			getPool().send(getMimeMessage(m));
+			m.setLastError("");
+			m.setStatus(Status.DONE);
+		} catch (InterruptedException e) {
+			log.warn("Message sending was interrupted");
+			m.setStatus(Status.NONE);
+			Thread.currentThread().interrupt();
+		} catch (Exception e) {
+			log.error("Error while sending message", e);
+			m.setErrorCount(m.getErrorCount() + 1);
+			StringWriter sw = new StringWriter();
+			e.printStackTrace(new PrintWriter(sw));
+			m.setLastError(sw.getBuffer().toString());
+			m.setStatus(m.getErrorCount() < MAXIMUM_ERROR_COUNT ? Status.NONE : Status.ERROR);
+		}
+	}
+
+	/**
+	 * Failed messages are retried with exponential delay: 1, 2, 4, 8 ... minutes
+	 */
+	private static boolean isDue(MailMessage m, long now) {
+		if (m.getErrorCount() < 1 || m.getUpdated() == null) {
+			return true;
+		}
+		long delay = RETRY_BASE_DELAY << Math.min(m.getErrorCount() - 1, 16);
+		return m.getUpdated().getTimeInMillis() + delay <= now;
+	}
+
+	private void throttle() throws InterruptedException {
+		if (sendRate < 1) {
+			return;
+		}
+		long now = System.nanoTime();
+		if (nextSendSlot > now) {
+			TimeUnit.NANOSECONDS.sleep(nextSendSlot - now);
+		}
+		nextSendSlot = Math.max(now, nextSendSlot) + TimeUnit.SECONDS.toNanos(1) / sendRate;
+	}
+
+	/**
+	 * @return <code>false</code> if sending was rejected by the executor, messages not sent are left for the next run
+	 */
+	private boolean sendBatch(List<MailMessage> batch) throws InterruptedException {
+		final Semaphore inProgress = new Semaphore(poolSize);
+		final CountDownLatch latch = new CountDownLatch(batch.size());
+		boolean scheduled = true;
+		try {
+			for (final MailMessage m : batch) {
+				if (!scheduled) {
+					m.setStatus(Status.NONE);
+					latch.countDown();
+					continue;
+				}
+				throttle();
+				inProgress.acquire();
+				try {
+					taskExecutor.execute(() -> {
+						try {
+							doSend(m);
+						} finally {
+							inProgress.release();
+							latch.countDown();
+						}
+					});
+				} catch (TaskRejectedException e) {
+					log.warn("Unable to schedule message sending, remaining messages will be sent by the next run");
+					scheduled = false;
+					m.setStatus(Status.NONE);
+					inProgress.release();
+					latch.countDown();
+				}
+			}
+			latch.await();
+		} finally {
+			// statuses are stored in one transaction per batch
+			mailMessageDao.update(batch);
+		}
+		return scheduled;
+	}
+
 	public void resetSendingStatus() {
 		log.debug("resetSendingStatus enter ...");
 		if (!InitializationContainer.initComplete) {
@@ -275,12 +398,36 @@ public class MailHandler {
 	public void sendMails() {
 		init();
 		log.debug("sendMails enter ...");
-		List<MailMessage> list = mailMessageDao.get(0, 1, MailMessage.Status.NONE);
-		log.debug("Number of emails in init queue " + list.size());
-		while (!list.isEmpty()) {
-			send(list.get(0), true);
-			list = mailMessageDao.get(0, 1, MailMessage.Status.NONE);
+		int start = 0;
+		int count = 0;
+		List<MailMessage> list = mailMessageDao.get(start, batchSize, Status.NONE);
+		try {
+			while (!list.isEmpty()) {
+				long now = System.currentTimeMillis();
+				List<MailMessage> batch = new ArrayList<>(list.size());
+				for (MailMessage m : list) {
+					if (isDue(m, now)) {
+						m.setStatus(Status.SENDING);
+						batch.add(m);
+					} else {
+						// will be retried later, should be skipped
+						start++;
+					}
+				}
+				if (!batch.isEmpty()) {
+					boolean scheduled = sendBatch(mailMessageDao.update(batch));
+					count += batch.size();
+					if (!scheduled) {
+						// executor is full, same messages should not be fetched again
+						break;
+					}
+				}
+				list = mailMessageDao.get(start, batchSize, Status.NONE);
+			}
+		} catch (InterruptedException e) {
+			log.warn("Mail sending was interrupted");
+			Thread.currentThread().interrupt();
 		}
-		log.debug("... sendMails done.");
+		log.debug("... sendMails done, {} messages processed", count);
 	}
 }
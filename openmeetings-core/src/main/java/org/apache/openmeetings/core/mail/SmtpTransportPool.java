@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.core.mail;
+
+import static org.apache.openmeetings.util.OpenmeetingsVariables.webAppRootKey;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+
+import org.red5.logging.Red5LoggerFactory;
+import org.slf4j.Logger;
+
+/**
+ * Small pool of connected and authenticated SMTP transports.
+ *
+ * At most <code>size</code> connections are open at the same time, callers are blocked
+ * until a connection is available. Broken connections are closed and replaced on demand
+ * so the next message is sent over a freshly connected transport.
+ */
+public class SmtpTransportPool {
+	private static final Logger log = Red5LoggerFactory.getLogger(SmtpTransportPool.class, webAppRootKey);
+	private final Session session;
+	private final Semaphore permits;
+	private final LinkedBlockingQueue<Transport> idle = new LinkedBlockingQueue<>();
+	private volatile boolean closed = false;
+
+	public SmtpTransportPool(Session session, int size) {
+		this.session = session;
+		this.permits = new Semaphore(Math.max(1, size), true);
+	}
+
+	private Transport borrow() throws MessagingException {
+		Transport t;
+		while ((t = idle.poll()) != null) {
+			if (t.isConnected()) {
+				return t;
+			}
+			close(t);
+		}
+		log.debug("Opening new SMTP connection");
+		t = session.getTransport("smtp");
+		t.connect();
+		return t;
+	}
+
+	private void release(Transport t) {
+		if (closed) {
+			close(t);
+		} else {
+			idle.offer(t);
+		}
+	}
+
+	private static void close(Transport t) {
+		try {
+			t.close();
+		} catch (MessagingException e) {
+			log.debug("Error while closing SMTP connection", e);
+		}
+	}
+
+	/**
+	 * Sends the message using one of pooled connections
+	 *
+	 * @param msg - message to be sent
+	 * @throws MessagingException in case message can't be sent
+	 * @throws InterruptedException in case waiting for free connection was interrupted
+	 */
+	public void send(Message msg) throws MessagingException, InterruptedException {
+		if (closed) {
+			throw new MessagingException("Transport pool is closed");
+		}
+		permits.acquire();
+		try {
+			Transport t = borrow();
+			try {
+				msg.saveChanges();
+				t.sendMessage(msg, msg.getAllRecipients());
+			} catch (MessagingException e) {
+				// connection state is unknown, will not be reused
+				close(t);
+				throw e;
+			}
+			release(t);
+		} finally {
+			permits.release();
+		}
+	}
+
+	public int getIdleCount() {
+		return idle.size();
+	}
+
+	public void close() {
+		closed = true;
+		Transport t;
+		while ((t = idle.poll()) != null) {
+			close(t);
+		}
+	}
+}
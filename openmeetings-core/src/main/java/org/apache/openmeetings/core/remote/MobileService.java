@@ -18,6 +18,7 @@
  */
 package org.apache.openmeetings.core.remote;
 
+import static org.apache.openmeetings.core.data.chat.ChatManager.HISTORY_SIZE;
 import static org.apache.openmeetings.core.remote.ScopeApplicationAdapter.nextBroadCastId;
 import static org.apache.openmeetings.db.util.LocaleHelper.getCountryName;
 import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_DEFAULT_GROUP_ID;
@@ -39,10 +40,12 @@ import java.util.TimeZone;
 import java.util.UUID;
 
 import org.apache.commons.lang3.time.FastDateFormat;
+import org.apache.openmeetings.core.data.chat.ChatManager;
+import org.apache.openmeetings.core.data.conference.RoomVisibilityResolver;
+import org.apache.openmeetings.core.data.conference.RoomVisibilityResolver.VisibleRoom;
 import org.apache.openmeetings.core.remote.ScopeApplicationAdapter.MessageSender;
 import org.apache.openmeetings.core.remote.util.SessionVariablesUtil;
 import org.apache.openmeetings.core.util.WebSocketHelper;
-import org.apache.openmeetings.db.dao.basic.ChatDao;
 import org.apache.openmeetings.db.dao.basic.ConfigurationDao;
 import org.apache.openmeetings.db.dao.label.LabelDao;
 import org.apache.openmeetings.db.dao.room.RoomDao;
@@ -54,8 +57,6 @@ import org.apache.openmeetings.db.entity.basic.ChatMessage;
 import org.apache.openmeetings.db.entity.room.StreamClient;
 import org.apache.openmeetings.db.entity.room.Room;
 import org.apache.openmeetings.db.entity.server.Sessiondata;
-import org.apache.openmeetings.db.entity.user.Group;
-import org.apache.openmeetings.db.entity.user.GroupUser;
 import org.apache.openmeetings.db.entity.user.User;
 import org.apache.openmeetings.db.util.LocaleHelper;
 import org.apache.openmeetings.util.OmException;
@@ -63,7 +64,6 @@ import org.apache.wicket.util.string.Strings;
 import org.red5.logging.Red5LoggerFactory;
 import org.red5.server.api.IConnection;
 import org.red5.server.api.Red5;
-import org.red5.server.api.service.IServiceCapableConnection;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 
@@ -82,9 +82,13 @@ public class MobileService {
 	@Autowired
 	private RoomDao roomDao;
 	@Autowired
-	private ChatDao chatDao;
+	private ChatManager chatManager;
 	@Autowired
 	private ScopeApplicationAdapter scopeAdapter;
+	@Autowired
+	private StreamRegistry streamRegistry;
+	@Autowired
+	private RoomVisibilityResolver roomResolver;
 
 	private static void add(Map<String, Object> m, String key, Object v) {
 		m.put(key, v == null ? "" : v);
@@ -249,45 +253,52 @@ public class MobileService {
 		return result;
 	}
 
-	public List<Map<String, Object>> getVideoStreams() {
-		List<Map<String, Object>> result = new ArrayList<>();
-		// Notify all clients of the same scope (room)
+	/**
+	 * @return streams of the room of the current client, empty if the client is not in the room
+	 */
+	private StreamRegistry.Streams getStreams() {
 		IConnection current = Red5.getConnectionLocal();
-		for (IConnection conn : current.getScope().getClientConnections()) {
-			if (conn != null && conn instanceof IServiceCapableConnection) {
-				StreamClient c = sessionManager.getClientByStreamId(conn.getClient().getId(), null);
-				if (!Strings.isEmpty(c.getAvsettings()) && !c.isScreenClient()) {
-					Map<String, Object> map = new HashMap<>();
-					add(map, "streamId", c.getStreamid());
-					add(map, "broadCastId", c.getBroadCastId());
-					add(map, "userId", c.getUserId());
-					add(map, "firstname", c.getFirstname());
-					add(map, "lastname", c.getLastname());
-					add(map, "publicSid", c.getPublicSID());
-					add(map, "login", c.getUsername());
-					add(map, "email", c.getEmail());
-					add(map, "avsettings", c.getAvsettings());
-					add(map, "interviewPodId", c.getInterviewPodId());
-					add(map, "vWidth", c.getVWidth());
-					add(map, "vHeight", c.getVHeight());
-					result.add(map);
-				}
-			}
+		StreamClient c = sessionManager.getClientByStreamId(current.getClient().getId(), null);
+		if (c == null || c.getRoomId() == null) {
+			return StreamRegistry.Streams.EMPTY;
+		}
+		return streamRegistry.get(c.getRoomId());
+	}
+
+	public List<Map<String, Object>> getVideoStreams() {
+		return getStreams().getList();
+	}
+
+	/**
+	 * Cheap alternative of {@link #getVideoStreams()} for periodical polling,
+	 * streams are only returned if they were changed since given version
+	 *
+	 * @param version - version of the streams known to the client, 0 if unknown
+	 * @return map with current "version" of the streams and list of "streams" in case version is changed
+	 */
+	public Map<String, Object> getVideoStreams(long version) {
+		StreamRegistry.Streams streams = getStreams();
+		Map<String, Object> result = new HashMap<>();
+		result.put("version", streams.getVersion());
+		if (streams.getVersion() != version) {
+			result.put("streams", streams.getList());
 		}
 		return result;
 	}
 
-	private void addRoom(String type, String org, boolean first, List<Map<String, Object>> result, Room r) {
+	private static void addRoom(VisibleRoom vr, Map<Long, Integer> occupancy, List<Map<String, Object>> result) {
+		Room r = vr.getRoom();
+		Integer users = occupancy.get(r.getId());
 		Map<String, Object> room = new HashMap<>();
 		room.put("id", r.getId());
 		room.put("name", r.getName());
-		room.put("type", type);
+		room.put("type", vr.getType());
 		room.put("roomTypeId", r.getType().getId());
-		if (org != null) {
-			room.put("org", org);
+		if (vr.getGroup() != null) {
+			room.put("org", vr.getGroup());
 		}
-		room.put("first", first);
-		room.put("users", sessionManager.getClientListByRoom(r.getId()).size());
+		room.put("first", vr.isFirst());
+		room.put("users", users == null ? 0 : users);
 		room.put("total", r.getNumberOfPartizipants());
 		room.put("audioOnly", r.isAudioOnly());
 		result.add(room);
@@ -295,32 +306,12 @@ public class MobileService {
 
 	public List<Map<String, Object>> getRooms() {
 		List<Map<String, Object>> result = new ArrayList<>();
-		// FIXME duplicated code
 		IConnection current = Red5.getConnectionLocal();
 		StreamClient c = sessionManager.getClientByStreamId(current.getClient().getId(), null);
 		User u = userDao.get(c.getUserId());
-		//my rooms
-		List<Room> myl = new ArrayList<>();
-		myl.add(roomDao.getUserRoom(u.getId(), Room.Type.conference, LabelDao.getString(1306L, u.getLanguageId())));
-		myl.add(roomDao.getUserRoom(u.getId(), Room.Type.restricted, LabelDao.getString(1307L, u.getLanguageId())));
-		myl.addAll(roomDao.getAppointedRoomsByUser(u.getId()));
-		for (Room r : myl) {
-			addRoom("my", null, false, result, r);
-		}
-
-		//private rooms
-		for (GroupUser ou : u.getGroupUsers()) {
-			Group org = ou.getGroup();
-			boolean first = true;
-			for (Room r : roomDao.getGroupRooms(org.getId())) {
-				addRoom("private", org.getName(), first, result, r);
-				first = false;
-			}
-		}
-
-		//public rooms
-		for (Room r : roomDao.getPublicRooms()) {
-			addRoom("public", null, false, result, r);
+		Map<Long, Integer> occupancy = sessionManager.getRoomOccupancy();
+		for (VisibleRoom vr : roomResolver.getRooms(u)) {
+			addRoom(vr, occupancy, result);
 		}
 		return result;
 	}
@@ -355,6 +346,7 @@ public class MobileService {
 			c.setInterviewPodId(interviewPodId);
 		}
 		sessionManager.updateClientByStreamId(c.getStreamid(), c, false, null);
+		scopeAdapter.sendStreamsChanged(current.getScope(), c.getRoomId());
 		Map<String, Object> hsm = new HashMap<>();
 		hsm.put("client", c);
 		hsm.put("message", new String[]{"avsettings", "0", avMode});
@@ -379,7 +371,7 @@ public class MobileService {
 		Room r = roomDao.get(c.getRoomId());
 		m.setToRoom(r);
 		m.setNeedModeration(r.isChatModerated() && !isModerator(c));
-		chatDao.update(m);
+		chatManager.add(m);
 		FastDateFormat fmt = getFmt(u);
 		sendChatMessage(c, m, fmt);
 		WebSocketHelper.sendRoom(m, WebSocketHelper.getMessage(u.getId(), Arrays.asList(m), fmt, null));
@@ -441,7 +433,7 @@ public class MobileService {
 			Room r = roomDao.get(roomId);
 			User u = userDao.get(c.getUserId());
 			FastDateFormat fmt = getFmt(u);
-			for (ChatMessage m : chatDao.getRoom(roomId, 0, 30, !r.isChatModerated() || isModerator(c))) {
+			for (ChatMessage m : chatManager.getRoom(roomId, HISTORY_SIZE, !r.isChatModerated() || isModerator(c))) {
 				myChatList.add(encodeChatMessage(m, fmt));
 			}
 
@@ -26,6 +26,7 @@ import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.openmeetings.core.converter.BaseConverter;
+import org.apache.openmeetings.core.converter.LiveTranscoder;
 import org.apache.openmeetings.core.data.record.converter.InterviewConverterTask;
 import org.apache.openmeetings.core.data.record.converter.RecordingConverterTask;
 import org.apache.openmeetings.core.data.record.listener.StreamListener;
@@ -84,6 +85,8 @@ public class RecordingService implements IPendingServiceCallback {
 	private RecordingMetaDeltaDao metaDeltaDao;
 	@Autowired
 	private RecordingMetaDataDao metaDataDao;
+	@Autowired
+	private LiveTranscoder liveTranscoder;
 
 	@Override
 	public void resultReceived(IPendingServiceCall arg0) {
@@ -231,7 +234,7 @@ public class RecordingService implements IPendingServiceCallback {
 			log.debug("### recordingMetaDataId " + metaId);
 			log.debug("### isScreenData " + isScreenData);
 			log.debug("### isInterview " + isInterview);
-			StreamListener streamListener = new StreamListener(!isScreenData, streamName, conn.getScope(), metaId, isScreenData, isInterview, metaDataDao, metaDeltaDao);
+			StreamListener streamListener = new StreamListener(!isScreenData, streamName, conn.getScope(), metaId, isScreenData, isInterview, metaDataDao, metaDeltaDao, liveTranscoder);
 
 			streamListeners.put(metaId, streamListener);
 
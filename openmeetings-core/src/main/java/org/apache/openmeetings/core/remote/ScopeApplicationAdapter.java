@@ -44,11 +44,12 @@ import java.util.UUID;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.openmeetings.IApplication;
+import org.apache.openmeetings.core.data.file.FileConversionQueue;
+import org.apache.openmeetings.core.data.log.ConferenceLogWriter;
 import org.apache.openmeetings.core.remote.util.SessionVariablesUtil;
 import org.apache.openmeetings.core.util.WebSocketHelper;
 import org.apache.openmeetings.db.dao.basic.ConfigurationDao;
 import org.apache.openmeetings.db.dao.label.LabelDao;
-import org.apache.openmeetings.db.dao.log.ConferenceLogDao;
 import org.apache.openmeetings.db.dao.record.RecordingDao;
 import org.apache.openmeetings.db.dao.room.RoomDao;
 import org.apache.openmeetings.db.dao.room.SipDao;
@@ -110,7 +111,7 @@ public class ScopeApplicationAdapter extends MultiThreadedApplicationAdapter imp
 	@Autowired
 	private SessiondataDao sessiondataDao;
 	@Autowired
-	private ConferenceLogDao conferenceLogDao;
+	private ConferenceLogWriter conferenceLogWriter;
 	@Autowired
 	private UserDao userDao;
 	@Autowired
@@ -121,6 +122,10 @@ public class ScopeApplicationAdapter extends MultiThreadedApplicationAdapter imp
 	private RecordingDao recordingDao;
 	@Autowired
 	private ServerDao serverDao;
+	@Autowired
+	private FileConversionQueue conversionQueue;
+	@Autowired
+	private StreamRegistry streamRegistry;
 
 	@Override
 	public void resultReceived(IPendingServiceCall arg0) {
@@ -167,6 +172,7 @@ public class ScopeApplicationAdapter extends MultiThreadedApplicationAdapter imp
 			Version.logOMStarted();
 			recordingDao.resetProcessingStatus(); //we are starting so all processing recordings are now errors
 			sessionManager.clearCache(); // 'sticky' clients should be cleaned up from DB
+			conversionQueue.resume(); // conversions interrupted by restart should be completed
 		} catch (Exception err) {
 			log.error("[appStart]", err);
 		}
@@ -327,7 +333,7 @@ public class ScopeApplicationAdapter extends MultiThreadedApplicationAdapter imp
 		}
 
 		// Log the User
-		conferenceLogDao.add(ConferenceLog.Type.clientConnect,
+		conferenceLogWriter.add(ConferenceLog.Type.clientConnect,
 				rcm.getUserId(), streamId, null, rcm.getUserip(),
 				rcm.getScope());
 		return true;
@@ -569,6 +575,9 @@ public class ScopeApplicationAdapter extends MultiThreadedApplicationAdapter imp
 				app.exit(client.getPublicSID());
 			}
 			sessionManager.removeClient(client.getStreamid(), null);
+			if (!client.isScreenClient() && !Strings.isEmpty(client.getAvsettings())) {
+				sendStreamsChanged(scope, client.getRoomId());
+			}
 		} catch (Exception err) {
 			log.error("[roomLeaveByScope]", err);
 		}
@@ -653,6 +662,7 @@ public class ScopeApplicationAdapter extends MultiThreadedApplicationAdapter imp
 			}.start();
 			JSONObject obj = new JSONObject().put("uid", c.getPublicSID()).put("screenShare", c.isScreenClient());
 			WebSocketHelper.sendRoom(new TextRoomMessage(c.getRoomId(), c.getUserId(), RoomMessage.Type.newStream, obj.toString()));
+			sendStreamsChanged(current.getScope(), c.getRoomId());
 		} catch (Exception err) {
 			log.error("[streamPublishStart]", err);
 		}
@@ -701,6 +711,7 @@ public class ScopeApplicationAdapter extends MultiThreadedApplicationAdapter imp
 			sessionManager.updateClientByStreamId(streamId, rcl, false, null);
 			// Notify all clients of the same scope (room)
 			sendMessageToCurrentScope("closeStream", rcl, rcl.isMobile());
+			sendStreamsChanged(current.getScope(), rcl.getRoomId());
 			if (rcl.isScreenClient()) {
 				WebSocketHelper.sendRoom(new TextRoomMessage(rcl.getRoomId(), rcl.getUserId(), RoomMessage.Type.closeStream, rcl.getPublicSID()));
 			}
@@ -792,6 +803,27 @@ public class ScopeApplicationAdapter extends MultiThreadedApplicationAdapter imp
 		sendMessageToCurrentScope(scopeName, remoteMethodName, newMessage, sendSelf, false);
 	}
 
+	/**
+	 * Sends current version of the streams of the room to mobile clients of the room,
+	 * clients having different version should request the streams using {@link MobileService#getVideoStreams(long)}
+	 *
+	 * @param scope - scope of the room
+	 * @param roomId - id of the room
+	 */
+	public void sendStreamsChanged(IScope scope, Long roomId) {
+		if (roomId == null) {
+			return;
+		}
+		long version = streamRegistry.get(roomId).getVersion();
+		new MessageSender(scope, "streamsChanged", version, this) {
+			@Override
+			public boolean filter(IConnection conn) {
+				StreamClient rcl = sessionManager.getClientByStreamId(conn.getClient().getId(), null);
+				return rcl == null || !rcl.isMobile();
+			}
+		}.start();
+	}
+
 	public void sendToScope(final Long roomId, String method, Object obj) {
 		new MessageSender(getRoomScope("" + roomId), method, obj, this) {
 			@Override
@@ -0,0 +1,207 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.core.remote;
+
+import static org.apache.openmeetings.util.OpenmeetingsVariables.webAppRootKey;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.openmeetings.db.dao.server.ISessionManager;
+import org.apache.openmeetings.db.entity.room.StreamClient;
+import org.apache.wicket.util.string.Strings;
+import org.red5.logging.Red5LoggerFactory;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Registry of the audio/video streams published in the rooms, used by mobile clients.
+ *
+ * List of the streams of the room is built from the clients of the room on demand and reused
+ * until the room is marked as changed by {@link #changed(Long)} or the list is older than
+ * {@link #MAX_AGE} (clients might be changed by other nodes of the cluster). Version of the
+ * list is changed only if published streams are actually changed, so clients can poll
+ * the registry cheaply, passing the version they already have.
+ *
+ * Room of every client is tracked, so both rooms are marked when the client is moved,
+ * entry of the room is removed as soon as its last client leaves.
+ */
+public class StreamRegistry {
+	private static final Logger log = Red5LoggerFactory.getLogger(StreamRegistry.class, webAppRootKey);
+	static final long MAX_AGE = 5000;
+	// versions are unique across rooms, so version of removed room will never be reused
+	private final AtomicLong versions = new AtomicLong();
+	private final Map<Long, Streams> rooms = new ConcurrentHashMap<>();
+	// rooms of the clients at the time of the last update, clients are updated in place
+	private final Map<String, Long> clientRooms = new ConcurrentHashMap<>();
+	@Autowired
+	private ISessionManager sessionManager;
+
+	public StreamRegistry() {
+	}
+
+	public StreamRegistry(ISessionManager sessionManager) {
+		this.sessionManager = sessionManager;
+	}
+
+	public static class Streams {
+		public static final Streams EMPTY = new Streams(0, new ArrayList<>());
+		private final long version;
+		private final List<Map<String, Object>> list;
+		private final long created = System.currentTimeMillis();
+		private volatile boolean changed = false;
+
+		private Streams(long version, List<Map<String, Object>> list) {
+			this.version = version;
+			this.list = Collections.unmodifiableList(list);
+		}
+
+		public long getVersion() {
+			return version;
+		}
+
+		public List<Map<String, Object>> getList() {
+			return list;
+		}
+
+		private boolean isStale() {
+			return changed || System.currentTimeMillis() - created > MAX_AGE;
+		}
+	}
+
+	private static void add(Map<String, Object> m, String key, Object v) {
+		m.put(key, v == null ? "" : v);
+	}
+
+	private static Map<String, Object> toMap(StreamClient c) {
+		Map<String, Object> map = new HashMap<>();
+		add(map, "streamId", c.getStreamid());
+		add(map, "broadCastId", c.getBroadCastId());
+		add(map, "userId", c.getUserId());
+		add(map, "firstname", c.getFirstname());
+		add(map, "lastname", c.getLastname());
+		add(map, "publicSid", c.getPublicSID());
+		add(map, "login", c.getUsername());
+		add(map, "email", c.getEmail());
+		add(map, "avsettings", c.getAvsettings());
+		add(map, "interviewPodId", c.getInterviewPodId());
+		add(map, "vWidth", c.getVWidth());
+		add(map, "vHeight", c.getVHeight());
+		return map;
+	}
+
+	/**
+	 * @return streams of the room, <code>null</code> if the room has no clients
+	 */
+	private Streams build(Long roomId, Streams prev) {
+		List<StreamClient> clients = sessionManager.getClientListByRoom(roomId);
+		if (clients.isEmpty()) {
+			return null;
+		}
+		List<Map<String, Object>> list = new ArrayList<>();
+		for (StreamClient c : clients) {
+			if (!Strings.isEmpty(c.getAvsettings()) && !c.isScreenClient()) {
+				list.add(toMap(c));
+			}
+		}
+		if (prev != null && prev.list.equals(list)) {
+			return new Streams(prev.version, prev.list);
+		}
+		long version = versions.incrementAndGet();
+		log.debug("Streams of room {} are changed, version {}", roomId, version);
+		return new Streams(version, list);
+	}
+
+	/**
+	 * @param roomId - id of the room
+	 * @return current streams of the room, {@link Streams#EMPTY} if the room has no clients
+	 */
+	public Streams get(Long roomId) {
+		if (roomId == null) {
+			return Streams.EMPTY;
+		}
+		Streams s = rooms.get(roomId);
+		if (s != null && !s.isStale()) {
+			return s;
+		}
+		s = rooms.compute(roomId, (id, prev) -> prev != null && !prev.isStale() ? prev : build(id, prev));
+		return s == null ? Streams.EMPTY : s;
+	}
+
+	/**
+	 * Marks streams of the room of the client as changed, room the client was moved from is also marked
+	 *
+	 * @param streamId - id of the client
+	 * @param roomId - current room of the client, can be <code>null</code>
+	 */
+	public void update(String streamId, Long roomId) {
+		if (streamId == null) {
+			return;
+		}
+		Long prev = roomId == null ? clientRooms.remove(streamId) : clientRooms.put(streamId, roomId);
+		if (prev != null && !prev.equals(roomId)) {
+			left(prev);
+		}
+		changed(roomId);
+	}
+
+	/**
+	 * Marks streams of the room of removed client as changed
+	 *
+	 * @param streamId - id of the client
+	 */
+	public void remove(String streamId) {
+		if (streamId == null) {
+			return;
+		}
+		left(clientRooms.remove(streamId));
+	}
+
+	private void left(Long roomId) {
+		if (roomId == null) {
+			return;
+		}
+		if (sessionManager.getClientListByRoom(roomId).isEmpty()) {
+			log.debug("Last client has left room {}, streams are removed", roomId);
+			rooms.remove(roomId);
+		} else {
+			changed(roomId);
+		}
+	}
+
+	/**
+	 * Marks streams of the room as changed, list will be rebuilt on next request
+	 *
+	 * @param roomId - id of the room, can be <code>null</code>
+	 */
+	public void changed(Long roomId) {
+		if (roomId == null) {
+			return;
+		}
+		Streams s = rooms.get(roomId);
+		if (s != null) {
+			s.changed = true;
+		}
+	}
+}
@@ -24,11 +24,14 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.UUID;
 
+import org.apache.openmeetings.core.remote.StreamRegistry;
 import org.apache.openmeetings.core.session.store.IClientPersistenceStore;
 import org.apache.openmeetings.db.dao.server.ISessionManager;
 import org.apache.openmeetings.db.dto.basic.SearchResult;
@@ -53,6 +56,8 @@ public class SessionManager implements ISessionManager {
 
 	@Autowired
 	private ServerUtil serverUtil;
+	@Autowired
+	private StreamRegistry streamRegistry;
 
 	/**
 	 * Injected via Spring, needs a getter/setter because it can be configured
@@ -95,6 +100,7 @@ public class SessionManager implements ISessionManager {
 		}
 
 		cache.put(c.getStreamid(), c);
+		streamRegistry.update(c.getStreamid(), c.getRoomId());
 		return c;
 	}
 
@@ -222,6 +228,7 @@ public class SessionManager implements ISessionManager {
 				StreamClient rclSaved = cache.get(server, rclUsual.getStreamid());
 				if (rclSaved != null) {
 					cache.put(rclUsual.getStreamid(), rclUsual);
+					streamRegistry.update(rclUsual.getStreamid(), rclUsual.getRoomId());
 				} else {
 					log.debug("Tried to update a non existing Client " + rclUsual.getStreamid());
 				}
@@ -245,6 +252,8 @@ public class SessionManager implements ISessionManager {
 
 			if (rclSaved != null) {
 				cache.put(streamId, rcm);
+				// client might be moved to another room, previous room is tracked by the registry
+				streamRegistry.update(streamId, rcm.getRoomId());
 				return true;
 			} else {
 				log.debug("Tried to update a non existing Client " + streamId);
@@ -263,6 +272,7 @@ public class SessionManager implements ISessionManager {
 		try {
 			if (cache.containsKey(server,streamId)) {
 				cache.remove(server,streamId);
+				streamRegistry.remove(streamId);
 				return true;
 			} else {
 				log.debug("Tried to remove a non existing Client " + streamId);
@@ -303,6 +313,16 @@ public class SessionManager implements ISessionManager {
 		return null;
 	}
 
+	@Override
+	public Map<Long, Integer> getRoomOccupancy() {
+		try {
+			return cache.getRoomOccupancy();
+		} catch (Exception err) {
+			log.error("[getRoomOccupancy]", err);
+		}
+		return new HashMap<>();
+	}
+
 	@Override
 	public List<StreamClient> getCurrentModeratorByRoom(Long roomId) {
 		List<StreamClient> rclList = new LinkedList<>();
@@ -112,6 +112,11 @@ public class DatabaseStore implements IClientPersistenceStore {
 		return clientDao.getClientsByRoomId(roomId);
 	}
 
+	@Override
+	public Map<Long, Integer> getRoomOccupancy() {
+		return clientDao.getRoomOccupancy();
+	}
+
 	@Override
 	public void remove(Server server, String streamId) {
 		clientDao.removeClientByServerAndStreamId(server, streamId);
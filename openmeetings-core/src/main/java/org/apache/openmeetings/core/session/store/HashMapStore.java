@@ -23,7 +23,6 @@ import static org.apache.openmeetings.util.OpenmeetingsVariables.webAppRootKey;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -46,6 +45,9 @@ import org.slf4j.Logger;
  * <li>roomIds by server</li>
  * </ul>
  *
+ * Clients are indexed by room on every put and remove, so clients of the room,
+ * active rooms and number of users in each room are available without iterating all the clients.
+ *
  * @author sebawagner
  *
  */
@@ -53,15 +55,63 @@ public class HashMapStore implements IClientPersistenceStore {
 	protected static final Logger log = Red5LoggerFactory.getLogger(HashMapStore.class, webAppRootKey);
 
 	private Map<String, StreamClient> clientsByStreamId = new ConcurrentHashMap<>();
+	// room index, modified only under the lock
+	private final Object indexLock = new Object();
+	private final Map<String, Occupant> occupants = new HashMap<>();
+	private final Map<Long, Set<String>> streamIdsByRoom = new ConcurrentHashMap<>();
+	private final Map<Long, Integer> usersByRoom = new ConcurrentHashMap<>();
+
+	/**
+	 * Indexed state of the client, client object might be modified before it is put again
+	 */
+	private static class Occupant {
+		private final Long roomId;
+		private final boolean user;
+
+		private Occupant(StreamClient c) {
+			roomId = c.getRoomId();
+			user = !c.isScreenClient();
+		}
+	}
 
 	@Override
 	public void clear() {
-		clientsByStreamId = new ConcurrentHashMap<>();
+		synchronized (indexLock) {
+			clientsByStreamId = new ConcurrentHashMap<>();
+			occupants.clear();
+			streamIdsByRoom.clear();
+			usersByRoom.clear();
+		}
+	}
+
+	private void index(String streamId, StreamClient c) {
+		synchronized (indexLock) {
+			Occupant o = occupants.remove(streamId);
+			if (o != null) {
+				Set<String> ids = streamIdsByRoom.get(o.roomId);
+				ids.remove(streamId);
+				if (ids.isEmpty()) {
+					streamIdsByRoom.remove(o.roomId);
+				}
+				if (o.user) {
+					usersByRoom.computeIfPresent(o.roomId, (id, count) -> count > 1 ? count - 1 : null);
+				}
+			}
+			if (c != null && c.getRoomId() != null) {
+				o = new Occupant(c);
+				occupants.put(streamId, o);
+				streamIdsByRoom.computeIfAbsent(o.roomId, id -> ConcurrentHashMap.newKeySet()).add(streamId);
+				if (o.user) {
+					usersByRoom.merge(o.roomId, 1, Integer::sum);
+				}
+			}
+		}
 	}
 
 	@Override
 	public void put(String streamId, StreamClient rcl) {
 		clientsByStreamId.put(rcl.getStreamid(), rcl);
+		index(rcl.getStreamid(), rcl);
 	}
 
 	@Override
@@ -132,18 +182,27 @@ public class HashMapStore implements IClientPersistenceStore {
 	@Override
 	public  List<StreamClient> getClientsByRoomId(Long roomId) {
 		List<StreamClient> clientList = new ArrayList<>();
-		for (Map.Entry<String, StreamClient> e: clientsByStreamId.entrySet()) {
-			StreamClient cl = e.getValue();
-			if (cl.getRoomId() != null && cl.getRoomId().equals(roomId)) {
-				clientList.add(cl);
+		Set<String> ids = roomId == null ? null : streamIdsByRoom.get(roomId);
+		if (ids != null) {
+			for (String streamId : ids) {
+				StreamClient cl = clientsByStreamId.get(streamId);
+				if (cl != null && roomId.equals(cl.getRoomId())) {
+					clientList.add(cl);
+				}
 			}
 		}
 		return clientList;
 	}
 
+	@Override
+	public Map<Long, Integer> getRoomOccupancy() {
+		return new HashMap<>(usersByRoom);
+	}
+
 	@Override
 	public void remove(Server server, String streamId) {
 		clientsByStreamId.remove(streamId);
+		index(streamId, null);
 	}
 
 	@Override
@@ -193,15 +252,13 @@ public class HashMapStore implements IClientPersistenceStore {
 
 	@Override
 	public List<Long> getRoomsIdsByServer(Server server) {
-		Set<Long> rooms = new HashSet<>();
-		for (Map.Entry<String, StreamClient> e: clientsByStreamId.entrySet()) {
-			StreamClient cl = e.getValue();
-			Long roomId = cl.getRoomId();
-			if (roomId != null && roomId.longValue() > 0 && !rooms.contains(roomId)) {
+		List<Long> rooms = new ArrayList<>();
+		for (Long roomId : streamIdsByRoom.keySet()) {
+			if (roomId.longValue() > 0) {
 				rooms.add(roomId);
 			}
 		}
-		return new ArrayList<>(rooms);
+		return rooms;
 	}
 
 }
@@ -103,6 +103,13 @@ public interface IClientPersistenceStore {
 	 */
 	List<StreamClient> getClientsByRoomId(Long roomId);
 
+	/**
+	 * Screen sharing clients are not counted
+	 *
+	 * @return number of users in each room having users
+	 */
+	Map<Long, Integer> getRoomOccupancy();
+
 	void remove(Server server, String streamId);
 
 	int size();
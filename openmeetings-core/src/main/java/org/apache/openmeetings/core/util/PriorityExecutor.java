@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.core.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Fixed size pool executing urgent tasks before the others, tasks of the same priority
+ * are executed in the order of submission. Number of tasks running simultaneously
+ * never exceeds the number of threads.
+ */
+public class PriorityExecutor {
+	private final ThreadPoolExecutor pool;
+	private final AtomicLong seq = new AtomicLong();
+
+	private static class Task<T> extends FutureTask<T> implements Comparable<Task<?>> {
+		private final boolean urgent;
+		private final long seq;
+
+		private Task(Callable<T> callable, boolean urgent, long seq) {
+			super(callable);
+			this.urgent = urgent;
+			this.seq = seq;
+		}
+
+		@Override
+		public int compareTo(Task<?> o) {
+			if (urgent != o.urgent) {
+				return urgent ? -1 : 1;
+			}
+			return Long.compare(seq, o.seq);
+		}
+	}
+
+	/**
+	 * @param prefix - prefix of the names of the threads
+	 * @param threads - number of the threads
+	 */
+	public PriorityExecutor(String prefix, int threads) {
+		pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS
+				, new PriorityBlockingQueue<>(), new CustomizableThreadFactory(prefix));
+		pool.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * @param callable - task to execute
+	 * @param urgent - urgent task is executed before all the tasks which are not urgent
+	 * @return future of the task
+	 */
+	public <T> Future<T> submit(Callable<T> callable, boolean urgent) {
+		Task<T> task = new Task<>(callable, urgent, seq.incrementAndGet());
+		pool.execute(task);
+		return task;
+	}
+
+	/**
+	 * Stops the pool, running tasks are interrupted, pending tasks are cancelled
+	 */
+	public void shutdownNow() {
+		for (Runnable r : pool.shutdownNow()) {
+			((Future<?>)r).cancel(false);
+		}
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.core.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded log of the recent events of the room.
+ *
+ * Every event sent to the room gets next number of the room sequence, events which are
+ * necessary to restore the state of the room (membership and rights changes, chat messages)
+ * are also stored in the log. Client restoring lost connection reports the last sequence
+ * number it has seen and receives only missed events, full state of the room should be
+ * sent if some of missed events were already evicted from the log.
+ *
+ * Log of the room is removed as soon as the last client leaves the room, the next log of the room
+ * continues numbering after all the numbers used by removed logs, so clients which have seen removed log get full state.
+ */
+public class RoomEventLog {
+	public static final int CAPACITY = 500;
+	private static final Map<Long, RoomEventLog> LOGS = new ConcurrentHashMap<>();
+	// the greatest sequence number used by removed logs
+	private static final AtomicLong REMOVED_SEQ = new AtomicLong();
+	private final int capacity;
+	private final Deque<Event> events = new ArrayDeque<>();
+	private long seq;
+	private long evicted; // sequence number of the newest event removed from the log
+	private boolean removed = false;
+
+	public static class Event {
+		private final long seq;
+		private final Object data;
+
+		Event(long seq, Object data) {
+			this.seq = seq;
+			this.data = data;
+		}
+
+		public long getSeq() {
+			return seq;
+		}
+
+		public Object getData() {
+			return data;
+		}
+	}
+
+	public RoomEventLog(int capacity) {
+		this(capacity, 0);
+	}
+
+	private RoomEventLog(int capacity, long start) {
+		this.capacity = capacity;
+		seq = start;
+		evicted = start;
+	}
+
+	public static RoomEventLog get(Long roomId) {
+		return LOGS.computeIfAbsent(roomId, id -> new RoomEventLog(CAPACITY, REMOVED_SEQ.get()));
+	}
+
+	/**
+	 * Removes the log of the room, should be called when the last client leaves the room
+	 *
+	 * @param roomId - id of the room
+	 */
+	public static void remove(Long roomId) {
+		RoomEventLog l = LOGS.remove(roomId);
+		if (l != null) {
+			synchronized (l) {
+				l.removed = true;
+				l.events.clear();
+				l.onRemoved();
+			}
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the log of the room is kept in memory
+	 */
+	public static boolean exists(Long roomId) {
+		return LOGS.containsKey(roomId);
+	}
+
+	private void onRemoved() {
+		REMOVED_SEQ.accumulateAndGet(seq, Math::max);
+	}
+
+	/**
+	 * @return next sequence number for the event which need not to be stored
+	 */
+	public synchronized long next() {
+		++seq;
+		if (removed) {
+			onRemoved();
+		}
+		return seq;
+	}
+
+	/**
+	 * Stores the event, the oldest event is evicted if the log is full
+	 *
+	 * @return sequence number of the event
+	 */
+	public synchronized long add(Object data) {
+		if (removed) {
+			// nobody is in the room, the event will not be requested
+			return next();
+		}
+		events.addLast(new Event(++seq, data));
+		if (events.size() > capacity) {
+			evicted = events.removeFirst().seq;
+		}
+		return seq;
+	}
+
+	public synchronized long getSeq() {
+		return seq;
+	}
+
+	/**
+	 * @param since - the last sequence number seen by the client
+	 * @return stored events sent after given sequence number, <code>null</code> if some of them
+	 *  were already evicted or sequence number is unknown, full state should be sent in this case
+	 */
+	public synchronized List<Event> getSince(long since) {
+		if (since < evicted || since > seq) {
+			return null;
+		}
+		List<Event> list = new ArrayList<>();
+		for (Event e : events) {
+			if (e.seq > since) {
+				list.add(e);
+			}
+		}
+		return list;
+	}
+}
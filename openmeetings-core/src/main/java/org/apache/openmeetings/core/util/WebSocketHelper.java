@@ -23,7 +23,9 @@ import static org.apache.wicket.util.string.Strings.escapeMarkup;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Function;
@@ -56,6 +58,9 @@ public class WebSocketHelper {
 	public static final String ID_ALL = ID_TAB_PREFIX + "all";
 	public static final String ID_ROOM_PREFIX = ID_TAB_PREFIX + "r";
 	public static final String ID_USER_PREFIX = ID_TAB_PREFIX + "u";
+	// events required to restore the state of the room, are stored in the room event log
+	private static final Set<RoomMessage.Type> LOGGED = EnumSet.of(RoomMessage.Type.roomEnter, RoomMessage.Type.roomExit
+			, RoomMessage.Type.rightUpdated, RoomMessage.Type.roomClosed);
 
 	public static void sendClient(final Client _c, byte[] b) {
 		if (_c != null) {
@@ -70,6 +75,8 @@ public class WebSocketHelper {
 	}
 
 	public static void sendRoom(final RoomMessage m) {
+		RoomEventLog rlog = RoomEventLog.get(m.getRoomId());
+		m.setSeq(LOGGED.contains(m.getType()) ? rlog.add(m) : rlog.next());
 		log.debug("Sending WebSocket message: {} {}", m.getType(), m instanceof TextRoomMessage ? ((TextRoomMessage)m).getText() : "");
 		sendRoom(m.getRoomId(), (t, c) -> t.sendMessage(m), null);
 	}
@@ -121,6 +128,7 @@ public class WebSocketHelper {
 	}
 
 	public static void sendRoom(ChatMessage m, JSONObject msg) {
+		msg.put("seq", RoomEventLog.get(m.getToRoom().getId()).add(m));
 		sendRoom(m.getToRoom().getId(), msg
 				, c -> !m.isNeedModeration() || (m.isNeedModeration() && c.hasRight(Right.moderator))
 				, null);
@@ -0,0 +1,235 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.core.util;
+
+import static org.apache.openmeetings.util.OpenmeetingsVariables.webAppRootKey;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+import org.red5.logging.Red5LoggerFactory;
+import org.slf4j.Logger;
+
+/**
+ * Bounded queue of the entities waiting to be stored in batches by the background writer.
+ *
+ * Entities of the failed transaction can't be persisted again, so copies are stored on every attempt.
+ * If the batch fails its entities are retried one at a time, so single broken entity doesn't block
+ * the others, entity failed {@link #MAX_ATTEMPTS} times is dropped. Order of the entities is preserved.
+ * While storage is failing no synchronous flushes are made and entities not fitting into the full
+ * queue are dropped.
+ *
+ * @param <T> - type of the entity
+ */
+public class WriteBehindQueue<T> {
+	private static final Logger log = Red5LoggerFactory.getLogger(WriteBehindQueue.class, webAppRootKey);
+	public static final int MAX_ATTEMPTS = 5;
+	private final String name;
+	private final int capacity;
+	private final int batchSize;
+	private final UnaryOperator<T> copy;
+	private final Consumer<List<T>> store;
+	private final BiConsumer<T, T> stored;
+	private final Deque<Entry<T>> pending = new ArrayDeque<>();
+	private final Object flushLock = new Object();
+	private final AtomicLong written = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private volatile boolean failing = false;
+
+	private static class Entry<T> {
+		private final T item;
+		private int attempts = 0;
+
+		private Entry(T item) {
+			this.item = item;
+		}
+	}
+
+	/**
+	 * @param name - name of the entities, used in the log
+	 * @param capacity - max number of entities waiting to be stored
+	 * @param batchSize - max number of entities stored in one transaction
+	 * @param copy - creates copy of the entity to be stored
+	 * @param store - stores the list of entities in one transaction
+	 * @param stored - called with the entity and its stored copy, can be <code>null</code>
+	 */
+	public WriteBehindQueue(String name, int capacity, int batchSize, UnaryOperator<T> copy, Consumer<List<T>> store, BiConsumer<T, T> stored) {
+		this.name = name;
+		this.capacity = capacity;
+		this.batchSize = batchSize;
+		this.copy = copy;
+		this.store = store;
+		this.stored = stored;
+	}
+
+	public WriteBehindQueue(String name, int capacity, int batchSize, UnaryOperator<T> copy, Consumer<List<T>> store) {
+		this(name, capacity, batchSize, copy, store, null);
+	}
+
+	private boolean tryAdd(T item) {
+		synchronized (pending) {
+			if (pending.size() >= capacity) {
+				return false;
+			}
+			pending.add(new Entry<>(item));
+			return true;
+		}
+	}
+
+	private void drop(T item) {
+		if (dropped.incrementAndGet() % 1000 == 1) {
+			log.warn("Too many {} are waiting to be stored, dropping {}, total dropped: {}", name, item, dropped.get());
+		}
+	}
+
+	/**
+	 * Adds the entity to the queue, never blocks
+	 *
+	 * @return <code>false</code> if the queue is full and the entity was dropped
+	 */
+	public boolean offer(T item) {
+		if (tryAdd(item)) {
+			return true;
+		}
+		drop(item);
+		return false;
+	}
+
+	/**
+	 * Adds the entity to the queue, pending entities are stored synchronously if the queue is full
+	 * and storage is not failing
+	 *
+	 * @return <code>false</code> if the entity was dropped
+	 */
+	public boolean add(T item) {
+		if (tryAdd(item)) {
+			return true;
+		}
+		if (!failing) {
+			log.warn("Too many {} are waiting to be stored, storing synchronously", name);
+			flush();
+			if (tryAdd(item)) {
+				return true;
+			}
+		}
+		drop(item);
+		return false;
+	}
+
+	private void store(List<Entry<T>> batch) {
+		List<T> copies = new ArrayList<>(batch.size());
+		for (Entry<T> e : batch) {
+			copies.add(copy.apply(e.item));
+		}
+		store.accept(copies);
+		if (stored != null) {
+			for (int i = 0; i < batch.size(); ++i) {
+				stored.accept(batch.get(i).item, copies.get(i));
+			}
+		}
+		written.addAndGet(batch.size());
+	}
+
+	/**
+	 * Stores all the pending entities
+	 *
+	 * @return <code>true</code> if all the entities were stored or dropped,
+	 * <code>false</code> if storage is failing and some of them are still pending
+	 */
+	public boolean flush() {
+		synchronized (flushLock) {
+			while (true) {
+				List<Entry<T>> batch = new ArrayList<>(batchSize);
+				synchronized (pending) {
+					while (batch.size() < batchSize && !pending.isEmpty()) {
+						batch.add(pending.poll());
+					}
+				}
+				if (batch.isEmpty()) {
+					failing = false;
+					return true;
+				}
+				try {
+					store(batch);
+					failing = false;
+					continue;
+				} catch (Exception e) {
+					log.warn("Unable to store batch of {}, storing one at a time", name, e);
+				}
+				boolean anyStored = false;
+				List<Entry<T>> retry = new ArrayList<>();
+				for (Entry<T> e : batch) {
+					try {
+						store(Collections.singletonList(e));
+						anyStored = true;
+					} catch (Exception err) {
+						if (++e.attempts < MAX_ATTEMPTS) {
+							log.warn("Unable to store {}, will retry", e.item, err);
+							retry.add(e);
+						} else {
+							log.error("Unable to store {} in {} attempts, dropped", e.item, MAX_ATTEMPTS, err);
+							dropped.incrementAndGet();
+						}
+					}
+				}
+				synchronized (pending) {
+					// order of entities should be preserved
+					for (int i = retry.size() - 1; i >= 0; --i) {
+						pending.addFirst(retry.get(i));
+					}
+				}
+				failing = !anyStored && !retry.isEmpty();
+				if (failing) {
+					// storage is not available, next attempt will be made by the next flush
+					return false;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return number of entities waiting to be stored
+	 */
+	public int size() {
+		synchronized (pending) {
+			return pending.size();
+		}
+	}
+
+	/**
+	 * @return number of entities stored since start
+	 */
+	public long getWritten() {
+		return written.get();
+	}
+
+	/**
+	 * @return number of entities dropped since start
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+}
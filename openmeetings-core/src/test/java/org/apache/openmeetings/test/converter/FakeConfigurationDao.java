@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.test.converter;
+
+import java.lang.reflect.Constructor;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.openmeetings.db.dao.basic.ConfigurationDao;
+
+/**
+ * In-memory configuration, default value is returned for the keys not set
+ */
+class FakeConfigurationDao extends ConfigurationDao {
+	final Map<String, String> values = new HashMap<>();
+
+	@Override
+	public <T> T getConfValue(String key, Class<T> type, String defaultValue) {
+		String val = values.containsKey(key) ? values.get(key) : defaultValue;
+		if (val == null) {
+			return null;
+		}
+		try {
+			if (type.isAssignableFrom(String.class)) {
+				return type.cast(val);
+			}
+			Constructor<T> c = type.getConstructor(String.class);
+			return c.newInstance(val);
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
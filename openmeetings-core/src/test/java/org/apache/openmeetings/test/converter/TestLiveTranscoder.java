@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.test.converter;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.openmeetings.core.converter.LiveTranscoder;
+import org.apache.openmeetings.db.entity.record.RecordingMetaData;
+import org.apache.openmeetings.util.process.ConverterProcessResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestLiveTranscoder {
+	private static final int SEGMENT = 300000;
+	private File dir;
+	private FakeTranscoder transcoder;
+
+	/**
+	 * Segments are "encoded" and "concatenated" by copying, ffmpeg is not required
+	 */
+	private static class FakeTranscoder extends LiveTranscoder {
+		private final List<String> failed = new ArrayList<>();
+		private volatile CountDownLatch release = null;
+		private String concatList = null;
+
+		FakeTranscoder() {
+			super(new FakeConfigurationDao(), null);
+		}
+
+		private static ConverterProcessResult result(boolean ok) {
+			ConverterProcessResult r = new ConverterProcessResult();
+			r.setExitCode(ok ? 0 : -1);
+			return r;
+		}
+
+		@Override
+		protected ConverterProcessResult encode(Long metaDataId, File flv, File mp4) throws IOException {
+			CountDownLatch r = release;
+			if (r != null) {
+				try {
+					r.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			if (failed.contains(flv.getName())) {
+				return result(false);
+			}
+			FileUtils.copyFile(flv, mp4);
+			return result(true);
+		}
+
+		@Override
+		protected ConverterProcessResult concat(File list, File out) throws IOException {
+			concatList = new String(Files.readAllBytes(list.toPath()), UTF_8);
+			FileUtils.writeStringToFile(out, concatList, UTF_8);
+			return result(true);
+		}
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		dir = Files.createTempDirectory("live").toFile();
+		transcoder = new FakeTranscoder();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		transcoder.destroy();
+		FileUtils.deleteDirectory(dir);
+	}
+
+	private static RecordingMetaData meta(Long id) {
+		RecordingMetaData m = new RecordingMetaData();
+		m.setId(id);
+		m.setStreamName("stream_" + id);
+		return m;
+	}
+
+	private File segment(Long id, int idx) throws IOException {
+		File f = new File(dir, String.format("stream_%s_segment_%s.flv", id, idx));
+		FileUtils.writeStringToFile(f, "segment " + idx, UTF_8);
+		return f;
+	}
+
+	@Test
+	public void testSegmentCut() {
+		assertFalse("Segment should not be cut before its length", LiveTranscoder.isSegmentComplete(1000, 1000 + SEGMENT - 1, true, SEGMENT));
+		assertFalse("Segment should be cut at keyframe only", LiveTranscoder.isSegmentComplete(1000, 1000 + SEGMENT, false, SEGMENT));
+		assertTrue("Segment should be cut at the first keyframe after its length", LiveTranscoder.isSegmentComplete(1000, 1000 + SEGMENT + 40, true, SEGMENT));
+	}
+
+	@Test
+	public void testConcat() throws Exception {
+		Long id = 1L;
+		List<File> flvs = new ArrayList<>();
+		for (int i = 0; i < 3; ++i) {
+			flvs.add(segment(id, i));
+		}
+		transcoder.addSegment(id, flvs.get(0), 0, SEGMENT);
+		// gap between segments
+		transcoder.addSegment(id, flvs.get(1), SEGMENT + 500, 2 * SEGMENT);
+		transcoder.addSegment(id, flvs.get(2), 2 * SEGMENT, -1);
+
+		File out = new File(dir, "live.mp4");
+		List<ConverterProcessResult> logs = new ArrayList<>();
+		assertTrue("Live video should be created", transcoder.finish(meta(id), out, logs));
+		assertEquals("Every segment and concatenation should be logged", 4, logs.size());
+		assertEquals("Segments should be concatenated in order with their durations"
+				, "ffconcat version 1.0\n"
+				+ "file 'stream_1_segment_0.mp4'\n"
+				+ String.format(Locale.ROOT, "duration %.3f%n", 300.0)
+				+ "file 'stream_1_segment_1.mp4'\n"
+				+ String.format(Locale.ROOT, "duration %.3f%n", 299.5)
+				+ "file 'stream_1_segment_2.mp4'\n"
+				, transcoder.concatList);
+		assertTrue("Output should be created", out.exists());
+		String[] left = dir.list();
+		assertEquals("Segments should be removed", 1, left.length);
+		assertEquals("Stream should be removed", 0, transcoder.getStreamCount());
+	}
+
+	@Test
+	public void testFailedSegment() throws Exception {
+		Long id = 2L;
+		File s0 = segment(id, 0), s1 = segment(id, 1);
+		transcoder.failed.add(s1.getName());
+		transcoder.addSegment(id, s0, 0, SEGMENT);
+		transcoder.addSegment(id, s1, SEGMENT, -1);
+
+		assertFalse("Full conversion should be performed if segment failed", transcoder.finish(meta(id), new File(dir, "live.mp4"), new ArrayList<>()));
+		assertNull("Segments should not be concatenated", transcoder.concatList);
+		assertEquals("Segments should be removed", 0, dir.list().length);
+	}
+
+	@Test
+	public void testNotStarted() throws Exception {
+		assertFalse("Stream not encoded during the recording should be fully converted"
+				, transcoder.finish(meta(3L), new File(dir, "live.mp4"), new ArrayList<>()));
+	}
+
+	@Test(timeout = 10000)
+	public void testStale() throws Exception {
+		Long id = 4L;
+		transcoder.release = new CountDownLatch(1);
+		File s0 = segment(id, 0);
+		transcoder.addSegment(id, s0, 0, -1);
+
+		long now = System.currentTimeMillis();
+		transcoder.cleanup(now);
+		assertEquals("Fresh stream should be kept", 1, transcoder.getStreamCount());
+		transcoder.cleanup(now + LiveTranscoder.STALE_TIMEOUT + 1000);
+		assertEquals("Stream not finished in time should be removed", 0, transcoder.getStreamCount());
+
+		// segment being encoded removes its files as soon as encoding is complete
+		transcoder.release.countDown();
+		while (dir.list().length > 0) {
+			Thread.sleep(10);
+		}
+		assertFalse("Discarded stream should not be finished", transcoder.finish(meta(id), new File(dir, "live.mp4"), new ArrayList<>()));
+	}
+}
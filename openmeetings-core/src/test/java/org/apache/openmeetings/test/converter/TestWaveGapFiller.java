@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.test.converter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+
+import org.apache.openmeetings.core.converter.WaveGapFiller;
+import org.apache.openmeetings.core.converter.WaveGapFiller.Format;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestWaveGapFiller {
+	private static final int RATE = 8000;
+	private File dir;
+
+	@Before
+	public void setUp() throws IOException {
+		dir = Files.createTempDirectory("wave").toFile();
+	}
+
+	@After
+	public void tearDown() {
+		for (File f : dir.listFiles()) {
+			f.delete();
+		}
+		dir.delete();
+	}
+
+	private static void writeInt(OutputStream os, int v) throws IOException {
+		os.write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(v).array());
+	}
+
+	private static void writeShort(OutputStream os, int v) throws IOException {
+		os.write(ByteBuffer.allocate(2).order(ByteOrder.LITTLE_ENDIAN).putShort((short)v).array());
+	}
+
+	/**
+	 * Writes mono WAV file, samples are never silent
+	 */
+	private static File writeWave(File f, int frames, int bits, boolean extraChunk, boolean unknownSize) throws IOException {
+		int bytes = bits / 8;
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		for (int i = 0; i < frames; ++i) {
+			int v = i % 100 + 1;
+			if (bytes == 1) {
+				data.write(0x80 + v);
+			} else {
+				writeShort(data, v);
+			}
+		}
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		os.write("RIFF".getBytes("US-ASCII"));
+		writeInt(os, unknownSize ? -1 : 36 + data.size() + (extraChunk ? 12 : 0));
+		os.write("WAVE".getBytes("US-ASCII"));
+		os.write("fmt ".getBytes("US-ASCII"));
+		writeInt(os, 16);
+		writeShort(os, 1); // PCM
+		writeShort(os, 1); // mono
+		writeInt(os, RATE);
+		writeInt(os, RATE * bytes);
+		writeShort(os, bytes);
+		writeShort(os, bits);
+		if (extraChunk) {
+			os.write("LIST".getBytes("US-ASCII"));
+			writeInt(os, 3);
+			os.write(new byte[] {1, 2, 3, 0}); // odd size chunk is padded
+		}
+		os.write("data".getBytes("US-ASCII"));
+		writeInt(os, unknownSize ? -1 : data.size());
+		data.writeTo(os);
+		Files.write(f.toPath(), os.toByteArray());
+		return f;
+	}
+
+	private static int[] readSamples(File f, Format fmt) throws IOException {
+		byte[] b = Files.readAllBytes(f.toPath());
+		int bytes = fmt.getBitsPerSample() / 8;
+		int[] res = new int[(int)fmt.getFrames()];
+		ByteBuffer bb = ByteBuffer.wrap(b).order(ByteOrder.LITTLE_ENDIAN);
+		bb.position((int)fmt.getDataOffset());
+		for (int i = 0; i < res.length; ++i) {
+			res[i] = bytes == 1 ? (bb.get() & 0xFF) - 0x80 : bb.getShort();
+		}
+		return res;
+	}
+
+	private static void assertSilence(int[] samples, int from, int to) {
+		for (int i = from; i < to; ++i) {
+			assertEquals("Sample should be silent: " + i, 0, samples[i]);
+		}
+	}
+
+	private static void assertData(int[] samples, int from, int to, int srcFrom) {
+		for (int i = from; i < to; ++i) {
+			assertEquals("Sample should be copied: " + i, (srcFrom + i - from) % 100 + 1, samples[i]);
+		}
+	}
+
+	@Test
+	public void testStartEnd() throws IOException {
+		File in = writeWave(new File(dir, "in.wav"), RATE, 16, false, false);
+		File out = new File(dir, "out.wav");
+		Format f = new WaveGapFiller().addStart(.5).addEnd(.25).addStart(.25).fill(in, out);
+		assertEquals("Header should be canonical", 44, f.getDataOffset());
+		assertEquals("Length should be increased", 2 * RATE, f.getFrames());
+		assertEquals("File should match the format", 44 + 2 * 2 * RATE, out.length());
+
+		Format read = WaveGapFiller.getFormat(out);
+		assertEquals("Written header should be valid", f.getDataSize(), read.getDataSize());
+		assertEquals("Rate should be preserved", RATE, read.getSampleRate());
+		int[] s = readSamples(out, read);
+		assertSilence(s, 0, 3 * RATE / 4);
+		assertData(s, 3 * RATE / 4, 7 * RATE / 4, 0);
+		assertSilence(s, 7 * RATE / 4, 2 * RATE);
+	}
+
+	@Test
+	public void testGaps() throws IOException {
+		File in = writeWave(new File(dir, "in.wav"), RATE, 16, true, true);
+		File out = new File(dir, "out.wav");
+		WaveGapFiller filler = new WaveGapFiller();
+		// gaps are added unordered
+		for (int i = 9; i > 0; --i) {
+			filler.add(.1 * i, .01);
+		}
+		Format f = filler.fill(in, out);
+		int gap = RATE / 100, step = RATE / 10;
+		assertEquals("Length should be increased", RATE + 9 * gap, f.getFrames());
+		int[] s = readSamples(out, WaveGapFiller.getFormat(out));
+		for (int i = 0; i < 10; ++i) {
+			int start = i * (step + gap);
+			assertData(s, start, start + step, i * step);
+			if (i < 9) {
+				assertSilence(s, start + step, start + step + gap);
+			}
+		}
+	}
+
+	@Test
+	public void testPositionAfterEnd() throws IOException {
+		File in = writeWave(new File(dir, "in.wav"), RATE / 2, 8, false, false);
+		File out = new File(dir, "out.wav");
+		Format f = new WaveGapFiller().add(10, .5).add(-1, -1).fill(in, out);
+		assertEquals("Negative gaps should be ignored", RATE, f.getFrames());
+		int[] s = readSamples(out, f);
+		assertData(s, 0, RATE / 2, 0);
+		// 8-bit samples are unsigned
+		assertSilence(s, RATE / 2, RATE);
+	}
+
+	@Test
+	public void testNotWave() throws IOException {
+		File in = new File(dir, "in.wav");
+		Files.write(in.toPath(), "not a wave file".getBytes("US-ASCII"));
+		try {
+			new WaveGapFiller().addStart(1).fill(in, new File(dir, "out.wav"));
+			fail("Invalid file should be rejected");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.test.converter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+
+import org.apache.openmeetings.core.converter.WaveGapFiller;
+import org.apache.openmeetings.core.converter.WaveGapFiller.Format;
+import org.apache.openmeetings.core.converter.WaveMixer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestWaveMixer {
+	private static final int RATE = 32000;
+	private File dir;
+
+	@Before
+	public void setUp() throws IOException {
+		dir = Files.createTempDirectory("mixer").toFile();
+	}
+
+	@After
+	public void tearDown() {
+		for (File f : dir.listFiles()) {
+			f.delete();
+		}
+		dir.delete();
+	}
+
+	private static short tone(int freq, double amplitude, int i) {
+		return (short)Math.round(Math.sin(2 * Math.PI * freq * i / RATE) * amplitude * Short.MAX_VALUE);
+	}
+
+	private File writeTone(String name, int freq, double amplitude, int frames, int rate) throws IOException {
+		ByteBuffer bb = ByteBuffer.allocate(44 + 2 * frames).order(ByteOrder.LITTLE_ENDIAN);
+		bb.put("RIFF".getBytes("US-ASCII")).putInt(36 + 2 * frames).put("WAVEfmt ".getBytes("US-ASCII"))
+			.putInt(16).putShort((short)1).putShort((short)1).putInt(rate).putInt(2 * rate).putShort((short)2).putShort((short)16)
+			.put("data".getBytes("US-ASCII")).putInt(2 * frames);
+		for (int i = 0; i < frames; ++i) {
+			bb.putShort(tone(freq, amplitude, i));
+		}
+		File f = new File(dir, name);
+		Files.write(f.toPath(), bb.array());
+		return f;
+	}
+
+	private static short[] mix(WaveMixer mixer) throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		Format f = mixer.mix(os);
+		assertEquals("Mono should be preserved", 1, f.getChannels());
+		assertEquals("Rate should be preserved", RATE, f.getSampleRate());
+		ByteBuffer bb = ByteBuffer.wrap(os.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+		assertEquals("Header should be written", "RIFF", new String(os.toByteArray(), 0, 4, "US-ASCII"));
+		bb.position(40);
+		short[] res = new short[bb.getInt() / 2];
+		assertEquals("Data size should match", res.length * 2, bb.remaining());
+		for (int i = 0; i < res.length; ++i) {
+			res[i] = bb.getShort();
+		}
+		return res;
+	}
+
+	@Test
+	public void testDefaultGain() throws IOException {
+		File a = writeTone("a.wav", 440, .5, RATE, RATE);
+		File b = writeTone("b.wav", 1000, .5, RATE / 2, RATE);
+		short[] s = mix(new WaveMixer().add(a).add(b));
+		assertEquals("Length of longest track should be used", RATE, s.length);
+		for (int i = 0; i < s.length; ++i) {
+			int expected = tone(440, .5, i) + (i < RATE / 2 ? tone(1000, .5, i) : 0);
+			assertEquals("Tracks should be scaled by 1/N: " + i, expected / 2., s[i], 1);
+		}
+	}
+
+	@Test
+	public void testClipping() throws IOException {
+		File a = writeTone("a.wav", 440, 1, RATE, RATE);
+		File b = writeTone("b.wav", 440, 1, RATE, RATE);
+		short[] s = mix(new WaveMixer().add(a, 1).add(b, 1));
+		int clipped = 0;
+		for (int i = 0; i < s.length; ++i) {
+			int expected = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, 2 * tone(440, 1, i)));
+			assertEquals("Sum should be clipped: " + i, expected, s[i]);
+			if (Math.abs(expected) == Short.MAX_VALUE) {
+				++clipped;
+			}
+		}
+		assertTrue("Overflow should be clipped, not wrapped", clipped > 0);
+	}
+
+	@Test
+	public void testGain() throws IOException {
+		File a = writeTone("a.wav", 440, .5, RATE, RATE);
+		File out = new File(dir, "out.wav");
+		new WaveMixer().add(a, .5).add(writeTone("silence.wav", 440, 0, RATE, RATE), 1).mix(out);
+		Format f = WaveGapFiller.getFormat(out);
+		assertEquals("File should be written", RATE, f.getFrames());
+		ByteBuffer bb = ByteBuffer.wrap(Files.readAllBytes(out.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+		bb.position((int)f.getDataOffset());
+		for (int i = 0; i < RATE; ++i) {
+			assertEquals("Gain should be applied: " + i, tone(440, .5, i) / 2., bb.getShort(), 1);
+		}
+	}
+
+	@Test
+	public void testDifferentFormats() throws IOException {
+		File a = writeTone("a.wav", 440, .5, RATE, RATE);
+		File b = writeTone("b.wav", 440, .5, RATE, RATE / 2);
+		try {
+			new WaveMixer().add(a).add(b).mix(new ByteArrayOutputStream());
+			fail("Tracks of different rates should not be mixed");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.test.converter;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+
+import org.apache.openmeetings.core.converter.WaveGapFiller;
+import org.apache.openmeetings.util.process.ConverterProcessResult;
+import org.apache.openmeetings.util.process.ProcessHelper;
+
+/**
+ * Compares single pass gap filling with the chain of <code>sox pad</code> calls.
+ * Not executed as part of the build, usage:
+ *
+ * WaveGapFillerBenchmark [minutes] [gaps] [path to sox]
+ */
+public class WaveGapFillerBenchmark {
+	// the same rate is used by recording conversion
+	private static final int RATE = 32000;
+
+	public static void main(String[] args) throws Exception {
+		int minutes = args.length > 0 ? Integer.parseInt(args[0]) : 60;
+		int gaps = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+		String sox = args.length > 2 ? args[2] : "sox";
+		File dir = Files.createTempDirectory("wave").toFile();
+		try {
+			File in = writeWave(new File(dir, "in.wav"), minutes * 60 * RATE);
+			System.out.println(String.format("Input: %s minutes, %s bytes, %s gaps", minutes, in.length(), gaps));
+
+			long start = System.currentTimeMillis();
+			WaveGapFiller filler = new WaveGapFiller();
+			for (int i = 0; i < gaps; ++i) {
+				filler.add(i * minutes * 60. / gaps, .1);
+			}
+			filler.fill(in, new File(dir, "filled.wav"));
+			System.out.println(String.format("Single pass: %s ms", System.currentTimeMillis() - start));
+
+			start = System.currentTimeMillis();
+			File cur = in;
+			for (int i = 0; i < gaps; ++i) {
+				File next = new File(dir, "sox_" + (i % 2) + ".wav");
+				ConverterProcessResult r = ProcessHelper.executeScript("fillGap"
+						, new String[] {sox, cur.getCanonicalPath(), next.getCanonicalPath(), "pad", ".1@" + (i * minutes * 60. / gaps)});
+				if (!r.isOk()) {
+					System.out.println("sox is not available: " + r.buildLogMessage());
+					return;
+				}
+				cur = next;
+			}
+			System.out.println(String.format("sox chain: %s ms", System.currentTimeMillis() - start));
+		} finally {
+			for (File f : dir.listFiles()) {
+				f.delete();
+			}
+			dir.delete();
+		}
+	}
+
+	private static void writeInt(OutputStream os, int v) throws Exception {
+		os.write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(v).array());
+	}
+
+	/**
+	 * Writes 16-bit mono WAV file with sine wave
+	 */
+	private static File writeWave(File f, int frames) throws Exception {
+		try (OutputStream os = new BufferedOutputStream(new FileOutputStream(f))) {
+			os.write("RIFF".getBytes("US-ASCII"));
+			writeInt(os, 36 + 2 * frames);
+			os.write("WAVEfmt ".getBytes("US-ASCII"));
+			writeInt(os, 16);
+			writeInt(os, 1 | 1 << 16); // PCM, mono
+			writeInt(os, RATE);
+			writeInt(os, 2 * RATE);
+			writeInt(os, 2 | 16 << 16); // block align, bits per sample
+			os.write("data".getBytes("US-ASCII"));
+			writeInt(os, 2 * frames);
+			for (int i = 0; i < frames; ++i) {
+				short v = (short)(Math.sin(i * 2 * Math.PI * 440 / RATE) * Short.MAX_VALUE / 2);
+				os.write(v & 0xFF);
+				os.write(v >> 8 & 0xFF);
+			}
+		}
+		return f;
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.test.mail;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal in-process SMTP server, accepts everything
+ */
+class FakeSmtpServer implements Runnable {
+	private final ServerSocket socket;
+	private final List<Socket> clients = new ArrayList<>();
+	private final AtomicInteger connections = new AtomicInteger();
+	private final AtomicInteger messages = new AtomicInteger();
+	private Thread acceptor;
+
+	FakeSmtpServer() throws IOException {
+		socket = new ServerSocket(0);
+	}
+
+	int getPort() {
+		return socket.getLocalPort();
+	}
+
+	int getConnections() {
+		return connections.get();
+	}
+
+	int getMessages() {
+		return messages.get();
+	}
+
+	void start() {
+		acceptor = new Thread(this, "fake-smtp");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	void stop() throws IOException {
+		socket.close();
+		dropConnections();
+	}
+
+	void dropConnections() throws IOException {
+		synchronized (clients) {
+			for (Socket c : clients) {
+				c.close();
+			}
+			clients.clear();
+		}
+	}
+
+	@Override
+	public void run() {
+		while (!socket.isClosed()) {
+			try {
+				final Socket c = socket.accept();
+				connections.incrementAndGet();
+				synchronized (clients) {
+					clients.add(c);
+				}
+				Thread t = new Thread(() -> handle(c), "fake-smtp-client");
+				t.setDaemon(true);
+				t.start();
+			} catch (IOException e) {
+				// socket closed
+			}
+		}
+	}
+
+	private void handle(Socket c) {
+		try (BufferedReader in = new BufferedReader(new InputStreamReader(c.getInputStream(), US_ASCII));
+				Writer out = new OutputStreamWriter(c.getOutputStream(), US_ASCII))
+		{
+			reply(out, "220 localhost fake SMTP");
+			String line;
+			while ((line = in.readLine()) != null) {
+				String cmd = line.length() < 4 ? line.toUpperCase() : line.substring(0, 4).toUpperCase();
+				switch (cmd) {
+					case "EHLO":
+					case "HELO":
+						reply(out, "250 localhost");
+						break;
+					case "DATA":
+						reply(out, "354 go ahead");
+						while ((line = in.readLine()) != null && !".".equals(line)) {
+							// message content is ignored
+						}
+						messages.incrementAndGet();
+						reply(out, "250 OK");
+						break;
+					case "QUIT":
+						reply(out, "221 bye");
+						return;
+					default:
+						reply(out, "250 OK");
+				}
+			}
+		} catch (IOException e) {
+			// connection dropped
+		}
+	}
+
+	private static void reply(Writer out, String msg) throws IOException {
+		out.write(msg);
+		out.write("\r\n");
+		out.flush();
+	}
+}
@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.test.mail;
+
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_SYSTEM_EMAIL;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.openmeetings.core.mail.MailHandler;
+import org.apache.openmeetings.db.dao.basic.ConfigurationDao;
+import org.apache.openmeetings.db.dao.basic.MailMessageDao;
+import org.apache.openmeetings.db.entity.basic.MailMessage;
+import org.apache.openmeetings.db.entity.basic.MailMessage.Status;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+
+public class TestMailHandler {
+	private FakeSmtpServer server;
+	private ExecutorService exec;
+	private Config cfg;
+	private MessageStore store;
+
+	private static class Config extends ConfigurationDao {
+		private final Map<String, String> values = new HashMap<>();
+
+		@Override
+		public <T> T getConfValue(String key, Class<T> type, String defaultValue) {
+			String val = values.containsKey(key) ? values.get(key) : defaultValue;
+			if (val == null) {
+				return null;
+			}
+			try {
+				if (type.isAssignableFrom(String.class)) {
+					return type.cast(val);
+				}
+				Constructor<T> c = type.getConstructor(String.class);
+				return c.newInstance(val);
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	/**
+	 * In-memory message queue
+	 */
+	private static class MessageStore extends MailMessageDao {
+		private final Map<Long, MailMessage> messages = new TreeMap<>();
+
+		private synchronized MailMessage add(int errorCount, long updatedAgo) {
+			MailMessage m = new MailMessage("user" + messages.size() + "@openmeetings.apache.org", null, "Subject", "Body");
+			m.setId(messages.size() + 1L);
+			m.setStatus(Status.NONE);
+			m.setErrorCount(errorCount);
+			Calendar updated = Calendar.getInstance();
+			updated.setTimeInMillis(System.currentTimeMillis() - updatedAgo);
+			m.setUpdated(updated);
+			messages.put(m.getId(), m);
+			return m;
+		}
+
+		@Override
+		public synchronized List<MailMessage> get(int start, int count, Status status) {
+			List<MailMessage> list = new ArrayList<>();
+			for (MailMessage m : messages.values()) {
+				if (status == m.getStatus()) {
+					list.add(m);
+				}
+			}
+			return new ArrayList<>(list.subList(Math.min(start, list.size()), Math.min(start + count, list.size())));
+		}
+
+		@Override
+		public synchronized MailMessage update(MailMessage m, Long userId) {
+			m.setUpdated(Calendar.getInstance());
+			messages.put(m.getId(), m);
+			return m;
+		}
+
+		private synchronized int count(Status status) {
+			int count = 0;
+			for (MailMessage m : messages.values()) {
+				if (status == m.getStatus()) {
+					++count;
+				}
+			}
+			return count;
+		}
+	}
+
+	@Before
+	public void setUp() throws IOException {
+		server = new FakeSmtpServer();
+		server.start();
+		exec = Executors.newFixedThreadPool(3);
+		cfg = new Config();
+		cfg.values.put("smtp_server", "localhost");
+		cfg.values.put("smtp_port", "" + server.getPort());
+		cfg.values.put(CONFIG_SYSTEM_EMAIL, "test-app@openmeetings.apache.org");
+		cfg.values.put("mail.smtp.connection.timeout", "5000");
+		cfg.values.put("mail.smtp.timeout", "5000");
+		store = new MessageStore();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		exec.shutdownNow();
+		server.stop();
+	}
+
+	private MailHandler getHandler(TaskExecutor executor) {
+		return new MailHandler(cfg, store, executor);
+	}
+
+	@Test
+	public void testBatchDraining() {
+		cfg.values.put("mail.send.batch.size", "10");
+		for (int i = 0; i < 35; ++i) {
+			store.add(0, 0);
+		}
+		MailHandler h = getHandler(exec::execute);
+		try {
+			h.sendMails();
+		} finally {
+			h.destroy();
+		}
+		assertEquals("All batches should be sent by single run", 35, store.count(Status.DONE));
+		assertEquals("All messages should be delivered", 35, server.getMessages());
+	}
+
+	@Test
+	public void testRetryBackoff() {
+		MailMessage recent = store.add(1, 0);
+		MailMessage due = store.add(1, 2 * 60 * 1000L);
+		MailMessage doubled = store.add(2, 90 * 1000L);
+		MailHandler h = getHandler(exec::execute);
+		try {
+			h.sendMails();
+		} finally {
+			h.destroy();
+		}
+		assertEquals("Recently failed message should wait", Status.NONE, recent.getStatus());
+		assertEquals("Message failed more than 1 minute ago should be retried", Status.DONE, due.getStatus());
+		assertEquals("Delay should grow with the number of errors", Status.NONE, doubled.getStatus());
+		assertEquals("Only due message should be delivered", 1, server.getMessages());
+	}
+
+	@Test
+	public void testRateLimit() {
+		final int rate = 20, count = 10;
+		cfg.values.put("mail.send.rate", "" + rate);
+		for (int i = 0; i < count; ++i) {
+			store.add(0, 0);
+		}
+		MailHandler h = getHandler(exec::execute);
+		long start = System.nanoTime();
+		try {
+			h.sendMails();
+		} finally {
+			h.destroy();
+		}
+		long elapsed = (System.nanoTime() - start) / 1000000;
+		assertEquals("All messages should be delivered", count, server.getMessages());
+		assertTrue("Sending should be throttled", elapsed >= (count - 1) * 1000L / rate);
+	}
+
+	@Test(timeout = 30000)
+	public void testRejected() {
+		final AtomicInteger calls = new AtomicInteger();
+		for (int i = 0; i < 5; ++i) {
+			store.add(0, 0);
+		}
+		MailHandler h = getHandler(r -> {
+			calls.incrementAndGet();
+			throw new TaskRejectedException("Executor is full");
+		});
+		try {
+			h.sendMails();
+		} finally {
+			h.destroy();
+		}
+		assertEquals("Sending should be stopped on rejection", 1, calls.get());
+		assertEquals("Messages should be left for the next run", 5, store.count(Status.NONE));
+		for (MailMessage m : store.get(0, 5, Status.NONE)) {
+			assertEquals("Rejection is not an error", 0, m.getErrorCount());
+		}
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.test.mail;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.mail.Message;
+import javax.mail.Session;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+
+import org.apache.openmeetings.core.mail.SmtpTransportPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestSmtpTransportPool {
+	private FakeSmtpServer server;
+
+	@Before
+	public void setUp() throws IOException {
+		server = new FakeSmtpServer();
+		server.start();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		server.stop();
+	}
+
+	private Session getSession() {
+		Properties props = new Properties();
+		props.put("mail.smtp.host", "localhost");
+		props.put("mail.smtp.port", "" + server.getPort());
+		props.put("mail.smtp.connectiontimeout", 5000);
+		props.put("mail.smtp.timeout", 5000);
+		return Session.getInstance(props, null);
+	}
+
+	private static MimeMessage getMessage(Session s, int idx) throws Exception {
+		MimeMessage msg = new MimeMessage(s);
+		msg.setFrom(new InternetAddress("test-app@openmeetings.apache.org"));
+		msg.addRecipients(Message.RecipientType.TO, InternetAddress.parse("user" + idx + "@openmeetings.apache.org", false));
+		msg.setSubject("Subject " + idx);
+		msg.setText("Body " + idx);
+		return msg;
+	}
+
+	@Test
+	public void testConnectionReuse() throws Exception {
+		Session s = getSession();
+		SmtpTransportPool pool = new SmtpTransportPool(s, 1);
+		try {
+			for (int i = 0; i < 20; ++i) {
+				pool.send(getMessage(s, i));
+			}
+		} finally {
+			pool.close();
+		}
+		assertEquals("All messages should be delivered", 20, server.getMessages());
+		assertEquals("Single connection should be used", 1, server.getConnections());
+	}
+
+	@Test
+	public void testConcurrentSending() throws Exception {
+		final int poolSize = 3;
+		final Session s = getSession();
+		final SmtpTransportPool pool = new SmtpTransportPool(s, poolSize);
+		ExecutorService exec = Executors.newFixedThreadPool(10);
+		try {
+			List<Future<?>> results = new ArrayList<>();
+			for (int i = 0; i < 100; ++i) {
+				final int idx = i;
+				results.add(exec.submit(() -> {
+					pool.send(getMessage(s, idx));
+					return null;
+				}));
+			}
+			for (Future<?> f : results) {
+				f.get(30, TimeUnit.SECONDS);
+			}
+		} finally {
+			exec.shutdownNow();
+			pool.close();
+		}
+		assertEquals("All messages should be delivered", 100, server.getMessages());
+		assertTrue("Number of connections should not exceed pool size", server.getConnections() <= poolSize);
+	}
+
+	@Test
+	public void testBrokenConnectionReplaced() throws Exception {
+		Session s = getSession();
+		SmtpTransportPool pool = new SmtpTransportPool(s, 1);
+		try {
+			pool.send(getMessage(s, 0));
+			server.dropConnections();
+			pool.send(getMessage(s, 1));
+		} finally {
+			pool.close();
+		}
+		assertEquals("All messages should be delivered", 2, server.getMessages());
+		assertEquals("Connection should be re-opened", 2, server.getConnections());
+	}
+}
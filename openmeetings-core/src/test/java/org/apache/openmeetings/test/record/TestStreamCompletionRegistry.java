@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.test.record;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.openmeetings.core.data.record.listener.async.BaseStreamWriter;
+import org.apache.openmeetings.core.data.record.listener.async.CachedEvent;
+import org.apache.openmeetings.core.data.record.listener.async.StreamCompletionRegistry;
+import org.apache.openmeetings.db.entity.record.RecordingMetaData;
+import org.junit.Test;
+
+public class TestStreamCompletionRegistry {
+	private static RecordingMetaData meta(Long id) {
+		RecordingMetaData m = new RecordingMetaData();
+		m.setId(id);
+		return m;
+	}
+
+	@Test
+	public void testComplete() {
+		Long id = -1L;
+		StreamCompletionRegistry.register(id);
+		CompletableFuture<Void> f = StreamCompletionRegistry.whenComplete(Arrays.asList(meta(id)));
+		assertTrue("Should wait for the stream", !f.isDone());
+		StreamCompletionRegistry.complete(id);
+		assertTrue("Should be complete as soon as the stream is closed", f.isDone());
+		assertNull("Completed stream should be removed", StreamCompletionRegistry.get(id));
+	}
+
+	@Test
+	public void testConstructorFailure() {
+		Long id = -2L;
+		StreamCompletionRegistry.register(id);
+		CompletableFuture<Void> f = StreamCompletionRegistry.whenComplete(Arrays.asList(meta(id)));
+		try {
+			// null scope, init will fail
+			new BaseStreamWriter("failing", null, id, false, null) {
+				@Override
+				public void packetReceived(CachedEvent streampacket) {
+				}
+
+				@Override
+				protected void internalCloseStream() {
+				}
+			};
+			fail("Writer should not be created");
+		} catch (NullPointerException e) {
+			// expected
+		}
+		assertTrue("Stream failed to start should be complete", f.isDone());
+		assertNull("Failed stream should be removed", StreamCompletionRegistry.get(id));
+	}
+
+	@Test(timeout = 10000)
+	public void testTimeout() throws Exception {
+		Long id = -3L;
+		StreamCompletionRegistry.register(id);
+		StreamCompletionRegistry.whenComplete(Arrays.asList(meta(id)), 100).get(5, TimeUnit.SECONDS);
+		assertNull("Stream not closed in time should be removed", StreamCompletionRegistry.get(id));
+	}
+
+	@Test
+	public void testUnknown() {
+		assertTrue("Streams unknown to this node should not be waited for"
+				, StreamCompletionRegistry.whenComplete(Arrays.asList(meta(-4L))).isDone());
+	}
+}
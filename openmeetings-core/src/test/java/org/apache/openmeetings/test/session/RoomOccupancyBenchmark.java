@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.test.session;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.openmeetings.core.session.store.HashMapStore;
+import org.apache.openmeetings.db.entity.room.StreamClient;
+
+/**
+ * Compares listing of the rooms with current users using the room index of the client store
+ * with the scan of all the clients for each room.
+ * Not executed as part of the build, usage:
+ *
+ * RoomOccupancyBenchmark [rooms] [clients]
+ */
+public class RoomOccupancyBenchmark {
+	public static void main(String[] args) {
+		int rooms = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		int clients = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+		Random rnd = new Random(1);
+		HashMapStore store = new HashMapStore();
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < clients; ++i) {
+			StreamClient c = new StreamClient();
+			c.setStreamid("stream" + i);
+			c.setPublicSID("public" + i);
+			c.setRoomId(1L + rnd.nextInt(rooms));
+			c.setScreenClient(i % 10 == 0);
+			store.put(c.getStreamid(), c);
+		}
+		System.out.println(String.format("Rooms: %s, clients: %s, indexed in %s ms", rooms, clients, System.currentTimeMillis() - start));
+
+		start = System.currentTimeMillis();
+		long total = 0;
+		for (long roomId = 1; roomId <= rooms; ++roomId) {
+			total += getUsersByScan(store, roomId).size();
+		}
+		System.out.println(String.format("Scan of all clients per room: %s ms, %s users", System.currentTimeMillis() - start, total));
+
+		start = System.currentTimeMillis();
+		total = 0;
+		for (long roomId = 1; roomId <= rooms; ++roomId) {
+			for (StreamClient c : store.getClientsByRoomId(roomId)) {
+				if (!c.isScreenClient()) {
+					total++;
+				}
+			}
+		}
+		System.out.println(String.format("Room index: %s ms, %s users", System.currentTimeMillis() - start, total));
+
+		start = System.currentTimeMillis();
+		total = 0;
+		Map<Long, Integer> occupancy = store.getRoomOccupancy();
+		for (long roomId = 1; roomId <= rooms; ++roomId) {
+			total += occupancy.getOrDefault(roomId, 0);
+		}
+		System.out.println(String.format("Occupancy counters: %s ms, %s users", System.currentTimeMillis() - start, total));
+
+		start = System.currentTimeMillis();
+		for (int i = 0; i < clients; ++i) {
+			StreamClient c = store.get(null, "stream" + i);
+			c.setRoomId(1L + rnd.nextInt(rooms));
+			store.put(c.getStreamid(), c);
+		}
+		System.out.println(String.format("Room change of all clients: %s ms", System.currentTimeMillis() - start));
+	}
+
+	/**
+	 * Search previously used for each room
+	 */
+	private static List<StreamClient> getUsersByScan(HashMapStore store, Long roomId) {
+		List<StreamClient> list = new ArrayList<>();
+		for (StreamClient c : store.getClients()) {
+			if (roomId.equals(c.getRoomId()) && !c.isScreenClient()) {
+				list.add(c);
+			}
+		}
+		return list;
+	}
+}
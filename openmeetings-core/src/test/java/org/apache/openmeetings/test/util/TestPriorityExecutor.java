@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.test.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.openmeetings.core.util.PriorityExecutor;
+import org.junit.Test;
+
+public class TestPriorityExecutor {
+	@Test(timeout = 30000)
+	public void testUrgentFirst() throws Exception {
+		PriorityExecutor pool = new PriorityExecutor("test-priority-", 1);
+		try {
+			CountDownLatch started = new CountDownLatch(1), release = new CountDownLatch(1);
+			pool.submit(() -> {
+				started.countDown();
+				return release.await(10, TimeUnit.SECONDS);
+			}, false);
+			started.await();
+			List<String> order = Collections.synchronizedList(new ArrayList<>());
+			List<Future<Boolean>> tasks = new ArrayList<>();
+			for (String name : Arrays.asList("background1", "background2")) {
+				tasks.add(pool.submit(() -> order.add(name), false));
+			}
+			for (String name : Arrays.asList("urgent1", "urgent2")) {
+				tasks.add(pool.submit(() -> order.add(name), true));
+			}
+			release.countDown();
+			for (Future<Boolean> f : tasks) {
+				f.get();
+			}
+			assertEquals("Urgent tasks should go first, in order of submission"
+					, Arrays.asList("urgent1", "urgent2", "background1", "background2"), order);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test(timeout = 30000)
+	public void testBounded() throws Exception {
+		final int threads = 2;
+		PriorityExecutor pool = new PriorityExecutor("test-priority-", threads);
+		try {
+			AtomicInteger running = new AtomicInteger(), max = new AtomicInteger();
+			List<Future<Integer>> tasks = new ArrayList<>();
+			for (int i = 0; i < 20; ++i) {
+				tasks.add(pool.submit(() -> {
+					max.accumulateAndGet(running.incrementAndGet(), Math::max);
+					Thread.sleep(10);
+					return running.decrementAndGet();
+				}, i % 2 == 0));
+			}
+			for (Future<Integer> f : tasks) {
+				f.get();
+			}
+			assertTrue("Number of running tasks should not exceed the number of threads", max.get() <= threads);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test(timeout = 30000)
+	public void testShutdownCancelsPending() throws Exception {
+		PriorityExecutor pool = new PriorityExecutor("test-priority-", 1);
+		CountDownLatch started = new CountDownLatch(1);
+		pool.submit(() -> {
+			started.countDown();
+			Thread.sleep(10000);
+			return null;
+		}, false);
+		started.await();
+		Future<Object> pending = pool.submit(() -> null, true);
+		pool.shutdownNow();
+		assertTrue("Pending task should be cancelled, so nobody waits for it forever", pending.isCancelled());
+	}
+}
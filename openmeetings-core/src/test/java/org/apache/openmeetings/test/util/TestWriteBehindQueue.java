@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.test.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.openmeetings.core.util.WriteBehindQueue;
+import org.junit.Test;
+
+public class TestWriteBehindQueue {
+	private static final String POISON = "poison";
+	private final List<String> stored = new ArrayList<>();
+	private final AtomicInteger calls = new AtomicInteger();
+
+	private void store(List<String> list) {
+		calls.incrementAndGet();
+		if (list.contains(POISON)) {
+			throw new IllegalStateException("Unable to store");
+		}
+		stored.addAll(list);
+	}
+
+	private static String copy(String s) {
+		return new String(s);
+	}
+
+	@Test
+	public void testStored() {
+		List<String> ids = new ArrayList<>();
+		WriteBehindQueue<String> q = new WriteBehindQueue<>("test", 10, 2, TestWriteBehindQueue::copy, this::store, (s, c) -> ids.add(c));
+		for (String s : Arrays.asList("a", "b", "c")) {
+			assertTrue("Item should be queued", q.add(s));
+		}
+		assertTrue("All items should be stored", q.flush());
+		assertEquals("Items should be stored in order", Arrays.asList("a", "b", "c"), stored);
+		assertEquals("Items should be stored in batches", 2, calls.get());
+		assertEquals("Stored copies should be reported", stored, ids);
+		assertEquals("All items should be written", 3, q.getWritten());
+		assertEquals("Queue should be empty", 0, q.size());
+	}
+
+	@Test
+	public void testPoison() {
+		WriteBehindQueue<String> q = new WriteBehindQueue<>("test", 10, 10, TestWriteBehindQueue::copy, this::store);
+		for (String s : Arrays.asList("a", POISON, "b")) {
+			q.add(s);
+		}
+		int flushes = 1;
+		while (!q.flush()) {
+			assertTrue("Retries should be capped", ++flushes <= WriteBehindQueue.MAX_ATTEMPTS);
+		}
+		assertEquals("Items should be stored despite broken one, in order", Arrays.asList("a", "b"), stored);
+		assertEquals("Broken item should be dropped", 1, q.getDropped());
+		assertEquals("Queue should be empty", 0, q.size());
+	}
+
+	@Test
+	public void testFailingStorage() {
+		WriteBehindQueue<String> q = new WriteBehindQueue<>("test", 2, 10, TestWriteBehindQueue::copy, this::store);
+		assertTrue("Item should be queued", q.add(POISON));
+		assertTrue("Item should be queued", q.add(POISON));
+		assertFalse("Item should be dropped if full queue can't be stored", q.add("a"));
+		int attempts = calls.get();
+		assertTrue("Full queue should be stored synchronously", attempts > 0);
+		assertFalse("Item should be dropped", q.add("b"));
+		assertEquals("Synchronous flush should not be made while storage is failing", attempts, calls.get());
+		assertEquals("Dropped items should be counted", 2, q.getDropped());
+		assertEquals("Pending items should be kept", 2, q.size());
+	}
+}
@@ -38,10 +38,10 @@ public class ChatDao {
 				.getSingleResult();
 	}
 
-	//for export
-	public List<ChatMessage> get(int start, int count) {
-		return em.createNamedQuery("getGlobalChatMessages", ChatMessage.class)
-				.setFirstResult(start)
+	//for export, keyset paging is stable while new entities arrive
+	public List<ChatMessage> getAfter(long lastId, int count) {
+		return em.createNamedQuery("getGlobalChatMessagesAfter", ChatMessage.class)
+				.setParameter("lastId", lastId)
 				.setMaxResults(count)
 				.getResultList();
 	}
@@ -80,13 +80,31 @@ public class ChatDao {
 	}
 
 	public ChatMessage update(ChatMessage entity) {
-		entity.setSent(new Date());
 		if (entity.getId() == null) {
+			entity.setSent(new Date());
 			em.persist(entity);
+		} else {
+			entity = em.merge(entity);
 		}
 		return entity;
 	}
 
+	/**
+	 * Stores new messages in one transaction, time of sending is preserved
+	 *
+	 * @param list - messages to be stored
+	 * @return stored messages with ids assigned
+	 */
+	public List<ChatMessage> update(List<ChatMessage> list) {
+		for (ChatMessage m : list) {
+			if (m.getSent() == null) {
+				m.setSent(new Date());
+			}
+			em.persist(m);
+		}
+		return list;
+	}
+
 	/**
 	 * @param entity - unused
 	 * @param userId - unused
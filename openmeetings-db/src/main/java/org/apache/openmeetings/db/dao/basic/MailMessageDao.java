@@ -18,7 +18,9 @@
  */
 package org.apache.openmeetings.db.dao.basic;
 
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.List;
 
 import javax.persistence.EntityManager;
@@ -116,6 +118,20 @@ public class MailMessageDao  implements IDataProviderDao<MailMessage> {
 		return m;
 	}
 
+	/**
+	 * Stores all messages passed in single transaction
+	 *
+	 * @param list - messages to be stored
+	 * @return list of stored messages
+	 */
+	public List<MailMessage> update(Collection<MailMessage> list) {
+		List<MailMessage> result = new ArrayList<>(list.size());
+		for (MailMessage m : list) {
+			result.add(update(m, null));
+		}
+		return result;
+	}
+
 	@Override
 	public void delete(MailMessage m, Long userId) {
 		if (m != null) {
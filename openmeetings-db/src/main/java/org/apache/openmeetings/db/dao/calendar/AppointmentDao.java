@@ -47,6 +47,8 @@ import org.red5.logging.Red5LoggerFactory;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 @Transactional
 public class AppointmentDao {
@@ -65,6 +67,8 @@ public class AppointmentDao {
 	private TimezoneUtil timezoneUtil;
 	@Autowired
 	private IInvitationManager invitationManager;
+	@Autowired
+	private IReminderScheduler reminderScheduler;
 
 	/*
 	 * insert, update, delete, select
@@ -99,6 +103,14 @@ public class AppointmentDao {
 		return em.createNamedQuery("getAppointments", Appointment.class).getResultList();
 	}
 
+	//for export, keyset paging is stable while new entities arrive
+	public List<Appointment> getAfter(long lastId, int count) {
+		return em.createNamedQuery("getAppointmentsAfter", Appointment.class)
+				.setParameter("lastId", lastId)
+				.setMaxResults(count)
+				.getResultList();
+	}
+
 	public Appointment update(Appointment a, Long userId) {
 		return update(a, userId, true);
 	}
@@ -152,9 +164,52 @@ public class AppointmentDao {
 			a.setUpdated(new Date());
 			a = em.merge(a);
 		}
+		reschedule(a);
 		return a;
 	}
 
+	/**
+	 * Reminder is re-scheduled after commit, id of new appointment is not available before
+	 */
+	private void reschedule(final Appointment a) {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCommit() {
+					reminderScheduler.changed(a);
+				}
+			});
+		} else {
+			reminderScheduler.changed(a);
+		}
+	}
+
+	/**
+	 * Atomically marks reminder of the appointment as sent, guarantees reminder
+	 * is sent only once even if several nodes are trying to send it
+	 *
+	 * @param id - id of the appointment
+	 * @return <code>true</code> if reminder was not yet sent and should be sent by the caller
+	 */
+	public boolean markReminderSent(Long id) {
+		boolean marked = em.createNamedQuery("markAppointmentReminderSent")
+				.setParameter("id", id)
+				.executeUpdate() > 0;
+		// bulk update bypasses the cache
+		em.getEntityManagerFactory().getCache().evict(Appointment.class, id);
+		return marked;
+	}
+
+	/**
+	 * Stores all the appointments in single transaction,
+	 * used to apply changes fetched from remote calendar
+	 */
+	public void update(List<Appointment> list, Long userId) {
+		for (Appointment a : list) {
+			update(a, userId);
+		}
+	}
+
 	// ----------------------------------------------------------------------------------------------------------
 
 	public void delete(Appointment a, Long userId) {
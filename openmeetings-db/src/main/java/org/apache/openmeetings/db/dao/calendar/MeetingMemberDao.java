@@ -54,6 +54,14 @@ public class MeetingMemberDao {
 		return em.createNamedQuery("getMeetingMembers", MeetingMember.class).getResultList();
 	}
 
+	//for export, keyset paging is stable while new entities arrive
+	public List<MeetingMember> getAfter(long lastId, int count) {
+		return em.createNamedQuery("getMeetingMembersAfter", MeetingMember.class)
+				.setParameter("lastId", lastId)
+				.setMaxResults(count)
+				.getResultList();
+	}
+
 	public Set<Long> getMeetingMemberIdsByAppointment(Long appointmentId) {
 		log.debug("getMeetingMemberIdsByAppointment: " + appointmentId);
 
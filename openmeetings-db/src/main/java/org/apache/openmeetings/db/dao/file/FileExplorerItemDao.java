@@ -21,8 +21,11 @@ package org.apache.openmeetings.db.dao.file;
 import static org.apache.openmeetings.util.OpenmeetingsVariables.webAppRootKey;
 
 import java.io.File;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 import javax.persistence.EntityManager;
@@ -30,12 +33,20 @@ import javax.persistence.NoResultException;
 import javax.persistence.PersistenceContext;
 import javax.persistence.TypedQuery;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.openmeetings.db.entity.file.FileExplorerItem;
+import org.apache.openmeetings.db.entity.file.FileExplorerItem.Charge;
+import org.apache.openmeetings.db.entity.file.FileExplorerItem.ConversionStatus;
 import org.apache.openmeetings.db.entity.file.FileItem.Type;
+import org.apache.openmeetings.db.entity.file.StorageUsage;
+import org.apache.openmeetings.db.util.ContentLocks;
 import org.apache.openmeetings.util.OmFileHelper;
 import org.red5.logging.Red5LoggerFactory;
 import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
  * @author sebastianwagner
@@ -46,6 +57,8 @@ public class FileExplorerItemDao {
 	private static final Logger log = Red5LoggerFactory.getLogger(FileExplorerItemDao.class, webAppRootKey);
 	@PersistenceContext
 	private EntityManager em;
+	@Autowired
+	private StorageUsageDao usageDao;
 
 	public FileExplorerItem add(String fileName, Long parentId, Long ownerId, Long roomId, Long insertedBy,
 			Type type, String externalId, String externalType) {
@@ -140,20 +153,40 @@ public class FileExplorerItemDao {
 				.getResultList();
 	}
 
+	/**
+	 * Content is shared between items with the same hash
+	 *
+	 * @return first not deleted item with given hash, first deleted one if all are deleted, <code>null</code> otherwise
+	 */
 	public FileExplorerItem getByHash(String hash) {
 		log.debug("getByHash() started");
 		FileExplorerItem f = null;
-		TypedQuery<FileExplorerItem> query = em.createNamedQuery("getFileByHash", FileExplorerItem.class);
-		query.setParameter("hash", hash);
-
-		try {
-			f = query.getSingleResult();
-		} catch (NoResultException ex) {
-			//no-op
+		for (FileExplorerItem item : getAllByHash(hash)) {
+			if (!item.isDeleted()) {
+				return item;
+			}
+			if (f == null) {
+				f = item;
+			}
 		}
 		return f;
 	}
 
+	public List<FileExplorerItem> getAllByHash(String hash) {
+		return em.createNamedQuery("getFileByHash", FileExplorerItem.class)
+				.setParameter("hash", hash)
+				.getResultList();
+	}
+
+	/**
+	 * @return number of not deleted items referencing the content with given hash
+	 */
+	public long countByHash(String hash) {
+		return em.createNamedQuery("countFilesByHash", Long.class)
+				.setParameter("hash", hash)
+				.getSingleResult();
+	}
+
 	public FileExplorerItem get(Long id) {
 		FileExplorerItem f = null;
 		if (id != null && id > 0) {
@@ -195,11 +228,78 @@ public class FileExplorerItemDao {
 		return em.createNamedQuery("getAllFiles", FileExplorerItem.class).getResultList();
 	}
 
+	//for export, keyset paging is stable while new entities arrive
+	public List<FileExplorerItem> getAfter(long lastId, int count) {
+		return em.createNamedQuery("getFilesAfter", FileExplorerItem.class)
+				.setParameter("lastId", lastId)
+				.setMaxResults(count)
+				.getResultList();
+	}
+
+	public List<FileExplorerItem> getByConversionStatus(Collection<ConversionStatus> status) {
+		return em.createNamedQuery("getFilesByConversionStatus", FileExplorerItem.class)
+				.setParameter("status", status)
+				.getResultList();
+	}
+
 	public void delete(FileExplorerItem f) {
 		f.setDeleted(true);
 		f.setUpdated(new Date());
 
 		update(f);
+		removeUnreferenced(f);
+		if (Type.Folder == f.getType()) {
+			// items of deleted folder are not accessible anymore and should not be accounted
+			for (FileExplorerItem child : getByParent(f.getId())) {
+				delete(child);
+			}
+		}
+	}
+
+	/**
+	 * Stored and converted files are removed as soon as last item referencing them is deleted.
+	 * Files are removed only after the deletion is committed, so they are kept if it is rolled back
+	 */
+	private void removeUnreferenced(FileExplorerItem f) {
+		if (f.getHash() == null || f.getType() == null) {
+			return;
+		}
+		switch (f.getType()) {
+			case Image:
+			case Presentation:
+			case Video:
+			{
+				final String hash = f.getHash();
+				if (TransactionSynchronizationManager.isSynchronizationActive()) {
+					TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+						@Override
+						public void afterCommit() {
+							removeContent(hash);
+						}
+					});
+				} else {
+					removeContent(hash);
+				}
+			}
+				break;
+			default:
+				break;
+		}
+	}
+
+	/**
+	 * References are counted again under {@link ContentLocks}, the same content might be uploaded
+	 * while the item was being deleted. Locks guard uploads of this node only, upload of other node
+	 * finding its content removed restores it, see FileProcessor
+	 */
+	private void removeContent(String hash) {
+		synchronized (ContentLocks.get(hash)) {
+			if (countByHash(hash) == 0) {
+				File dir = new File(OmFileHelper.getUploadFilesDir(), hash);
+				log.debug("Content is not referenced anymore, removing: {}", dir);
+				FileUtils.deleteQuietly(dir);
+			}
+		}
 	}
 
 	public void delete(String externalId, String externalType) {
@@ -224,16 +324,36 @@ public class FileExplorerItemDao {
 	}
 
 	public FileExplorerItem update(FileExplorerItem f) {
+		Charge old = null;
 		if (f.getId() == null) {
 			f.setInserted(new Date());
 			em.persist(f);
 		} else {
+			// usage is updated by the difference between stored and new state, item loaded in this
+			// transaction is detached first, so its changes are not flushed before stored state is read
+			if (em.contains(f)) {
+				em.detach(f);
+			}
+			old = getStoredCharge(f.getId());
 			f.setUpdated(new Date());
 			f = em.merge(f);
 		}
+		usageDao.charge(old, -1);
+		usageDao.charge(new Charge(f.getOwnerId(), f.getRoomId(), f.getGroupId(), f.getStorageSize(), f.isDeleted()), 1);
 		return f;
 	}
 
+	private Charge getStoredCharge(Long id) {
+		List<Object[]> list = em.createNamedQuery("getFileStorageState", Object[].class)
+				.setParameter("id", id)
+				.getResultList();
+		if (list.isEmpty()) {
+			return null;
+		}
+		Object[] o = list.get(0);
+		return new Charge((Long)o[0], (Long)o[1], (Long)o[2], (Long)o[3], Boolean.TRUE.equals(o[4]));
+	}
+
 	private void updateChilds(FileExplorerItem f) {
 		for (FileExplorerItem child : getByParent(f.getId())) {
 			child.setOwnerId(f.getOwnerId());
@@ -270,59 +390,72 @@ public class FileExplorerItemDao {
 			}
 			f.setParentId(null);
 		} else {
+			// item moved to the folder belongs to the same user, room or group as the folder
+			FileExplorerItem parent = get(parentId);
 			f.setParentId(parentId);
-			f.setOwnerId(null);
+			f.setOwnerId(parent == null ? null : parent.getOwnerId());
+			if (parent != null) {
+				f.setRoomId(parent.getRoomId());
+				f.setGroupId(parent.getGroupId());
+			}
 		}
+		// folder is stored first, queries of its children would flush its changes otherwise
+		f = update(f);
 		if (Type.Folder == f.getType()) {
 			updateChilds(f);
 		}
-		return update(f);
+		return f;
 	}
 
 	public long getOwnSize(Long userId) {
-		return getSize(getByOwner(userId));
+		return usageDao.get(StorageUsage.Type.USER, userId);
 	}
 
 	public long getRoomSize(Long roomId) {
-		return getSize(getByRoom(roomId));
+		return usageDao.get(StorageUsage.Type.ROOM, roomId);
 	}
 
-	public long getSize(List<FileExplorerItem> list) {
-		long size = 0;
-		for (FileExplorerItem f : list) {
-			size += getSize(f);
-		}
-		return size;
+	public long getGroupSize(Long groupId) {
+		return usageDao.get(StorageUsage.Type.GROUP, groupId);
 	}
 
-	public long getSize(FileExplorerItem f) {
-		long size = 0;
-		try {
-			if (f.exists()) {
-				File base = OmFileHelper.getUploadFilesDir();
-				switch (f.getType()) {
-					case Image:
-					case Presentation:
-					case Video:
-						File tFolder = new File(base, f.getHash());
-
-						if (tFolder.exists()) {
-							size += OmFileHelper.getSize(tFolder);
-						}
-						break;
-					default:
-						// TODO check other types
-						break;
-				}
-			}
-			if (Type.Folder == f.getType()) {
-				for (FileExplorerItem child : getByParent(f.getId())) {
-					size += getSize(child);
-				}
-			}
-		} catch (Exception err) {
-			log.error("[getSize] ", err);
+	/**
+	 * @return not deleted items ordered by id, used to check stored sizes
+	 */
+	public List<FileExplorerItem> getWithStorage(int start, int count) {
+		return em.createNamedQuery("getFilesWithStorage", FileExplorerItem.class)
+				.setFirstResult(start)
+				.setMaxResults(count)
+				.getResultList();
+	}
+
+	/**
+	 * Sets stored size of the item without updating the usage, which has to be recalculated
+	 */
+	public void setStorageSize(Long id, long size) {
+		em.createNamedQuery("setFileStorageSize")
+				.setParameter("id", id)
+				.setParameter("size", size)
+				.executeUpdate();
+	}
+
+	/**
+	 * @return ids of all the scopes of given type having items
+	 */
+	public Set<Long> getStorageScopes(StorageUsage.Type type) {
+		String query;
+		switch (type) {
+			case USER:
+				query = "getFileStorageOwners";
+				break;
+			case ROOM:
+				query = "getFileStorageRooms";
+				break;
+			case GROUP:
+			default:
+				query = "getFileStorageGroups";
+				break;
 		}
-		return size;
+		return new HashSet<>(em.createNamedQuery(query, Long.class).getResultList());
 	}
 }
@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.db.dao.file;
+
+import static org.apache.openmeetings.util.OpenmeetingsVariables.webAppRootKey;
+
+import java.util.Date;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
+
+import org.apache.openmeetings.db.entity.file.FileExplorerItem.Charge;
+import org.apache.openmeetings.db.entity.file.StorageUsage;
+import org.apache.openmeetings.db.entity.file.StorageUsage.Type;
+import org.red5.logging.Red5LoggerFactory;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Counters of storage used by files of users, rooms and groups,
+ * maintained incrementally as files are added, moved, converted and deleted
+ */
+@Transactional
+public class StorageUsageDao {
+	private static final Logger log = Red5LoggerFactory.getLogger(StorageUsageDao.class, webAppRootKey);
+	@PersistenceContext
+	private EntityManager em;
+	@Autowired
+	private PlatformTransactionManager txManager;
+
+	private StorageUsage getUsage(Type type, Long scopeId) {
+		List<StorageUsage> list = em.createNamedQuery("getStorageUsage", StorageUsage.class)
+				.setParameter("type", type)
+				.setParameter("scopeId", scopeId)
+				.getResultList();
+		return list.isEmpty() ? null : list.get(0);
+	}
+
+	/**
+	 * @return number of bytes used by the scope
+	 */
+	public long get(Type type, Long scopeId) {
+		if (scopeId == null) {
+			return 0;
+		}
+		StorageUsage u = getUsage(type, scopeId);
+		return u == null ? 0 : u.getBytes();
+	}
+
+	public List<StorageUsage> get() {
+		return em.createNamedQuery("getAllStorageUsage", StorageUsage.class).getResultList();
+	}
+
+	private boolean exists(Type type, Long scopeId) {
+		return em.createNamedQuery("countStorageUsage", Long.class)
+				.setParameter("type", type)
+				.setParameter("scopeId", scopeId)
+				.getSingleResult() > 0;
+	}
+
+	private int update(Type type, Long scopeId, long delta) {
+		return em.createNamedQuery("addStorageUsage")
+				.setParameter("delta", delta)
+				.setParameter("updated", new Date())
+				.setParameter("type", type)
+				.setParameter("scopeId", scopeId)
+				.executeUpdate();
+	}
+
+	/**
+	 * Creates empty counter of the scope in its own transaction, so it is visible to concurrent
+	 * transactions right away and is not rolled back together with the caller's transaction.
+	 * Counter created concurrently by the other transaction violates the unique constraint, which is expected.
+	 */
+	private void create(Type type, Long scopeId) {
+		TransactionTemplate tx = new TransactionTemplate(txManager);
+		tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		try {
+			tx.execute(status -> {
+				if (getUsage(type, scopeId) == null) {
+					StorageUsage u = new StorageUsage();
+					u.setType(type);
+					u.setScopeId(scopeId);
+					u.setBytes(0);
+					u.setUpdated(new Date());
+					em.persist(u);
+					em.flush();
+				}
+				return null;
+			});
+		} catch (Exception e) {
+			log.debug("Storage usage of {} {} was created concurrently", type, scopeId, e);
+		}
+	}
+
+	/**
+	 * Adds <code>delta</code> to the counter of the scope, counter is created if not exists.
+	 * Update of the missing counter would lock the gap of the index (MySQL, REPEATABLE READ)
+	 * and block creation of the counter in the separate transaction, so counter is checked by
+	 * non-locking read and created before it is updated.
+	 */
+	public void add(Type type, Long scopeId, long delta) {
+		if (scopeId == null || delta == 0) {
+			return;
+		}
+		if (!exists(type, scopeId)) {
+			create(type, scopeId);
+		}
+		if (update(type, scopeId, delta) == 0) {
+			throw new IllegalStateException(String.format("Storage usage of %s %s can't be created", type, scopeId));
+		}
+	}
+
+	/**
+	 * Recalculates the counter of the scope from stored sizes of its items, used to fix the drift.
+	 * Counter is locked before the items are summed, so concurrent updates either are already
+	 * committed and included into the sum, or wait for the lock and are applied on top of it.
+	 *
+	 * @return <code>true</code> if the counter was fixed
+	 */
+	public boolean reconcile(Type type, Long scopeId) {
+		if (scopeId == null) {
+			return false;
+		}
+		create(type, scopeId);
+		StorageUsage u = em.createNamedQuery("getStorageUsage", StorageUsage.class)
+				.setParameter("type", type)
+				.setParameter("scopeId", scopeId)
+				.setLockMode(LockModeType.PESSIMISTIC_WRITE)
+				.getSingleResult();
+		Long sum = em.createNamedQuery(getSumQuery(type), Long.class)
+				.setParameter("scopeId", scopeId)
+				.getSingleResult();
+		long bytes = sum == null ? 0 : sum;
+		if (u.getBytes() == bytes) {
+			return false;
+		}
+		log.debug("Storage usage of {} {} is fixed: {} -> {}", type, scopeId, u.getBytes(), bytes);
+		u.setBytes(bytes);
+		u.setUpdated(new Date());
+		em.merge(u);
+		return true;
+	}
+
+	private static String getSumQuery(Type type) {
+		switch (type) {
+			case USER:
+				return "sumFileStorageOfOwner";
+			case ROOM:
+				return "sumFileStorageOfRoom";
+			case GROUP:
+			default:
+				return "sumFileStorageOfGroup";
+		}
+	}
+
+	/**
+	 * Accounts item in the usage of its owner, or its room and group if the item is public
+	 *
+	 * @param c - scope and size of the item
+	 * @param sign - 1 to add the item, -1 to remove it
+	 */
+	public void charge(Charge c, int sign) {
+		if (c == null || c.getSize() == 0) {
+			return;
+		}
+		long delta = sign * c.getSize();
+		if (c.getOwnerId() != null) {
+			add(Type.USER, c.getOwnerId(), delta);
+		} else {
+			add(Type.ROOM, c.getRoomId(), delta);
+			add(Type.GROUP, c.getGroupId(), delta);
+		}
+	}
+}
@@ -39,6 +39,7 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.collections4.Predicate;
@@ -70,6 +71,8 @@ public class LabelDao implements IDataProviderDao<StringLabel>{
 	public static final LinkedHashMap<Long, Locale> languages = new LinkedHashMap<>(); //TODO hide it and return unmodifiable map
 	public static final ConcurrentHashMap<Locale, List<StringLabel>> labelCache = new ConcurrentHashMap<>();
 	public static final Set<String> keys = new HashSet<>();
+	// changed each time labels are modified, allows to invalidate the data built from labels
+	private static final AtomicLong version = new AtomicLong();
 	private static Class<?> APP = null;
 
 	public List<Map<String, Object>> getStrings(Long language_id, int start, int count) {
@@ -151,7 +154,12 @@ public class LabelDao implements IDataProviderDao<StringLabel>{
 		return name;
 	}
 
+	public static long getVersion() {
+		return version.get();
+	}
+
 	private static void storeLabels(Locale l) throws Exception {
+		version.incrementAndGet();
 		Document d = XmlExport.createDocument();
 		Element r = XmlExport.createRoot(d);
 		List<StringLabel> labels = labelCache.get(l);
@@ -306,6 +314,7 @@ public class LabelDao implements IDataProviderDao<StringLabel>{
 			}
 		}
 		labelCache.remove(l);
+		version.incrementAndGet();
 		try {
 			URL u = APP.getResource(getLabelFileName(l));
 			if (u != null) {
@@ -21,6 +21,7 @@ package org.apache.openmeetings.db.dao.log;
 import static org.apache.openmeetings.util.OpenmeetingsVariables.webAppRootKey;
 
 import java.util.Date;
+import java.util.List;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
@@ -38,7 +39,7 @@ public class ConferenceLogDao {
 	@PersistenceContext
 	private EntityManager em;
 
-	public ConferenceLog add(Type type, Long userId, String streamid, Long roomId, String userip, String scopeName) {
+	public static ConferenceLog create(Type type, Long userId, String streamid, Long roomId, String userip, String scopeName) {
 		ConferenceLog confLog = new ConferenceLog();
 		confLog.setType(type);
 		confLog.setInserted(new Date());
@@ -47,9 +48,25 @@ public class ConferenceLogDao {
 		confLog.setScopeName(scopeName);
 		confLog.setRoomId(roomId);
 		confLog.setUserip(userip);
-		
+		return confLog;
+	}
+
+	public ConferenceLog add(Type type, Long userId, String streamid, Long roomId, String userip, String scopeName) {
+		ConferenceLog confLog = create(type, userId, streamid, roomId, userip, scopeName);
 		em.persist(confLog);
 		log.debug("[addConferenceLog]: " + confLog);
 		return confLog;
 	}
+
+	/**
+	 * Stores events in one transaction, time of the events is preserved
+	 *
+	 * @param list - events to be stored
+	 */
+	public void add(List<ConferenceLog> list) {
+		for (ConferenceLog confLog : list) {
+			em.persist(confLog);
+		}
+		log.debug("[addConferenceLog]: {} events stored", list.size());
+	}
 }
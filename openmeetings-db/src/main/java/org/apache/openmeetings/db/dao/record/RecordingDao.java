@@ -18,12 +18,18 @@
  */
 package org.apache.openmeetings.db.dao.record;
 
+import static org.apache.openmeetings.util.OmFileHelper.EXTENSION_IDX;
+import static org.apache.openmeetings.util.OmFileHelper.EXTENSION_INIT_MP4;
 import static org.apache.openmeetings.util.OmFileHelper.EXTENSION_JPG;
+import static org.apache.openmeetings.util.OmFileHelper.EXTENSION_M3U8;
+import static org.apache.openmeetings.util.OmFileHelper.EXTENSION_M4S;
 import static org.apache.openmeetings.util.OmFileHelper.EXTENSION_MP4;
 import static org.apache.openmeetings.util.OpenmeetingsVariables.webAppRootKey;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
@@ -49,6 +55,9 @@ import org.springframework.transaction.annotation.Transactional;
 @Transactional
 public class RecordingDao {
 	private static final Logger log = Red5LoggerFactory.getLogger(RecordingDao.class, webAppRootKey);
+	// preview, video and its HLS representation
+	public static final List<String> FILE_EXTENSIONS = Collections.unmodifiableList(Arrays.asList(
+			EXTENSION_JPG, EXTENSION_MP4, EXTENSION_M3U8, EXTENSION_M4S, EXTENSION_INIT_MP4, EXTENSION_IDX));
 	
 	@PersistenceContext
 	private EntityManager em;
@@ -274,11 +283,10 @@ public class RecordingDao {
 	private long getSize(Recording r) {
 		long size = 0;
 
-		if (r.exists(EXTENSION_JPG)) {
-			size += r.getFile(EXTENSION_JPG).length();
-		}
-		if (r.exists(EXTENSION_MP4)) {
-			size += r.getFile(EXTENSION_MP4).length();
+		for (String ext : FILE_EXTENSIONS) {
+			if (r.exists(ext)) {
+				size += r.getFile(ext).length();
+			}
 		}
 		for (Recording rec : getByParent(r.getId())) {
 			size += getSize(rec);
@@ -19,7 +19,9 @@
 package org.apache.openmeetings.db.dao.room;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
@@ -155,6 +157,17 @@ public class ClientDao {
 		return q.getResultList();
 	}
 
+	/**
+	 * @return number of users (screen sharing clients are not counted) in each room having users
+	 */
+	public Map<Long, Integer> getRoomOccupancy() {
+		Map<Long, Integer> result = new HashMap<>();
+		for (Object[] row : em.createNamedQuery("getRoomOccupancy", Object[].class).getResultList()) {
+			result.put((Long)row[0], ((Number)row[1]).intValue());
+		}
+		return result;
+	}
+
 	/**
 	 * returns a list of servers or an empty list in case no roomIds are found
 	 *
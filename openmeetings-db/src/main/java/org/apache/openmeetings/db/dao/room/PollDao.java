@@ -29,8 +29,10 @@ import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
 import javax.persistence.TypedQuery;
 
+import org.apache.openmeetings.db.entity.room.Room;
 import org.apache.openmeetings.db.entity.room.RoomPoll;
 import org.apache.openmeetings.db.entity.room.RoomPollAnswer;
+import org.apache.openmeetings.db.entity.user.User;
 import org.red5.logging.Red5LoggerFactory;
 import org.slf4j.Logger;
 import org.springframework.transaction.annotation.Transactional;
@@ -52,6 +54,21 @@ public class PollDao {
 		return p;
 	}
 
+	/**
+	 * Stores new answers of the polls, referenced poll and user are only required to have ids
+	 */
+	public List<RoomPollAnswer> addAnswers(List<RoomPollAnswer> list) {
+		for (RoomPollAnswer a : list) {
+			if (a.getVoteDate() == null) {
+				a.setVoteDate(new Date());
+			}
+			a.setRoomPoll(em.getReference(RoomPoll.class, a.getRoomPoll().getId()));
+			a.setVotedUser(em.getReference(User.class, a.getVotedUser().getId()));
+			em.persist(a);
+		}
+		return list;
+	}
+
 	public boolean close(Long roomId) {
 		try {
 			log.debug(" :: close :: ");
@@ -96,6 +113,37 @@ public class PollDao {
 		return null;
 	}
 	
+	/**
+	 * @return active poll of the room without answers, <code>null</code> if there is no active poll
+	 */
+	public RoomPoll getStateByRoom(Long roomId) {
+		List<Object[]> list = em.createNamedQuery("getPollState", Object[].class)
+				.setParameter("roomId", roomId)
+				.getResultList();
+		if (list.isEmpty()) {
+			return null;
+		}
+		Object[] o = list.get(0);
+		RoomPoll p = new RoomPoll();
+		p.setId((Long)o[0]);
+		p.setName((String)o[1]);
+		p.setQuestion((String)o[2]);
+		p.setCreated((Date)o[3]);
+		p.setType((RoomPoll.Type)o[4]);
+		p.setCreator((User)o[5]);
+		p.setRoom((Room)o[6]);
+		return p;
+	}
+
+	/**
+	 * @return answer, point and number of votes for each distinct answer of the poll
+	 */
+	public List<Object[]> countAnswers(Long pollId) {
+		return em.createNamedQuery("countPollAnswers", Object[].class)
+				.setParameter("pollId", pollId)
+				.getResultList();
+	}
+
 	public List<RoomPoll> get() {
 		try {
 			TypedQuery<RoomPoll> q = em.createNamedQuery("getPollListBackup", RoomPoll.class);
@@ -123,11 +171,19 @@ public class PollDao {
 	}
 	
 	public boolean hasPoll(Long roomId) {
+		return hasPoll(roomId, false);
+	}
+
+	public boolean hasArchived(Long roomId) {
+		return hasPoll(roomId, true);
+	}
+
+	private boolean hasPoll(Long roomId, boolean archived) {
 		try {
-			log.debug(" :: hasPoll :: " + roomId);
+			log.debug(" :: hasPoll :: " + roomId + ", " + archived);
 			TypedQuery<Long> q = em.createNamedQuery("hasPoll", Long.class);
 			q.setParameter("roomId", roomId);
-			q.setParameter("archived", false);
+			q.setParameter("archived", archived);
 			return q.getSingleResult() > 0;
 		} catch (NoResultException nre) {
 			//expected
@@ -23,6 +23,7 @@ import static org.apache.openmeetings.util.OpenmeetingsVariables.webAppRootKey;
 
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
@@ -42,6 +43,8 @@ import org.apache.openmeetings.db.dao.user.UserDao;
 import org.apache.openmeetings.db.entity.log.ConferenceLog;
 import org.apache.openmeetings.db.entity.room.Room;
 import org.apache.openmeetings.db.entity.room.Room.Type;
+import org.apache.openmeetings.db.entity.room.RoomGroup;
+import org.apache.openmeetings.db.util.ChangeVersions;
 import org.apache.openmeetings.db.util.TimezoneUtil;
 import org.apache.openmeetings.util.DaoHelper;
 import org.red5.logging.Red5LoggerFactory;
@@ -64,6 +67,8 @@ public class RoomDao implements IGroupAdminDataProviderDao<Room> {
 	private UserDao userDao;
 	@Autowired
 	private TimezoneUtil timezoneUtil;
+	@Autowired
+	private ChangeVersions versions;
 
 	@Override
 	public Room get(long id) {
@@ -179,6 +184,19 @@ public class RoomDao implements IGroupAdminDataProviderDao<Room> {
 		return q.getResultList();
 	}
 
+	/**
+	 * @param groupIds - ids of the groups
+	 * @return group-room assignments of all given groups ordered by group and room name
+	 */
+	public List<RoomGroup> getGroupRooms(Collection<Long> groupIds) {
+		if (groupIds.isEmpty()) {
+			return new ArrayList<>();
+		}
+		return em.createNamedQuery("getRoomGroupsByGroupIds", RoomGroup.class)
+				.setParameter("ids", groupIds)
+				.getResultList();
+	}
+
 	public List<Room> getAppointedRoomsByUser(long userId) {
 		//TODO generalize with AppointmentDao
 		log.debug("getAppointedRoomsByUser : UserID - " + userId);
@@ -234,6 +252,7 @@ public class RoomDao implements IGroupAdminDataProviderDao<Room> {
 			entity.setPin(null);
 		}
 		entity = em.merge(entity);
+		versions.roomsChanged();
 		return entity;
 	}
 
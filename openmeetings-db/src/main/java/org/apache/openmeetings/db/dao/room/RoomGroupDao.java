@@ -25,12 +25,16 @@ import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 
 import org.apache.openmeetings.db.entity.room.RoomGroup;
+import org.apache.openmeetings.db.util.ChangeVersions;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.annotation.Transactional;
 
 @Transactional
 public class RoomGroupDao {
 	@PersistenceContext
 	private EntityManager em;
+	@Autowired
+	private ChangeVersions versions;
 
 	public List<RoomGroup> get() {
 		return em.createNamedQuery("getAllRoomGroups", RoomGroup.class).getResultList();
@@ -47,6 +51,7 @@ public class RoomGroupDao {
 			entity.setUpdated(new Date());
 			entity = em.merge(entity);
 		}
+		versions.roomsChanged();
 		return entity;
 	}
 
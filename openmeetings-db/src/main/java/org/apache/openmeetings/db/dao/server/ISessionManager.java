@@ -20,6 +20,7 @@ package org.apache.openmeetings.db.dao.server;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.openmeetings.db.dto.basic.SearchResult;
 import org.apache.openmeetings.db.dto.server.ClientSessionInfo;
@@ -153,6 +154,13 @@ public interface ISessionManager {
 
 	Collection<StreamClient> getClientListByRoomAll(Long roomId);
 
+	/**
+	 * Maintained by the client store, so no clients are iterated
+	 *
+	 * @return number of users (screen sharing clients are not counted) in each room having users
+	 */
+	Map<Long, Integer> getRoomOccupancy();
+
 	/**
 	 * get the current Moderator in this room
 	 *
@@ -29,7 +29,9 @@ import javax.persistence.TypedQuery;
 
 import org.apache.openmeetings.db.dao.IGroupAdminDataProviderDao;
 import org.apache.openmeetings.db.entity.user.Group;
+import org.apache.openmeetings.db.util.ChangeVersions;
 import org.apache.openmeetings.util.DaoHelper;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.annotation.Transactional;
 
 @Transactional
@@ -37,6 +39,8 @@ public class GroupDao implements IGroupAdminDataProviderDao<Group> {
 	public final static String[] searchFields = {"name"};
 	@PersistenceContext
 	private EntityManager em;
+	@Autowired
+	private ChangeVersions versions;
 
 	@Override
 	public Group get(long id) {
@@ -130,6 +134,7 @@ public class GroupDao implements IGroupAdminDataProviderDao<Group> {
 			entity.setUpdated(new Date());
 			em.merge(entity);
 		}
+		versions.groupsChanged();
 		return entity;
 	}
 
@@ -142,5 +147,6 @@ public class GroupDao implements IGroupAdminDataProviderDao<Group> {
 			g.setUpdatedby(userId);
 		}
 		em.merge(g);
+		versions.groupsChanged();
 	}
 }
@@ -82,6 +82,14 @@ public class PrivateMessageDao implements IDataProviderDao<PrivateMessage> {
 				.getResultList();
 	}
 	
+	//for export, keyset paging is stable while new messages arrive
+	public List<PrivateMessage> getAfter(long lastId, int count) {
+		return em.createNamedQuery("getPrivateMessagesAfter", PrivateMessage.class)
+				.setParameter("lastId", lastId)
+				.setMaxResults(count)
+				.getResultList();
+	}
+
 	@Override
 	public PrivateMessage get(long id) {
 		return get(Long.valueOf(id));
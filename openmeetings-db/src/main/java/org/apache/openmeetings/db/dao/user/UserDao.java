@@ -328,15 +328,20 @@ public class UserDao implements IGroupAdminDataProviderDao<User> {
 	}
 
 	public List<User> getAllBackupUsers() {
+		return getAllBackupUsers(0, Integer.MAX_VALUE);
+	}
+
+	//for export, keyset paging is stable while new users arrive
+	public List<User> getAllBackupUsers(long lastId, int count) {
 		OpenJPAEntityManager oem = OpenJPAPersistence.cast(em);
 		boolean qrce = oem.getFetchPlan().getQueryResultCacheEnabled();
 		try {
 			oem.getFetchPlan().setQueryResultCacheEnabled(false); //FIXME update in cache during update
-			TypedQuery<User> q = oem.createNamedQuery("getAllUsers", User.class);
+			TypedQuery<User> q = oem.createNamedQuery("getUsersAfter", User.class).setParameter("lastId", lastId);
 			@SuppressWarnings("unchecked")
 			OpenJPAQuery<User> kq = OpenJPAPersistence.cast(q);
 			kq.getFetchPlan().addFetchGroups("backupexport", "groupUsers");
-			return kq.getResultList();
+			return kq.setMaxResults(count).getResultList();
 		} finally {
 			oem.getFetchPlan().setQueryResultCacheEnabled(qrce);
 		}
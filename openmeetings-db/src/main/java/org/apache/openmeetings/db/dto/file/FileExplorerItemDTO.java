@@ -27,6 +27,7 @@ import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlRootElement;
 
 import org.apache.openmeetings.db.entity.file.FileExplorerItem;
+import org.apache.openmeetings.db.entity.file.FileExplorerItem.ConversionStatus;
 import org.apache.openmeetings.db.entity.file.FileItem.Type;
 
 /**
@@ -52,6 +53,7 @@ public class FileExplorerItemDTO implements Serializable {
 	private Type type;
 	private Integer width;
 	private Integer height;
+	private ConversionStatus conversionStatus;
 
 	public FileExplorerItemDTO() {}
 
@@ -69,6 +71,7 @@ public class FileExplorerItemDTO implements Serializable {
 		type = f.getType();
 		width = f.getWidth();
 		height = f.getHeight();
+		conversionStatus = f.getConversionStatus();
 	}
 
 	public FileExplorerItem get() {
@@ -193,6 +196,14 @@ public class FileExplorerItemDTO implements Serializable {
 		this.height = height;
 	}
 
+	public ConversionStatus getConversionStatus() {
+		return conversionStatus;
+	}
+
+	public void setConversionStatus(ConversionStatus conversionStatus) {
+		this.conversionStatus = conversionStatus;
+	}
+
 	public static List<FileExplorerItemDTO> list(List<FileExplorerItem> l) {
 		List<FileExplorerItemDTO> list = new ArrayList<>();
 		if (l != null) {
@@ -53,6 +53,7 @@ import org.simpleframework.xml.Root;
 	@NamedQuery(name="getAppointmentById", query="SELECT a FROM Appointment a WHERE a.deleted = false AND a.id = :id")
 	, @NamedQuery(name="getAppointmentByIdAny", query="SELECT a FROM Appointment a WHERE a.id = :id")
 	, @NamedQuery(name="getAppointments", query="SELECT a FROM Appointment a WHERE a.deleted = false ORDER BY a.id")
+	, @NamedQuery(name="getAppointmentsAfter", query="SELECT a FROM Appointment a WHERE a.deleted = false AND a.id > :lastId ORDER BY a.id")
 	, @NamedQuery(name="appointmentsInRange",
 		query="SELECT a FROM Appointment a "
 			+ "WHERE a.deleted = false "
@@ -85,6 +86,8 @@ import org.simpleframework.xml.Root;
 			+ "		OR (a.start < :start AND a.end > :end) "
 			+ "	)"
 		)
+	, @NamedQuery(name="markAppointmentReminderSent",
+		query="UPDATE Appointment a SET a.reminderEmailSend = true WHERE a.id = :id AND a.reminderEmailSend = false")
 	, @NamedQuery(name="getAppointmentByRoomId", query="SELECT a FROM Appointment a WHERE a.room.id = :roomId")
 	, @NamedQuery(name="getAppointmentByOwnerRoomId", query="SELECT a FROM Appointment a WHERE a.deleted = false AND a.owner.id = :userId AND a.room.id = :roomId")
 	//TODO this query returns duplicates if the user books an appointment with his own user as second meeting-member, swagner 19.02.2012
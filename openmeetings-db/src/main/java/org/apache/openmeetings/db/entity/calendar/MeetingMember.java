@@ -47,6 +47,7 @@ import org.simpleframework.xml.Root;
 	@NamedQuery(name="getMeetingMemberById"
 			, query="SELECT mm FROM MeetingMember mm WHERE mm.deleted = false AND mm.id = :id")
 	, @NamedQuery(name="getMeetingMembers", query="SELECT mm FROM MeetingMember mm ORDER BY mm.id")
+	, @NamedQuery(name="getMeetingMembersAfter", query="SELECT mm FROM MeetingMember mm WHERE mm.id > :lastId ORDER BY mm.id")
 	, @NamedQuery(name="getMeetingMemberIdsByAppointment"
 			, query="SELECT mm.id FROM MeetingMember mm WHERE mm.deleted = false AND mm.appointment.id = :id")
 })
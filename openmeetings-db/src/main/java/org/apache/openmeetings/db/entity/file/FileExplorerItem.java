@@ -18,14 +18,19 @@
  */
 package org.apache.openmeetings.db.entity.file;
 
+import java.io.Serializable;
+
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
 import javax.persistence.Table;
+import javax.xml.bind.annotation.XmlType;
 
 import org.simpleframework.xml.Element;
 import org.simpleframework.xml.Root;
@@ -33,8 +38,10 @@ import org.simpleframework.xml.Root;
 @Entity
 @NamedQueries({
 	@NamedQuery(name = "getAllFiles", query = "SELECT f FROM FileExplorerItem f ORDER BY f.id")
+	, @NamedQuery(name = "getFilesAfter", query = "SELECT f FROM FileExplorerItem f WHERE f.id > :lastId ORDER BY f.id")
 	, @NamedQuery(name = "getFileById", query = "SELECT f FROM FileExplorerItem f WHERE f.id = :id")
-	, @NamedQuery(name = "getFileByHash", query = "SELECT f FROM FileExplorerItem f WHERE f.hash = :hash")
+	, @NamedQuery(name = "getFileByHash", query = "SELECT f FROM FileExplorerItem f WHERE f.hash = :hash ORDER BY f.id")
+	, @NamedQuery(name = "countFilesByHash", query = "SELECT COUNT(f) FROM FileExplorerItem f WHERE f.deleted = false AND f.hash = :hash")
 	, @NamedQuery(name = "getFilesByRoom", query = "SELECT f FROM FileExplorerItem f WHERE f.deleted = false AND f.roomId = :roomId " +
 			"AND f.ownerId IS NULL AND f.parentId IS NULL ORDER BY f.type ASC, f.name ")
 	, @NamedQuery(name = "getFilesByOwner", query = "SELECT f FROM FileExplorerItem f WHERE f.deleted = false AND f.ownerId = :ownerId "
@@ -50,12 +57,35 @@ import org.simpleframework.xml.Root;
 	, @NamedQuery(name = "getFileFilteredByGroup", query = "SELECT f FROM FileExplorerItem f WHERE f.deleted = false AND f.ownerId IS NULL "
 			+ "AND f.groupId = :groupId AND f.parentId IS NULL AND f.type IN :filter "
 			+ "ORDER BY f.type ASC, f.name")
+	, @NamedQuery(name = "getFilesByConversionStatus", query = "SELECT f FROM FileExplorerItem f WHERE f.deleted = false "
+			+ "AND f.conversionStatus IN :status ORDER BY f.id")
+	, @NamedQuery(name = "getFileStorageState", query = "SELECT f.ownerId, f.roomId, f.groupId, f.storageSize, f.deleted "
+			+ "FROM FileExplorerItem f WHERE f.id = :id")
+	, @NamedQuery(name = "getFilesWithStorage", query = "SELECT f FROM FileExplorerItem f WHERE f.deleted = false ORDER BY f.id")
+	, @NamedQuery(name = "setFileStorageSize", query = "UPDATE FileExplorerItem f SET f.storageSize = :size WHERE f.id = :id")
+	, @NamedQuery(name = "getFileStorageOwners", query = "SELECT DISTINCT f.ownerId FROM FileExplorerItem f "
+			+ "WHERE f.deleted = false AND f.ownerId IS NOT NULL")
+	, @NamedQuery(name = "getFileStorageRooms", query = "SELECT DISTINCT f.roomId FROM FileExplorerItem f "
+			+ "WHERE f.deleted = false AND f.ownerId IS NULL AND f.roomId IS NOT NULL")
+	, @NamedQuery(name = "getFileStorageGroups", query = "SELECT DISTINCT f.groupId FROM FileExplorerItem f "
+			+ "WHERE f.deleted = false AND f.ownerId IS NULL AND f.groupId IS NOT NULL")
+	, @NamedQuery(name = "sumFileStorageOfOwner", query = "SELECT SUM(f.storageSize) FROM FileExplorerItem f "
+			+ "WHERE f.deleted = false AND f.ownerId = :scopeId")
+	, @NamedQuery(name = "sumFileStorageOfRoom", query = "SELECT SUM(f.storageSize) FROM FileExplorerItem f "
+			+ "WHERE f.deleted = false AND f.ownerId IS NULL AND f.roomId = :scopeId")
+	, @NamedQuery(name = "sumFileStorageOfGroup", query = "SELECT SUM(f.storageSize) FROM FileExplorerItem f "
+			+ "WHERE f.deleted = false AND f.ownerId IS NULL AND f.groupId = :scopeId")
 })
 @Table(name = "fileexploreritem")
 @Root
 public class FileExplorerItem extends FileItem {
 	private static final long serialVersionUID = 1L;
 
+	@XmlType(namespace = "org.apache.openmeetings.file.conversion")
+	public enum ConversionStatus {
+		QUEUED, RUNNING, DONE, FAILED
+	}
+
 	@Id
 	@GeneratedValue(strategy = GenerationType.IDENTITY)
 	@Column(name = "id")
@@ -72,6 +102,53 @@ public class FileExplorerItem extends FileItem {
 	@Column(name = "external_type")
 	private String externalType;
 
+	// state of the asynchronous conversion, null for items not requiring conversion
+	@Column(name = "conversion_status")
+	@Enumerated(EnumType.STRING)
+	private ConversionStatus conversionStatus;
+
+	// id of the cluster node performing the conversion, null if cluster is not configured
+	@Column(name = "conversion_server")
+	private String conversionServer;
+
+	// bytes occupied by stored and converted content, recorded on upload and conversion
+	@Column(name = "storage_size")
+	private Long storageSize;
+
+	/**
+	 * Scope and size the item is accounted in storage usage with
+	 */
+	public static class Charge implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private final Long ownerId;
+		private final Long roomId;
+		private final Long groupId;
+		private final long size;
+
+		public Charge(Long ownerId, Long roomId, Long groupId, Long size, boolean deleted) {
+			this.ownerId = ownerId;
+			this.roomId = roomId;
+			this.groupId = groupId;
+			this.size = deleted || size == null ? 0 : size;
+		}
+
+		public Long getOwnerId() {
+			return ownerId;
+		}
+
+		public Long getRoomId() {
+			return roomId;
+		}
+
+		public Long getGroupId() {
+			return groupId;
+		}
+
+		public long getSize() {
+			return size;
+		}
+	}
+
 	@Override
 	public Long getId() {
 		return id;
@@ -105,4 +182,28 @@ public class FileExplorerItem extends FileItem {
 	public void setExternalType(String externalType) {
 		this.externalType = externalType;
 	}
+
+	public Long getStorageSize() {
+		return storageSize;
+	}
+
+	public void setStorageSize(Long storageSize) {
+		this.storageSize = storageSize;
+	}
+
+	public ConversionStatus getConversionStatus() {
+		return conversionStatus;
+	}
+
+	public void setConversionStatus(ConversionStatus conversionStatus) {
+		this.conversionStatus = conversionStatus;
+	}
+
+	public String getConversionServer() {
+		return conversionServer;
+	}
+
+	public void setConversionServer(String conversionServer) {
+		this.conversionServer = conversionServer;
+	}
 }
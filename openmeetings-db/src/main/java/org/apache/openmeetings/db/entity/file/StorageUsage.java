@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.db.entity.file;
+
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+import org.apache.openmeetings.db.entity.IDataProviderEntity;
+
+/**
+ * Number of bytes occupied by the files of one user, room or group
+ */
+@Entity
+@NamedQueries({
+	@NamedQuery(name = "getStorageUsage", query = "SELECT u FROM StorageUsage u WHERE u.type = :type AND u.scopeId = :scopeId")
+	, @NamedQuery(name = "countStorageUsage", query = "SELECT COUNT(u) FROM StorageUsage u WHERE u.type = :type AND u.scopeId = :scopeId")
+	, @NamedQuery(name = "getAllStorageUsage", query = "SELECT u FROM StorageUsage u ORDER BY u.id")
+	, @NamedQuery(name = "addStorageUsage", query = "UPDATE StorageUsage u SET u.bytes = u.bytes + :delta, u.updated = :updated "
+			+ "WHERE u.type = :type AND u.scopeId = :scopeId")
+})
+@Table(name = "storage_usage", uniqueConstraints = @UniqueConstraint(columnNames = {"type", "scope_id"}))
+public class StorageUsage implements IDataProviderEntity {
+	private static final long serialVersionUID = 1L;
+
+	public enum Type {
+		USER
+		, ROOM
+		, GROUP
+	}
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@Column(name = "id")
+	private Long id;
+
+	@Column(name = "type", nullable = false)
+	@Enumerated(EnumType.STRING)
+	private Type type;
+
+	@Column(name = "scope_id", nullable = false)
+	private Long scopeId;
+
+	@Column(name = "bytes", nullable = false)
+	private long bytes;
+
+	@Column(name = "updated")
+	private Date updated;
+
+	@Override
+	public Long getId() {
+		return id;
+	}
+
+	@Override
+	public void setId(Long id) {
+		this.id = id;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public void setType(Type type) {
+		this.type = type;
+	}
+
+	public Long getScopeId() {
+		return scopeId;
+	}
+
+	public void setScopeId(Long scopeId) {
+		this.scopeId = scopeId;
+	}
+
+	public long getBytes() {
+		return bytes;
+	}
+
+	public void setBytes(long bytes) {
+		this.bytes = bytes;
+	}
+
+	public Date getUpdated() {
+		return updated;
+	}
+
+	public void setUpdated(Date updated) {
+		this.updated = updated;
+	}
+}
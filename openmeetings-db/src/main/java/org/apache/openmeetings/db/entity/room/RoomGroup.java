@@ -59,7 +59,13 @@ import org.simpleframework.xml.Root;
 			+ "AND c.deleted = false"),
 	@NamedQuery(name = "getRoomGroupByRoomsId", query = "select c from RoomGroup as c "
 			+ "where c.room.id = :roomId "
-			+ "AND c.deleted = false")
+			+ "AND c.deleted = false"),
+	@NamedQuery(name = "getRoomGroupsByGroupIds", query = "SELECT c FROM RoomGroup c "
+			+ "LEFT JOIN FETCH c.room "
+			+ "WHERE c.group.id IN :ids "
+			+ "AND c.deleted = false AND c.room.deleted = false AND c.room.appointment = false "
+			+ "AND c.group.deleted = false "
+			+ "ORDER BY c.group.name ASC, c.group.id ASC, c.room.name ASC")
 })
 @Table(name = "room_group")
 @Root(name="room_organisation")
@@ -54,6 +54,8 @@ import org.simpleframework.xml.Root;
 	@NamedQuery(name = "getPollById", query = "SELECT rp FROM RoomPoll rp WHERE rp.id = :id"),
 	@NamedQuery(name = "getPoll", query = "SELECT rp FROM RoomPoll rp "
 			+ "WHERE rp.room.id = :roomId AND rp.archived = false"),
+	@NamedQuery(name = "getPollState", query = "SELECT rp.id, rp.name, rp.question, rp.created, rp.type, rp.creator, rp.room "
+			+ "FROM RoomPoll rp WHERE rp.room.id = :roomId AND rp.archived = false"),
 	@NamedQuery(name = "getPollListBackup", query = "SELECT rp FROM RoomPoll rp ORDER BY rp.id"),
 	@NamedQuery(name = "getArchivedPollList", query = "SELECT rp FROM RoomPoll rp "
 			+ "WHERE rp.room.id = :roomId AND rp.archived = true ORDER BY rp.created DESC"),
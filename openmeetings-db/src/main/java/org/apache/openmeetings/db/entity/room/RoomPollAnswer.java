@@ -42,6 +42,8 @@ import org.simpleframework.xml.Root;
 @NamedQueries({
 	@NamedQuery(name = "hasVoted", query = "SELECT rpa FROM RoomPollAnswer rpa WHERE rpa.roomPoll.room.id = :roomId "
 				+ "AND rpa.votedUser.id = :userId AND rpa.roomPoll.archived = false")
+	, @NamedQuery(name = "countPollAnswers", query = "SELECT rpa.answer, rpa.pointList, COUNT(rpa) FROM RoomPollAnswer rpa "
+				+ "WHERE rpa.roomPoll.id = :pollId GROUP BY rpa.answer, rpa.pointList")
 })
 @Table(name = "room_poll_answer")
 @Root(name="roompollanswer")
@@ -61,6 +61,8 @@ import org.apache.openmeetings.util.CalendarPatterns;
 	@NamedQuery(name = "getClientsWithServer", query = "SELECT c FROM StreamClient c LEFT JOIN FETCH c.server"),
 	@NamedQuery(name = "getClientsByUserId", query = "SELECT c FROM StreamClient c WHERE c.server = :server AND c.userId = :userId"),
 	@NamedQuery(name = "getClientsByRoomId", query = "SELECT c FROM StreamClient c WHERE c.roomId = :roomId"),
+	@NamedQuery(name = "getRoomOccupancy", query = "SELECT c.roomId, COUNT(c.id) FROM StreamClient c "
+			+ "WHERE c.roomId IS NOT NULL AND c.screenClient = false GROUP BY c.roomId"),
 	@NamedQuery(name = "getRoomsIdsByServer", query = "SELECT c.roomId FROM StreamClient c WHERE c.server = :server GROUP BY c.roomId")
 })
 @Table(name = "client")
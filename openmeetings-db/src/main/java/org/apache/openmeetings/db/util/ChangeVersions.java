@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.db.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Versions of the data visibility of the rooms depends on.
+ *
+ * Every change of the rooms (including their group assignments) and groups increments
+ * corresponding version, so caches built on top of this data can be validated by comparing
+ * two numbers instead of querying database. Versions are local to this node.
+ *
+ * Version is incremented after the change is committed, otherwise cache built by concurrent
+ * reader before the commit would get new version with old data and stay stale.
+ */
+public class ChangeVersions {
+	private final AtomicLong rooms = new AtomicLong();
+	private final AtomicLong groups = new AtomicLong();
+
+	public void roomsChanged() {
+		afterCommit(rooms);
+	}
+
+	public void groupsChanged() {
+		afterCommit(groups);
+	}
+
+	private static void afterCommit(final AtomicLong version) {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCommit() {
+					version.incrementAndGet();
+				}
+			});
+		} else {
+			version.incrementAndGet();
+		}
+	}
+
+	public long getRooms() {
+		return rooms.get();
+	}
+
+	public long getGroups() {
+		return groups.get();
+	}
+}
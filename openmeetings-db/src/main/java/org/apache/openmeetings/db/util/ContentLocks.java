@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.db.util;
+
+/**
+ * Locks guarding stored content addressed by its hash.
+ *
+ * Content is stored and the item referencing it is saved under the lock of the hash,
+ * references are counted and not referenced content is removed under the same lock,
+ * so content of the upload being saved concurrently is never removed.
+ */
+public class ContentLocks {
+	private static final int LOCK_COUNT = 64;
+	private static final Object[] locks = new Object[LOCK_COUNT];
+
+	static {
+		for (int i = 0; i < LOCK_COUNT; ++i) {
+			locks[i] = new Object();
+		}
+	}
+
+	private ContentLocks() {}
+
+	public static Object get(String hash) {
+		return locks[(hash.hashCode() & Integer.MAX_VALUE) % LOCK_COUNT];
+	}
+}
@@ -25,18 +25,31 @@ import static org.apache.openmeetings.util.OmFileHelper.BCKP_ROOM_FILES;
 import static org.apache.openmeetings.util.OmFileHelper.IMPORT_DIR;
 import static org.apache.openmeetings.util.OpenmeetingsVariables.webAppRootKey;
 
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.io.InputStream;
 import java.io.OutputStreamWriter;
-import java.net.URI;
+import java.io.Writer;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
-import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CloseShieldOutputStream;
 import org.apache.openmeetings.db.dao.basic.ChatDao;
 import org.apache.openmeetings.db.dao.basic.ConfigurationDao;
 import org.apache.openmeetings.db.dao.calendar.AppointmentDao;
@@ -55,9 +68,11 @@ import org.apache.openmeetings.db.dao.user.PrivateMessageDao;
 import org.apache.openmeetings.db.dao.user.PrivateMessageFolderDao;
 import org.apache.openmeetings.db.dao.user.UserContactDao;
 import org.apache.openmeetings.db.dao.user.UserDao;
+import org.apache.openmeetings.db.entity.IDataProviderEntity;
 import org.apache.openmeetings.db.entity.basic.ChatMessage;
 import org.apache.openmeetings.db.entity.basic.Configuration;
 import org.apache.openmeetings.db.entity.calendar.Appointment;
+import org.apache.openmeetings.db.entity.calendar.MeetingMember;
 import org.apache.openmeetings.db.entity.calendar.OmCalendar;
 import org.apache.openmeetings.db.entity.file.FileExplorerItem;
 import org.apache.openmeetings.db.entity.record.Recording;
@@ -94,6 +109,25 @@ public class BackupExport {
 			+ "you should use the BackupPanel to modify or change this file \n"
 			+ "see http://openmeetings.apache.org/Upgrade.html for Details \n"
 			+ "###############################################\n";
+	private static final int BATCH_SIZE = 1000;
+	// files of these types are already compressed, deflating them again is waste of CPU
+	private static final Set<String> STORED_EXT = new HashSet<>(Arrays.asList(
+			"flv", "mp4", "ogg", "webm", "mp3", "png", "jpg", "jpeg", "gif", "pdf", "swf", "zip"));
+
+	/**
+	 * Source of entities being exported, should return entities following
+	 * <code>last</code> one in stable order (<code>null</code> for the first page),
+	 * empty list marks the end of the data
+	 */
+	@FunctionalInterface
+	private interface Pager<T> {
+		List<T> get(T last, int count);
+	}
+
+	@FunctionalInterface
+	private interface FirstChunk<T> {
+		void accept(List<T> list) throws Exception;
+	}
 
 	@Autowired
 	private AppointmentDao appointmentDao;
@@ -133,6 +167,30 @@ public class BackupExport {
 	private RoomGroupDao roomGroupDao;
 
 	public void performExport(File zip, boolean includeFiles, ProgressHolder progressHolder) throws Exception {
+		performExport(zip, includeFiles, null, progressHolder);
+	}
+
+	/**
+	 * Performs backup
+	 *
+	 * @param zip - resulting archive
+	 * @param includeFiles - should uploaded files and recordings be included
+	 * @param baseZip - previous backup (full or incremental), if not <code>null</code> incremental
+	 * 		backup is performed: only files added or changed since <code>baseZip</code> are stored,
+	 * 		deleted files are listed in manifest. Entities are always stored completely
+	 */
+	public void performExport(File zip, boolean includeFiles, File baseZip, ProgressHolder progressHolder) throws Exception {
+		BackupManifest base = null;
+		if (baseZip != null) {
+			base = BackupManifest.read(baseZip);
+			if (base == null) {
+				throw new IllegalArgumentException("Base backup has no manifest, incremental backup is impossible: " + baseZip);
+			}
+		}
+		BackupManifest manifest = new BackupManifest();
+		if (base != null) {
+			manifest.setBaseId(base.getId());
+		}
 		if (!zip.getParentFile().exists()) {
 			zip.getParentFile().mkdirs();
 		}
@@ -149,7 +207,7 @@ public class BackupExport {
 			/*
 			 * ##################### Backup Users
 			 */
-			exportUsers(zos, userDao.getAllBackupUsers());
+			exportUsers(zos, (last, count) -> userDao.getAllBackupUsers(id(last), count));
 			progressHolder.setProgress(10);
 
 			/*
@@ -199,7 +257,6 @@ public class BackupExport {
 			 * ##################### Backup Appointments
 			 */
 			{
-				List<Appointment> list = appointmentDao.get();
 				Registry registry = new Registry();
 				Strategy strategy = new RegistryStrategy(registry);
 				Serializer serializer = new Persister(strategy);
@@ -207,19 +264,20 @@ public class BackupExport {
 				registry.bind(User.class, UserConverter.class);
 				registry.bind(Appointment.Reminder.class, AppointmentReminderTypeConverter.class);
 				registry.bind(Room.class, RoomConverter.class);
-				if (list != null && !list.isEmpty()) {
-					for (Appointment a : list) {
-						if (a.getStart() != null) {
-							registry.bind(a.getStart().getClass(), DateConverter.class);
-							break;
-						} else if (a.getInserted() != null) {
-							registry.bind(a.getInserted().getClass(), DateConverter.class);
-							break;
-						}
-					}
-				}
 
-				writeList(serializer, zos, "appointements.xml", "appointments", list);
+				writeList(serializer, zos, "appointements.xml", "appointments"
+						, (Appointment last, int count) -> appointmentDao.getAfter(id(last), count)
+						, list -> {
+							for (Appointment a : list) {
+								if (a.getStart() != null) {
+									bindDate(registry, a.getStart());
+									break;
+								} else if (a.getInserted() != null) {
+									bindDate(registry, a.getInserted());
+									break;
+								}
+							}
+						});
 				progressHolder.setProgress(25);
 			}
 
@@ -234,8 +292,8 @@ public class BackupExport {
 				registry.bind(User.class, UserConverter.class);
 				registry.bind(Appointment.class, AppointmentConverter.class);
 
-				writeList(serializer, zos, "meetingmembers.xml",
-						"meetingmembers", meetingMemberDao.getMeetingMembers());
+				writeList(serializer, zos, "meetingmembers.xml", "meetingmembers"
+						, (MeetingMember last, int count) -> meetingMemberDao.getAfter(id(last), count), null);
 				progressHolder.setProgress(30);
 			}
 
@@ -265,19 +323,16 @@ public class BackupExport {
 			 * ##################### Private Messages
 			 */
 			{
-				List<PrivateMessage> list = privateMessageDao.get(0, Integer.MAX_VALUE);
 				Registry registry = new Registry();
 				Strategy strategy = new RegistryStrategy(registry);
 				Serializer serializer = new Persister(strategy);
 
 				registry.bind(User.class, UserConverter.class);
 				registry.bind(Room.class, RoomConverter.class);
-				if (list != null && !list.isEmpty()) {
-					registry.bind(list.get(0).getInserted().getClass(), DateConverter.class);
-				}
 
-				writeList(serializer, zos, "privateMessages.xml",
-						"privatemessages", list);
+				writeList(serializer, zos, "privateMessages.xml", "privatemessages"
+						, (PrivateMessage last, int count) -> privateMessageDao.getAfter(id(last), count)
+						, (List<PrivateMessage> list) -> bindDate(registry, list.get(0).getInserted()));
 				progressHolder.setProgress(50);
 			}
 
@@ -306,16 +361,13 @@ public class BackupExport {
 			 * ##################### File-Explorer
 			 */
 			{
-				List<FileExplorerItem> list = fileExplorerItemDao.get();
 				Registry registry = new Registry();
 				Strategy strategy = new RegistryStrategy(registry);
 				Serializer serializer = new Persister(strategy);
 
-				if (list != null && !list.isEmpty()) {
-					registry.bind(list.get(0).getInserted().getClass(), DateConverter.class);
-				}
-
-				writeList(serializer, zos, "fileExplorerItems.xml", "fileExplorerItems", list);
+				writeList(serializer, zos, "fileExplorerItems.xml", "fileExplorerItems"
+						, (FileExplorerItem last, int count) -> fileExplorerItemDao.getAfter(id(last), count)
+						, (List<FileExplorerItem> list) -> bindDate(registry, list.get(0).getInserted()));
 				progressHolder.setProgress(65);
 			}
 
@@ -378,97 +430,227 @@ public class BackupExport {
 			 * ##################### Chat
 			 */
 			{
-				List<ChatMessage> list = chatDao.get(0, Integer.MAX_VALUE);
 				Registry registry = new Registry();
 				registry.bind(User.class, UserConverter.class);
 				registry.bind(Room.class, RoomConverter.class);
 				Strategy strategy = new RegistryStrategy(registry);
 				Serializer serializer = new Persister(strategy);
 
-				if (list != null && !list.isEmpty()) {
-					registry.bind(list.get(0).getSent().getClass(), DateConverter.class);
-				}
-
-				writeList(serializer, zos, "chat_messages.xml", "chat_messages", list);
+				writeList(serializer, zos, "chat_messages.xml", "chat_messages"
+						, (ChatMessage last, int count) -> chatDao.getAfter(id(last), count)
+						, (List<ChatMessage> list) -> bindDate(registry, list.get(0).getSent()));
 				progressHolder.setProgress(85);
 			}
 			if (includeFiles) {
+				Path uploadDir = OmFileHelper.getUploadDir().toPath();
+				Path recDir = OmFileHelper.getStreamsHibernateDir().toPath();
+				FileProgress fp = new FileProgress(progressHolder, 85, 99
+						, getSize(uploadDir, true) + getSize(recDir, false));
 				//##################### Backup Room Files
-				for (File file : OmFileHelper.getUploadDir().listFiles()) {
-					if (file.isDirectory()) {
-						String fName = file.getName();
-						if (!IMPORT_DIR.equals(fName) && !BACKUP_DIR.equals(fName)) {
-							log.debug("### " + file.getName());
-							writeZipDir(BCKP_ROOM_FILES, file.getParentFile().toURI(), file, zos);
-						}
-					}
-				}
+				writeZipDir(BCKP_ROOM_FILES, uploadDir, true, zos, fp, base, manifest);
 
 				//##################### Backup Recording Files
-				File recDir = OmFileHelper.getStreamsHibernateDir();
-				writeZipDir(BCKP_RECORD_FILES, recDir.toURI(), recDir, zos);
-				progressHolder.setProgress(90);
+				writeZipDir(BCKP_RECORD_FILES, recDir, false, zos, fp, base, manifest);
+				if (base != null) {
+					manifest.markDeleted(base);
+				}
+			} else if (base != null) {
+				// files were not touched by this backup, they are still available in the previous ones
+				manifest.getFiles().putAll(base.getFiles());
 			}
+			zos.setLevel(Deflater.DEFAULT_COMPRESSION);
+			zos.putNextEntry(new ZipEntry(BackupManifest.FILE_NAME));
+			manifest.write(new CloseShieldOutputStream(zos));
+			zos.closeEntry();
 		}
 		progressHolder.setProgress(100);
 		log.debug("---Done");
 	}
 
+	private static void bindDate(Registry registry, Object date) throws Exception {
+		if (date != null) {
+			registry.bind(date.getClass(), DateConverter.class);
+		}
+	}
+
 	private static <T> void writeList(Serializer ser, ZipOutputStream zos, String fileName, String listElement, List<T> list) throws Exception {
-		ZipEntry e = new ZipEntry(fileName);
-		zos.putNextEntry(e);
-		ByteArrayOutputStream baos = new ByteArrayOutputStream(10 * 1024); //10K
-		writeList(ser, baos, listElement, list);
-		zos.write(baos.toByteArray());
-		zos.closeEntry();
+		writeList(ser, zos, fileName, listElement, (last, count) -> last == null ? list : null, null);
 	}
 
-	private static <T> void writeList(Serializer ser, OutputStream os, String listElement, List<T> list) throws Exception {
+	private static long id(IDataProviderEntity e) {
+		return e == null ? 0L : e.getId();
+	}
+
+	/**
+	 * Entities are being fetched and written chunk by chunk directly into zip entry,
+	 * so only {@link #BATCH_SIZE} entities are being held in memory at any time
+	 *
+	 * @param first - callback invoked with the first non-empty chunk, before it is written
+	 */
+	private static <T> void writeList(Serializer ser, ZipOutputStream zos, String fileName, String listElement
+			, Pager<T> pager, FirstChunk<T> first) throws Exception
+	{
+		ZipEntry e = new ZipEntry(fileName);
+		zos.setLevel(Deflater.DEFAULT_COMPRESSION);
+		zos.putNextEntry(e);
+		// zip stream should not be closed by XML writer
+		Writer w = new BufferedWriter(new OutputStreamWriter(new CloseShieldOutputStream(zos), UTF_8));
 		Format format = new Format("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
-		OutputNode doc = NodeBuilder.write(new OutputStreamWriter(os, UTF_8), format);
+		OutputNode doc = NodeBuilder.write(w, format);
 		OutputNode root = doc.getChild("root");
 		root.setComment(BACKUP_COMMENT);
 		OutputNode listNode = root.getChild(listElement);
 
-		if (list != null) {
+		T last = null;
+		while (true) {
+			List<T> list = pager.get(last, BATCH_SIZE);
+			if (list == null || list.isEmpty()) {
+				break;
+			}
+			if (last == null && first != null) {
+				first.accept(list);
+			}
 			for (T t : list) {
 				try {
 					ser.write(t, listNode);
-				} catch (Exception e) {
-					log.debug("Exception While writing node of type: " + t.getClass(), e);
+				} catch (Exception ex) {
+					log.debug("Exception While writing node of type: " + t.getClass(), ex);
 				}
 			}
+			last = list.get(list.size() - 1);
+			if (list.size() < BATCH_SIZE) {
+				break;
+			}
 		}
 		root.commit();
+		w.flush();
+		zos.closeEntry();
 	}
 
 	public void exportUsers(ZipOutputStream zos, List<User> list) throws Exception {
+		exportUsers(zos, (last, count) -> last == null ? list : null);
+	}
+
+	private static void exportUsers(ZipOutputStream zos, Pager<User> pager) throws Exception {
 		Registry registry = new Registry();
 		Strategy strategy = new RegistryStrategy(registry);
 		Serializer ser = new Persister(strategy);
 
 		registry.bind(Group.class, GroupConverter.class);
 		registry.bind(Salutation.class, SalutationConverter.class);
-		if (list != null && !list.isEmpty()) {
-			Class<?> dateClass = list.get(0).getRegdate() != null ? list.get(0).getRegdate().getClass() : list.get(0).getInserted().getClass();
-			registry.bind(dateClass, DateConverter.class);
+
+		writeList(ser, zos, "users.xml", "users", pager, list -> {
+			User u = list.get(0);
+			bindDate(registry, u.getRegdate() != null ? u.getRegdate() : u.getInserted());
+		});
+	}
+
+	private static boolean isExcluded(Path base, Path dir, boolean skipBackup) {
+		if (!skipBackup || !base.equals(dir.getParent())) {
+			return false;
 		}
+		String fName = dir.getFileName().toString();
+		return IMPORT_DIR.equals(fName) || BACKUP_DIR.equals(fName);
+	}
+
+	private static long getSize(Path base, boolean skipBackup) throws IOException {
+		final long[] size = {0};
+		if (Files.isDirectory(base)) {
+			Files.walkFileTree(base, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+					return isExcluded(base, dir, skipBackup) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+				}
 
-		writeList(ser, zos, "users.xml", "users", list);
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+					size[0] += attrs.size();
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		}
+		return size[0];
 	}
 
-	private void writeZipDir(String prefix, URI base, File dir, ZipOutputStream zos) throws IOException {
-		for (File file : dir.listFiles()) {
-			if (file.isDirectory()) {
-				writeZipDir(prefix, base, file, zos);
-			} else {
-				String path = prefix + "/" + base.relativize(file.toURI()).toString();
-				log.debug("Writing '" + path + "' to zip file");
-				ZipEntry zipEntry = new ZipEntry(path);
-				zos.putNextEntry(zipEntry);
-
-				FileUtils.copyFile(file, zos);
+	/**
+	 * Files unchanged since <code>prev</code> backup are only listed in manifest
+	 */
+	private static void writeZipDir(String prefix, Path base, boolean skipBackup, ZipOutputStream zos, FileProgress fp
+			, BackupManifest prev, BackupManifest manifest) throws IOException
+	{
+		if (!Files.isDirectory(base)) {
+			return;
+		}
+		Files.walkFileTree(base, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				return isExcluded(base, dir, skipBackup) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				if (skipBackup && base.equals(file.getParent())) {
+					// only directories of the upload dir are exported
+					return FileVisitResult.CONTINUE;
+				}
+				StringBuilder path = new StringBuilder(prefix);
+				for (Path p : base.relativize(file)) {
+					path.append('/').append(p.toString());
+				}
+				String name = path.toString();
+				long size = attrs.size();
+				long modified = attrs.lastModifiedTime().toMillis();
+				BackupManifest.Entry old = prev == null ? null : prev.getFile(name);
+				if (old != null) {
+					if (old.isSame(size, modified)) {
+						manifest.addFile(name, old);
+						fp.add(size);
+						return FileVisitResult.CONTINUE;
+					}
+					if (old.getSize() == size) {
+						// only timestamp was changed, content need to be checked
+						String hash = BackupManifest.hash(file);
+						if (hash.equals(old.getHash())) {
+							manifest.addFile(name, new BackupManifest.Entry(size, modified, hash));
+							fp.add(size);
+							return FileVisitResult.CONTINUE;
+						}
+					}
+				}
+				log.debug("Writing '" + name + "' to zip file");
+				boolean stored = STORED_EXT.contains(FilenameUtils.getExtension(file.getFileName().toString()).toLowerCase());
+				zos.setLevel(stored ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+				zos.putNextEntry(new ZipEntry(name));
+				MessageDigest md = BackupManifest.getDigest();
+				try (InputStream is = new DigestInputStream(Files.newInputStream(file), md)) {
+					IOUtils.copyLarge(is, zos);
+				}
 				zos.closeEntry();
+				manifest.addFile(name, new BackupManifest.Entry(size, modified, BackupManifest.toHex(md.digest())));
+				fp.add(size);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	private static class FileProgress {
+		private final ProgressHolder holder;
+		private final int from;
+		private final int to;
+		private final long total;
+		private long done = 0;
+
+		FileProgress(ProgressHolder holder, int from, int to, long total) {
+			this.holder = holder;
+			this.from = from;
+			this.to = to;
+			this.total = total;
+		}
+
+		void add(long size) {
+			done += size;
+			if (total > 0) {
+				holder.setProgress(from + (int)((to - from) * Math.min(done, total) / total));
 			}
 		}
 	}
@@ -18,6 +18,7 @@
  */
 package org.apache.openmeetings.backup;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.apache.openmeetings.db.entity.user.PrivateMessage.INBOX_FOLDER_ID;
 import static org.apache.openmeetings.db.entity.user.PrivateMessage.SENT_FOLDER_ID;
 import static org.apache.openmeetings.db.entity.user.PrivateMessage.TRASH_FOLDER_ID;
@@ -42,13 +43,14 @@ import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_CRYPT_KE
 import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_DEFAULT_LDAP_ID;
 import static org.apache.openmeetings.util.OpenmeetingsVariables.webAppRootKey;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.StringReader;
-import java.io.StringWriter;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
@@ -57,15 +59,21 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.events.XMLEvent;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -131,15 +139,15 @@ import org.simpleframework.xml.stream.NodeBuilder;
 import org.simpleframework.xml.transform.RegistryMatcher;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 public class BackupImport {
 	private static final Logger log = Red5LoggerFactory.getLogger(BackupImport.class, webAppRootKey);
 	private static final String LDAP_EXT_TYPE = "LDAP";
 	private static final Properties countries = new Properties();
+	public static final int BATCH_SIZE = 500;
+	public static final int IMPORT_THREADS = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
 
 	@Autowired
 	private AppointmentDao appointmentDao;
@@ -179,6 +187,10 @@ public class BackupImport {
 	private GroupDao groupDao;
 	@Autowired
 	private RoomGroupDao roomGroupDao;
+	@Autowired
+	private PlatformTransactionManager txManager;
+	private int batchSize = BATCH_SIZE;
+	private int threads = IMPORT_THREADS;
 
 	private final Map<Long, Long> userMap = new HashMap<>();
 	private final Map<Long, Long> groupMap = new HashMap<>();
@@ -188,12 +200,37 @@ public class BackupImport {
 	private final Map<Long, Long> messageFolderMap = new HashMap<>();
 	private final Map<Long, Long> userContactMap = new HashMap<>();
 	private final Map<String, Integer> userEmailMap = new HashMap<>();
-	private final Map<String, String> fileMap = new HashMap<>();
+	// filled by recordings and file items imports running concurrently
+	private final Map<String, String> fileMap = new ConcurrentHashMap<>();
 
 	private enum Maps {
 		USERS, ORGANISATIONS, CALENDARS, APPOINTMENTS, ROOMS, MESSAGEFOLDERS, USERCONTACTS
 	};
 
+	@FunctionalInterface
+	private interface ImportTask {
+		void run() throws Exception;
+	}
+
+	private static class ImportProgress {
+		private final ProgressHolder holder;
+		private final int from;
+		private final int to;
+		private final int total;
+		private final AtomicInteger done = new AtomicInteger();
+
+		ImportProgress(ProgressHolder holder, int from, int to, int total) {
+			this.holder = holder;
+			this.from = from;
+			this.to = to;
+			this.total = total;
+		}
+
+		void step() {
+			holder.setProgress(from + (to - from) * Math.min(done.incrementAndGet(), total) / total);
+		}
+	}
+
 	private static File validate(String zipname, File intended) throws IOException {
 		final String intendedPath = intended.getCanonicalPath();
 		if (File.pathSeparatorChar != '\\' && zipname.indexOf('\\') > -1) {
@@ -210,8 +247,11 @@ public class BackupImport {
 		}
 	}
 
-	private static File unzip(InputStream is) throws IOException  {
-		File f = OmFileHelper.getNewDir(OmFileHelper.getUploadImportDir(), "import_" + CalendarPatterns.getTimeForStreamId(new Date()));
+	private static File getImportDir() throws IOException {
+		return OmFileHelper.getNewDir(OmFileHelper.getUploadImportDir(), "import_" + CalendarPatterns.getTimeForStreamId(new Date()));
+	}
+
+	private static File unzip(InputStream is, File f) throws IOException  {
 		log.debug("##### EXTRACTING BACKUP TO: " + f);
 
 		try (ZipInputStream zis = new ZipInputStream(is)) {
@@ -236,7 +276,86 @@ public class BackupImport {
 		return f;
 	}
 
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * @param batchSize - number of entities stored in one transaction, 1 stores every entity in its own transaction
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = Math.max(1, batchSize);
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * @param threads - number of entity types imported concurrently, 1 imports them one by one
+	 */
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
 	public void performImport(InputStream is) throws Exception {
+		performImport(is, new ProgressHolder());
+	}
+
+	public void performImport(InputStream is, ProgressHolder progressHolder) throws Exception {
+		progressHolder.setProgress(0);
+		File f = unzip(is, getImportDir());
+		File mf = new File(f, BackupManifest.FILE_NAME);
+		if (mf.exists()) {
+			try (InputStream mis = new FileInputStream(mf)) {
+				if (BackupManifest.read(mis).isIncremental()) {
+					log.warn("Incremental backup is being imported without its base, files unchanged since base backup will be missing");
+				}
+			}
+		}
+		performImport(f, progressHolder);
+	}
+
+	/**
+	 * Replays chain of backups: full backup followed by incremental backups in order of creation.
+	 * Archives are extracted one over another, files deleted according to the incremental manifest
+	 * are removed, entities are imported from the last archive of the chain
+	 *
+	 * @param chain - full backup followed by the incremental ones based on it
+	 */
+	public void performImport(List<File> chain, ProgressHolder progressHolder) throws Exception {
+		if (chain.isEmpty()) {
+			throw new IllegalArgumentException("At least one backup should be specified");
+		}
+		String prevId = null;
+		for (int i = 0; i < chain.size(); ++i) {
+			BackupManifest m = BackupManifest.read(chain.get(i));
+			if (i > 0 && (m == null || !m.isIncremental() || !m.getBaseId().equals(prevId))) {
+				throw new IllegalArgumentException("Backup is not incremental backup of the previous one in the chain: " + chain.get(i));
+			}
+			prevId = m == null ? null : m.getId();
+		}
+		progressHolder.setProgress(0);
+		File f = getImportDir();
+		for (int i = 0; i < chain.size(); ++i) {
+			File zip = chain.get(i);
+			try (InputStream is = new FileInputStream(zip)) {
+				unzip(is, f);
+			}
+			if (i > 0) {
+				for (String path : BackupManifest.read(zip).getDeleted()) {
+					File d = validate(path, f);
+					if (d.exists() && !d.delete()) {
+						log.warn("Failed to delete: " + d);
+					}
+				}
+			}
+			progressHolder.setProgress(10 * (i + 1) / chain.size());
+		}
+		performImport(f, progressHolder);
+	}
+
+	private void performImport(File f, ProgressHolder progressHolder) throws Exception {
 		userMap.clear();
 		groupMap.clear();
 		calendarMap.clear();
@@ -250,481 +369,596 @@ public class BackupImport {
 		messageFolderMap.put(SENT_FOLDER_ID, SENT_FOLDER_ID);
 		messageFolderMap.put(TRASH_FOLDER_ID, TRASH_FOLDER_ID);
 
-		File f = unzip(is);
+		progressHolder.setProgress(10);
+
+		importConfigs(f);
+		log.info("Configs import complete, starting group import");
+		importGroups(f);
+		log.info("Groups import complete, starting LDAP config import");
+		Long defaultLdapId = importLdapConfigs(f);
+		log.info("Ldap config import complete, starting OAuth2 server import");
+		importOAuthServers(f);
+		log.info("OAuth2 servers import complete, starting user import");
+		progressHolder.setProgress(15);
+		importUsers(f, defaultLdapId);
+		log.info("Users import complete, starting room import");
+		progressHolder.setProgress(25);
+		importRooms(f);
+		log.info("Room import complete, starting room groups import");
+		importRoomGroups(f);
+		log.info("Room groups import complete, starting parallel import of dependent entities");
+		progressHolder.setProgress(30);
 
 		/*
-		 * ##################### Import Configs
+		 * Users, groups and rooms are mapped at this point,
+		 * entity graphs below are independent from each other and can be imported concurrently
 		 */
-		{
-			Registry registry = new Registry();
-			Strategy strategy = new RegistryStrategy(registry);
-			RegistryMatcher matcher = new RegistryMatcher(); //TODO need to be removed in the later versions
-			Serializer serializer = new Persister(strategy, matcher);
+		ExecutorService exec = Executors.newFixedThreadPool(threads);
+		try {
+			ImportProgress progress = new ImportProgress(progressHolder, 30, 80, 7);
+			List<Future<?>> tasks = new ArrayList<>();
+			tasks.add(submit(exec, progress, () -> importChat(f)));
+			tasks.add(submit(exec, progress, () -> {
+				importCalendars(f);
+				importAppointments(f);
+				importMeetingMembers(f);
+			}));
+			tasks.add(submit(exec, progress, () -> importServers(f)));
+			tasks.add(submit(exec, progress, () -> importRecordings(f)));
+			tasks.add(submit(exec, progress, () -> {
+				importPrivateMessageFolders(f);
+				importUserContacts(f);
+				importPrivateMessages(f);
+			}));
+			tasks.add(submit(exec, progress, () -> importFileExplorerItems(f)));
+			tasks.add(submit(exec, progress, () -> importPolls(f)));
+			waitFor(tasks);
+
+			log.info("Entities import complete, starting copy of files and folders");
+			progressHolder.setProgress(80);
+			/*
+			 * ##################### Import real files and folders
+			 */
+			importFolders(f, exec);
+		} finally {
+			exec.shutdownNow();
+		}
 
-			matcher.bind(Long.class, LongTransform.class);
-			registry.bind(Date.class, DateConverter.class);
-			registry.bind(User.class, new UserConverter(userDao, userMap));
+		log.info("File explorer item import complete, clearing temp files");
+		progressHolder.setProgress(95);
 
-			List<Configuration> list = readList(serializer, f, "configs.xml", "configs", Configuration.class, true);
-			for (Configuration c : list) {
-				if (c.getKey() == null || c.isDeleted()) {
-					continue;
-				}
-				Configuration cfg = configurationDao.forceGet(c.getKey());
-				if (cfg != null && !cfg.isDeleted()) {
-					log.warn("Non deleted configuration with same key is found! old value: {}, new value: {}", cfg.getValue(), c.getValue());
-				}
-				c.setId(cfg == null ? null : cfg.getId());
-				if (c.getUser() != null && c.getUser().getId() == null) {
-					c.setUser(null);
-				}
-				if (CONFIG_CRYPT_KEY.equals(c.getKey())) {
+		FileUtils.deleteDirectory(f);
+		progressHolder.setProgress(100);
+	}
+
+	private static Future<?> submit(ExecutorService exec, ImportProgress progress, ImportTask task) {
+		return exec.submit(() -> {
+			task.run();
+			progress.step();
+			return null;
+		});
+	}
+
+	private static void waitFor(List<Future<?>> tasks) throws Exception {
+		try {
+			for (Future<?> t : tasks) {
+				t.get();
+			}
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception) {
+				throw (Exception)e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Entities are being stored by {@link #getBatchSize()} in single transaction,
+	 * if the transaction fails entities of the batch are stored one by one, so single
+	 * bad entity will not discard the whole batch.
+	 *
+	 * Handler might be called for the same entity more than once, so it should be idempotent
+	 */
+	public <T> void store(List<T> list, Consumer<T> handler) {
+		TransactionTemplate tx = new TransactionTemplate(txManager);
+		for (int i = 0; i < list.size(); i += batchSize) {
+			final List<T> batch = list.subList(i, Math.min(list.size(), i + batchSize));
+			try {
+				tx.execute(status -> {
+					for (T t : batch) {
+						handler.accept(t);
+					}
+					return null;
+				});
+			} catch (RuntimeException e) {
+				log.warn("Batch of {} entities failed, entities will be stored one by one", batch.size(), e);
+				for (T t : batch) {
 					try {
-						Class.forName(c.getValue());
-					} catch (ClassNotFoundException e) {
-						c.setValue(SCryptImplementation.class.getCanonicalName());
+						tx.execute(status -> {
+							handler.accept(t);
+							return null;
+						});
+					} catch (RuntimeException e1) {
+						log.error("Unable to import entity: " + t, e1);
 					}
 				}
-				configurationDao.update(c, null);
 			}
 		}
+	}
 
-		log.info("Configs import complete, starting group import");
-		/*
-		 * ##################### Import Groups
-		 */
-		Serializer simpleSerializer = new Persister();
-		{
-			List<Group> list = readList(simpleSerializer, f, "organizations.xml", "organisations", Group.class);
-			for (Group o : list) {
-				Long oldId = o.getId();
-				o.setId(null);
-				o = groupDao.update(o, null);
-				groupMap.put(oldId, o.getId());
+	private <T> void store(Serializer ser, File baseDir, String fileName, String listNodeName, Class<T> clazz, Consumer<T> handler) throws Exception {
+		final List<T> batch = new ArrayList<>(batchSize);
+		readList(ser, baseDir, fileName, listNodeName, clazz, true, t -> {
+			batch.add(t);
+			if (batch.size() == batchSize) {
+				store(batch, handler);
+				batch.clear();
+			}
+		});
+		store(batch, handler);
+	}
+
+	/*
+	 * ##################### Import Configs
+	 */
+	private void importConfigs(File f) throws Exception {
+		Registry registry = new Registry();
+		Strategy strategy = new RegistryStrategy(registry);
+		RegistryMatcher matcher = new RegistryMatcher(); //TODO need to be removed in the later versions
+		Serializer serializer = new Persister(strategy, matcher);
+
+		matcher.bind(Long.class, LongTransform.class);
+		registry.bind(Date.class, DateConverter.class);
+		registry.bind(User.class, new UserConverter(userDao, userMap));
+
+		List<Configuration> list = readList(serializer, f, "configs.xml", "configs", Configuration.class, true);
+		for (Configuration c : list) {
+			if (c.getKey() == null || c.isDeleted()) {
+				continue;
+			}
+			Configuration cfg = configurationDao.forceGet(c.getKey());
+			if (cfg != null && !cfg.isDeleted()) {
+				log.warn("Non deleted configuration with same key is found! old value: {}, new value: {}", cfg.getValue(), c.getValue());
 			}
+			c.setId(cfg == null ? null : cfg.getId());
+			if (c.getUser() != null && c.getUser().getId() == null) {
+				c.setUser(null);
+			}
+			if (CONFIG_CRYPT_KEY.equals(c.getKey())) {
+				try {
+					Class.forName(c.getValue());
+				} catch (ClassNotFoundException e) {
+					c.setValue(SCryptImplementation.class.getCanonicalName());
+				}
+			}
+			configurationDao.update(c, null);
 		}
+	}
 
-		log.info("Groups import complete, starting LDAP config import");
-		/*
-		 * ##################### Import LDAP Configs
-		 */
+	/*
+	 * ##################### Import Groups
+	 */
+	private void importGroups(File f) throws Exception {
+		List<Group> list = readList(new Persister(), f, "organizations.xml", "organisations", Group.class);
+		for (Group o : list) {
+			Long oldId = o.getId();
+			o.setId(null);
+			o = groupDao.update(o, null);
+			groupMap.put(oldId, o.getId());
+		}
+	}
+
+	/*
+	 * ##################### Import LDAP Configs
+	 */
+	private Long importLdapConfigs(File f) throws Exception {
 		Long defaultLdapId = configurationDao.getConfValue(CONFIG_DEFAULT_LDAP_ID, Long.class, null);
-		{
-			List<LdapConfig> list = readList(simpleSerializer, f, "ldapconfigs.xml", "ldapconfigs", LdapConfig.class, true);
-			for (LdapConfig c : list) {
-				if (!"local DB [internal]".equals(c.getName())) {
-					c.setId(null);
-					c = ldapConfigDao.update(c, null);
-					if (defaultLdapId == null) {
-						defaultLdapId = c.getId();
-					}
+		List<LdapConfig> list = readList(new Persister(), f, "ldapconfigs.xml", "ldapconfigs", LdapConfig.class, true);
+		for (LdapConfig c : list) {
+			if (!"local DB [internal]".equals(c.getName())) {
+				c.setId(null);
+				c = ldapConfigDao.update(c, null);
+				if (defaultLdapId == null) {
+					defaultLdapId = c.getId();
 				}
 			}
 		}
+		return defaultLdapId;
+	}
 
-		log.info("Ldap config import complete, starting OAuth2 server import");
-		/*
-		 * ##################### OAuth2 servers
-		 */
-		{
-			List<OAuthServer> list = readList(simpleSerializer, f, "oauth2servers.xml", "oauth2servers", OAuthServer.class, true);
-			for (OAuthServer s : list) {
-				s.setId(null);
-				auth2Dao.update(s, null);
-			}
+	/*
+	 * ##################### OAuth2 servers
+	 */
+	private void importOAuthServers(File f) throws Exception {
+		List<OAuthServer> list = readList(new Persister(), f, "oauth2servers.xml", "oauth2servers", OAuthServer.class, true);
+		for (OAuthServer s : list) {
+			s.setId(null);
+			auth2Dao.update(s, null);
 		}
+	}
 
-		log.info("OAuth2 servers import complete, starting user import");
-		/*
-		 * ##################### Import Users
-		 */
-		{
-			String jNameTimeZone = configurationDao.getConfValue("default.timezone", String.class, "Europe/Berlin");
-			List<User> list = readUserList(f, "users.xml", "users");
-			int minLoginLength = getMinLoginLength(configurationDao);
-			for (User u : list) {
-				if (u.getLogin() == null) {
-					continue;
-				}
-				if (u.getType() == User.Type.contact && u.getLogin().length() < minLoginLength) {
-					u.setLogin(UUID.randomUUID().toString());
-				}
+	/*
+	 * ##################### Import Users
+	 */
+	private void importUsers(File f, Long defaultLdapId) throws Exception {
+		String jNameTimeZone = configurationDao.getConfValue("default.timezone", String.class, "Europe/Berlin");
+		List<User> list = readUserList(f, "users.xml", "users");
+		int minLoginLength = getMinLoginLength(configurationDao);
+		for (User u : list) {
+			if (u.getLogin() == null) {
+				continue;
+			}
+			if (u.getType() == User.Type.contact && u.getLogin().length() < minLoginLength) {
+				u.setLogin(UUID.randomUUID().toString());
+			}
 
-				String tz = u.getTimeZoneId();
-				if (tz == null) {
-					u.setTimeZoneId(jNameTimeZone);
-					u.setForceTimeZoneCheck(true);
-				} else {
-					u.setForceTimeZoneCheck(false);
-				}
+			String tz = u.getTimeZoneId();
+			if (tz == null) {
+				u.setTimeZoneId(jNameTimeZone);
+				u.setForceTimeZoneCheck(true);
+			} else {
+				u.setForceTimeZoneCheck(false);
+			}
 
-				Long userId = u.getId();
-				u.setId(null);
-				if (u.getSipUser() != null && u.getSipUser().getId() != 0) {
-					u.getSipUser().setId(0);
-				}
-				if (LDAP_EXT_TYPE.equals(u.getExternalType()) && User.Type.external != u.getType()) {
-					log.warn("Found LDAP user in 'old' format, external_type == 'LDAP':: " + u);
-					u.setType(User.Type.ldap);
-					u.setExternalType(null);
-					if (u.getDomainId() == null) {
-						u.setDomainId(defaultLdapId); //domainId was not supported in old versions of OM
-					}
-				}
-				if (!Strings.isEmpty(u.getExternalType())) {
-					u.setType(User.Type.external);
-				}
-				if (AuthLevelUtil.hasLoginLevel(u.getRights()) && !Strings.isEmpty(u.getActivatehash())) {
-					u.setActivatehash(null);
+			Long userId = u.getId();
+			u.setId(null);
+			if (u.getSipUser() != null && u.getSipUser().getId() != 0) {
+				u.getSipUser().setId(0);
+			}
+			if (LDAP_EXT_TYPE.equals(u.getExternalType()) && User.Type.external != u.getType()) {
+				log.warn("Found LDAP user in 'old' format, external_type == 'LDAP':: " + u);
+				u.setType(User.Type.ldap);
+				u.setExternalType(null);
+				if (u.getDomainId() == null) {
+					u.setDomainId(defaultLdapId); //domainId was not supported in old versions of OM
 				}
-				userDao.update(u, Long.valueOf(-1));
-				userMap.put(userId, u.getId());
 			}
+			if (!Strings.isEmpty(u.getExternalType())) {
+				u.setType(User.Type.external);
+			}
+			if (AuthLevelUtil.hasLoginLevel(u.getRights()) && !Strings.isEmpty(u.getActivatehash())) {
+				u.setActivatehash(null);
+			}
+			userDao.update(u, Long.valueOf(-1));
+			userMap.put(userId, u.getId());
 		}
+	}
 
-		log.info("Users import complete, starting room import");
-		/*
-		 * ##################### Import Rooms
-		 */
-		{
-			List<Room> list = readRoomList(f, "rooms.xml", "rooms");
-			for (Room r : list) {
-				Long roomId = r.getId();
-
-				// We need to reset ids as openJPA reject to store them otherwise
-				r.setId(null);
-				if (r.getModerators() != null) {
-					for (Iterator<RoomModerator> i = r.getModerators().iterator(); i.hasNext();) {
-						RoomModerator rm = i.next();
-						if (rm.getUser().getId() == null) {
-							i.remove();
-						}
+	/*
+	 * ##################### Import Rooms
+	 */
+	private void importRooms(File f) throws Exception {
+		List<Room> list = readRoomList(f, "rooms.xml", "rooms");
+		for (Room r : list) {
+			Long roomId = r.getId();
+
+			// We need to reset ids as openJPA reject to store them otherwise
+			r.setId(null);
+			if (r.getModerators() != null) {
+				for (Iterator<RoomModerator> i = r.getModerators().iterator(); i.hasNext();) {
+					RoomModerator rm = i.next();
+					if (rm.getUser().getId() == null) {
+						i.remove();
 					}
 				}
-				r = roomDao.update(r, null);
-				roomMap.put(roomId, r.getId());
 			}
+			r = roomDao.update(r, null);
+			roomMap.put(roomId, r.getId());
 		}
+	}
 
-		log.info("Room import complete, starting room groups import");
-		/*
-		 * ##################### Import Room Groups
-		 */
-		{
-			Registry registry = new Registry();
-			Strategy strategy = new RegistryStrategy(registry);
-			Serializer serializer = new Persister(strategy);
+	/*
+	 * ##################### Import Room Groups
+	 */
+	private void importRoomGroups(File f) throws Exception {
+		Registry registry = new Registry();
+		Strategy strategy = new RegistryStrategy(registry);
+		Serializer serializer = new Persister(strategy);
 
-			registry.bind(Group.class, new GroupConverter(groupDao, groupMap));
-			registry.bind(Room.class, new RoomConverter(roomDao, roomMap));
+		registry.bind(Group.class, new GroupConverter(groupDao, groupMap));
+		registry.bind(Room.class, new RoomConverter(roomDao, roomMap));
 
-			List<RoomGroup> list = readList(serializer, f, "rooms_organisation.xml", "room_organisations", RoomGroup.class);
-			for (RoomGroup ro : list) {
-				if (!ro.isDeleted() && ro.getRoom() != null && ro.getRoom().getId() != null && ro.getGroup() != null && ro.getGroup().getId() != null) {
-					// We need to reset this as openJPA reject to store them otherwise
-					ro.setId(null);
-					roomGroupDao.update(ro, null);
-				}
+		List<RoomGroup> list = readList(serializer, f, "rooms_organisation.xml", "room_organisations", RoomGroup.class);
+		store(list, ro -> {
+			if (!ro.isDeleted() && ro.getRoom() != null && ro.getRoom().getId() != null && ro.getGroup() != null && ro.getGroup().getId() != null) {
+				// We need to reset this as openJPA reject to store them otherwise
+				ro.setId(null);
+				roomGroupDao.update(ro, null);
 			}
-		}
+		});
+	}
 
-		log.info("Room groups import complete, starting chat messages import");
-		/*
-		 * ##################### Import Chat messages
-		 */
-		{
-			Registry registry = new Registry();
-			Strategy strategy = new RegistryStrategy(registry);
-			Serializer serializer = new Persister(strategy);
+	/*
+	 * ##################### Import Chat messages
+	 */
+	private void importChat(File f) throws Exception {
+		Registry registry = new Registry();
+		Strategy strategy = new RegistryStrategy(registry);
+		Serializer serializer = new Persister(strategy);
 
-			registry.bind(User.class, new UserConverter(userDao, userMap));
-			registry.bind(Room.class, new RoomConverter(roomDao, roomMap));
-			registry.bind(Date.class, DateConverter.class);
+		registry.bind(User.class, new UserConverter(userDao, userMap));
+		registry.bind(Room.class, new RoomConverter(roomDao, roomMap));
+		registry.bind(Date.class, DateConverter.class);
 
-			List<ChatMessage> list = readList(serializer, f, "chat_messages.xml", "chat_messages", ChatMessage.class, true);
-			for (ChatMessage m : list) {
-				m.setId(null);
-				if (m.getFromUser() == null || m.getFromUser().getId() == null) {
-					continue;
-				}
+		store(serializer, f, "chat_messages.xml", "chat_messages", ChatMessage.class, m -> {
+			m.setId(null);
+			if (m.getFromUser() != null && m.getFromUser().getId() != null) {
 				chatDao.update(m);
 			}
+		});
+		log.info("Chat messages import complete");
+	}
+
+	/*
+	 * ##################### Import Calendars
+	 */
+	private void importCalendars(File f) throws Exception {
+		Registry registry = new Registry();
+		Strategy strategy = new RegistryStrategy(registry);
+		Serializer serializer = new Persister(strategy);
+		registry.bind(User.class, new UserConverter(userDao, userMap));
+		//registry.bind(OmCalendar.SyncType.class, OmCalendarSyncTypeConverter.class);
+		List<OmCalendar> list = readList(serializer, f, "calendars.xml", "calendars", OmCalendar.class, true);
+		for (OmCalendar c : list) {
+			Long id = c.getId();
+			c.setId(null);
+			c = calendarDao.update(c);
+			calendarMap.put(id, c.getId());
 		}
-		log.info("Chat messages import complete, starting calendar import");
-		/*
-		 * ##################### Import Calendars
-		 */
-		{
-			Registry registry = new Registry();
-			Strategy strategy = new RegistryStrategy(registry);
-			Serializer serializer = new Persister(strategy);
-			registry.bind(User.class, new UserConverter(userDao, userMap));
-			//registry.bind(OmCalendar.SyncType.class, OmCalendarSyncTypeConverter.class);
-			List<OmCalendar> list = readList(serializer, f, "calendars.xml", "calendars", OmCalendar.class, true);
-			for (OmCalendar c : list) {
-				Long id = c.getId();
-				c.setId(null);
-				c = calendarDao.update(c);
-				calendarMap.put(id, c.getId());
-			}
-		}
+		log.info("Calendar import complete");
+	}
 
-		log.info("Calendar import complete, starting appointement import");
-		/*
-		 * ##################### Import Appointements
-		 */
-		{
-			Registry registry = new Registry();
-			Strategy strategy = new RegistryStrategy(registry);
-			Serializer serializer = new Persister(strategy);
+	/*
+	 * ##################### Import Appointements
+	 */
+	private void importAppointments(File f) throws Exception {
+		Registry registry = new Registry();
+		Strategy strategy = new RegistryStrategy(registry);
+		Serializer serializer = new Persister(strategy);
 
-			registry.bind(User.class, new UserConverter(userDao, userMap));
-			registry.bind(Appointment.Reminder.class, AppointmentReminderTypeConverter.class);
-			registry.bind(Room.class, new RoomConverter(roomDao, roomMap));
-			registry.bind(Date.class, DateConverter.class);
-			registry.bind(OmCalendar.class, new OmCalendarConverter(calendarDao, calendarMap));
+		registry.bind(User.class, new UserConverter(userDao, userMap));
+		registry.bind(Appointment.Reminder.class, AppointmentReminderTypeConverter.class);
+		registry.bind(Room.class, new RoomConverter(roomDao, roomMap));
+		registry.bind(Date.class, DateConverter.class);
+		registry.bind(OmCalendar.class, new OmCalendarConverter(calendarDao, calendarMap));
 
-			List<Appointment> list = readList(serializer, f, "appointements.xml", "appointments", Appointment.class);
-			for (Appointment a : list) {
-				Long appId = a.getId();
+		List<Appointment> list = readList(serializer, f, "appointements.xml", "appointments", Appointment.class);
+		for (Appointment a : list) {
+			Long appId = a.getId();
 
-				// We need to reset this as openJPA reject to store them otherwise
-				a.setId(null);
-				if (a.getOwner() != null && a.getOwner().getId() == null) {
-					a.setOwner(null);
-				}
-				if (a.getRoom() == null || a.getRoom().getId() == null) {
-					log.warn("Appointment without room was found, skipping: {}", a);
-					continue;
-				}
-				if (a.getStart() == null || a.getEnd() == null) {
-					log.warn("Appointment without start/end time was found, skipping: {}", a);
-					continue;
-				}
-				a = appointmentDao.update(a, null, false);
-				appointmentMap.put(appId, a.getId());
+			// We need to reset this as openJPA reject to store them otherwise
+			a.setId(null);
+			if (a.getOwner() != null && a.getOwner().getId() == null) {
+				a.setOwner(null);
 			}
-		}
-
-		log.info("Appointement import complete, starting meeting members import");
-		/*
-		 * ##################### Import MeetingMembers
-		 *
-		 * Reminder Invitations will be NOT send!
-		 */
-		{
-			List<MeetingMember> list = readMeetingMemberList(f, "meetingmembers.xml", "meetingmembers");
-			for (MeetingMember ma : list) {
-				ma.setId(null);
-				meetingMemberDao.update(ma);
+			if (a.getRoom() == null || a.getRoom().getId() == null) {
+				log.warn("Appointment without room was found, skipping: {}", a);
+				continue;
+			}
+			if (a.getStart() == null || a.getEnd() == null) {
+				log.warn("Appointment without start/end time was found, skipping: {}", a);
+				continue;
 			}
+			a = appointmentDao.update(a, null, false);
+			appointmentMap.put(appId, a.getId());
 		}
+		log.info("Appointement import complete");
+	}
 
-		log.info("Meeting members import complete, starting cluster server import");
-		/*
-		 * ##################### Cluster servers
-		 */
-		{
-			List<Server> list = readList(simpleSerializer, f, "servers.xml", "servers", Server.class, true);
-			for (Server s : list) {
-				s.setId(null);
-				serverDao.update(s, null);
-			}
+	/*
+	 * ##################### Import MeetingMembers
+	 *
+	 * Reminder Invitations will be NOT send!
+	 */
+	private void importMeetingMembers(File f) throws Exception {
+		List<MeetingMember> list = readMeetingMemberList(f, "meetingmembers.xml", "meetingmembers");
+		store(list, ma -> {
+			ma.setId(null);
+			meetingMemberDao.update(ma);
+		});
+		log.info("Meeting members import complete");
+	}
+
+	/*
+	 * ##################### Cluster servers
+	 */
+	private void importServers(File f) throws Exception {
+		List<Server> list = readList(new Persister(), f, "servers.xml", "servers", Server.class, true);
+		for (Server s : list) {
+			s.setId(null);
+			serverDao.update(s, null);
 		}
+		log.info("Cluster servers import complete");
+	}
 
-		log.info("Cluster servers import complete, starting recordings import");
-		/*
-		 * ##################### Import Recordings
-		 */
-		{
-			List<Recording> list = readRecordingList(f, "flvRecordings.xml", "flvrecordings");
-			for (Recording r : list) {
-				r.setId(null);
-				if (r.getRoomId() != null) {
-					r.setRoomId(roomMap.get(r.getRoomId()));
-				}
-				if (r.getOwnerId() != null) {
-					r.setOwnerId(userMap.get(r.getOwnerId()));
-				}
-				if (r.getMetaData() != null) {
-					for (RecordingMetaData meta : r.getMetaData()) {
-						meta.setId(null);
-						meta.setRecording(r);
-					}
-				}
-				if (!Strings.isEmpty(r.getHash()) && r.getHash().startsWith(recordingFileName)) {
-					String name = getFileName(r.getHash());
-					r.setHash(UUID.randomUUID().toString());
-					fileMap.put(String.format("%s.%s", name, EXTENSION_JPG), String.format("%s.%s", r.getHash(), EXTENSION_JPG));
-					fileMap.put(String.format("%s.%s.%s", name, EXTENSION_FLV, EXTENSION_MP4), String.format("%s.%s", r.getHash(), EXTENSION_MP4));
-				}
-				if (Strings.isEmpty(r.getHash())) {
-					r.setHash(UUID.randomUUID().toString());
+	/*
+	 * ##################### Import Recordings
+	 */
+	private void importRecordings(File f) throws Exception {
+		List<Recording> list = readRecordingList(f, "flvRecordings.xml", "flvrecordings");
+		for (Recording r : list) {
+			r.setId(null);
+			if (r.getRoomId() != null) {
+				r.setRoomId(roomMap.get(r.getRoomId()));
+			}
+			if (r.getOwnerId() != null) {
+				r.setOwnerId(userMap.get(r.getOwnerId()));
+			}
+			if (r.getMetaData() != null) {
+				for (RecordingMetaData meta : r.getMetaData()) {
+					meta.setId(null);
+					meta.setRecording(r);
 				}
-				recordingDao.update(r);
 			}
+			if (!Strings.isEmpty(r.getHash()) && r.getHash().startsWith(recordingFileName)) {
+				String name = getFileName(r.getHash());
+				r.setHash(UUID.randomUUID().toString());
+				fileMap.put(String.format("%s.%s", name, EXTENSION_JPG), String.format("%s.%s", r.getHash(), EXTENSION_JPG));
+				fileMap.put(String.format("%s.%s.%s", name, EXTENSION_FLV, EXTENSION_MP4), String.format("%s.%s", r.getHash(), EXTENSION_MP4));
+			}
+			if (Strings.isEmpty(r.getHash())) {
+				r.setHash(UUID.randomUUID().toString());
+			}
+			recordingDao.update(r);
 		}
+		log.info("Recording import complete");
+	}
 
-		log.info("Recording import complete, starting private message folder import");
-		/*
-		 * ##################### Import Private Message Folders
-		 */
-		{
-			List<PrivateMessageFolder> list = readList(simpleSerializer, f, "privateMessageFolder.xml"
-				, "privatemessagefolders", PrivateMessageFolder.class, true);
-			for (PrivateMessageFolder p : list) {
-				Long folderId = p.getId();
-				PrivateMessageFolder storedFolder = privateMessageFolderDao.get(folderId);
-				if (storedFolder == null) {
-					p.setId(null);
-					Long newFolderId = privateMessageFolderDao.addPrivateMessageFolderObj(p);
-					messageFolderMap.put(folderId, newFolderId);
-				}
+	/*
+	 * ##################### Import Private Message Folders
+	 */
+	private void importPrivateMessageFolders(File f) throws Exception {
+		List<PrivateMessageFolder> list = readList(new Persister(), f, "privateMessageFolder.xml"
+			, "privatemessagefolders", PrivateMessageFolder.class, true);
+		for (PrivateMessageFolder p : list) {
+			Long folderId = p.getId();
+			PrivateMessageFolder storedFolder = privateMessageFolderDao.get(folderId);
+			if (storedFolder == null) {
+				p.setId(null);
+				Long newFolderId = privateMessageFolderDao.addPrivateMessageFolderObj(p);
+				messageFolderMap.put(folderId, newFolderId);
 			}
 		}
+		log.info("Private message folder import complete");
+	}
 
-		log.info("Private message folder import complete, starting user contacts import");
-		/*
-		 * ##################### Import User Contacts
-		 */
-		{
-			Registry registry = new Registry();
-			Strategy strategy = new RegistryStrategy(registry);
-			Serializer serializer = new Persister(strategy);
+	/*
+	 * ##################### Import User Contacts
+	 */
+	private void importUserContacts(File f) throws Exception {
+		Registry registry = new Registry();
+		Strategy strategy = new RegistryStrategy(registry);
+		Serializer serializer = new Persister(strategy);
 
-			registry.bind(User.class, new UserConverter(userDao, userMap));
+		registry.bind(User.class, new UserConverter(userDao, userMap));
 
-			List<UserContact> list = readList(serializer, f, "userContacts.xml", "usercontacts", UserContact.class, true);
-			for (UserContact uc : list) {
-				Long ucId = uc.getId();
-				UserContact storedUC = userContactDao.get(ucId);
+		List<UserContact> list = readList(serializer, f, "userContacts.xml", "usercontacts", UserContact.class, true);
+		for (UserContact uc : list) {
+			Long ucId = uc.getId();
+			UserContact storedUC = userContactDao.get(ucId);
 
-				if (storedUC == null && uc.getContact() != null && uc.getContact().getId() != null) {
-					uc.setId(null);
-					if (uc.getOwner() != null && uc.getOwner().getId() == null) {
-						uc.setOwner(null);
-					}
-					uc = userContactDao.update(uc);
-					userContactMap.put(ucId, uc.getId());
+			if (storedUC == null && uc.getContact() != null && uc.getContact().getId() != null) {
+				uc.setId(null);
+				if (uc.getOwner() != null && uc.getOwner().getId() == null) {
+					uc.setOwner(null);
 				}
+				uc = userContactDao.update(uc);
+				userContactMap.put(ucId, uc.getId());
 			}
 		}
+		log.info("Usercontact import complete");
+	}
 
-		log.info("Usercontact import complete, starting private messages item import");
-		/*
-		 * ##################### Import Private Messages
-		 */
-		{
-			Registry registry = new Registry();
-			Strategy strategy = new RegistryStrategy(registry);
-			Serializer serializer = new Persister(strategy);
+	/*
+	 * ##################### Import Private Messages
+	 */
+	private void importPrivateMessages(File f) throws Exception {
+		Registry registry = new Registry();
+		Strategy strategy = new RegistryStrategy(registry);
+		Serializer serializer = new Persister(strategy);
 
-			registry.bind(User.class, new UserConverter(userDao, userMap));
-			registry.bind(Room.class, new RoomConverter(roomDao, roomMap));
-			registry.bind(Date.class, DateConverter.class);
+		registry.bind(User.class, new UserConverter(userDao, userMap));
+		registry.bind(Room.class, new RoomConverter(roomDao, roomMap));
+		registry.bind(Date.class, DateConverter.class);
 
-			List<PrivateMessage> list = readList(serializer, f, "privateMessages.xml", "privatemessages", PrivateMessage.class, true);
-			boolean oldBackup = true;
-			for (PrivateMessage p : list) {
-				if (p.getFolderId() == null || p.getFolderId().longValue() < 0) {
-					oldBackup = false;
-					break;
-				}
+		List<PrivateMessage> list = readList(serializer, f, "privateMessages.xml", "privatemessages", PrivateMessage.class, true);
+		boolean oldBackup = true;
+		for (PrivateMessage p : list) {
+			if (p.getFolderId() == null || p.getFolderId().longValue() < 0) {
+				oldBackup = false;
+				break;
 			}
-			for (PrivateMessage p : list) {
-				p.setId(null);
-				p.setFolderId(getNewId(p.getFolderId(), Maps.MESSAGEFOLDERS));
-				p.setUserContactId(getNewId(p.getUserContactId(), Maps.USERCONTACTS));
-				if (p.getRoom() != null && p.getRoom().getId() == null) {
-					p.setRoom(null);
-				}
-				if (p.getTo() != null && p.getTo().getId() == null) {
-					p.setTo(null);
-				}
-				if (p.getFrom() != null && p.getFrom().getId() == null) {
-					p.setFrom(null);
-				}
-				if (p.getOwner() != null && p.getOwner().getId() == null) {
-					p.setOwner(null);
-				}
-				if (oldBackup && p.getOwner() != null && p.getOwner().getId() != null
-						&& p.getFrom() != null && p.getFrom().getId() != null
-						&& p.getOwner().getId() == p.getFrom().getId())
-				{
-					p.setFolderId(SENT_FOLDER_ID);
-				}
-				privateMessageDao.update(p, null);
+		}
+		// ids are mapped before storing, since store might call the handler more than once
+		for (PrivateMessage p : list) {
+			p.setFolderId(getNewId(p.getFolderId(), Maps.MESSAGEFOLDERS));
+			p.setUserContactId(getNewId(p.getUserContactId(), Maps.USERCONTACTS));
+			if (p.getRoom() != null && p.getRoom().getId() == null) {
+				p.setRoom(null);
+			}
+			if (p.getTo() != null && p.getTo().getId() == null) {
+				p.setTo(null);
+			}
+			if (p.getFrom() != null && p.getFrom().getId() == null) {
+				p.setFrom(null);
+			}
+			if (p.getOwner() != null && p.getOwner().getId() == null) {
+				p.setOwner(null);
+			}
+			if (oldBackup && p.getOwner() != null && p.getOwner().getId() != null
+					&& p.getFrom() != null && p.getFrom().getId() != null
+					&& p.getOwner().getId() == p.getFrom().getId())
+			{
+				p.setFolderId(SENT_FOLDER_ID);
 			}
 		}
+		store(list, p -> {
+			p.setId(null);
+			privateMessageDao.update(p, null);
+		});
+		log.info("Private message import complete");
+	}
 
-		log.info("Private message import complete, starting file explorer item import");
-		/*
-		 * ##################### Import File-Explorer Items
-		 */
-		{
-			List<FileExplorerItem> list = readFileExplorerItemList(f, "fileExplorerItems.xml", "fileExplorerItems");
-			for (FileExplorerItem file : list) {
-				// We need to reset this as openJPA reject to store them otherwise
-				file.setId(null);
-				Long roomId = file.getRoomId();
-				file.setRoomId(roomMap.containsKey(roomId) ? roomMap.get(roomId) : null);
-				if (file.getOwnerId() != null) {
-					file.setOwnerId(userMap.get(file.getOwnerId()));
-				}
-				if (file.getParentId() != null && file.getParentId().longValue() <= 0L) {
-					file.setParentId(null);
-				}
-				if (Strings.isEmpty(file.getHash())) {
-					file.setHash(UUID.randomUUID().toString());
-				}
-				fileExplorerItemDao.update(file);
+	/*
+	 * ##################### Import File-Explorer Items
+	 */
+	private void importFileExplorerItems(File f) throws Exception {
+		List<FileExplorerItem> list = readFileExplorerItemList(f, "fileExplorerItems.xml", "fileExplorerItems");
+		// ids are mapped before storing, since store might call the handler more than once
+		for (FileExplorerItem file : list) {
+			Long roomId = file.getRoomId();
+			file.setRoomId(roomMap.containsKey(roomId) ? roomMap.get(roomId) : null);
+			if (file.getOwnerId() != null) {
+				file.setOwnerId(userMap.get(file.getOwnerId()));
+			}
+			if (file.getParentId() != null && file.getParentId().longValue() <= 0L) {
+				file.setParentId(null);
+			}
+			if (Strings.isEmpty(file.getHash())) {
+				file.setHash(UUID.randomUUID().toString());
 			}
 		}
+		store(list, file -> {
+			// We need to reset this as openJPA reject to store them otherwise
+			file.setId(null);
+			fileExplorerItemDao.update(file);
+		});
+		log.info("File explorer item import complete");
+	}
 
-		log.info("File explorer item import complete, starting room poll import");
-		/*
-		 * ##################### Import Room Polls
-		 */
-		{
-			Registry registry = new Registry();
-			Strategy strategy = new RegistryStrategy(registry);
-			RegistryMatcher matcher = new RegistryMatcher(); //TODO need to be removed in the later versions
-			Serializer serializer = new Persister(strategy, matcher);
+	/*
+	 * ##################### Import Room Polls
+	 */
+	private void importPolls(File f) throws Exception {
+		Registry registry = new Registry();
+		Strategy strategy = new RegistryStrategy(registry);
+		RegistryMatcher matcher = new RegistryMatcher(); //TODO need to be removed in the later versions
+		Serializer serializer = new Persister(strategy, matcher);
 
-			matcher.bind(Integer.class, IntegerTransform.class);
-			registry.bind(User.class, new UserConverter(userDao, userMap));
-			registry.bind(Room.class, new RoomConverter(roomDao, roomMap));
-			registry.bind(RoomPoll.Type.class, PollTypeConverter.class);
-			registry.bind(Date.class, DateConverter.class);
+		matcher.bind(Integer.class, IntegerTransform.class);
+		registry.bind(User.class, new UserConverter(userDao, userMap));
+		registry.bind(Room.class, new RoomConverter(roomDao, roomMap));
+		registry.bind(RoomPoll.Type.class, PollTypeConverter.class);
+		registry.bind(Date.class, DateConverter.class);
 
-			List<RoomPoll> list = readList(serializer, f, "roompolls.xml", "roompolls", RoomPoll.class, true);
-			for (RoomPoll rp : list) {
-				rp.setId(null);
-				if (rp.getRoom() == null || rp.getRoom().getId() == null) {
-					//room was deleted
-					continue;
-				}
-				if (rp.getCreator() == null || rp.getCreator().getId() == null) {
-					rp.setCreator(null);
-				}
-				for (RoomPollAnswer rpa : rp.getAnswers()) {
-					if (rpa.getVotedUser() == null || rpa.getVotedUser().getId() == null) {
-						rpa.setVotedUser(null);
-					}
+		store(serializer, f, "roompolls.xml", "roompolls", RoomPoll.class, rp -> {
+			rp.setId(null);
+			if (rp.getRoom() == null || rp.getRoom().getId() == null) {
+				//room was deleted
+				return;
+			}
+			if (rp.getCreator() == null || rp.getCreator().getId() == null) {
+				rp.setCreator(null);
+			}
+			for (RoomPollAnswer rpa : rp.getAnswers()) {
+				rpa.setId(null);
+				if (rpa.getVotedUser() == null || rpa.getVotedUser().getId() == null) {
+					rpa.setVotedUser(null);
 				}
-				pollDao.update(rp);
 			}
-		}
-
-		log.info("Poll import complete, starting copy of files and folders");
-		/*
-		 * ##################### Import real files and folders
-		 */
-		importFolders(f);
-
-		log.info("File explorer item import complete, clearing temp files");
-
-		FileUtils.deleteDirectory(f);
+			pollDao.update(rp);
+		});
+		log.info("Poll import complete");
 	}
 
 	private static <T> List<T> readList(Serializer ser, File baseDir, String fileName, String listNodeName, Class<T> clazz) throws Exception {
@@ -733,6 +967,15 @@ public class BackupImport {
 
 	private static <T> List<T> readList(Serializer ser, File baseDir, String fileName, String listNodeName, Class<T> clazz, boolean notThow) throws Exception {
 		List<T> list = new ArrayList<>();
+		readList(ser, baseDir, fileName, listNodeName, clazz, notThow, list::add);
+		return list;
+	}
+
+	/**
+	 * Items are being pull-parsed one by one and passed to the handler,
+	 * so the whole list is never held in memory
+	 */
+	private static <T> void readList(Serializer ser, File baseDir, String fileName, String listNodeName, Class<T> clazz, boolean notThow, Consumer<T> handler) throws Exception {
 		File xml = new File(baseDir, fileName);
 		if (!xml.exists()) {
 			final String msg = fileName + " missing";
@@ -742,33 +985,18 @@ public class BackupImport {
 				throw new Exception(msg);
 			}
 		} else {
-			try (InputStream rootIs = new FileInputStream(xml)) {
+			try (InputStream rootIs = new BufferedInputStream(new FileInputStream(xml))) {
 				InputNode root = NodeBuilder.read(rootIs);
 				InputNode listNode = root.getNext();
 				if (listNodeName.equals(listNode.getName())) {
 					InputNode item = listNode.getNext();
 					while (item != null) {
-						T o = ser.read(clazz, item, false);
-						list.add(o);
+						handler.accept(ser.read(clazz, item, false));
 						item = listNode.getNext();
 					}
 				}
 			}
 		}
-		return list;
-	}
-
-	private static Node getNode(Node doc, String name) {
-		if (doc != null) {
-			NodeList nl = doc.getChildNodes();
-			for (int i = 0; i < nl.getLength(); ++i) {
-				Node node = nl.item(i);
-				if (node.getNodeType() == Node.ELEMENT_NODE && name.equals(node.getNodeName())) {
-					return node;
-				}
-			}
-		}
-		return null;
 	}
 
 	//FIXME (need to be removed in later versions) HACK to fix old properties
@@ -897,7 +1125,15 @@ public class BackupImport {
 	}
 
 	public List<User> readUserList(InputStream xml, String listNodeName) throws Exception {
-		return readUserList(new InputSource(xml), listNodeName);
+		File tmp = File.createTempFile("users", ".xml");
+		try {
+			removeDuplicatedDeleted(xml, tmp);
+			return readUserList(tmp, listNodeName);
+		} finally {
+			if (!tmp.delete()) {
+				log.warn("Failed to delete temporary file: " + tmp);
+			}
+		}
 	}
 
 	public List<User> readUserList(File baseDir, String fileName, String listNodeName) throws Exception {
@@ -905,8 +1141,51 @@ public class BackupImport {
 		if (!xml.exists()) {
 			throw new Exception(fileName + " missing");
 		}
+		try (InputStream is = new BufferedInputStream(new FileInputStream(xml))) {
+			return readUserList(is, listNodeName);
+		}
+	}
 
-		return readUserList(new InputSource(xml.toURI().toASCIIString()), listNodeName);
+	/**
+	 * one of the old OM version created 2 nodes "deleted" inside user, this method copies the
+	 * XML with StAX and drops the second one (root/users/user/deleted)
+	 */
+	private static void removeDuplicatedDeleted(InputStream is, File out) throws Exception {
+		XMLEventReader reader = XMLInputFactory.newInstance().createXMLEventReader(is);
+		try (OutputStream os = new BufferedOutputStream(new FileOutputStream(out))) {
+			XMLEventWriter writer = XMLOutputFactory.newInstance().createXMLEventWriter(os, UTF_8.name());
+			int depth = 0;
+			int skipDepth = -1;
+			boolean deletedFound = false;
+			while (reader.hasNext()) {
+				XMLEvent e = reader.nextEvent();
+				if (e.isStartElement()) {
+					++depth;
+					if (depth == 3) {
+						deletedFound = false;
+					} else if (depth == 4 && skipDepth < 0 && "deleted".equals(e.asStartElement().getName().getLocalPart())) {
+						if (deletedFound) {
+							skipDepth = depth;
+						}
+						deletedFound = true;
+					}
+				}
+				boolean skip = skipDepth > 0;
+				if (e.isEndElement()) {
+					if (depth == skipDepth) {
+						skipDepth = -1;
+					}
+					--depth;
+				}
+				if (!skip) {
+					writer.add(e);
+				}
+			}
+			writer.flush();
+			writer.close();
+		} finally {
+			reader.close();
+		}
 	}
 
 	//FIXME (need to be removed in later versions) HACK to add external attendees previously stored in MeetingMember structure
@@ -923,62 +1202,57 @@ public class BackupImport {
 			throw new Exception(filename + " missing");
 		}
 
-		DocumentBuilder dBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-		Document doc = dBuilder.parse(new InputSource(xml.toURI().toASCIIString()));
-
-		StringWriter sw = new StringWriter();
-		Transformer xformer = TransformerFactory.newInstance().newTransformer();
-		xformer.transform(new DOMSource(doc), new StreamResult(sw));
-
 		List<MeetingMember> list = new ArrayList<>();
-		InputNode root = NodeBuilder.read(new StringReader(sw.toString()));
-		InputNode root1 = NodeBuilder.read(new StringReader(sw.toString())); //HACK to handle external attendee's firstname, lastname, email
-		InputNode listNode = root.getNext();
-		InputNode listNode1 = root1.getNext(); //HACK to handle external attendee's firstname, lastname, email
-		if (listNodeName.equals(listNode.getName())) {
-			InputNode item = listNode.getNext();
-			InputNode item1 = listNode1.getNext(); //HACK to handle external attendee's firstname, lastname, email
-			while (item != null) {
-				MeetingMember mm = ser.read(MeetingMember.class, item, false);
-
-				boolean needToSkip1 = true;
-				if (mm.getUser() == null) {
-					mm.setUser(new User());
-				}
-				if (mm.getUser().getId() == null) {
-					//HACK to handle external attendee's firstname, lastname, email
-					boolean contactValid = false;
-					do {
-						String name = item1.getName();
-						String val = item1.getValue();
-						if (User.Type.contact == mm.getUser().getType() && "firstname".equals(name)) {
-							mm.getUser().setFirstname(val);
-						}
-						if (User.Type.contact == mm.getUser().getType() && "lastname".equals(name)) {
-							mm.getUser().setLastname(val);
-						}
-						if ("email".equals(name)) {
-							if (mm.getAppointment() != null && mm.getAppointment().getOwner() != null) {
-								mm.setUser(userDao.getContact(val, mm.getAppointment().getOwner()));
+		try (InputStream rootIs1 = new BufferedInputStream(new FileInputStream(xml)); InputStream rootIs2 = new BufferedInputStream(new FileInputStream(xml))) {
+			InputNode root = NodeBuilder.read(rootIs1);
+			InputNode root1 = NodeBuilder.read(rootIs2); //HACK to handle external attendee's firstname, lastname, email
+			InputNode listNode = root.getNext();
+			InputNode listNode1 = root1.getNext(); //HACK to handle external attendee's firstname, lastname, email
+			if (listNodeName.equals(listNode.getName())) {
+				InputNode item = listNode.getNext();
+				InputNode item1 = listNode1.getNext(); //HACK to handle external attendee's firstname, lastname, email
+				while (item != null) {
+					MeetingMember mm = ser.read(MeetingMember.class, item, false);
+
+					boolean needToSkip1 = true;
+					if (mm.getUser() == null) {
+						mm.setUser(new User());
+					}
+					if (mm.getUser().getId() == null) {
+						//HACK to handle external attendee's firstname, lastname, email
+						boolean contactValid = false;
+						do {
+							String name = item1.getName();
+							String val = item1.getValue();
+							if (User.Type.contact == mm.getUser().getType() && "firstname".equals(name)) {
+								mm.getUser().setFirstname(val);
+							}
+							if (User.Type.contact == mm.getUser().getType() && "lastname".equals(name)) {
+								mm.getUser().setLastname(val);
 							}
-							contactValid = true;
+							if ("email".equals(name)) {
+								if (mm.getAppointment() != null && mm.getAppointment().getOwner() != null) {
+									mm.setUser(userDao.getContact(val, mm.getAppointment().getOwner()));
+								}
+								contactValid = true;
+							}
+							item1 = listNode1.getNext(); //HACK to handle old om_time_zone
+						} while (item1 != null && !"meetingmember".equals(item1.getName()));
+						if (!contactValid) {
+							mm = null;
 						}
-						item1 = listNode1.getNext(); //HACK to handle old om_time_zone
-					} while (item1 != null && !"meetingmember".equals(item1.getName()));
-					if (!contactValid) {
-						mm = null;
+						needToSkip1 = false;
+					}
+					if (needToSkip1) {
+						do {
+							item1 = listNode1.getNext(); //HACK to handle Address inside user
+						} while (item1 != null && !"meetingmember".equals(item1.getName()));
+					}
+					item = listNode.getNext();
+					if (mm != null && !mm.isDeleted() && mm.getUser() != null && mm.getAppointment() != null && mm.getAppointment().getId() != null) {
+						mm.setId(null);
+						list.add(mm);
 					}
-					needToSkip1 = false;
-				}
-				if (needToSkip1) {
-					do {
-						item1 = listNode1.getNext(); //HACK to handle Address inside user
-					} while (item1 != null && !"meetingmember".equals(item1.getName()));
-				}
-				item = listNode.getNext();
-				if (mm != null && !mm.isDeleted() && mm.getUser() != null && mm.getAppointment() != null && mm.getAppointment().getId() != null) {
-					mm.setId(null);
-					list.add(mm);
 				}
 			}
 		}
@@ -986,7 +1260,7 @@ public class BackupImport {
 	}
 
 	//FIXME (need to be removed in later versions) HACK to fix 2 deleted nodes in users.xml and inline Address and sipData
-	private List<User> readUserList(InputSource xml, String listNodeName) throws Exception {
+	private List<User> readUserList(File xml, String listNodeName) throws Exception {
 		Registry registry = new Registry();
 		Strategy strategy = new RegistryStrategy(registry);
 		Serializer ser = new Persister(strategy);
@@ -995,8 +1269,6 @@ public class BackupImport {
 		registry.bind(Salutation.class, SalutationConverter.class);
 		registry.bind(Date.class, DateConverter.class);
 
-		DocumentBuilder dBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-		Document doc = dBuilder.parse(xml);
 		userEmailMap.clear();
 		//add existence email from database
 		List<User>  users = userDao.getAllUsers();
@@ -1006,115 +1278,96 @@ public class BackupImport {
 			}
 			userEmailMap.put(u.getAddress().getEmail(), Integer.valueOf(-1));
 		}
-		Node nList = getNode(getNode(doc, "root"), listNodeName);
-		if (nList != null) {
-			NodeList nl = nList.getChildNodes();
-			// one of the old OM version created 2 nodes "deleted" this code block handles this
-			for (int i = 0; i < nl.getLength(); ++i) {
-				Node user = nl.item(i);
-				NodeList nl1 = user.getChildNodes();
-				boolean deletedFound = false;
-				for (int j = 0; j < nl1.getLength(); ++j) {
-					Node node = nl1.item(j);
-					if (node.getNodeType() == Node.ELEMENT_NODE && "deleted".equals(node.getNodeName())) {
-						if (deletedFound) {
-							user.removeChild(node);
-							break;
-						}
-						deletedFound = true;
-					}
-				}
-			}
-		}
-
-		StringWriter sw = new StringWriter();
-		Transformer xformer = TransformerFactory.newInstance().newTransformer();
-		xformer.transform(new DOMSource(doc), new StreamResult(sw));
 
 		List<User> list = new ArrayList<>();
-		InputNode root = NodeBuilder.read(new StringReader(sw.toString()));
-		InputNode root1 = NodeBuilder.read(new StringReader(sw.toString())); //HACK to handle Address inside user
-		InputNode root2 = NodeBuilder.read(new StringReader(sw.toString())); //HACK to handle old om_time_zone, level_id, status
-		InputNode listNode = root.getNext();
-		InputNode listNode1 = root1.getNext(); //HACK to handle Address inside user
-		InputNode listNode2 = root2.getNext(); //HACK to handle old om_time_zone
-		if (listNodeName.equals(listNode.getName())) {
-			InputNode item = listNode.getNext();
-			InputNode item1 = listNode1.getNext(); //HACK to handle Address inside user
-			InputNode item2 = listNode2.getNext(); //HACK to handle old om_time_zone, level_id, status
-			while (item != null) {
-				User u = ser.read(User.class, item, false);
-
-				boolean needToSkip1 = true;
-				//HACK to handle Address inside user
-				if (u.getAddress() == null) {
-					Address a = ser.read(Address.class, item1, false);
-					u.setAddress(a);
-					needToSkip1 = false;
-				}
-				if (needToSkip1) {
-					do {
-						item1 = listNode1.getNext(); //HACK to handle Address inside user
-					} while (item1 != null && !"user".equals(item1.getName()));
-				}
-				String levelId = null, status = null, stateId = null;
-				do {
-					String name = item2.getName();
-					String val = item2.getValue();
-					if (u.getTimeZoneId() == null && "omTimeZone".equals(name)) {
-						u.setTimeZoneId(val == null ? null : tzUtil.getTimeZone(val).getID());
-					}
-					if ("level_id".equals(name)) {
-						levelId = val;
-					}
-					if ("status".equals(name)) {
-						status = val;
-					}
-					if ("state_id".equals(name)) {
-						stateId = val;
-					}
-					item2 = listNode2.getNext(); //HACK to handle old om_time_zone, level_id, status
-				} while (item2 != null && !"user".equals(item2.getName()));
-				if (u.getRights().isEmpty()) {
-					u.getRights().add(Right.Room);
-					if ("1".equals(status)) {
-						u.getRights().add(Right.Dashboard);
-						u.getRights().add(Right.Login);
+		try (InputStream rootIs = new BufferedInputStream(new FileInputStream(xml))
+				; InputStream rootIs1 = new BufferedInputStream(new FileInputStream(xml))
+				; InputStream rootIs2 = new BufferedInputStream(new FileInputStream(xml)))
+		{
+			InputNode root = NodeBuilder.read(rootIs);
+			InputNode root1 = NodeBuilder.read(rootIs1); //HACK to handle Address inside user
+			InputNode root2 = NodeBuilder.read(rootIs2); //HACK to handle old om_time_zone, level_id, status
+			InputNode listNode = root.getNext();
+			InputNode listNode1 = root1.getNext(); //HACK to handle Address inside user
+			InputNode listNode2 = root2.getNext(); //HACK to handle old om_time_zone
+			if (listNodeName.equals(listNode.getName())) {
+				InputNode item = listNode.getNext();
+				InputNode item1 = listNode1.getNext(); //HACK to handle Address inside user
+				InputNode item2 = listNode2.getNext(); //HACK to handle old om_time_zone, level_id, status
+				while (item != null) {
+					User u = ser.read(User.class, item, false);
+
+					boolean needToSkip1 = true;
+					//HACK to handle Address inside user
+					if (u.getAddress() == null) {
+						Address a = ser.read(Address.class, item1, false);
+						u.setAddress(a);
+						needToSkip1 = false;
 					}
-					if ("3".equals(levelId)) {
-						u.getRights().add(Right.Admin);
-						u.getRights().add(Right.Soap);
+					if (needToSkip1) {
+						do {
+							item1 = listNode1.getNext(); //HACK to handle Address inside user
+						} while (item1 != null && !"user".equals(item1.getName()));
 					}
-					if ("4".equals(levelId)) {
-						u.getRights().add(Right.Soap);
+					String levelId = null, status = null, stateId = null;
+					do {
+						String name = item2.getName();
+						String val = item2.getValue();
+						if (u.getTimeZoneId() == null && "omTimeZone".equals(name)) {
+							u.setTimeZoneId(val == null ? null : tzUtil.getTimeZone(val).getID());
+						}
+						if ("level_id".equals(name)) {
+							levelId = val;
+						}
+						if ("status".equals(name)) {
+							status = val;
+						}
+						if ("state_id".equals(name)) {
+							stateId = val;
+						}
+						item2 = listNode2.getNext(); //HACK to handle old om_time_zone, level_id, status
+					} while (item2 != null && !"user".equals(item2.getName()));
+					if (u.getRights().isEmpty()) {
+						u.getRights().add(Right.Room);
+						if ("1".equals(status)) {
+							u.getRights().add(Right.Dashboard);
+							u.getRights().add(Right.Login);
+						}
+						if ("3".equals(levelId)) {
+							u.getRights().add(Right.Admin);
+							u.getRights().add(Right.Soap);
+						}
+						if ("4".equals(levelId)) {
+							u.getRights().add(Right.Soap);
+						}
 					}
-				}
-				// check that email is unique
-				if (u.getAddress() != null && u.getAddress().getEmail() != null && User.Type.user == u.getType()) {
-					if (userEmailMap.containsKey(u.getAddress().getEmail())) {
-						log.warn("Email is duplicated for user " + u.toString());
-						String updateEmail = "modified_by_import_<" + list.size() + ">" + u.getAddress().getEmail();
-						u.getAddress().setEmail(updateEmail);
+					// check that email is unique
+					if (u.getAddress() != null && u.getAddress().getEmail() != null && User.Type.user == u.getType()) {
+						if (userEmailMap.containsKey(u.getAddress().getEmail())) {
+							log.warn("Email is duplicated for user " + u.toString());
+							String updateEmail = "modified_by_import_<" + list.size() + ">" + u.getAddress().getEmail();
+							u.getAddress().setEmail(updateEmail);
+						}
+						userEmailMap.put(u.getAddress().getEmail(), Integer.valueOf(userEmailMap.size()));
 					}
-					userEmailMap.put(u.getAddress().getEmail(), Integer.valueOf(userEmailMap.size()));
-				}
-				// check old stateId
-				if (!Strings.isEmpty(stateId)) {
-					String country = getCountry(stateId);
-					if (!Strings.isEmpty(country)) {
-						if (u.getAddress() == null) {
-							u.setAddress(new Address());
+					// check old stateId
+					if (!Strings.isEmpty(stateId)) {
+						String country = getCountry(stateId);
+						if (!Strings.isEmpty(country)) {
+							if (u.getAddress() == null) {
+								u.setAddress(new Address());
+							}
+							u.getAddress().setCountry(country);
 						}
-						u.getAddress().setCountry(country);
 					}
-				}
-				if (u.getGroupUsers() != null) {
-					for (GroupUser gu : u.getGroupUsers()) {
-						gu.setUser(u);
+					if (u.getGroupUsers() != null) {
+						for (GroupUser gu : u.getGroupUsers()) {
+							gu.setUser(u);
+						}
 					}
+					list.add(u);
+					item = listNode.getNext();
 				}
-				list.add(u);
-				item = listNode.getNext();
 			}
 		}
 		return list;
@@ -1198,7 +1451,11 @@ public class BackupImport {
 		return null;
 	}
 
-	private void importFolders(File importBaseDir) throws IOException {
+	/**
+	 * Files and folders are being copied in parallel, each top level folder is separate task
+	 */
+	private void importFolders(File importBaseDir, ExecutorService exec) throws Exception {
+		List<Future<?>> tasks = new ArrayList<>();
 		// Now check the room files and import them
 		File roomFilesFolder = new File(importBaseDir, BCKP_ROOM_FILES);
 
@@ -1216,28 +1473,37 @@ public class BackupImport {
 							Long oldId = getProfileId(profile);
 							Long id = oldId != null ? getNewId(oldId, Maps.USERS) : null;
 							if (id != null) {
-								FileUtils.copyDirectory(profile, getUploadProfilesUserDir(id));
+								tasks.add(exec.submit(() -> {
+									FileUtils.copyDirectory(profile, getUploadProfilesUserDir(id));
+									return null;
+								}));
 							}
 						}
 					} else if (FILES_DIR.equals(fName)) {
 						log.debug("Entered FILES folder ");
 						for (File rf : file.listFiles()) {
-							// going to fix images
-							if (rf.isFile() && rf.getName().endsWith(EXTENSION_JPG)) {
-								FileUtils.copyFileToDirectory(rf, getImgDir(rf.getName()));
-							} else {
-								FileUtils.copyDirectory(rf, new File(getUploadFilesDir(), rf.getName()));
-							}
+							tasks.add(exec.submit(() -> {
+								// going to fix images
+								if (rf.isFile() && rf.getName().endsWith(EXTENSION_JPG)) {
+									FileUtils.copyFileToDirectory(rf, getImgDir(rf.getName()));
+								} else {
+									FileUtils.copyDirectory(rf, new File(getUploadFilesDir(), rf.getName()));
+								}
+								return null;
+							}));
 						}
 					} else {
 						// check if folder is room folder, store it under new id if necessary
 						Long oldId = importLongType(fName);
 						Long id = oldId != null ? getNewId(oldId, Maps.ROOMS) : null;
-						if (id != null) {
-							FileUtils.copyDirectory(file, getUploadRoomDir(id.toString()));
-						} else {
-							FileUtils.copyDirectory(file, new File(uploadDir, fName));
-						}
+						tasks.add(exec.submit(() -> {
+							if (id != null) {
+								FileUtils.copyDirectory(file, getUploadRoomDir(id.toString()));
+							} else {
+								FileUtils.copyDirectory(file, new File(uploadDir, fName));
+							}
+							return null;
+						}));
 					}
 				}
 			}
@@ -1249,13 +1515,17 @@ public class BackupImport {
 		if (recDir.exists()) {
 			for (File r : recDir.listFiles()) {
 				String n = fileMap.get(r.getName());
-				if (n != null) {
-					FileUtils.copyFile(r, new File(getStreamsHibernateDir(), n));
-				} else {
-					FileUtils.copyFileToDirectory(r, getStreamsHibernateDir());
-				}
+				tasks.add(exec.submit(() -> {
+					if (n != null) {
+						FileUtils.copyFile(r, new File(getStreamsHibernateDir(), n));
+					} else {
+						FileUtils.copyFileToDirectory(r, getStreamsHibernateDir());
+					}
+					return null;
+				}));
 			}
 		}
+		waitFor(tasks);
 	}
 
 	private static File getImgDir(String name) {
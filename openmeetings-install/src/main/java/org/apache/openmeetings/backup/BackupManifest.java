@@ -0,0 +1,228 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.backup;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Manifest stored inside every backup archive.
+ *
+ * Lists all files known at the time of the backup (path inside the archive, size,
+ * last modification time and SHA-256 of the content), unique id of the backup and,
+ * for incremental backups, id of the backup it is based on and the files deleted since.
+ * The file list is cumulative, so manifest of the last backup is enough to produce the next
+ * incremental one.
+ */
+public class BackupManifest {
+	public static final String FILE_NAME = "backup_manifest.txt";
+	private static final String ID = "#id=";
+	private static final String BASE_ID = "#base=";
+	private static final char FILE = 'F';
+	private static final char DELETED = 'D';
+	private static final String SEPARATOR = "\t";
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private String id = UUID.randomUUID().toString();
+	private String baseId = null;
+	private final Map<String, Entry> files = Collections.synchronizedMap(new TreeMap<>());
+	private final Set<String> deleted = Collections.synchronizedSet(new TreeSet<>());
+
+	public static class Entry {
+		private final long size;
+		private final long modified;
+		private final String hash;
+
+		public Entry(long size, long modified, String hash) {
+			this.size = size;
+			this.modified = modified;
+			this.hash = hash;
+		}
+
+		public long getSize() {
+			return size;
+		}
+
+		public long getModified() {
+			return modified;
+		}
+
+		public String getHash() {
+			return hash;
+		}
+
+		/**
+		 * @return <code>true</code> if file attributes are the same, content is considered unchanged in this case
+		 */
+		public boolean isSame(long size, long modified) {
+			return this.size == size && this.modified == modified;
+		}
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public String getBaseId() {
+		return baseId;
+	}
+
+	public void setBaseId(String baseId) {
+		this.baseId = baseId;
+	}
+
+	public boolean isIncremental() {
+		return baseId != null;
+	}
+
+	public Map<String, Entry> getFiles() {
+		return files;
+	}
+
+	public Entry getFile(String path) {
+		return files.get(path);
+	}
+
+	public void addFile(String path, Entry e) {
+		files.put(path, e);
+	}
+
+	public Set<String> getDeleted() {
+		return deleted;
+	}
+
+	/**
+	 * Files of the <code>base</code> manifest missing in this one are marked as deleted
+	 */
+	public void markDeleted(BackupManifest base) {
+		for (String path : base.files.keySet()) {
+			if (!files.containsKey(path)) {
+				deleted.add(path);
+			}
+		}
+	}
+
+	public void write(OutputStream os) throws IOException {
+		Writer w = new BufferedWriter(new OutputStreamWriter(os, UTF_8));
+		w.write(ID + id + "\n");
+		if (baseId != null) {
+			w.write(BASE_ID + baseId + "\n");
+		}
+		synchronized (files) {
+			for (Map.Entry<String, Entry> me : files.entrySet()) {
+				Entry e = me.getValue();
+				w.write(FILE + SEPARATOR + e.size + SEPARATOR + e.modified + SEPARATOR + e.hash + SEPARATOR + me.getKey() + "\n");
+			}
+		}
+		synchronized (deleted) {
+			for (String path : deleted) {
+				w.write(DELETED + SEPARATOR + path + "\n");
+			}
+		}
+		w.flush();
+	}
+
+	public static BackupManifest read(InputStream is) throws IOException {
+		BackupManifest m = new BackupManifest();
+		BufferedReader r = new BufferedReader(new InputStreamReader(is, UTF_8));
+		String line;
+		while ((line = r.readLine()) != null) {
+			if (line.isEmpty()) {
+				continue;
+			}
+			if (line.startsWith(ID)) {
+				m.id = line.substring(ID.length());
+			} else if (line.startsWith(BASE_ID)) {
+				m.baseId = line.substring(BASE_ID.length());
+			} else if (line.charAt(0) == FILE) {
+				String[] parts = line.split(SEPARATOR, 5);
+				if (parts.length == 5) {
+					m.files.put(parts[4], new Entry(Long.parseLong(parts[1]), Long.parseLong(parts[2]), parts[3]));
+				}
+			} else if (line.charAt(0) == DELETED) {
+				m.deleted.add(line.substring(2));
+			}
+		}
+		return m;
+	}
+
+	/**
+	 * @return manifest of the backup archive, <code>null</code> for backups created without manifest
+	 */
+	public static BackupManifest read(File zip) throws IOException {
+		try (ZipFile zf = new ZipFile(zip)) {
+			ZipEntry e = zf.getEntry(FILE_NAME);
+			if (e == null) {
+				return null;
+			}
+			try (InputStream is = zf.getInputStream(e)) {
+				return read(is);
+			}
+		}
+	}
+
+	public static MessageDigest getDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public static String toHex(byte[] digest) {
+		StringBuilder sb = new StringBuilder(digest.length * 2);
+		for (byte b : digest) {
+			sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return sb.toString();
+	}
+
+	public static String hash(Path file) throws IOException {
+		MessageDigest md = getDigest();
+		try (InputStream is = new DigestInputStream(Files.newInputStream(file), md)) {
+			byte[] buf = new byte[BUFFER_SIZE];
+			while (is.read(buf) > -1) {
+				// digest is updated while reading
+			}
+		}
+		return toHex(md.digest());
+	}
+}
@@ -23,7 +23,7 @@ import java.io.Serializable;
 public class ProgressHolder implements Serializable {
 	private static final long serialVersionUID = 1L;
 	
-	private int progress;
+	private volatile int progress;
 
 	public int getProgress() {
 		return progress;
@@ -29,7 +29,9 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
 
@@ -103,6 +105,8 @@ public class Admin {
 		//backup/restore
 		options.addOption(new OmOption("b", null, "exclude-files", false, "should backup exclude files [default: include]", true));
 		options.addOption(new OmOption("b,r,i", "file", null, true, "file used for backup/restore/install", "b"));
+		options.addOption(new OmOption("b", null, "base", true, "previous backup, only files changed since it will be stored (incremental backup)", true));
+		options.addOption(new OmOption("r", null, "incremental", true, "comma separated list of incremental backups to be applied after 'file', in order of creation", true));
 		//install
 		options.addOption(new OmOption("i", "user", null, true, "Login name of the default user, minimum " + USER_LOGIN_MINIMUM_LENGTH + " characters (mutually exclusive with 'file')"));
 		options.addOption(new OmOption("i", "email", null, true, "Email of the default user (mutually exclusive with 'file')"));
@@ -149,6 +153,8 @@ public class Admin {
 		formatter.setWidth(100);
 		formatter.printHelp("admin", "Please specify one of the required parameters.", opts, "Examples:\n" +
 				"\t./admin.sh -b\n" +
+				"\t./admin.sh -b -file backup_01_08_2012_12_07_51.zip --base backup_31_07_2012_12_07_51.zip\n" +
+				"\t./admin.sh -r -file backup_31_07_2012_12_07_51.zip --incremental backup_01_08_2012_12_07_51.zip\n" +
 				"\t./admin.sh -i -v -file backup_31_07_2012_12_07_51.zip --drop\n" +
 				"\t./admin.sh -i -v -user admin -email someemail@gmail.com -tz \"Asia/Tehran\" -group \"yourgroup\" --db-type mysql --db-host localhost");
 	}
@@ -298,7 +304,8 @@ public class Admin {
 					backup_dir.mkdirs();
 
 					BackupExport export = getApplicationContext().getBean(BackupExport.class);
-					export.performExport(f, includeFiles, new ProgressHolder());
+					File base = cmdl.hasOption("base") ? new File(cmdl.getOptionValue("base")) : null;
+					export.performExport(f, includeFiles, base, new ProgressHolder());
 					FileUtils.deleteDirectory(backup_dir);
 					backup_dir.delete();
 				} catch (Exception e) {
@@ -307,7 +314,18 @@ public class Admin {
 				break;
 			case restore:
 				try {
-					restoreOm(checkRestoreFile(file));
+					File backup = checkRestoreFile(file);
+					if (cmdl.hasOption("incremental")) {
+						List<File> chain = new ArrayList<>();
+						chain.add(backup);
+						for (String inc : cmdl.getOptionValue("incremental").split(",")) {
+							chain.add(checkRestoreFile(inc.trim()));
+						}
+						BackupImport importCtrl = getApplicationContext().getBean(BackupImport.class);
+						importCtrl.performImport(chain, new ProgressHolder());
+					} else {
+						restoreOm(backup);
+					}
 				} catch (Exception e) {
 					handleError("Restore failed", e);
 				}
@@ -22,6 +22,11 @@ import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_APPLICAT
 import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_APPLICATION_NAME;
 import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_APPOINTMENT_REMINDER_MINUTES;
 import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_CALENDAR_FIRST_DAY;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_CALENDAR_SYNC_THREADS;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_CONVERTER_THREADS_DOCUMENT;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_CONVERTER_THREADS_IMAGE;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_CONVERTER_THREADS_PAGE;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_CONVERTER_THREADS_VIDEO;
 import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_CRYPT_KEY;
 import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_DASHBOARD_SHOW_CHAT;
 import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_DASHBOARD_SHOW_MYROOMS_KEY;
@@ -43,10 +48,20 @@ import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_HEADER_C
 import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_HEADER_XFRAME;
 import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_IGNORE_BAD_SSL;
 import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_IMAGEMAGIC_PATH;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_LDAP_CACHE_TTL;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_LDAP_POOL_SIZE;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_LDAP_POOL_TIMEOUT;
 import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_LOGIN_MIN_LENGTH_KEY;
 import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_MAX_UPLOAD_SIZE_KEY;
 import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_OAUTH_REGISTER_KEY;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_OFFICE_MAX_TASKS;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_OFFICE_POOL_SIZE;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_OFFICE_QUEUE_SIZE;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_OFFICE_TIMEOUT;
 import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_PASS_MIN_LENGTH_KEY;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_RECORDING_HLS;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_RECORDING_LIVE_CONVERSION;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_RECORDING_SEGMENT_LENGTH;
 import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_REDIRECT_URL_FOR_EXTERNAL_KEY;
 import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_RSS_FEED1_KEY;
 import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_RSS_FEED2_KEY;
@@ -56,6 +71,9 @@ import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_SCREENSH
 import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_SCREENSHARING_QUALITY;
 import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_SIP_ENABLED;
 import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_SOAP_REGISTER_KEY;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_STORAGE_QUOTA_GROUP;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_STORAGE_QUOTA_ROOM;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_STORAGE_QUOTA_USER;
 import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_SYSTEM_EMAIL;
 import static org.apache.openmeetings.util.OpenmeetingsVariables.DEFAULT_APP_NAME;
 import static org.apache.openmeetings.util.OpenmeetingsVariables.DEFAULT_MAX_UPLOAD_SIZE;
@@ -241,6 +259,15 @@ public class ImportInitvalues {
 		cfgDao.add("mail.smtp.timeout", "30000", null,
 				"Socket I/O timeout value in milliseconds. Default is 30 seconds (30000).");
 
+		cfgDao.add("mail.smtp.pool.size", "3", null,
+				"Maximum number of SMTP connections being kept open and used to send emails simultaneously. Default is 3.");
+
+		cfgDao.add("mail.send.batch.size", "50", null,
+				"Number of queued emails being processed at once. Default is 50.");
+
+		cfgDao.add("mail.send.rate", "0", null,
+				"Maximum number of emails being sent per second, 0 means no limit. Default is 0.");
+
 		cfgDao.add(CONFIG_APPLICATION_NAME, DEFAULT_APP_NAME, null, "Name of the Browser Title window");
 
 		// "1" == "EN"
@@ -368,6 +395,24 @@ public class ImportInitvalues {
 		cfgDao.add(CONFIG_HEADER_XFRAME, HEADER_XFRAME_SAMEORIGIN, null, "Value for 'X-Frame-Options' header (default: DENY), more info: https://developer.mozilla.org/en-US/docs/Web/HTTP/Headers/X-Frame-Options");
 		cfgDao.add(CONFIG_HEADER_CSP, HEADER_CSP_SELF, null, "Value for 'Content-Security-Policy' header (default: default-src 'self'; style-src 'self' 'unsafe-inline'; script-src 'self' 'unsafe-inline' 'unsafe-eval';), have to be modified to enable Google analytics site: https://content-security-policy.com/");
 		cfgDao.add(CONFIG_EXT_PROCESS_TTL, "" + EXT_PROCESS_TTL, null, String.format("Time to live in minutes for external processes such as conversion via ffmpeg (default %s minutes)", EXT_PROCESS_TTL));
+		cfgDao.add(CONFIG_CONVERTER_THREADS_DOCUMENT, "1", null, "Number of documents being converted simultaneously (default 1)");
+		cfgDao.add(CONFIG_CONVERTER_THREADS_IMAGE, "2", null, "Number of images being converted simultaneously (default 2)");
+		cfgDao.add(CONFIG_CONVERTER_THREADS_VIDEO, "1", null, "Number of videos being converted simultaneously (default 1)");
+		cfgDao.add(CONFIG_CONVERTER_THREADS_PAGE, "2", null, "Number of chunks of document pages being rendered simultaneously in background (default 2)");
+		cfgDao.add(CONFIG_OFFICE_POOL_SIZE, "1", null, "Number of office processes kept running for conversion of documents (default 1)");
+		cfgDao.add(CONFIG_OFFICE_QUEUE_SIZE, "20", null, "Max number of documents waiting for free office process (default 20)");
+		cfgDao.add(CONFIG_OFFICE_TIMEOUT, "120", null, "Time in seconds to wait for free office process and to convert the document (default 120)");
+		cfgDao.add(CONFIG_OFFICE_MAX_TASKS, "200", null, "Number of documents converted before office process is restarted (default 200)");
+		cfgDao.add(CONFIG_LDAP_POOL_SIZE, "8", null, "Max number of connections to each LDAP server, admin and user bind connections are counted separately (default 8)");
+		cfgDao.add(CONFIG_LDAP_POOL_TIMEOUT, "10", null, "Time in seconds to wait for free LDAP connection (default 10)");
+		cfgDao.add(CONFIG_LDAP_CACHE_TTL, "60", null, "Time in seconds Dn and attributes of LDAP user are cached, 0 to disable (default 60)");
+		cfgDao.add(CONFIG_STORAGE_QUOTA_USER, "0", null, "Max size in megabytes of personal files of the user, 0 for unlimited (default 0)");
+		cfgDao.add(CONFIG_STORAGE_QUOTA_ROOM, "0", null, "Max size in megabytes of public files of the room, 0 for unlimited (default 0)");
+		cfgDao.add(CONFIG_STORAGE_QUOTA_GROUP, "0", null, "Max size in megabytes of files of the group, 0 for unlimited (default 0)");
+		cfgDao.add(CONFIG_RECORDING_LIVE_CONVERSION, "0", null, "Set to 1 to encode screen sharing of the recording in segments while meeting is running (default 0)");
+		cfgDao.add(CONFIG_RECORDING_SEGMENT_LENGTH, "300", null, "Length in seconds of the segment encoded during live conversion of the recording (default 300)");
+		cfgDao.add(CONFIG_CALENDAR_SYNC_THREADS, "4", null, "Number of CalDAV calendars being synced simultaneously in background (default 4)");
+		cfgDao.add(CONFIG_RECORDING_HLS, "0", null, "Set to 1 to additionally store converted recordings as HLS playlist of fragmented MP4 segments (default 0)");
 		log.debug("Configurations ADDED");
 	}
 
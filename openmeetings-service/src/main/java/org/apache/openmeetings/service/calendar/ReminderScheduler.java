@@ -0,0 +1,279 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.service.calendar;
+
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_APPLICATION_BASE_URL;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_APPOINTMENT_REMINDER_MINUTES;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.DEFAULT_BASE_URL;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.DEFAULT_MINUTES_REMINDER_SEND;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.webAppRootKey;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.openmeetings.db.dao.basic.ConfigurationDao;
+import org.apache.openmeetings.db.dao.calendar.AppointmentDao;
+import org.apache.openmeetings.db.dao.calendar.IReminderScheduler;
+import org.apache.openmeetings.db.dao.label.LabelDao;
+import org.apache.openmeetings.db.dao.room.IInvitationManager;
+import org.apache.openmeetings.db.dao.room.InvitationDao;
+import org.apache.openmeetings.db.entity.calendar.Appointment;
+import org.apache.openmeetings.db.entity.calendar.Appointment.Reminder;
+import org.apache.openmeetings.db.entity.calendar.MeetingMember;
+import org.apache.openmeetings.db.entity.room.Invitation;
+import org.apache.openmeetings.db.entity.room.Invitation.MessageType;
+import org.apache.openmeetings.db.entity.user.User;
+import org.apache.openmeetings.db.util.TimezoneUtil;
+import org.apache.openmeetings.service.mail.template.subject.AppointmentReminderTemplate;
+import org.apache.openmeetings.service.mail.template.subject.SubjectEmail;
+import org.apache.openmeetings.util.TimerWheel;
+import org.red5.logging.Red5LoggerFactory;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Schedules appointment reminders.
+ *
+ * Reminders due in the next {@link #LOAD_WINDOW} are kept in the {@link TimerWheel}, the window
+ * is loaded incrementally while time goes, reminders of the appointments stored in between are
+ * re-scheduled by {@link AppointmentDao}. Due reminders are sent in parallel by the pool of workers.
+ *
+ * Reminder is marked as sent in the database before it is being sent (see {@link AppointmentDao#markReminderSent(Long)}),
+ * so it will be sent only once even after restart or if several nodes are running.
+ */
+public class ReminderScheduler implements IReminderScheduler {
+	private static final Logger log = Red5LoggerFactory.getLogger(ReminderScheduler.class, webAppRootKey);
+	private static final long TICK = 10 * 1000L;
+	private static final int WHEEL_SIZE = 512;
+	private static final long LOAD_WINDOW = 6 * 60 * 60 * 1000L;
+	private static final int BATCH_SIZE = 20;
+	private static final int THREADS = 4;
+
+	@Autowired
+	private AppointmentDao appointmentDao;
+	@Autowired
+	private ConfigurationDao cfgDao;
+	@Autowired
+	private IInvitationManager invitationManager;
+	@Autowired
+	private TimezoneUtil timezoneUtil;
+	@Autowired
+	private InvitationDao invitationDao;
+	private volatile TimerWheel<Long> wheel = new TimerWheel<>(TICK, WHEEL_SIZE, System.currentTimeMillis());
+	private volatile Integer minutes = null;
+	// reminders due before this time are loaded to the wheel
+	private volatile long loadedUntil = 0;
+	private ExecutorService pool;
+
+	private synchronized ExecutorService getPool() {
+		if (pool == null) {
+			ThreadPoolExecutor tpe = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS
+					, new LinkedBlockingQueue<>(), new CustomizableThreadFactory("reminder-"));
+			tpe.allowCoreThreadTimeOut(true);
+			pool = tpe;
+		}
+		return pool;
+	}
+
+	private static long getDue(Appointment a, int minutes) {
+		return a.getStart().getTime() - minutes * 60 * 1000L;
+	}
+
+	private static boolean isRemindable(Appointment a, long now) {
+		return a.getId() != null && !a.isDeleted() && !a.isReminderEmailSend()
+				&& a.getReminder() != Reminder.none && a.getEnd().getTime() > now;
+	}
+
+	@Override
+	public void changed(Appointment a) {
+		Integer m = minutes;
+		if (m == null || a.getId() == null) {
+			// not yet loaded, appointment will be loaded with others
+			return;
+		}
+		long due = getDue(a, m);
+		if (m != 0 && isRemindable(a, System.currentTimeMillis()) && due < loadedUntil) {
+			wheel.schedule(a.getId(), due);
+		} else {
+			wheel.cancel(a.getId());
+		}
+	}
+
+	/**
+	 * Loads reminders due in [loadedUntil, now + LOAD_WINDOW), on first call all the pending reminders are loaded
+	 */
+	private synchronized void load(long now, int m) {
+		long ms = m * 60 * 1000L;
+		long to = now + LOAD_WINDOW;
+		Calendar start = Calendar.getInstance();
+		start.setTimeInMillis(loadedUntil == 0 ? Math.min(now, now + ms) : loadedUntil + ms);
+		Calendar end = Calendar.getInstance();
+		end.setTimeInMillis(to + ms);
+		loadedUntil = to;
+		List<Appointment> list = appointmentDao.getInRange(start, end);
+		log.debug("{} appointments are loaded to remind", list.size());
+		for (Appointment a : list) {
+			changed(a);
+		}
+	}
+
+	/**
+	 * Sends reminders due by now, should be called periodically
+	 */
+	public void process() {
+		String baseUrl = cfgDao.getConfValue(CONFIG_APPLICATION_BASE_URL, String.class, DEFAULT_BASE_URL);
+		if (baseUrl == null || baseUrl.length() < 1) {
+			log.error("Error retrieving baseUrl for application");
+			return;
+		}
+		Integer _m = cfgDao.getConfValue(CONFIG_APPOINTMENT_REMINDER_MINUTES, Integer.class, "" + DEFAULT_MINUTES_REMINDER_SEND);
+		if (_m == null) {
+			log.error("minutesReminderSend is null!");
+			return;
+		}
+		int m = _m;
+		long now = System.currentTimeMillis();
+		synchronized (this) {
+			if (minutes == null || m != minutes) {
+				// due times depend on the config, all the reminders need to be reloaded
+				wheel = new TimerWheel<>(TICK, WHEEL_SIZE, now);
+				loadedUntil = 0;
+				minutes = m;
+			}
+		}
+		if (m == 0) {
+			log.debug("minutesReminderSend is 0, reminders are disabled");
+			return;
+		}
+		if (loadedUntil - now < LOAD_WINDOW / 2) {
+			load(now, m);
+		}
+		List<Long> due = wheel.advance(now);
+		for (int i = 0; i < due.size(); i += BATCH_SIZE) {
+			List<Long> batch = new ArrayList<>(due.subList(i, Math.min(due.size(), i + BATCH_SIZE)));
+			getPool().execute(() -> {
+				for (Long id : batch) {
+					remind(id, m);
+				}
+			});
+		}
+	}
+
+	private void remind(Long id, int m) {
+		try {
+			Appointment a = appointmentDao.get(id);
+			long now = System.currentTimeMillis();
+			if (a == null || !isRemindable(a, now)) {
+				return;
+			}
+			if (getDue(a, m) > now) {
+				// appointment was moved, possibly on other node
+				changed(a);
+				return;
+			}
+			if (!appointmentDao.markReminderSent(id)) {
+				log.debug("Reminder of appointment {} was already sent", id);
+				return;
+			}
+			a.setReminderEmailSend(true);
+			List<User> users = new ArrayList<>();
+			List<Invitation> invitations = new ArrayList<>();
+			users.add(a.getOwner());
+			invitations.add(getOwnerInvitation(a));
+			List<MeetingMember> members = a.getMeetingMembers();
+			if (members == null) {
+				log.debug("remind : no members in meeting!");
+			} else {
+				//TODO should we add reminder for the owner????
+				for (MeetingMember mm : members) {
+					log.debug("remind : Member {}", mm.getUser().getAddress().getEmail());
+					users.add(mm.getUser());
+					invitations.add(mm.getInvitation());
+				}
+			}
+			List<SubjectEmail> emails = AppointmentReminderTemplate.get(users, a, u -> timezoneUtil.getTimeZone(u.getTimeZoneId()));
+			for (int i = 0; i < users.size(); ++i) {
+				User u = users.get(i);
+				Invitation inv = invitations.get(i);
+				SubjectEmail t = emails.get(i);
+				getPool().execute(() -> sendReminder(u, a, inv, t));
+			}
+		} catch (Exception e) {
+			log.error("Unexpected error while sending reminder of appointment: " + id, e);
+		}
+	}
+
+	private static Invitation getOwnerInvitation(Appointment a) {
+		Invitation i = new Invitation();
+		i.setInvitedBy(a.getOwner());
+		i.setInvitee(a.getOwner());
+		i.setAppointment(a);
+		i.setRoom(a.getRoom());
+		return i;
+	}
+
+	private void sendReminder(User u, Appointment a, Invitation inv, SubjectEmail t) {
+		if (inv == null) {
+			log.error(String.format("Error retrieving Invitation for member %s in Appointment %s"
+					, u.getAddress().getEmail(), a.getTitle()));
+			return;
+		}
+		try {
+			long langId = u.getLanguageId();
+			String smsSubject = generateSMSSubject(LabelDao.getString(1158L, langId), a);
+
+			invitationManager.sendInvitationLink(inv, MessageType.Create, t.getSubject(), t.getEmail(), false);
+
+			invitationManager.sendInvitationReminderSMS(u.getAddress().getPhone(), smsSubject, langId);
+			if (inv.getHash() != null) {
+				inv.setUpdated(new Date());
+				invitationDao.update(inv);
+			}
+		} catch (Exception e) {
+			log.error("Error while sending reminder of appointment " + a.getId(), e);
+		}
+	}
+
+	private String generateSMSSubject(String labelid1158, Appointment ment) {
+		String subj = cfgDao.getConfValue("sms.subject", String.class, null);
+		return subj == null || subj.length() == 0 ?
+				labelid1158 + " " + ment.getTitle() : subj;
+	}
+
+	/**
+	 * @return number of reminders currently scheduled
+	 */
+	public int size() {
+		return wheel.size();
+	}
+
+	public synchronized void destroy() {
+		if (pool != null) {
+			pool.shutdownNow();
+			pool = null;
+		}
+	}
+}
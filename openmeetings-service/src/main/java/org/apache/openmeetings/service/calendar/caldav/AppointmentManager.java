@@ -29,6 +29,7 @@ import java.util.List;
 
 import org.apache.commons.httpclient.Credentials;
 import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpState;
 import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
 import org.apache.commons.httpclient.auth.AuthScope;
 import org.apache.commons.httpclient.methods.OptionsMethod;
@@ -67,8 +68,8 @@ public class AppointmentManager {
 
 	//HttpClient and ConnectionManager Params
 	private static final int IDLE_CONNECTION_TIMEOUT = 30000; // 30 seconds
-	private static final int MAX_HOST_CONNECTIONS = 6; // Number of simultaneous connections to one host
-	private static final int MAX_TOTAL_CONNECTIONS = 10; // Max Connections, at one time in memory.
+	public static final int MAX_HOST_CONNECTIONS = 6; // Number of simultaneous connections to one host
+	private static final int MAX_TOTAL_CONNECTIONS = 20; // Max Connections, at one time in memory.
 	private static final int CONNECTION_MANAGER_TIMEOUT = 1000; // Waits for 1 sec if no empty connection exists
 
 	private MultiThreadedHttpConnectionManager connmanager = null;
@@ -85,7 +86,7 @@ public class AppointmentManager {
 	 *
 	 * @return HttpClient object that was created.
 	 */
-	public HttpClient createHttpClient() {
+	public synchronized HttpClient createHttpClient() {
 		if (connmanager == null) {
 			connmanager = new MultiThreadedHttpConnectionManager();
 			HttpConnectionManagerParams params = new HttpConnectionManagerParams();
@@ -96,7 +97,20 @@ public class AppointmentManager {
 
 		HttpClientParams clientParams = new HttpClientParams();
 		clientParams.setConnectionManagerTimeout(CONNECTION_MANAGER_TIMEOUT);
-		return new HttpClient(connmanager);
+		return new HttpClient(clientParams, connmanager);
+	}
+
+	/**
+	 * Returns a new HttpClient sharing the state (i.e. credentials) with other client.
+	 * Host configuration is not shared, so clients can be used to sync different calendars simultaneously.
+	 *
+	 * @param state State of the client which holds credentials.
+	 * @return HttpClient object that was created.
+	 */
+	public HttpClient createHttpClient(HttpState state) {
+		HttpClient client = createHttpClient();
+		client.setState(state);
+		return client;
 	}
 
 	/**
@@ -214,10 +228,10 @@ public class AppointmentManager {
 	 * Function which when called performs syncing based on the type of Syncing detected.
 	 *
 	 * @param calendar Calendar who's sync has to take place
+	 * @return <code>False</code> if sync of the calendar has failed, else <code>True</code>
 	 */
-	public void syncItem(HttpClient client, OmCalendar calendar) {
-		cleanupIdleConnections();
-
+	public boolean syncItem(HttpClient client, OmCalendar calendar) {
+		boolean success = true;
 		if (calendar.getSyncType() != SyncType.NONE) {
 			CalendarHandler calendarHandler;
 			String path = getPathfromCalendar(client, calendar);
@@ -235,21 +249,57 @@ public class AppointmentManager {
 					break;
 			}
 
-			calendarHandler.syncItems();
+			success = calendarHandler.syncItems();
 			calendarDao.update(calendar);
 		}
+		return success;
 	}
 
 	/**
 	 * Syncs all the calendars currrently present on the DB.
 	 */
 	public void syncItems(HttpClient client, Long userId) {
+		cleanupIdleConnections();
 		List<OmCalendar> calendars = getCalendars(userId);
 		for (OmCalendar calendar : calendars) {
 			syncItem(client, calendar);
 		}
 	}
 
+	/**
+	 * Returns the tag of the whole calendar collection, it changes whenever any event of the calendar is changed.
+	 * CTag is used if provided by the server, otherwise ETag of the collection.
+	 *
+	 * @param client   Client which makes the connection.
+	 * @param calendar Calendar to get the tag of.
+	 * @return Tag of the Calendar, or null if server doesn't provide any.
+	 */
+	public String getCollectionTag(HttpClient client, OmCalendar calendar) {
+		PropFindMethod propFindMethod = null;
+		try {
+			DavPropertyNameSet properties = new DavPropertyNameSet();
+			properties.add(CtagHandler.DNAME_GETCTAG);
+			properties.add(DavPropertyName.GETETAG);
+
+			propFindMethod = new PropFindMethod(getPathfromCalendar(client, calendar), properties, CalDAVConstants.DEPTH_0);
+			client.executeMethod(propFindMethod);
+			if (propFindMethod.succeeded()) {
+				for (MultiStatusResponse response : propFindMethod.getResponseBodyAsMultiStatus().getResponses()) {
+					DavPropertySet set = response.getProperties(SC_OK);
+					String ctag = getTokenFromProperty(set.get(CtagHandler.DNAME_GETCTAG));
+					return ctag == null ? getTokenFromProperty(set.get(DavPropertyName.GETETAG)) : ctag;
+				}
+			}
+		} catch (Exception e) {
+			log.error("Error executing PROPFIND Method, while getting the tag of the calendar.", e);
+		} finally {
+			if (propFindMethod != null) {
+				propFindMethod.releaseConnection();
+			}
+		}
+		return null;
+	}
+
 	/**
 	 * Function which finds all the calendars of the Principal URL of the calendar
 	 */
@@ -580,7 +630,7 @@ public class AppointmentManager {
 	/**
 	 * Method which is called when the Context is destroyed.
 	 */
-	public void destroy() {
+	public synchronized void destroy() {
 		MultiThreadedHttpConnectionManager.shutdownAll();
 		connmanager = null;
 	}
@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.service.calendar.caldav;
+
+import static org.apache.openmeetings.service.calendar.caldav.AppointmentManager.MAX_HOST_CONNECTIONS;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_CALENDAR_SYNC_THREADS;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.webAppRootKey;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpState;
+import org.apache.openmeetings.db.dao.basic.ConfigurationDao;
+import org.apache.openmeetings.db.entity.calendar.OmCalendar;
+import org.apache.openmeetings.db.entity.calendar.OmCalendar.SyncType;
+import org.red5.logging.Red5LoggerFactory;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Syncs CalDAV calendars in the background.
+ *
+ * Calendars are synced in parallel by bounded pool of workers, number of calendars
+ * synced simultaneously on the same host is limited by {@link AppointmentManager#MAX_HOST_CONNECTIONS}.
+ * Sync of the calendar already being synced is not scheduled twice.
+ * Calendars synced by ETags are skipped if the tag of the collection is not changed since last successful sync,
+ * calendars synced by CTag and WebDAV-Sync are checked by their handlers.
+ */
+public class CalendarSyncService {
+	private static final Logger log = Red5LoggerFactory.getLogger(CalendarSyncService.class, webAppRootKey);
+
+	@Autowired
+	private ConfigurationDao cfgDao;
+	@Autowired
+	private AppointmentManager manager;
+	private ExecutorService pool;
+	private final Map<String, Semaphore> hosts = new ConcurrentHashMap<>();
+	private final Map<Long, CompletableFuture<Void>> running = new ConcurrentHashMap<>();
+	// tags of the collections synced by ETags
+	private final Map<Long, String> tags = new ConcurrentHashMap<>();
+
+	private synchronized ExecutorService getPool() {
+		if (pool == null) {
+			int threads = Math.max(1, cfgDao.getConfValue(CONFIG_CALENDAR_SYNC_THREADS, Integer.class, "4"));
+			ThreadPoolExecutor tpe = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS
+					, new LinkedBlockingQueue<>(), new CustomizableThreadFactory("caldav-sync-"));
+			tpe.allowCoreThreadTimeOut(true);
+			pool = tpe;
+		}
+		return pool;
+	}
+
+	private static boolean isSyncable(OmCalendar calendar) {
+		SyncType type = calendar.getSyncType();
+		return calendar.getId() != null && type != SyncType.NONE && type != SyncType.GOOGLE_CALENDAR;
+	}
+
+	/**
+	 * Schedules sync of all the calendars of the user.
+	 *
+	 * @param userId Owner of the calendars.
+	 * @param state  State holding credentials of the user.
+	 * @return Future completed when all the calendars are synced.
+	 */
+	public CompletableFuture<Void> sync(Long userId, HttpState state) {
+		manager.cleanupIdleConnections();
+		List<CompletableFuture<Void>> jobs = new ArrayList<>();
+		for (OmCalendar calendar : manager.getCalendars(userId)) {
+			if (isSyncable(calendar)) {
+				jobs.add(sync(calendar, state));
+			}
+		}
+		return CompletableFuture.allOf(jobs.toArray(new CompletableFuture<?>[jobs.size()]));
+	}
+
+	/**
+	 * Schedules sync of the calendar.
+	 *
+	 * @param calendar Calendar to sync.
+	 * @param state    State holding credentials of the user.
+	 * @return Future completed when the calendar is synced,
+	 * the one of already running sync is returned if calendar is being synced.
+	 */
+	public CompletableFuture<Void> sync(OmCalendar calendar, HttpState state) {
+		Long id = calendar.getId();
+		CompletableFuture<Void> f = new CompletableFuture<>();
+		CompletableFuture<Void> prev = running.putIfAbsent(id, f);
+		if (prev != null) {
+			log.debug("Calendar {} is already being synced", id);
+			return prev;
+		}
+		try {
+			getPool().execute(() -> {
+				try {
+					sync(manager.createHttpClient(state), calendar);
+				} catch (Exception e) {
+					log.error("Unexpected error while syncing calendar: " + id, e);
+				} finally {
+					running.remove(id, f);
+					f.complete(null);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			running.remove(id, f);
+			f.completeExceptionally(e);
+		}
+		return f;
+	}
+
+	private void sync(HttpClient client, OmCalendar calendar) throws InterruptedException {
+		Semaphore host = hosts.computeIfAbsent(URI.create(calendar.getHref()).getHost(), h -> new Semaphore(MAX_HOST_CONNECTIONS));
+		host.acquire();
+		try {
+			String tag = null;
+			if (calendar.getSyncType() == SyncType.ETAG) {
+				tag = manager.getCollectionTag(client, calendar);
+				if (tag != null && tag.equals(tags.get(calendar.getId()))) {
+					log.debug("Calendar {} is not changed", calendar.getId());
+					return;
+				}
+			}
+			// tag is stored only if the calendar is synced, failed sync will be retried
+			if (manager.syncItem(client, calendar) && tag != null) {
+				tags.put(calendar.getId(), tag);
+			} else {
+				tags.remove(calendar.getId());
+			}
+		} finally {
+			host.release();
+		}
+	}
+
+	/**
+	 * Deletes the calendar and forgets its tag.
+	 *
+	 * @param calendar Calendar to delete.
+	 */
+	public void deleteCalendar(OmCalendar calendar) {
+		manager.deleteCalendar(calendar);
+		tags.remove(calendar.getId());
+	}
+
+	public synchronized void destroy() {
+		if (pool != null) {
+			pool.shutdownNow();
+			pool = null;
+		}
+	}
+}
@@ -19,7 +19,6 @@
 package org.apache.openmeetings.service.calendar.caldav.handler;
 
 import org.apache.openmeetings.db.entity.calendar.Appointment;
-import org.apache.openmeetings.db.entity.calendar.OmCalendar;
 
 /**
  * SyncHandler Interface specifies if the class is Sync Handler.
@@ -39,9 +38,9 @@ public interface CalendarHandler {
 	/**
 	 * Function to update all items in the CalDAV calendar. The owner of the appointments
 	 * created are the same as the owner of the calendar.
-	 * @return Returns the updated calendar after updation of all events.
+	 * @return <code>True</code> when all the items are synced else <code>False</code>
 	 */
-	public OmCalendar syncItems();
+	public boolean syncItems();
 
 	/**
 	 * Function for create/updating multiple appointment on the server.
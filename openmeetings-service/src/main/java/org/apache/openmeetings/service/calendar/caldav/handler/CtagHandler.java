@@ -58,8 +58,9 @@ public class CtagHandler extends AbstractCalendarHandler {
 	}
 
 	@Override
-	public OmCalendar syncItems() {
+	public boolean syncItems() {
 		//Calendar already inited.
+		boolean success = false;
 
 		PropFindMethod propFindMethod = null;
 
@@ -71,14 +72,19 @@ public class CtagHandler extends AbstractCalendarHandler {
 			client.executeMethod(propFindMethod);
 
 			if (propFindMethod.succeeded()) {
+				success = true;
 				for (MultiStatusResponse response : propFindMethod.getResponseBodyAsMultiStatus().getResponses()) {
 					DavPropertySet set = response.getProperties(SC_OK);
 					String ctag = AppointmentManager.getTokenFromProperty(set.get(DNAME_GETCTAG));
 
 					if (ctag != null && !ctag.equals(calendar.getToken())) {
 						EtagsHandler etagsHandler = new EtagsHandler(path, calendar, client, appointmentDao, utils);
-						etagsHandler.syncItems();
-						calendar.setToken(ctag);
+						//Token is not updated if sync failed, so the calendar will be synced again
+						if (etagsHandler.syncItems()) {
+							calendar.setToken(ctag);
+						} else {
+							success = false;
+						}
 					}
 				}
 			} else {
@@ -96,7 +102,7 @@ public class CtagHandler extends AbstractCalendarHandler {
 			}
 		}
 
-		return calendar;
+		return success;
 	}
 
 	@Override
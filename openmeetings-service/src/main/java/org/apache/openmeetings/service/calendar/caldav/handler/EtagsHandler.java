@@ -76,7 +76,7 @@ public class EtagsHandler extends AbstractCalendarHandler {
 	}
 
 	@Override
-	public OmCalendar syncItems() {
+	public boolean syncItems() {
 		Long ownerId = this.calendar.getOwner().getId();
 		Map<String, Appointment> map = listToMap(appointmentDao.getHrefsbyCalendar(calendar.getId()),
 				appointmentDao.getbyCalendar(calendar.getId()));
@@ -98,16 +98,17 @@ public class EtagsHandler extends AbstractCalendarHandler {
 					//Initializing the Calendar for the first time.
 
 					//Parse the responses into Appointments
+					List<Appointment> added = new ArrayList<>();
 					for (MultiStatusResponse response : multiStatusResponses) {
 						if (response.getStatus()[0].getStatusCode() == SC_OK) {
 							String etag = CalendarDataProperty.getEtagfromResponse(response);
 							Calendar ical = CalendarDataProperty.getCalendarfromResponse(response);
-							Appointment appointments = utils.parseCalendartoAppointment(
-									ical, response.getHref(), etag, calendar);
-
-							appointmentDao.update(appointments, ownerId);
+							added.add(utils.parseCalendartoAppointment(
+									ical, response.getHref(), etag, calendar));
 						}
 					}
+					appointmentDao.update(added, ownerId);
+					return true;
 				} else {
 					//Calendar has been inited before
 					List<String> currenthrefs = new ArrayList<>();
@@ -156,7 +157,7 @@ public class EtagsHandler extends AbstractCalendarHandler {
 			}
 		}
 
-		return calendar;
+		return false;
 	}
 
 	@Override
@@ -40,6 +40,7 @@ import org.red5.logging.Red5LoggerFactory;
 import org.slf4j.Logger;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -88,9 +89,11 @@ public class MultigetHandler extends AbstractCalendarHandler {
 	}
 
 	@Override
-	public OmCalendar syncItems() {
+	public boolean syncItems() {
 		Long ownerId = this.calendar.getOwner().getId();
+		boolean success = true;
 		if (!isMultigetDisabled) {
+			success = false;
 
 			CalDAVReportMethod reportMethod = null;
 
@@ -103,6 +106,8 @@ public class MultigetHandler extends AbstractCalendarHandler {
 					//Map for each Href as key and Appointment as Value.
 					Map<String, Appointment> map = listToMap(appointmentDao.getHrefsbyCalendar(calendar.getId()),
 							appointmentDao.getbyCalendar(calendar.getId()));
+					//Changes are stored in single transaction
+					List<Appointment> changed = new ArrayList<>();
 
 					for (MultiStatusResponse response : reportMethod.getResponseBodyAsMultiStatus().getResponses()) {
 						if (response.getStatus()[0].getStatusCode() == SC_OK) {
@@ -121,7 +126,7 @@ public class MultigetHandler extends AbstractCalendarHandler {
 										Calendar calendar = CalendarDataProperty.getCalendarfromResponse(response);
 										a = utils.parseCalendartoAppointment(a, calendar, currentetag);
 									}
-									appointmentDao.update(a, ownerId);
+									changed.add(a);
 								}
 							} else if (!onlyEtag) {
 								//Else it's a new Appointment
@@ -131,10 +136,12 @@ public class MultigetHandler extends AbstractCalendarHandler {
 								Calendar ical = CalendarDataProperty.getCalendarfromResponse(response);
 								Appointment appointments = utils.parseCalendartoAppointment(
 										ical, response.getHref(), etag, calendar);
-								appointmentDao.update(appointments, ownerId);
+								changed.add(appointments);
 							}
 						}
 					}
+					appointmentDao.update(changed, ownerId);
+					success = true;
 				} else {
 					log.error("Report Method return Status: {} for calId {}", reportMethod.getStatusCode(), calendar.getId());
 				}
@@ -149,7 +156,7 @@ public class MultigetHandler extends AbstractCalendarHandler {
 			}
 		}
 
-		return calendar;
+		return success;
 	}
 
 	// Doesn't handle Creation, Updation and Deletion of events.
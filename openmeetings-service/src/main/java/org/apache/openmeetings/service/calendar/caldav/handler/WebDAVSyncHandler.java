@@ -62,8 +62,9 @@ public class WebDAVSyncHandler extends AbstractCalendarHandler {
 	}
 
 	@Override
-	public OmCalendar syncItems() {
+	public boolean syncItems() {
 		boolean additionalSyncNeeded = false;
+		boolean success = false;
 
 		SyncMethod syncMethod = null;
 
@@ -118,10 +119,12 @@ public class WebDAVSyncHandler extends AbstractCalendarHandler {
 
 				MultigetHandler multigetHandler = new MultigetHandler(currenthrefs, path,
 						calendar, client, appointmentDao, utils);
-				multigetHandler.syncItems();
-
-				//Set the new token
-				calendar.setToken(syncMethod.getResponseSynctoken());
+				//Token is not updated if events were not fetched, so the changes will be requested again
+				if (multigetHandler.syncItems()) {
+					//Set the new token
+					calendar.setToken(syncMethod.getResponseSynctoken());
+					success = true;
+				}
 			} else if (syncMethod.getStatusCode() == SC_FORBIDDEN ||
 					syncMethod.getStatusCode() == SC_PRECONDITION_FAILED) {
 
@@ -144,7 +147,7 @@ public class WebDAVSyncHandler extends AbstractCalendarHandler {
 			}
 		}
 
-		return additionalSyncNeeded ? syncItems() : calendar;
+		return additionalSyncNeeded ? syncItems() : success;
 	}
 
 	@Override
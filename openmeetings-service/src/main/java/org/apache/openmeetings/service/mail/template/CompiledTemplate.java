@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.service.mail.template;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.wicket.util.string.Strings;
+
+/**
+ * Template rendered once with markers in place of the recipient specific values.
+ * Rendering for the particular recipient is plain concatenation of the static parts
+ * and parameter values: no component tree is created and no labels are being looked up,
+ * so it can be performed by any thread.
+ *
+ * Markers contain characters escaped by Wicket, marker found escaped means the value
+ * should be escaped the same way {@link org.apache.wicket.markup.html.basic.Label} does.
+ */
+public class CompiledTemplate {
+	private static final String START = "{om<";
+	private static final String END = ">}";
+	private static final String ESC_START = "{om&lt;";
+	private static final String ESC_END = "&gt;}";
+	private final String[] parts;
+	private final String[] names;
+	private final boolean[] escape;
+	private final int length;
+
+	private CompiledTemplate(List<String> parts, List<String> names, List<Boolean> escape) {
+		this.parts = parts.toArray(new String[parts.size()]);
+		this.names = names.toArray(new String[names.size()]);
+		this.escape = new boolean[escape.size()];
+		int len = 0;
+		for (int i = 0; i < this.escape.length; ++i) {
+			this.escape[i] = escape.get(i);
+		}
+		for (String p : parts) {
+			len += p.length();
+		}
+		length = len;
+	}
+
+	/**
+	 * @param name - name of the parameter
+	 * @return marker to be passed to the template instead of the actual value
+	 */
+	public static String param(String name) {
+		return START + name + END;
+	}
+
+	/**
+	 * @param rendered - template rendered with {@link #param(String)} markers as values
+	 * @return compiled template
+	 */
+	public static CompiledTemplate compile(CharSequence rendered) {
+		String s = rendered.toString();
+		List<String> parts = new ArrayList<>();
+		List<String> names = new ArrayList<>();
+		List<Boolean> escape = new ArrayList<>();
+		int pos = 0;
+		while (true) {
+			int raw = s.indexOf(START, pos);
+			int esc = s.indexOf(ESC_START, pos);
+			if (raw < 0 && esc < 0) {
+				break;
+			}
+			boolean escaped = raw < 0 || (esc > -1 && esc < raw);
+			int idx = escaped ? esc : raw;
+			int nameIdx = idx + (escaped ? ESC_START : START).length();
+			int end = s.indexOf(escaped ? ESC_END : END, nameIdx);
+			if (end < 0) {
+				break;
+			}
+			parts.add(s.substring(pos, idx));
+			names.add(s.substring(nameIdx, end));
+			escape.add(escaped);
+			pos = end + (escaped ? ESC_END : END).length();
+		}
+		parts.add(s.substring(pos));
+		return new CompiledTemplate(parts, names, escape);
+	}
+
+	/**
+	 * @param params - values of the parameters, missing values are rendered as empty strings
+	 * @return rendered template
+	 */
+	public String render(Map<String, String> params) {
+		StringBuilder sb = new StringBuilder(length + 64 * names.length);
+		for (int i = 0; i < names.length; ++i) {
+			sb.append(parts[i]);
+			String v = params.get(names[i]);
+			if (v != null) {
+				sb.append(escape[i] ? Strings.escapeMarkup(v, false, true) : v);
+			}
+		}
+		return sb.append(parts[names.length]).toString();
+	}
+
+	/**
+	 * @return number of parameter occurrences in the template
+	 */
+	public int getParamCount() {
+		return names.length;
+	}
+}
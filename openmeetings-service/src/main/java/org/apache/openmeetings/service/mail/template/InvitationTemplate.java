@@ -19,8 +19,11 @@
 package org.apache.openmeetings.service.mail.template;
 
 import static org.apache.openmeetings.db.util.ApplicationHelper.ensureApplication;
+import static org.apache.openmeetings.service.mail.template.CompiledTemplate.param;
 
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 
 import org.apache.openmeetings.db.entity.user.User;
 import org.apache.openmeetings.db.util.LocaleHelper;
@@ -31,6 +34,9 @@ import org.apache.wicket.markup.html.link.ExternalLink;
 
 public class InvitationTemplate extends AbstractTemplatePanel {
 	private static final long serialVersionUID = 1L;
+	private static final String PARAM_USER = "user";
+	private static final String PARAM_MESSAGE = "message";
+	private static final String PARAM_LINK = "link";
 
 	private InvitationTemplate(Locale locale, String invitorName, String message, String link) {
 		super(locale);
@@ -51,7 +57,17 @@ public class InvitationTemplate extends AbstractTemplatePanel {
 	}
 
 	public static String getEmail(User invitee, String invitorName, String message, String link) {
-		ensureApplication(invitee.getLanguageId());
-		return ComponentRenderer.renderComponent(new InvitationTemplate(LocaleHelper.getLocale(invitee), invitorName, message, link)).toString();
+		Locale l = LocaleHelper.getLocale(invitee);
+		// links are hidden for canceled appointments, so there are two variants of the template
+		CompiledTemplate t = TemplateCache.get(String.format("%s_%s_%s", InvitationTemplate.class.getSimpleName(), l, link != null), () -> {
+			ensureApplication(invitee.getLanguageId());
+			return CompiledTemplate.compile(ComponentRenderer.renderComponent(
+					new InvitationTemplate(l, param(PARAM_USER), param(PARAM_MESSAGE), link == null ? null : param(PARAM_LINK))));
+		});
+		Map<String, String> params = new HashMap<>();
+		params.put(PARAM_USER, invitorName);
+		params.put(PARAM_MESSAGE, message);
+		params.put(PARAM_LINK, link);
+		return t.render(params);
 	}
 }
@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.service.mail.template;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.apache.openmeetings.db.dao.label.LabelDao;
+
+/**
+ * Templates compiled once per language, see {@link CompiledTemplate}.
+ * Whole cache is dropped as soon as any label is changed.
+ */
+public class TemplateCache {
+	private static final Map<String, Object> cache = new ConcurrentHashMap<>();
+	private static volatile long version = -1;
+
+	private TemplateCache() {}
+
+	/**
+	 * @param key - key identifying the template, its language and variant
+	 * @param compiler - compiles the template in case it is not cached yet
+	 * @return compiled template
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T get(String key, Supplier<T> compiler) {
+		long v = LabelDao.getVersion();
+		if (v != version) {
+			synchronized (cache) {
+				if (v != version) {
+					cache.clear();
+					version = v;
+				}
+			}
+		}
+		return (T)cache.computeIfAbsent(key, k -> compiler.get());
+	}
+
+	public static int size() {
+		return cache.size();
+	}
+
+	public static void clear() {
+		cache.clear();
+	}
+}
@@ -18,24 +18,68 @@
  */
 package org.apache.openmeetings.service.mail.template.subject;
 
+import static java.util.stream.Collectors.toList;
 import static org.apache.commons.lang3.time.FastDateFormat.MEDIUM;
 import static org.apache.commons.lang3.time.FastDateFormat.SHORT;
+import static org.apache.openmeetings.db.util.ApplicationHelper.ensureApplication;
+import static org.apache.openmeetings.service.mail.template.CompiledTemplate.param;
 
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.TimeZone;
+import java.util.function.Function;
 
 import org.apache.commons.lang3.time.FastDateFormat;
 import org.apache.openmeetings.db.entity.calendar.Appointment;
+import org.apache.openmeetings.db.entity.user.User;
+import org.apache.openmeetings.db.util.LocaleHelper;
+import org.apache.openmeetings.service.mail.template.CompiledTemplate;
 import org.apache.openmeetings.service.mail.template.DashOmTextLabel;
 import org.apache.openmeetings.service.mail.template.OmTextLabel;
+import org.apache.openmeetings.service.mail.template.TemplateCache;
 import org.apache.wicket.markup.html.panel.Fragment;
+import org.apache.wicket.util.string.Strings;
 
+/**
+ * Base class for appointment emails.
+ *
+ * Templates are not rendered for each recipient: component tree is rendered once per language
+ * with parameter markers instead of appointment data, see {@link CompiledTemplate}
+ */
 public abstract class AbstractAppointmentTemplate extends AbstractSubjectEmailTemplate {
 	private static final long serialVersionUID = 1L;
+	static final String PARAM_TITLE = "title";
+	static final String PARAM_DESC = "desc";
+	static final String PARAM_START = "start";
+	static final String PARAM_END = "end";
+	static final String PARAM_INVITOR = "invitor";
+	private static final int[] FORMATS = {SHORT, MEDIUM};
 	protected Appointment a;
 	protected TimeZone tz;
 
+	interface Factory {
+		AbstractAppointmentTemplate create(Locale locale, Appointment a);
+	}
+
+	private static class Compiled {
+		private final CompiledTemplate subject;
+		private final CompiledTemplate email;
+
+		private Compiled(AbstractSubjectEmailTemplate t) {
+			subject = CompiledTemplate.compile(t.getSubject());
+			email = CompiledTemplate.compile(t.getEmail());
+		}
+	}
+
+	/**
+	 * @param locale - locale of the recipient
+	 * @param a - appointment
+	 * @param tz - time zone of the recipient, <code>null</code> means template is being compiled
+	 * and dates should be rendered as parameters
+	 */
 	public AbstractAppointmentTemplate(Locale locale, Appointment a, TimeZone tz) {
 		super(locale);
 		this.a = a;
@@ -49,18 +93,71 @@ public abstract class AbstractAppointmentTemplate extends AbstractSubjectEmailTe
 		Fragment f = new Fragment(COMP_ID, "subject", this);
 		f.add(new OmTextLabel("prefix", getPrefix())
 				, new OmTextLabel("title", a.getTitle())
-				, new OmTextLabel("start", format(a.getStart(), SHORT))
+				, new OmTextLabel("start", getStart(SHORT))
 				, new DashOmTextLabel("dash")
-				, new OmTextLabel("end", format(a.getEnd(), SHORT))
+				, new OmTextLabel("end", getEnd(SHORT))
 				);
 		return f;
 	}
 
-	protected String format(Date d) {
-		return format(d, MEDIUM);
+	protected String getStart() {
+		return getStart(MEDIUM);
+	}
+
+	protected String getEnd() {
+		return getEnd(MEDIUM);
+	}
+
+	protected String getStart(int fmt) {
+		return format(PARAM_START, a.getStart(), fmt);
 	}
 
-	protected String format(Date d, int fmt) {
+	protected String getEnd(int fmt) {
+		return format(PARAM_END, a.getEnd(), fmt);
+	}
+
+	private String format(String name, Date d, int fmt) {
+		return tz == null ? param(name + fmt) : format(d, fmt, tz, locale);
+	}
+
+	private static String format(Date d, int fmt, TimeZone tz, Locale locale) {
 		return FastDateFormat.getDateTimeInstance(fmt, fmt, tz, locale).format(d);
 	}
+
+	private static Compiled compile(Class<? extends AbstractAppointmentTemplate> clazz, Factory f, User u, Locale l, boolean desc) {
+		// description container is hidden for empty description, so there are two variants of each template
+		return TemplateCache.get(String.format("%s_%s_%s", clazz.getSimpleName(), l, desc), () -> {
+			ensureApplication(u.getLanguageId());
+			Appointment proto = new Appointment();
+			proto.setTitle(param(PARAM_TITLE));
+			proto.setDescription(desc ? param(PARAM_DESC) : null);
+			return new Compiled(f.create(l, proto).create());
+		});
+	}
+
+	static SubjectEmail render(Class<? extends AbstractAppointmentTemplate> clazz, Factory f
+			, User u, Appointment a, TimeZone tz, String invitorName)
+	{
+		Locale l = LocaleHelper.getLocale(u);
+		Compiled c = compile(clazz, f, u, l, !Strings.isEmpty(a.getDescription()));
+		Map<String, String> params = new HashMap<>();
+		params.put(PARAM_TITLE, a.getTitle());
+		params.put(PARAM_DESC, a.getDescription());
+		params.put(PARAM_INVITOR, invitorName);
+		for (int fmt : FORMATS) {
+			params.put(PARAM_START + fmt, format(a.getStart(), fmt, tz, l));
+			params.put(PARAM_END + fmt, format(a.getEnd(), fmt, tz, l));
+		}
+		return new SubjectEmail(c.subject.render(params), c.email.render(params));
+	}
+
+	static List<SubjectEmail> render(Class<? extends AbstractAppointmentTemplate> clazz, Factory f
+			, List<User> users, Appointment a, Function<User, TimeZone> tz, String invitorName)
+	{
+		// templates are compiled once per language, rendering of the recipient is just substitution
+		// of parameters, it is done by the calling thread not to occupy the common pool
+		return users.stream()
+				.map(u -> render(clazz, f, u, a, tz.apply(u), invitorName))
+				.collect(toList());
+	}
 }
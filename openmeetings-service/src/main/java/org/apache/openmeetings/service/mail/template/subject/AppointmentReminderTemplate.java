@@ -20,18 +20,20 @@ package org.apache.openmeetings.service.mail.template.subject;
 
 import static org.apache.openmeetings.db.util.ApplicationHelper.ensureApplication;
 
+import java.util.List;
 import java.util.Locale;
 import java.util.TimeZone;
+import java.util.function.Function;
 
 import org.apache.openmeetings.db.entity.calendar.Appointment;
 import org.apache.openmeetings.db.entity.user.User;
-import org.apache.openmeetings.db.util.LocaleHelper;
 import org.apache.wicket.markup.html.WebMarkupContainer;
 import org.apache.wicket.markup.html.basic.Label;
 import org.apache.wicket.util.string.Strings;
 
 public class AppointmentReminderTemplate extends AbstractAppointmentTemplate {
 	private static final long serialVersionUID = 1L;
+	private static final Factory FACTORY = (l, proto) -> new AppointmentReminderTemplate(l, proto, null);
 
 	private AppointmentReminderTemplate(Locale locale, Appointment a, TimeZone tz) {
 		super(locale, a, tz);
@@ -48,14 +50,20 @@ public class AppointmentReminderTemplate extends AbstractAppointmentTemplate {
 			.setVisible(!Strings.isEmpty(a.getDescription()))
 			);
 		add(new Label("startLbl", getString("1153", locale)));
-		add(new Label("start", format(a.getStart())));
+		add(new Label("start", getStart()));
 		add(new Label("endLbl", getString("1154", locale)));
-		add(new Label("end", format(a.getEnd())));
+		add(new Label("end", getEnd()));
 	}
 
-	public static AbstractSubjectEmailTemplate get(User u, Appointment a, TimeZone tz) {
-		ensureApplication(u.getLanguageId());
-		return new AppointmentReminderTemplate(LocaleHelper.getLocale(u), a, tz).create();
+	public static SubjectEmail get(User u, Appointment a, TimeZone tz) {
+		return render(AppointmentReminderTemplate.class, FACTORY, u, a, tz, null);
+	}
+
+	/**
+	 * Renders reminders for all the recipients, template is compiled once per language
+	 */
+	public static List<SubjectEmail> get(List<User> users, Appointment a, Function<User, TimeZone> tz) {
+		return render(AppointmentReminderTemplate.class, FACTORY, users, a, tz, null);
 	}
 
 	@Override
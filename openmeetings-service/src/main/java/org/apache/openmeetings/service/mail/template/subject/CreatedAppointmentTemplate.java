@@ -19,19 +19,20 @@
 package org.apache.openmeetings.service.mail.template.subject;
 
 import static org.apache.openmeetings.db.util.ApplicationHelper.ensureApplication;
+import static org.apache.openmeetings.service.mail.template.CompiledTemplate.param;
 
 import java.util.Locale;
 import java.util.TimeZone;
 
 import org.apache.openmeetings.db.entity.calendar.Appointment;
 import org.apache.openmeetings.db.entity.user.User;
-import org.apache.openmeetings.db.util.LocaleHelper;
 import org.apache.wicket.markup.html.WebMarkupContainer;
 import org.apache.wicket.markup.html.basic.Label;
 import org.apache.wicket.util.string.Strings;
 
 public class CreatedAppointmentTemplate extends AbstractAppointmentTemplate {
 	private static final long serialVersionUID = 1L;
+	private static final Factory FACTORY = (l, proto) -> new CreatedAppointmentTemplate(l, proto, null, param(PARAM_INVITOR));
 	private final String invitorName;
 
 	private CreatedAppointmentTemplate(Locale locale, Appointment a, TimeZone tz, String invitorName) {
@@ -50,16 +51,15 @@ public class CreatedAppointmentTemplate extends AbstractAppointmentTemplate {
 			.setVisible(!Strings.isEmpty(a.getDescription()))
 			);
 		add(new Label("startLbl", getString("1153", locale)));
-		add(new Label("start", format(a.getStart())));
+		add(new Label("start", getStart()));
 		add(new Label("endLbl", getString("1154", locale)));
-		add(new Label("end", format(a.getEnd())));
+		add(new Label("end", getEnd()));
 		add(new Label("invitorLbl", getString("1156", locale)));
 		add(new Label("invitor", invitorName));
 	}
 
-	public static AbstractSubjectEmailTemplate get(User u, Appointment a, TimeZone tz, String invitorName) {
-		ensureApplication(u.getLanguageId());
-		return new CreatedAppointmentTemplate(LocaleHelper.getLocale(u), a, tz, invitorName).create();
+	public static SubjectEmail get(User u, Appointment a, TimeZone tz, String invitorName) {
+		return render(CreatedAppointmentTemplate.class, FACTORY, u, a, tz, invitorName);
 	}
 
 	@Override
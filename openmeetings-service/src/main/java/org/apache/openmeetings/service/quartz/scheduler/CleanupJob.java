@@ -18,7 +18,6 @@
  */
 package org.apache.openmeetings.service.quartz.scheduler;
 
-import static org.apache.openmeetings.util.OmFileHelper.EXTENSION_MP4;
 import static org.apache.openmeetings.util.OmFileHelper.TEST_SETUP_PREFIX;
 import static org.apache.openmeetings.util.OmFileHelper.getStreamsDir;
 import static org.apache.openmeetings.util.OpenmeetingsVariables.webAppRootKey;
@@ -32,6 +31,7 @@ import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.openmeetings.core.data.whiteboard.WhiteboardCache;
 import org.apache.openmeetings.core.session.SessionManager;
+import org.apache.openmeetings.db.dao.record.RecordingDao;
 import org.apache.openmeetings.db.dao.server.SessiondataDao;
 import org.apache.openmeetings.db.dao.user.UserDao;
 import org.apache.openmeetings.db.dto.room.Whiteboard;
@@ -166,9 +166,11 @@ public class CleanupJob extends AbstractJob {
 		processExpiringRecordings(true, (rec, days) -> {
 			if (days < 0) {
 				log.debug("cleanExpiredRecordings:: following recording will be deleted {}", rec);
-				File f = rec.getFile(EXTENSION_MP4);
-				if (f != null && f.exists()) {
-					f.delete();
+				for (String ext : RecordingDao.FILE_EXTENSIONS) {
+					File f = rec.getFile(ext);
+					if (f != null && f.exists()) {
+						f.delete();
+					}
 				}
 				recordingDao.delete(rec);
 			}
@@ -45,9 +45,9 @@ import org.apache.openmeetings.db.entity.user.User;
 import org.apache.openmeetings.db.entity.user.User.Type;
 import org.apache.openmeetings.db.util.TimezoneUtil;
 import org.apache.openmeetings.service.mail.template.InvitationTemplate;
-import org.apache.openmeetings.service.mail.template.subject.AbstractSubjectEmailTemplate;
 import org.apache.openmeetings.service.mail.template.subject.CanceledAppointmentTemplate;
 import org.apache.openmeetings.service.mail.template.subject.CreatedAppointmentTemplate;
+import org.apache.openmeetings.service.mail.template.subject.SubjectEmail;
 import org.apache.openmeetings.service.mail.template.subject.UpdatedAppointmentTemplate;
 import org.apache.openmeetings.util.crypt.CryptProvider;
 import org.apache.openmeetings.util.mail.IcalHandler;
@@ -86,7 +86,7 @@ public class InvitationManager implements IInvitationManager {
 		User owner = a.getOwner();
 		String invitorName = owner.getFirstname() + " " + owner.getLastname();
 		TimeZone tz = timezoneUtil.getTimeZone(mm.getUser());
-		AbstractSubjectEmailTemplate t = null;
+		SubjectEmail t = null;
 		switch (type) {
 			case Cancel:
 				t = CanceledAppointmentTemplate.get(mm.getUser(), a, tz, invitorName);
@@ -56,6 +56,11 @@ public class OmFileHelper {
 	public static final String libraryFileName = "library.xml";
 	public static final String defaultProfileImageName = "profile.jpg";
 	public static final String profileFileName = "profile";
+	public static final String profileSizePrefix = "size";
+	public static final int PROFILE_SIZE_SMALL = 40;
+	public static final int PROFILE_SIZE_MEDIUM = 125;
+	// profile pictures are pre-generated in these sizes
+	public static final int[] PROFILE_SIZES = {PROFILE_SIZE_SMALL, PROFILE_SIZE_MEDIUM};
 	public static final String recordingFileName = "flvRecording_";
 	public static final String profileImagePrefix = "_profile_";
 	public static final String thumbImagePrefix = "_thumb_";
@@ -68,10 +73,17 @@ public class OmFileHelper {
 	public static final String EXTENSION_JPG = "jpg";
 	public static final String EXTENSION_PNG = "png";
 	public static final String EXTENSION_PDF = "pdf";
+	public static final String EXTENSION_M3U8 = "m3u8";
+	public static final String EXTENSION_M4S = "m4s";
+	public static final String EXTENSION_IDX = "idx";
+	public static final String EXTENSION_INIT_MP4 = "init." + EXTENSION_MP4;
 	public static final String WB_VIDEO_FILE_PREFIX = "UPLOADFLV_";
 	public static final String MP4_MIME_TYPE = "video/" + EXTENSION_MP4;
 	public static final String JPG_MIME_TYPE = "image/jpeg";
 	public static final String PNG_MIME_TYPE = "image/png";
+	public static final String M3U8_MIME_TYPE = "application/vnd.apple.mpegurl";
+	public static final String M4S_MIME_TYPE = "video/iso.segment";
+	public static final String IDX_MIME_TYPE = "text/csv";
 	public static final String BCKP_ROOM_FILES = "roomFiles";
 	public static final String BCKP_RECORD_FILES = "recordingFiles";
 
@@ -144,6 +156,23 @@ public class OmFileHelper {
 		return img;
 	}
 
+	public static String getProfileThumbName(String uri, int size) {
+		return String.format("%s%d_%s", profileSizePrefix, size, uri);
+	}
+
+	/**
+	 * @return pre-generated picture of requested size, original picture if there is no such thumbnail
+	 */
+	public static File getUserProfilePicture(Long userId, String uri, int size) {
+		if (uri != null && size > 0) {
+			File thumb = new File(getUploadProfilesUserDir(userId), getProfileThumbName(uri, size));
+			if (thumb.isFile()) {
+				return thumb;
+			}
+		}
+		return getUserProfilePicture(userId, uri);
+	}
+
 	public static File getUserDashboard(Long userId) {
 		return new File(getUploadProfilesUserDir(userId), dashboardFile);
 	}
@@ -45,6 +45,7 @@ public class OpenmeetingsVariables {
 	public static final String CONFIG_SCREENSHARING_FPS_SHOW = "screensharing.fps.show";
 	public static final String CONFIG_SCREENSHARING_ALLOW_REMOTE = "screensharing.allow.remote";
 	public static final String CONFIG_CALENDAR_FIRST_DAY = "calendar.firstday";
+	public static final String CONFIG_CALENDAR_SYNC_THREADS = "calendar.sync.threads";
 	public static final String CONFIG_DEFAULT_GROUP_ID = "default_group_id";
 	public static final String CONFIG_GOOGLE_ANALYTICS_CODE = "google.analytics.code";
 	public static final String CONFIG_SYSTEM_EMAIL = "system_email_addr";
@@ -57,6 +58,23 @@ public class OpenmeetingsVariables {
 	public static final String CONFIG_FLASH_VIDEO_FPS = "flash.video.fps";
 	public static final String CONFIG_HEADER_XFRAME = "header.x.frame.options";
 	public static final String CONFIG_EXT_PROCESS_TTL = "external.process.ttl";
+	public static final String CONFIG_CONVERTER_THREADS_DOCUMENT = "converter.threads.document";
+	public static final String CONFIG_CONVERTER_THREADS_IMAGE = "converter.threads.image";
+	public static final String CONFIG_CONVERTER_THREADS_VIDEO = "converter.threads.video";
+	public static final String CONFIG_CONVERTER_THREADS_PAGE = "converter.threads.page";
+	public static final String CONFIG_OFFICE_POOL_SIZE = "office.pool.size";
+	public static final String CONFIG_OFFICE_QUEUE_SIZE = "office.queue.size";
+	public static final String CONFIG_OFFICE_TIMEOUT = "office.timeout";
+	public static final String CONFIG_OFFICE_MAX_TASKS = "office.max.tasks";
+	public static final String CONFIG_LDAP_POOL_SIZE = "ldap.pool.size";
+	public static final String CONFIG_LDAP_POOL_TIMEOUT = "ldap.pool.timeout";
+	public static final String CONFIG_LDAP_CACHE_TTL = "ldap.cache.ttl";
+	public static final String CONFIG_STORAGE_QUOTA_USER = "storage.quota.user";
+	public static final String CONFIG_STORAGE_QUOTA_ROOM = "storage.quota.room";
+	public static final String CONFIG_STORAGE_QUOTA_GROUP = "storage.quota.group";
+	public static final String CONFIG_RECORDING_HLS = "recording.hls";
+	public static final String CONFIG_RECORDING_LIVE_CONVERSION = "recording.live.conversion";
+	public static final String CONFIG_RECORDING_SEGMENT_LENGTH = "recording.segment.length";
 	public static final String HEADER_XFRAME_SAMEORIGIN = "SAMEORIGIN";
 	public static final String HEADER_CSP_SELF = "default-src 'self'; style-src 'self' 'unsafe-inline'; script-src 'self' 'unsafe-inline' 'unsafe-eval';";
 	public static final String CONFIG_HEADER_CSP = "header.content.security.policy";
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hashed timer wheel: keys are stored in the buckets by their due time, so scheduling,
+ * re-scheduling and cancellation are O(1), and advancing the wheel checks only the buckets
+ * of the elapsed ticks. Keys due after more than one turn of the wheel stay in their bucket
+ * until their turn comes.
+ *
+ * The wheel doesn't have its own thread, it should be advanced by the caller.
+ *
+ * @param <T> - type of the key, should properly implement equals/hashCode
+ */
+public class TimerWheel<T> {
+	private final long tick;
+	private final List<Set<Entry<T>>> buckets;
+	private final Map<T, Entry<T>> entries = new HashMap<>();
+	private long current; // last processed tick
+
+	private static class Entry<T> {
+		private final T key;
+		private final long due;
+		private final int bucket;
+
+		private Entry(T key, long due, int bucket) {
+			this.key = key;
+			this.due = due;
+			this.bucket = bucket;
+		}
+	}
+
+	/**
+	 * @param tick - length of the tick in ms
+	 * @param size - number of buckets
+	 * @param now - current time in ms
+	 */
+	public TimerWheel(long tick, int size, long now) {
+		if (tick < 1 || size < 1) {
+			throw new IllegalArgumentException("Tick and size should be positive");
+		}
+		this.tick = tick;
+		buckets = new ArrayList<>(size);
+		for (int i = 0; i < size; ++i) {
+			buckets.add(new LinkedHashSet<>());
+		}
+		current = now / tick;
+	}
+
+	private int getBucket(long t) {
+		return (int)(t % buckets.size());
+	}
+
+	/**
+	 * Schedules the key, previous schedule of the same key is replaced
+	 *
+	 * @param key - key to be scheduled
+	 * @param due - time in ms the key is due, keys in the past will be returned by next {@link #advance(long)}
+	 */
+	public synchronized void schedule(T key, long due) {
+		cancel(key);
+		// key is placed to the first tick starting not earlier than due time
+		long t = Math.max((due + tick - 1) / tick, current + 1);
+		Entry<T> e = new Entry<>(key, due, getBucket(t));
+		buckets.get(e.bucket).add(e);
+		entries.put(key, e);
+	}
+
+	/**
+	 * @return <code>true</code> if the key was scheduled
+	 */
+	public synchronized boolean cancel(T key) {
+		Entry<T> e = entries.remove(key);
+		if (e == null) {
+			return false;
+		}
+		buckets.get(e.bucket).remove(e);
+		return true;
+	}
+
+	/**
+	 * @return due time of the key, <code>null</code> if key is not scheduled
+	 */
+	public synchronized Long getDue(T key) {
+		Entry<T> e = entries.get(key);
+		return e == null ? null : e.due;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Advances the wheel to the given time, expired keys are removed
+	 *
+	 * @param now - current time in ms
+	 * @return keys due up to the given time
+	 */
+	public synchronized List<T> advance(long now) {
+		List<T> expired = new ArrayList<>();
+		long target = now / tick;
+		// each bucket need to be visited only once even if the wheel was not advanced for several turns
+		long from = Math.max(current + 1, target - buckets.size() + 1);
+		for (long t = from; t <= target; ++t) {
+			Iterator<Entry<T>> iter = buckets.get(getBucket(t)).iterator();
+			while (iter.hasNext()) {
+				Entry<T> e = iter.next();
+				if (e.due <= now) {
+					iter.remove();
+					entries.remove(e.key);
+					expired.add(e.key);
+				}
+			}
+		}
+		current = Math.max(current, target);
+		return expired;
+	}
+}
@@ -31,6 +31,7 @@ public class RoomMessage implements IWebSocketPushMessage {
 		, roomClosed
 		, pollCreated
 		, pollUpdated
+		, pollVoted
 		, recordingStarted
 		, recordingStoped
 		, sharingStarted
@@ -50,12 +51,14 @@ public class RoomMessage implements IWebSocketPushMessage {
 		, kick
 		, newStream
 		, closeStream
+		, fileConversion
 	}
 	private final Date timestamp;
 	private final String uid;
 	private final Long roomId;
 	private final Long userId;
 	private final Type type;
+	private long seq; // assigned by the room on send
 
 	public RoomMessage(Long roomId, Long userId, Type type) {
 		this.timestamp = new Date();
@@ -84,4 +87,12 @@ public class RoomMessage implements IWebSocketPushMessage {
 	public String getUid() {
 		return uid;
 	}
+
+	public long getSeq() {
+		return seq;
+	}
+
+	public void setSeq(long seq) {
+		this.seq = seq;
+	}
 }
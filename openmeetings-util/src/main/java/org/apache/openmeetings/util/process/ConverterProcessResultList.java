@@ -24,6 +24,7 @@ import static org.red5.logging.Red5LoggerFactory.getLogger;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.function.Consumer;
 
 import org.slf4j.Logger;
 
@@ -41,6 +42,7 @@ public class ConverterProcessResultList {
 
 	private Long fileItemId;
 	private String completeName;
+	private Consumer<String> listener;
 
 	public Long getFileItemId() {
 		return fileItemId;
@@ -58,12 +60,23 @@ public class ConverterProcessResultList {
 		this.completeName = completeName;
 	}
 
+	/**
+	 * @param listener - invoked with the name of every job added, can be used to track the progress
+	 */
+	public void setListener(Consumer<String> listener) {
+		this.listener = listener;
+	}
+
 	public ConverterProcessResult addItem(String name, ConverterProcessResult processResult) {
 		if (jobs.containsKey(name)) {
 			log.error("Duplicate key in jobslist:: " + name);
 			return null;
 		}
-		return jobs.put(name, processResult);
+		ConverterProcessResult prev = jobs.put(name, processResult);
+		if (listener != null) {
+			listener.accept(name);
+		}
+		return prev;
 	}
 
 	/**
@@ -21,9 +21,16 @@ package org.apache.openmeetings.util.process;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.apache.openmeetings.util.OpenmeetingsVariables.EXT_PROCESS_TTL;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.openmeetings.util.OpenmeetingsVariables;
@@ -32,6 +39,25 @@ import org.slf4j.Logger;
 
 public class ProcessHelper {
 	public static final Logger log = Red5LoggerFactory.getLogger(ProcessHelper.class, OpenmeetingsVariables.webAppRootKey);
+	private static final AtomicInteger drainCount = new AtomicInteger();
+	/*
+	 * Output of the processes is read by the threads of this pool, the pool is not bounded:
+	 * reads are blocking, every running process needs its own readers,
+	 * otherwise process will block on full pipe
+	 */
+	private static final ExecutorService drains = Executors.newCachedThreadPool(r -> {
+		Thread t = new Thread(r, "process-output-" + drainCount.incrementAndGet());
+		t.setDaemon(true);
+		return t;
+	});
+
+	/**
+	 * Writes the data to the standard input of the process
+	 */
+	@FunctionalInterface
+	public interface InputWriter {
+		void write(OutputStream os) throws IOException;
+	}
 
 	public static ConverterProcessResult executeScriptWindows(String process, String[] argv) {
 		try {
@@ -74,6 +100,36 @@ public class ProcessHelper {
 	}
 
 	public static ConverterProcessResult executeScript(String process, String[] argv, Map<? extends String, ? extends String> env) {
+		return execute(process, argv, env, null);
+	}
+
+	private static Future<String> read(InputStream is) {
+		return drains.submit(() -> {
+			try {
+				return IOUtils.toString(is, UTF_8);
+			} catch (IOException e) {
+				return e.getMessage();
+			}
+		});
+	}
+
+	/**
+	 * Executes the process feeding its standard input with the data written by the writer,
+	 * output of the process is consumed concurrently, so the process will not be blocked
+	 *
+	 * @param process - name of the process
+	 * @param argv - command line
+	 * @param writer - source of the data for standard input
+	 * @return result of the execution
+	 */
+	public static ConverterProcessResult executeScript(String process, String[] argv, InputWriter writer) {
+		return execute(process, argv, new HashMap<String, String>(), writer);
+	}
+
+	/*
+	 * Output of the process is read while it is running, the process would block on the full pipe otherwise
+	 */
+	private static ConverterProcessResult execute(String process, String[] argv, Map<? extends String, ? extends String> env, InputWriter writer) {
 		ConverterProcessResult res = new ConverterProcessResult();
 		res.setProcess(process);
 		debugCommandStart(process, argv);
@@ -90,15 +146,28 @@ public class ProcessHelper {
 			pb.environment().putAll(env);
 
 			proc = pb.start();
-
+			Future<String> out = read(proc.getInputStream());
+			Future<String> err = read(proc.getErrorStream());
+			String inputError = null;
+			try (OutputStream os = proc.getOutputStream()) {
+				if (writer != null) {
+					writer.write(os);
+				}
+			} catch (IOException e) {
+				// process might stop reading before all the data is written
+				log.debug("executeScript: input was not fully consumed", e);
+				inputError = e.getMessage();
+			}
 			// 20-minute timeout for command execution
 			// FFMPEG conversion of Recordings may take a real long time until
 			// its finished
-			proc.waitFor(EXT_PROCESS_TTL, TimeUnit.MINUTES);
-
+			if (!proc.waitFor(EXT_PROCESS_TTL, TimeUnit.MINUTES)) {
+				throw new IllegalStateException("Process was not finished in time");
+			}
 			res.setExitCode(proc.exitValue());
-			res.setOut(IOUtils.toString(proc.getInputStream(), UTF_8));
-			res.setError(IOUtils.toString(proc.getErrorStream(), UTF_8));
+			res.setOut(out.get());
+			String error = err.get();
+			res.setError(inputError == null ? error : String.format("%s%nInput error: %s", error, inputError));
 		} catch (Throwable t) {
 			log.error("executeScript", t);
 			res.setError(t.getMessage());
@@ -114,4 +183,3 @@ public class ProcessHelper {
 		return res;
 	}
 }
-
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class TestTimerWheel {
+	private static final long TICK = 1000;
+	private static final int SIZE = 8;
+
+	@Test
+	public void testAdvance() {
+		TimerWheel<Long> w = new TimerWheel<>(TICK, SIZE, 0);
+		w.schedule(1L, 1500);
+		w.schedule(2L, 3000);
+		w.schedule(3L, 3001);
+		assertEquals("Nothing should be due", Collections.emptyList(), w.advance(999));
+		assertEquals("Nothing should be due in the middle of the tick", Collections.emptyList(), w.advance(1499));
+		assertEquals("First key should be due", Arrays.asList(1L), w.advance(2000));
+		assertEquals("Second key should be due", Arrays.asList(2L), w.advance(3000));
+		assertEquals("Third key should be due", Arrays.asList(3L), w.advance(4000));
+		assertEquals("Wheel should be empty", 0, w.size());
+	}
+
+	@Test
+	public void testSeveralTurns() {
+		TimerWheel<Long> w = new TimerWheel<>(TICK, SIZE, 0);
+		w.schedule(1L, 2 * SIZE * TICK + 500);
+		for (long t = 0; t < 2 * SIZE * TICK; t += TICK) {
+			assertEquals("Key should wait for its turn", Collections.emptyList(), w.advance(t));
+		}
+		assertEquals("Key should be due after several turns", Arrays.asList(1L), w.advance((2 * SIZE + 1) * TICK));
+	}
+
+	@Test
+	public void testLongPause() {
+		TimerWheel<Long> w = new TimerWheel<>(TICK, SIZE, 0);
+		for (long i = 1; i <= SIZE; ++i) {
+			w.schedule(i, i * TICK);
+		}
+		w.schedule(100L, 100 * SIZE * TICK);
+		assertEquals("All the elapsed keys should be due", SIZE, w.advance(10 * SIZE * TICK).size());
+		assertEquals("Future key should be kept", 1, w.size());
+	}
+
+	@Test
+	public void testPastAndReschedule() {
+		TimerWheel<Long> w = new TimerWheel<>(TICK, SIZE, 5 * TICK);
+		w.schedule(1L, 0);
+		assertEquals("Key in the past should be due", Arrays.asList(1L), w.advance(6 * TICK));
+		w.schedule(2L, 7 * TICK);
+		w.schedule(2L, 9 * TICK);
+		assertEquals("Due time should be replaced", Long.valueOf(9 * TICK), w.getDue(2L));
+		assertEquals("Key should not be due before new time", Collections.emptyList(), w.advance(8 * TICK));
+		assertTrue("Key should be cancelled", w.cancel(2L));
+		assertFalse("Key should be cancelled only once", w.cancel(2L));
+		assertNull("Cancelled key should not be scheduled", w.getDue(2L));
+		assertEquals("Cancelled key should not be due", Collections.emptyList(), w.advance(10 * TICK));
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.util.process;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+public class TestProcessHelper {
+	private static final int OUTPUT_SIZE = 1024 * 1024;
+
+	@Test(timeout = 60000)
+	public void testOutputIsDrainedWithBusyCommonPool() throws Exception {
+		assumeTrue("Shell is required", new File("/bin/sh").canExecute());
+		// all threads of the common pool are blocked, as if they were busy with other tasks
+		CountDownLatch release = new CountDownLatch(1);
+		List<CompletableFuture<Void>> blockers = new ArrayList<>();
+		for (int i = 0; i < ForkJoinPool.getCommonPoolParallelism() + 1; ++i) {
+			blockers.add(CompletableFuture.runAsync(() -> {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}));
+		}
+		try {
+			// output is bigger than the pipe buffer, process will block unless output is being read
+			ConverterProcessResult res = ProcessHelper.executeScript("testDrain"
+					, new String[] {"/bin/sh", "-c", String.format("yes o | head -c %s; yes e | head -c %s >&2", OUTPUT_SIZE, OUTPUT_SIZE)});
+			assertEquals("Process should complete", Integer.valueOf(0), res.getExitCode());
+			assertEquals("Standard output should be read", OUTPUT_SIZE, res.getOut().length());
+			assertTrue("Error output should be read", res.getError().length() >= OUTPUT_SIZE);
+		} finally {
+			release.countDown();
+		}
+	}
+
+	@Test(timeout = 60000)
+	public void testInputIsWritten() throws Exception {
+		assumeTrue("Shell is required", new File("/bin/sh").canExecute());
+		// input is bigger than the pipe buffer, output is read while input is being written
+		byte[] input = new byte[OUTPUT_SIZE];
+		Arrays.fill(input, (byte)'i');
+		ConverterProcessResult res = ProcessHelper.executeScript("testInput"
+				, new String[] {"/bin/sh", "-c", "cat"}
+				, os -> os.write(input));
+		assertEquals("Process should complete", Integer.valueOf(0), res.getExitCode());
+		assertEquals("Input should be passed to the process", new String(input, StandardCharsets.UTF_8), res.getOut());
+	}
+}
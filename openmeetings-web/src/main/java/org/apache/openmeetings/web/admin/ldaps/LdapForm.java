@@ -22,6 +22,7 @@ import static org.apache.openmeetings.util.OpenmeetingsVariables.WEB_DATE_PATTER
 import static org.apache.openmeetings.web.app.Application.getBean;
 import static org.apache.wicket.datetime.markup.html.basic.DateLabel.forDatePattern;
 
+import org.apache.openmeetings.core.ldap.LdapLoginManagement;
 import org.apache.openmeetings.db.dao.server.LdapConfigDao;
 import org.apache.openmeetings.db.entity.server.LdapConfig;
 import org.apache.openmeetings.web.admin.AdminBaseForm;
@@ -74,6 +75,7 @@ public class LdapForm extends AdminBaseForm<LdapConfig> {
 	@Override
 	protected void onSaveSubmit(AjaxRequestTarget target, Form<?> form) {
 		setModelObject(getBean(LdapConfigDao.class).update(getModelObject(), WebSession.getUserId()));
+		getBean(LdapLoginManagement.class).invalidate(getModelObject().getId());
 		hideNewRecord();
 		target.add(this, listContainer);
 		target.appendJavaScript("adminPanelInit();");
@@ -102,6 +104,7 @@ public class LdapForm extends AdminBaseForm<LdapConfig> {
 	@Override
 	protected void onDeleteSubmit(AjaxRequestTarget target, Form<?> form) {
 		getBean(LdapConfigDao.class).delete(getModelObject(), WebSession.getUserId());
+		getBean(LdapLoginManagement.class).invalidate(getModelObject().getId());
 		this.setModelObject(new LdapConfig());
 		target.add(listContainer);
 		target.add(this);
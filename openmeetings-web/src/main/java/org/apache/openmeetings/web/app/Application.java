@@ -43,12 +43,15 @@ import java.util.function.Predicate;
 
 import org.apache.directory.api.util.Strings;
 import org.apache.openmeetings.IApplication;
+import org.apache.openmeetings.core.data.chat.ChatManager;
+import org.apache.openmeetings.core.data.log.ConferenceLogWriter;
+import org.apache.openmeetings.core.data.poll.PollManager;
 import org.apache.openmeetings.core.remote.MainService;
 import org.apache.openmeetings.core.remote.ScopeApplicationAdapter;
+import org.apache.openmeetings.core.util.RoomEventLog;
 import org.apache.openmeetings.core.util.WebSocketHelper;
 import org.apache.openmeetings.db.dao.basic.ConfigurationDao;
 import org.apache.openmeetings.db.dao.label.LabelDao;
-import org.apache.openmeetings.db.dao.log.ConferenceLogDao;
 import org.apache.openmeetings.db.dao.user.UserDao;
 import org.apache.openmeetings.db.entity.basic.Client;
 import org.apache.openmeetings.db.entity.basic.Client.Activity;
@@ -79,6 +82,7 @@ import org.apache.openmeetings.web.user.dashboard.RssWidgetDescriptor;
 import org.apache.openmeetings.web.user.dashboard.StartWidgetDescriptor;
 import org.apache.openmeetings.web.user.dashboard.WelcomeWidgetDescriptor;
 import org.apache.openmeetings.web.user.dashboard.admin.AdminWidgetDescriptor;
+import org.apache.openmeetings.web.user.record.HlsRecordingResourceReference;
 import org.apache.openmeetings.web.user.record.JpgRecordingResourceReference;
 import org.apache.openmeetings.web.user.record.Mp4RecordingResourceReference;
 import org.apache.openmeetings.web.util.GroupLogoResourceReference;
@@ -198,6 +202,7 @@ public class Application extends AuthenticatedWebApplication implements IApplica
 		mountPage("activate", ActivatePage.class);
 		mountPage("reset", ResetPage.class);
 		mountResource("/recordings/mp4/${id}", new Mp4RecordingResourceReference());
+		mountResource("/recordings/hls/${id}/${file}", new HlsRecordingResourceReference()); //should be in sync with VideoPlayer
 		mountResource("/recordings/jpg/${id}", new JpgRecordingResourceReference()); //should be in sync with VideoPlayer
 		mountResource("/room/file/${id}", new RoomResourceReference());
 		mountResource("/profile/${id}", new ProfileImageResourceReference());
@@ -265,7 +270,7 @@ public class Application extends AuthenticatedWebApplication implements IApplica
 		removeUserFromRoom(c);
 		if (roomId != null) {
 			sendRoom(new RoomMessage(roomId, c.getUserId(), RoomMessage.Type.roomExit));
-			getBean(ConferenceLogDao.class).add(
+			getBean(ConferenceLogWriter.class).add(
 					ConferenceLog.Type.roomLeave
 					, c.getUserId(), "0", roomId
 					, c.getRemoteAddress()
@@ -445,6 +450,11 @@ public class Application extends AuthenticatedWebApplication implements IApplica
 			if (clients != null) {
 				clients.remove(c.getUid());
 				c.setRoomId(null);
+				if (clients.isEmpty()) {
+					RoomEventLog.remove(roomId);
+					getBean(PollManager.class).evict(roomId);
+					getBean(ChatManager.class).evict(roomId);
+				}
 			}
 			getBean(ScopeApplicationAdapter.class).roomLeaveByScope(c.getUid(), roomId);
 			c.getActivities().clear();
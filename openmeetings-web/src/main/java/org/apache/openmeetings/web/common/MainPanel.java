@@ -57,6 +57,7 @@ import org.apache.openmeetings.web.common.menu.MainMenuItem;
 import org.apache.openmeetings.web.common.menu.MenuItem;
 import org.apache.openmeetings.web.common.menu.MenuPanel;
 import org.apache.openmeetings.web.pages.MainPage;
+import org.apache.openmeetings.web.room.RoomPanel;
 import org.apache.openmeetings.web.user.AboutDialog;
 import org.apache.openmeetings.web.user.MessageDialog;
 import org.apache.openmeetings.web.user.UserInfoDialog;
@@ -92,6 +93,7 @@ import org.red5.logging.Red5LoggerFactory;
 import org.slf4j.Logger;
 import org.wicketstuff.urlfragment.UrlFragment;
 
+import com.github.openjson.JSONObject;
 import com.googlecode.wicket.jquery.ui.widget.dialog.DialogButton;
 import com.googlecode.wicket.jquery.ui.widget.menu.IMenuItem;
 
@@ -249,8 +251,13 @@ public class MainPanel extends Panel {
 
 			@Override
 			protected void onMessage(WebSocketRequestHandler handler, TextMessage msg) {
-				if ("socketConnected".equals(msg.getText())) {
-					if (panel != null) {
+				String text = msg.getText();
+				JSONObject o = text.startsWith("{") ? new JSONObject(text) : new JSONObject().put("type", text);
+				if ("socketConnected".equals(o.optString("type"))) {
+					// connection of already rendered room is restored, only missed events are sent if possible
+					BasePanel cur = getCurrentPanel();
+					boolean restored = cur == panel && cur instanceof RoomPanel && ((RoomPanel)cur).reconnect(handler, o.optJSONObject("chat"));
+					if (!restored && panel != null) {
 						updateContents(panel, handler);
 					}
 					log.debug("WebSocketBehavior:: pingTimer is attached");
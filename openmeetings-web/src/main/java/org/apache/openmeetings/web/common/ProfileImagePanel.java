@@ -18,6 +18,7 @@
  */
 package org.apache.openmeetings.web.common;
 
+import static org.apache.openmeetings.util.OmFileHelper.PROFILE_SIZE_MEDIUM;
 import static org.apache.openmeetings.web.util.ProfileImageResourceReference.getUrl;
 
 public class ProfileImagePanel extends ImagePanel {
@@ -31,6 +32,6 @@ public class ProfileImagePanel extends ImagePanel {
 
 	@Override
 	protected String getImageUrl() {
-		return getUrl(getRequestCycle(), userId);
+		return getUrl(getRequestCycle(), userId, PROFILE_SIZE_MEDIUM);
 	}
 }
@@ -18,6 +18,7 @@
  */
 package org.apache.openmeetings.web.common;
 
+import static org.apache.openmeetings.util.OmFileHelper.PROFILE_SIZE_MEDIUM;
 import static org.apache.openmeetings.web.app.Application.getBean;
 import static org.apache.openmeetings.web.util.ProfileImageResourceReference.getUrl;
 
@@ -42,6 +43,6 @@ public class UploadableProfileImagePanel extends UploadableImagePanel {
 
 	@Override
 	protected String getImageUrl() {
-		return getUrl(getRequestCycle(), userId);
+		return getUrl(getRequestCycle(), userId, PROFILE_SIZE_MEDIUM);
 	}
 }
@@ -18,6 +18,7 @@
  */
 package org.apache.openmeetings.web.room;
 
+import static org.apache.openmeetings.core.util.WebSocketHelper.ID_ROOM_PREFIX;
 import static org.apache.openmeetings.util.OpenmeetingsVariables.webAppRootKey;
 import static org.apache.openmeetings.web.app.Application.addUserToRoom;
 import static org.apache.openmeetings.web.app.Application.exitRoom;
@@ -30,19 +31,25 @@ import static org.apache.openmeetings.web.app.WebSession.getUserId;
 
 import java.util.Calendar;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.apache.openmeetings.core.data.log.ConferenceLogWriter;
+import org.apache.openmeetings.core.util.RoomEventLog;
 import org.apache.openmeetings.core.util.RoomHelper;
 import org.apache.openmeetings.core.util.WebSocketHelper;
 import org.apache.openmeetings.db.dao.calendar.AppointmentDao;
-import org.apache.openmeetings.db.dao.log.ConferenceLogDao;
+import org.apache.openmeetings.db.dao.file.FileExplorerItemDao;
 import org.apache.openmeetings.db.dao.server.ISessionManager;
 import org.apache.openmeetings.db.dao.user.UserDao;
 import org.apache.openmeetings.db.entity.basic.Client;
 import org.apache.openmeetings.db.entity.calendar.Appointment;
 import org.apache.openmeetings.db.entity.calendar.MeetingMember;
+import org.apache.openmeetings.db.entity.file.FileExplorerItem;
+import org.apache.openmeetings.db.entity.file.FileExplorerItem.ConversionStatus;
 import org.apache.openmeetings.db.entity.file.FileItem;
 import org.apache.openmeetings.db.entity.log.ConferenceLog;
 import org.apache.openmeetings.db.entity.room.Room;
@@ -106,25 +113,15 @@ public class RoomPanel extends BasePanel {
 	}
 	private final Room r;
 	private final WebMarkupContainer room = new WebMarkupContainer("roomContainer");
+	// files being converted, should be sent to WB after conversion (id -> clean)
+	private final Map<Long, Boolean> pendingWb = new ConcurrentHashMap<>();
 	private final AbstractDefaultAjaxBehavior roomEnter = new AbstractDefaultAjaxBehavior() {
 		private static final long serialVersionUID = 1L;
 
 		@Override
 		protected void respond(AjaxRequestTarget target) {
 			target.appendJavaScript("setRoomSizes();");
-			ExtendedClientProperties cp = WebSession.get().getExtendedProperties();
-			getBean(ConferenceLogDao.class).add(
-					ConferenceLog.Type.roomEnter
-					, getUserId(), "0", r.getId()
-					, cp.getRemoteAddress()
-					, "" + r.getId());
-			//TODO add all broadcasting clients
-			JSONObject options = VideoSettings.getInitJson(cp, "" + r.getId(), getClient().getUid());
-			options.put("interview", Room.Type.interview == r.getType());
-			target.appendJavaScript(String.format("VideoManager.init(%s);", options));
-			WebSocketHelper.sendRoom(new RoomMessage(r.getId(), getUserId(), RoomMessage.Type.roomEnter));
-			// play video from other participants
-			initVideos(target);
+			enter(target);
 			getMainPanel().getChat().roomEnter(r, target);
 			if (r.isFilesOpened()) {
 				sidebar.setFilesActive(target);
@@ -147,6 +144,7 @@ public class RoomPanel extends BasePanel {
 	private final WbPanel wb;
 	private String sharingUser = null;
 	private String recordingUser = null;
+	private long seq = 0; // the last event of the room log processed
 
 	public RoomPanel(String id, Room r) {
 		super(id);
@@ -154,7 +152,23 @@ public class RoomPanel extends BasePanel {
 		this.wb = new WbPanel("whiteboard", this);
 	}
 
-	private void initVideos(AjaxRequestTarget target) {
+	private void enter(IPartialPageRequestHandler handler) {
+		ExtendedClientProperties cp = WebSession.get().getExtendedProperties();
+		getBean(ConferenceLogWriter.class).add(
+				ConferenceLog.Type.roomEnter
+				, getUserId(), "0", r.getId()
+				, cp.getRemoteAddress()
+				, "" + r.getId());
+		//TODO add all broadcasting clients
+		JSONObject options = VideoSettings.getInitJson(cp, "" + r.getId(), getClient().getUid());
+		options.put("interview", Room.Type.interview == r.getType());
+		handler.appendJavaScript(String.format("VideoManager.init(%s);", options));
+		WebSocketHelper.sendRoom(new RoomMessage(r.getId(), getUserId(), RoomMessage.Type.roomEnter));
+		// play video from other participants
+		initVideos(handler);
+	}
+
+	private void initVideos(IPartialPageRequestHandler handler) {
 		StringBuilder sb = new StringBuilder();
 		for (Client c: getRoomClients(getRoom().getId()) ) {
 			boolean self = getClient().getUid().equals(c.getUid());
@@ -168,7 +182,7 @@ public class RoomPanel extends BasePanel {
 			}
 		}
 		if (!Strings.isEmpty(sb)) {
-			target.appendJavaScript(sb);
+			handler.appendJavaScript(sb);
 		}
 	}
 
@@ -328,6 +342,7 @@ public class RoomPanel extends BasePanel {
 			if (wsEvent.getMessage() instanceof RoomMessage) {
 				RoomMessage m = (RoomMessage)wsEvent.getMessage();
 				IPartialPageRequestHandler handler = wsEvent.getHandler();
+				seq = Math.max(seq, m.getSeq());
 				switch (m.getType()) {
 					case pollCreated:
 						menu.updatePoll(handler, m.getUserId());
@@ -335,6 +350,9 @@ public class RoomPanel extends BasePanel {
 					case pollUpdated:
 						menu.updatePoll(handler, null);
 						break;
+					case pollVoted:
+						menu.updatePollResults(handler, new JSONObject(((TextRoomMessage)m).getText()).getLong("id"));
+						break;
 					case recordingStoped:
 						{
 							String uid = ((TextRoomMessage)m).getText();
@@ -411,6 +429,24 @@ public class RoomPanel extends BasePanel {
 					case closeStream:
 						handler.appendJavaScript(String.format("VideoManager.close('%s');", ((TextRoomMessage)m).getText()));
 						break;
+					case fileConversion:
+					{
+						JSONObject obj = new JSONObject(((TextRoomMessage)m).getText());
+						ConversionStatus status = ConversionStatus.valueOf(obj.getString("status"));
+						if (ConversionStatus.RUNNING != status) {
+							sidebar.updateFiles(handler);
+						}
+						if (ConversionStatus.DONE == status || ConversionStatus.FAILED == status) {
+							Boolean clean = pendingWb.remove(obj.getLong("id"));
+							if (clean != null && ConversionStatus.DONE == status) {
+								FileExplorerItem f = getBean(FileExplorerItemDao.class).get(obj.getLong("id"));
+								if (f != null) {
+									wb.sendFileToWb(f, clean);
+								}
+							}
+						}
+					}
+						break;
 					case roomEnter:
 						sidebar.update(handler);
 						menu.update(handler);
@@ -484,20 +520,63 @@ public class RoomPanel extends BasePanel {
 	protected void onBeforeRender() {
 		super.onBeforeRender();
 		if (room.isVisible()) {
-			//We are setting initial rights here
-			Client c = getClient();
-			addUserToRoom(c.setRoomId(getRoom().getId()));
-			SOAPLogin soap = WebSession.get().getSoapLogin();
-			if (soap != null && soap.isModerator()) {
-				c.allow(Right.superModerator);
-			} else {
-				//FIXME TODO !!! c.getUser != getUserId
-				Set<Right> rr = AuthLevelUtil.getRoomRight(c.getUser(), r, r.isAppointment() ? getBean(AppointmentDao.class).getByRoom(r.getId()) : null, getRoomClients(r.getId()).size());
-				if (!rr.isEmpty()) {
-					c.allow(rr);
-				}
+			// full state of the room is rendered
+			seq = RoomEventLog.get(r.getId()).getSeq();
+			addClient();
+		}
+	}
+
+	private void addClient() {
+		//We are setting initial rights here
+		Client c = getClient();
+		addUserToRoom(c.setRoomId(getRoom().getId()));
+		SOAPLogin soap = WebSession.get().getSoapLogin();
+		if (soap != null && soap.isModerator()) {
+			c.allow(Right.superModerator);
+		} else {
+			//FIXME TODO !!! c.getUser != getUserId
+			Set<Right> rr = AuthLevelUtil.getRoomRight(c.getUser(), r, r.isAppointment() ? getBean(AppointmentDao.class).getByRoom(r.getId()) : null, getRoomClients(r.getId()).size());
+			if (!rr.isEmpty()) {
+				c.allow(rr);
+			}
+		}
+	}
+
+	/**
+	 * Restores the room after WebSocket connection was lost, the new client enters the room,
+	 * events missed by the page are replayed from the room event log instead of full re-render
+	 *
+	 * @param handler - request handler
+	 * @param chat - the last sequence numbers seen by the chat, per tab
+	 * @return <code>false</code> if the page is too far behind and full state of the room should be rendered
+	 */
+	public boolean reconnect(IPartialPageRequestHandler handler, JSONObject chat) {
+		RoomEventLog rlog = RoomEventLog.get(r.getId());
+		long last = rlog.getSeq();
+		List<RoomEventLog.Event> missed = rlog.getSince(seq);
+		if (!room.isVisible() || missed == null) {
+			return false;
+		}
+		for (RoomEventLog.Event e : missed) {
+			if (!(e.getData() instanceof RoomMessage)) {
+				continue;
+			}
+			RoomMessage m = (RoomMessage)e.getData();
+			if (RoomMessage.Type.roomClosed == m.getType()) {
+				handler.add(room.setVisible(false));
+				roomClosed.open(handler);
+				return true;
+			} else if (RoomMessage.Type.roomExit == m.getType() && !getUserId().equals(m.getUserId())) {
+				activities.add(new Activity(m, Activity.Type.roomExit), handler);
 			}
 		}
+		seq = last;
+		addClient();
+		wb.update(handler);
+		// user list and menu are updated once on roomEnter of the new client, missed membership and rights changes are applied
+		enter(handler);
+		getMainPanel().getChat().roomSync(r, chat == null ? 0 : chat.optLong(ID_ROOM_PREFIX + r.getId()), handler);
+		return true;
 	}
 
 	public static boolean isModerator(long userId, long roomId) {
@@ -664,6 +743,13 @@ public class RoomPanel extends BasePanel {
 		return wb;
 	}
 
+	/**
+	 * File will be sent to WB as soon as its conversion will be complete
+	 */
+	public void sendFileToWbOnConversion(Long fileId, boolean clean) {
+		pendingWb.put(fileId, clean);
+	}
+
 	public ActivitiesPanel getActivities() {
 		return activities;
 	}
@@ -31,6 +31,7 @@ import java.io.File;
 import java.util.Map.Entry;
 
 import org.apache.directory.api.util.Strings;
+import org.apache.openmeetings.core.converter.ImageConverter;
 import org.apache.openmeetings.core.data.whiteboard.WhiteboardCache;
 import org.apache.openmeetings.db.dao.file.FileExplorerItemDao;
 import org.apache.openmeetings.db.dao.user.GroupUserDao;
@@ -136,6 +137,14 @@ public class RoomResourceReference extends FileItemResourceReference<FileExplore
 				break;
 			case Presentation:
 				ext = attr.getParameters().get("slide").toString();
+				int slide = attr.getParameters().get("slide").toInt(-1);
+				if (slide > -1) {
+					// page might be still waiting for background rendering
+					File page = getBean(ImageConverter.class).getPage(f, slide);
+					if (page != null && page.exists()) {
+						return page;
+					}
+				}
 				break;
 			default:
 		}
@@ -30,9 +30,9 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.commons.lang3.time.FastDateFormat;
+import org.apache.openmeetings.core.data.poll.PollManager;
 import org.apache.openmeetings.core.util.WebSocketHelper;
 import org.apache.openmeetings.db.dao.basic.ConfigurationDao;
-import org.apache.openmeetings.db.dao.room.PollDao;
 import org.apache.openmeetings.db.dao.server.ISessionManager;
 import org.apache.openmeetings.db.entity.basic.Client;
 import org.apache.openmeetings.db.entity.room.Room;
@@ -156,7 +156,7 @@ public class RoomMenuPanel extends Panel {
 
 		@Override
 		public void onClick(AjaxRequestTarget target) {
-			RoomPoll rp = getBean(PollDao.class).getByRoom(room.getRoom().getId());
+			RoomPoll rp = getBean(PollManager.class).getPoll(room.getRoom().getId());
 			if (rp != null) {
 				vote.updateModel(target, rp);
 				vote.open(target);
@@ -276,8 +276,8 @@ public class RoomMenuPanel extends Panel {
 			return;
 		}
 		Room r = room.getRoom();
-		PollDao pollDao = getBean(PollDao.class);
-		boolean pollExists = pollDao.hasPoll(r.getId());
+		PollManager pollManager = getBean(PollManager.class);
+		boolean pollExists = pollManager.hasPoll(r.getId());
 		User u = room.getClient().getUser();
 		boolean notExternalUser = u.getType() != User.Type.external && u.getType() != User.Type.contact;
 		exitMenuItem.setEnabled(notExternalUser);//TODO check this
@@ -292,8 +292,8 @@ public class RoomMenuPanel extends Panel {
 		applyWbMenuItem.setEnabled(!room.getClient().hasRight(Room.Right.whiteBoard));
 		applyAvMenuItem.setEnabled(!room.getClient().hasRight(Room.Right.audio) || !room.getClient().hasRight(Room.Right.video));
 		pollCreateMenuItem.setEnabled(moder);
-		pollVoteMenuItem.setEnabled(pollExists && notExternalUser && !pollDao.hasVoted(r.getId(), getUserId()));
-		pollResultMenuItem.setEnabled(pollExists || pollDao.getArchived(r.getId()).size() > 0);
+		pollVoteMenuItem.setEnabled(pollExists && notExternalUser && !pollManager.hasVoted(r.getId(), getUserId()));
+		pollResultMenuItem.setEnabled(pollExists || pollManager.hasArchived(r.getId()));
 		sipDialerMenuItem.setEnabled(r.isSipEnabled() && getBean(ConfigurationDao.class).isSipEnabled());
 		//TODO sip menus
 		menuPanel.update(handler);
@@ -323,7 +323,7 @@ public class RoomMenuPanel extends Panel {
 	}
 
 	public void updatePoll(IPartialPageRequestHandler handler, Long createdBy) {
-		RoomPoll rp = getBean(PollDao.class).getByRoom(room.getRoom().getId());
+		RoomPoll rp = getBean(PollManager.class).getPoll(room.getRoom().getId());
 		if (rp != null) {
 			vote.updateModel(handler, rp);
 		} else {
@@ -338,6 +338,12 @@ public class RoomMenuPanel extends Panel {
 		update(handler);
 	}
 
+	public void updatePollResults(IPartialPageRequestHandler handler, Long pollId) {
+		if (pollResults.isOpened()) {
+			pollResults.updateCounts(handler, pollId);
+		}
+	}
+
 	public void exit(IPartialPageRequestHandler handler) {
 		if (WebSession.getRights().contains(User.Right.Dashboard)) {
 			exitRoom(room.getClient());
@@ -25,7 +25,7 @@ import static org.apache.openmeetings.web.app.WebSession.getUserId;
 import java.util.Arrays;
 import java.util.List;
 
-import org.apache.openmeetings.db.dao.room.PollDao;
+import org.apache.openmeetings.core.data.poll.PollManager;
 import org.apache.openmeetings.db.dao.room.RoomDao;
 import org.apache.openmeetings.db.dao.user.UserDao;
 import org.apache.openmeetings.db.entity.room.RoomPoll;
@@ -93,9 +93,7 @@ public class CreatePollDialog extends AbstractFormDialog<RoomPoll> {
 
 	@Override
 	protected void onSubmit(AjaxRequestTarget target) {
-		PollDao dao = getBean(PollDao.class);
-		dao.close(roomId);
-		dao.update(form.getModelObject());
+		getBean(PollManager.class).create(form.getModelObject());
 		sendRoom(new RoomMessage(roomId, getUserId(), RoomMessage.Type.pollCreated));
 	}
 
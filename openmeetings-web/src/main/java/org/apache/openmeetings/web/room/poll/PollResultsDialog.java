@@ -26,6 +26,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import org.apache.openmeetings.core.data.poll.PollManager;
 import org.apache.openmeetings.db.dao.room.PollDao;
 import org.apache.openmeetings.db.entity.room.RoomPoll;
 import org.apache.openmeetings.db.entity.room.RoomPollAnswer;
@@ -96,7 +97,7 @@ public class PollResultsDialog extends AbstractDialog<RoomPoll> {
 				// TODO should rights be additionally checked here????
 				if(button != null && button.match(YES)) {
 					Long id = dispForm.getModelObject().getId();
-					getBean(PollDao.class).close(roomId);
+					getBean(PollManager.class).close(roomId);
 					selForm.updateModel(handler);
 
 					RoomPoll p = getBean(PollDao.class).get(id);
@@ -113,7 +114,7 @@ public class PollResultsDialog extends AbstractDialog<RoomPoll> {
 			public void onClose(IPartialPageRequestHandler handler, DialogButton button) {
 				// TODO should rights be additionally checked here????
 				if(button != null && button.match(YES)) {
-					getBean(PollDao.class).delete(dispForm.getModelObject());
+					getBean(PollManager.class).delete(dispForm.getModelObject());
 					selForm.updateModel(handler);
 					dispForm.updateModel(selForm.select.getModelObject(), true, handler);
 					sendRoom(new RoomMessage(roomId, getUserId(), RoomMessage.Type.pollUpdated));
@@ -209,6 +210,16 @@ public class PollResultsDialog extends AbstractDialog<RoomPoll> {
 		return opened;
 	}
 
+	/**
+	 * Redraws results of the active poll with updated counts, database is not accessed
+	 */
+	public void updateCounts(IPartialPageRequestHandler handler, Long pollId) {
+		RoomPoll p = dispForm.getModelObject();
+		if (opened && p != null && !p.isArchived() && p.getId().equals(pollId)) {
+			dispForm.updateModel(p, true, handler);
+		}
+	}
+
 	private static String[] getTicks(RoomPoll p) {
 		return p != null && RoomPoll.Type.numeric == p.getType()
 				? new String[] {"1", "2", "3", "4", "5", "6", "7", "8", "9", "10"}
@@ -223,9 +234,15 @@ public class PollResultsDialog extends AbstractDialog<RoomPoll> {
 		return values;
 	}
 
-	private static Integer[] getValues(RoomPoll p) {
-		Integer[] values = initValues(p != null && RoomPoll.Type.numeric == p.getType() ? 10 : 2);
-		if (p != null && RoomPoll.Type.numeric == p.getType()) {
+	private Integer[] getValues(RoomPoll p) {
+		Integer[] values = initValues(p != null && RoomPoll.Type.numeric == p.getType() ? PollManager.NUMERIC_MAX : 2);
+		// results of the active poll are counted in memory
+		int[] counts = p == null || p.isArchived() ? null : getBean(PollManager.class).getCounts(roomId, p.getId());
+		if (counts != null) {
+			for (int i = 0; i < counts.length && i < values.length; ++i) {
+				values[i] = counts[i];
+			}
+		} else if (p != null && RoomPoll.Type.numeric == p.getType()) {
 			for (RoomPollAnswer a : p.getAnswers()) {
 				values[a.getPointList() - 1] ++;
 			}
@@ -237,7 +254,7 @@ public class PollResultsDialog extends AbstractDialog<RoomPoll> {
 		return values;
 	}
 
-	private static PieChart<Integer> pieChart(RoomPoll p) {
+	private PieChart<Integer> pieChart(RoomPoll p) {
 		PieChart<Integer> pieChart = new PieChart<>(null);
 		String[] ticks = getTicks(p);
 		Integer[] values = getValues(p);
@@ -259,7 +276,7 @@ public class PollResultsDialog extends AbstractDialog<RoomPoll> {
 		return pieChart;
 	}
 
-	private static BarChart<Integer> barChart(RoomPoll p) {
+	private BarChart<Integer> barChart(RoomPoll p) {
 		String[] ticks = getTicks(p);
 		BarChart<Integer> barChart = new BarChart<>(null);
 		barChart.addValue(Arrays.asList(getValues(p)));
@@ -282,6 +299,14 @@ public class PollResultsDialog extends AbstractDialog<RoomPoll> {
 		return barChart;
 	}
 
+	private int getTotal(RoomPoll p) {
+		int total = 0;
+		for (Integer v : getValues(p)) {
+			total += v;
+		}
+		return total;
+	}
+
 	private class PollSelectForm extends Form<RoomPoll> {
 		private static final long serialVersionUID = 1L;
 		private final DropDownChoice<RoomPoll> select;
@@ -313,7 +338,7 @@ public class PollResultsDialog extends AbstractDialog<RoomPoll> {
 
 		public void updateModel(IPartialPageRequestHandler handler) {
 			List<RoomPoll> list = new ArrayList<>();
-			RoomPoll p = getBean(PollDao.class).getByRoom(roomId);
+			RoomPoll p = getBean(PollManager.class).getPoll(roomId);
 			if (p != null) {
 				list.add(p);
 			}
@@ -356,7 +381,7 @@ public class PollResultsDialog extends AbstractDialog<RoomPoll> {
 			setModelObject(poll);
 			name.setObject(poll == null ? "" : VoteDialog.getName(poll.getCreator()));
 			question.setObject(poll == null ? "" : poll.getQuestion());
-			count.setObject(poll == null ? 0 : poll.getAnswers().size());
+			count.setObject(poll == null ? 0 : getTotal(poll));
 			handler.add(this);
 			close.setVisible(moderator && (poll != null && !poll.isArchived()), handler);
 			delete.setVisible(moderator, handler);
@@ -18,21 +18,18 @@
  */
 package org.apache.openmeetings.web.room.poll;
 
-import static org.apache.openmeetings.core.util.WebSocketHelper.sendRoom;
 import static org.apache.openmeetings.web.app.Application.getBean;
 import static org.apache.openmeetings.web.app.WebSession.getUserId;
 
 import java.util.Arrays;
-import java.util.Date;
 import java.util.List;
 
-import org.apache.openmeetings.db.dao.room.PollDao;
-import org.apache.openmeetings.db.dao.user.UserDao;
+import org.apache.openmeetings.core.data.poll.PollManager;
 import org.apache.openmeetings.db.entity.room.RoomPoll;
 import org.apache.openmeetings.db.entity.room.RoomPollAnswer;
 import org.apache.openmeetings.db.entity.user.User;
-import org.apache.openmeetings.util.message.RoomMessage;
 import org.apache.openmeetings.web.app.Application;
+import org.apache.openmeetings.web.room.menu.RoomMenuPanel;
 import org.apache.wicket.ajax.AjaxRequestTarget;
 import org.apache.wicket.core.request.handler.IPartialPageRequestHandler;
 import org.apache.wicket.markup.html.WebMarkupContainer;
@@ -75,8 +72,6 @@ public class VoteDialog extends AbstractFormDialog<RoomPollAnswer> {
 	public void updateModel(IPartialPageRequestHandler target, RoomPoll rp) {
 		RoomPollAnswer a = new RoomPollAnswer();
 		a.setRoomPoll(rp);
-		User u = getBean(UserDao.class).get(getUserId());
-		a.setVotedUser(u);
 		user.setObject(getName(a.getRoomPoll().getCreator()));
 		form.setModelObject(a);
 		boolean typeNum = a.getRoomPoll() != null && RoomPoll.Type.numeric == a.getRoomPoll().getType();
@@ -120,10 +115,17 @@ public class VoteDialog extends AbstractFormDialog<RoomPollAnswer> {
 	@Override
 	protected void onSubmit(AjaxRequestTarget target) {
 		RoomPollAnswer a = form.getModelObject();
-		a.setVoteDate(new Date());
-		a.getRoomPoll().getAnswers().add(a);
-		getBean(PollDao.class).update(a.getRoomPoll());
-		sendRoom(new RoomMessage(a.getRoomPoll().getRoom().getId(), getUserId(), RoomMessage.Type.pollUpdated));
+		Long roomId = a.getRoomPoll().getRoom().getId();
+		PollManager pollManager = getBean(PollManager.class);
+		// results are sent to the room by poll manager
+		if (!pollManager.vote(roomId, getUserId(), a.getAnswer(), a.getPointList())) {
+			error(Application.getString(pollManager.hasVoted(roomId, getUserId()) ? 31 : 41));
+			target.add(feedback);
+		}
+		RoomMenuPanel menu = findParent(RoomMenuPanel.class);
+		if (menu != null) {
+			menu.update(target);
+		}
 	}
 
 	@Override
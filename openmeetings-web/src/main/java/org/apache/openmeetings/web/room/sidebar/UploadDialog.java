@@ -24,15 +24,12 @@ import static org.apache.openmeetings.web.app.WebSession.getUserId;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Map.Entry;
 
 import org.apache.openmeetings.core.data.file.FileProcessor;
 import org.apache.openmeetings.db.dao.basic.ConfigurationDao;
-import org.apache.openmeetings.db.dao.file.FileItemLogDao;
 import org.apache.openmeetings.db.entity.file.FileExplorerItem;
 import org.apache.openmeetings.db.entity.file.FileItem;
 import org.apache.openmeetings.util.StoredFile;
-import org.apache.openmeetings.util.process.ConverterProcessResult;
 import org.apache.openmeetings.util.process.ConverterProcessResultList;
 import org.apache.openmeetings.web.app.Application;
 import org.apache.openmeetings.web.room.RoomPanel;
@@ -200,16 +197,18 @@ public class UploadDialog extends AbstractFormDialog<String> {
 				f.setInsertedBy(getUserId());
 
 				try {
-					ConverterProcessResultList logs = getBean(FileProcessor.class).processFile(f, fu.getInputStream());
-					for (Entry<String, ConverterProcessResult> entry : logs.getJobs().entrySet()) {
-						getBean(FileItemLogDao.class).add(entry.getValue().getProcess(), f, entry.getValue());
-					}
+					// conversion is performed in background, room will be notified on completion
+					ConverterProcessResultList logs = getBean(FileProcessor.class).processFile(f, fu.getInputStream(), room.getRoom().getId());
 					room.getSidebar().updateFiles(target);
 					if (logs.hasError()) {
 						form.error(getString("convert.errors.file"));
 					} else {
 						if (toWb.getModelObject()) {
-							room.getWb().sendFileToWb(f, clean);
+							if (f.getConversionStatus() == null) {
+								room.getWb().sendFileToWb(f, clean);
+							} else {
+								room.sendFileToWbOnConversion(f.getId(), clean);
+							}
 							clean = false;
 						}
 					}
@@ -30,6 +30,7 @@ import org.apache.openmeetings.db.dao.calendar.AppointmentDao;
 import org.apache.openmeetings.db.entity.calendar.Appointment;
 import org.apache.openmeetings.db.entity.calendar.OmCalendar;
 import org.apache.openmeetings.service.calendar.caldav.AppointmentManager;
+import org.apache.openmeetings.service.calendar.caldav.CalendarSyncService;
 import org.apache.openmeetings.web.app.Application;
 import org.apache.wicket.AttributeModifier;
 import org.apache.wicket.Component;
@@ -100,7 +101,7 @@ public class CalendarDialog extends AbstractFormDialog<OmCalendar> {
 			@Override
 			public void onClose(IPartialPageRequestHandler handler, DialogButton button) {
 				if (button != null && button.match(AbstractDialog.OK)) {
-					calendarPanel.getAppointmentManager().deleteCalendar(form.getModelObject());
+					getBean(CalendarSyncService.class).deleteCalendar(form.getModelObject());
 					calendarPanel.refresh(handler);
 					calendarPanel.refreshCalendars(handler);
 				}
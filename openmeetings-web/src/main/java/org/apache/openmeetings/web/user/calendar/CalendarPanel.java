@@ -41,6 +41,7 @@ import org.apache.openmeetings.db.entity.calendar.Appointment;
 import org.apache.openmeetings.db.entity.calendar.Appointment.Reminder;
 import org.apache.openmeetings.db.entity.calendar.OmCalendar;
 import org.apache.openmeetings.service.calendar.caldav.AppointmentManager;
+import org.apache.openmeetings.service.calendar.caldav.CalendarSyncService;
 import org.apache.openmeetings.web.app.Application;
 import org.apache.openmeetings.web.app.WebSession;
 import org.apache.openmeetings.web.common.UserPanel;
@@ -89,7 +90,8 @@ public class CalendarPanel extends UserPanel {
 		@Override
 		protected void onTimer(AjaxRequestTarget target) {
 			log.debug("CalDAV Syncing has begun");
-			syncCalendar(target);
+			// synced appointments will be displayed by refreshTimer
+			getBean(CalendarSyncService.class).sync(getUserId(), getHttpClient().getState());
 		}
 	};
 	private Calendar calendar;
@@ -18,10 +18,12 @@
  */
 package org.apache.openmeetings.web.user.chat;
 
+import static org.apache.openmeetings.core.data.chat.ChatManager.HISTORY_SIZE;
 import static org.apache.openmeetings.core.util.WebSocketHelper.ID_ALL;
 import static org.apache.openmeetings.core.util.WebSocketHelper.ID_ROOM_PREFIX;
 import static org.apache.openmeetings.core.util.WebSocketHelper.ID_USER_PREFIX;
 import static org.apache.openmeetings.db.util.AuthLevelUtil.hasAdminLevel;
+import static org.apache.openmeetings.util.OmFileHelper.PROFILE_SIZE_SMALL;
 import static org.apache.openmeetings.util.OpenmeetingsVariables.webAppRootKey;
 import static org.apache.openmeetings.web.app.Application.getBean;
 import static org.apache.openmeetings.web.app.Application.getUserRooms;
@@ -41,11 +43,14 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.apache.openmeetings.core.data.chat.ChatManager;
 import org.apache.openmeetings.core.remote.MobileService;
+import org.apache.openmeetings.core.util.RoomEventLog;
 import org.apache.openmeetings.core.util.WebSocketHelper;
-import org.apache.openmeetings.db.dao.basic.ChatDao;
 import org.apache.openmeetings.db.dao.room.RoomDao;
 import org.apache.openmeetings.db.dao.user.UserDao;
 import org.apache.openmeetings.db.entity.basic.ChatMessage;
@@ -89,11 +94,10 @@ public class Chat extends Panel {
 				long roomId = getRequest().getRequestParameters().getParameterValue(PARAM_ROOM_ID).toLong();
 				if ("accept".equals(type)) {
 					long msgId = getRequest().getRequestParameters().getParameterValue(PARAM_MSG_ID).toLong();
-					ChatDao dao = getBean(ChatDao.class);
-					ChatMessage m = dao.get(msgId);
-					if (m.isNeedModeration() && isModerator(getUserId(), roomId)) {
-						m.setNeedModeration(false);
-						dao.update(m);
+					ChatManager cm = getBean(ChatManager.class);
+					ChatMessage m = cm.get(roomId, msgId);
+					if (m != null && m.isNeedModeration() && isModerator(getUserId(), roomId)) {
+						m = cm.accept(m);
 						WebSocketHelper.sendRoom(m, getMessage(Arrays.asList(m)).put("mode",  "accept"));
 					} else {
 						log.error("It seems like we are being hacked!!!!");
@@ -119,7 +123,7 @@ public class Chat extends Panel {
 	}
 
 	public JSONObject getMessage(Long userId, List<ChatMessage> list) {
-		return WebSocketHelper.getMessage(userId, list, getDateFormat(), (o, u) -> o.put("img", getUrl(getRequestCycle(), u)));
+		return WebSocketHelper.getMessage(userId, list, getDateFormat(), (o, u) -> o.put("img", getUrl(getRequestCycle(), u, PROFILE_SIZE_SMALL)));
 	}
 
 	public Chat(String id) {
@@ -141,13 +145,48 @@ public class Chat extends Panel {
 	public CharSequence addRoom(Room r) {
 		StringBuilder sb = new StringBuilder();
 		sb.append(String.format("Chat.addTab('%1$s%2$d', '%3$s %2$d');", ID_ROOM_PREFIX, r.getId(), Application.getString(406)));
-		List<ChatMessage> list = getBean(ChatDao.class).getRoom(r.getId(), 0, 30, !r.isChatModerated() || isModerator(getUserId(), r.getId()));
+		// taken before history is loaded, messages sent in between will be re-sent on sync
+		long seq = RoomEventLog.get(r.getId()).getSeq();
+		List<ChatMessage> list = getBean(ChatManager.class).getRoom(r.getId(), HISTORY_SIZE, !r.isChatModerated() || isModerator(getUserId(), r.getId()));
 		if (list.size() > 0) {
 			sb.append("Chat.addMessage(").append(getMessage(list).toString()).append(");");
 		}
+		sb.append(String.format("Chat.setSeq('%s%d', %d);", ID_ROOM_PREFIX, r.getId(), seq));
 		return sb;
 	}
 
+	/**
+	 * @param r - the room
+	 * @param seq - the last sequence number of the room seen by the client
+	 * @return script adding room messages missed by the client, full history
+	 *  of the room is reloaded if some of them are no longer in the room event log
+	 */
+	public CharSequence syncRoom(Room r, long seq) {
+		List<RoomEventLog.Event> events = RoomEventLog.get(r.getId()).getSince(seq);
+		if (events == null) {
+			return new StringBuilder(String.format("Chat.removeTab('%s%d');", ID_ROOM_PREFIX, r.getId())).append(addRoom(r));
+		}
+		boolean all = !r.isChatModerated() || isModerator(getUserId(), r.getId());
+		// accepted message is logged twice, only its latest state should be sent
+		Map<Long, ChatMessage> missed = new LinkedHashMap<>();
+		long last = seq;
+		for (RoomEventLog.Event e : events) {
+			last = e.getSeq();
+			if (e.getData() instanceof ChatMessage) {
+				ChatMessage m = (ChatMessage)e.getData();
+				missed.remove(m.getId());
+				if (all || !m.isNeedModeration()) {
+					missed.put(m.getId(), m);
+				}
+			}
+		}
+		StringBuilder sb = new StringBuilder();
+		if (!missed.isEmpty()) {
+			sb.append("Chat.addMessage(").append(getMessage(new ArrayList<>(missed.values())).toString()).append(");");
+		}
+		return sb.append(String.format("Chat.setSeq('%s%d', %d);", ID_ROOM_PREFIX, r.getId(), last));
+	}
+
 	@Override
 	public void renderHead(IHeaderResponse response) {
 		super.renderHead(response);
@@ -157,14 +196,14 @@ public class Chat extends Panel {
 		response.render(CssHeaderItem.forUrl("css/chat.css"));
 		response.render(new PriorityHeaderItem(getNamedFunction("chatActivity", chatActivity, explicit(PARAM_TYPE), explicit(PARAM_ROOM_ID), explicit(PARAM_MSG_ID))));
 
-		ChatDao dao = getBean(ChatDao.class);
+		ChatManager cm = getBean(ChatManager.class);
 		//FIXME limited count should be loaded with "earlier" link
-		List<ChatMessage> list = new ArrayList<>(dao.getGlobal(0, 30));
+		List<ChatMessage> list = new ArrayList<>(cm.getGlobal(HISTORY_SIZE));
 		for(Long roomId : getUserRooms(getUserId())) {
 			Room r = getBean(RoomDao.class).get(roomId);
-			list.addAll(dao.getRoom(roomId, 0, 30, !r.isChatModerated() || isModerator(getUserId(), roomId)));
+			list.addAll(cm.getRoom(roomId, HISTORY_SIZE, !r.isChatModerated() || isModerator(getUserId(), roomId)));
 		}
-		list.addAll(dao.getUserRecent(getUserId(), Date.from(Instant.now().minus(Duration.ofHours(1L))), 0, 30));
+		list.addAll(cm.getUserRecent(getUserId(), Date.from(Instant.now().minus(Duration.ofHours(1L))), HISTORY_SIZE));
 		StringBuilder sb = new StringBuilder(getReinit());
 		if (list.size() > 0) {
 			sb.append("Chat.addMessage(").append(getMessage(list).toString()).append(");");
@@ -188,7 +227,6 @@ public class Chat extends Panel {
 
 					@Override
 					protected void onSubmit(AjaxRequestTarget target) {
-						ChatDao dao = getBean(ChatDao.class);
 						ChatMessage m = new ChatMessage();
 						m.setMessage(chatMessage.getDefaultModelObjectAsString());
 						m.setSent(new Date());
@@ -215,7 +253,7 @@ public class Chat extends Panel {
 						} catch (Exception e) {
 							//no-op
 						}
-						dao.update(m);
+						getBean(ChatManager.class).add(m);
 						JSONObject msg = getMessage(Arrays.asList(m));
 						if (m.getToRoom() != null) {
 							getBean(MobileService.class).sendChatMessage(getUid(), m, getDateFormat()); //let's send to mobile users
@@ -245,24 +283,24 @@ public class Chat extends Panel {
 
 				@Override
 				protected void onSubmit(AjaxRequestTarget target) {
-					ChatDao dao = getBean(ChatDao.class);
+					ChatManager cm = getBean(ChatManager.class);
 					String scope = activeTab.getModelObject();
 					boolean clean = false;
 					try {
 						if (scope == null || ID_ALL.equals(scope)) {
 							scope = ID_ALL;
-							dao.deleteGlobal();
+							cm.deleteGlobal();
 							clean = true;
 						} else if (scope.startsWith(ID_ROOM_PREFIX)) {
 							Room r = getBean(RoomDao.class).get(Long.parseLong(scope.substring(ID_ROOM_PREFIX.length())));
 							if (r != null) {
-								dao.deleteRoom(r.getId());
+								cm.deleteRoom(r.getId());
 								clean = true;
 							}
 						} else if (scope.startsWith(ID_USER_PREFIX)) {
 							User u = getBean(UserDao.class).get(Long.parseLong(scope.substring(ID_USER_PREFIX.length())));
 							if (u != null) {
-								dao.deleteUser(u.getId());
+								cm.deleteUser(u.getId());
 								clean = true;
 							}
 						}
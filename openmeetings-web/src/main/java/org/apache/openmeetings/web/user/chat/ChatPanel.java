@@ -63,6 +63,16 @@ public class ChatPanel extends BasePanel {
 		target.appendJavaScript(sb);
 	}
 
+	/**
+	 * Adds messages of the room missed while connection was lost
+	 */
+	public void roomSync(Room r, long seq, IPartialPageRequestHandler handler) {
+		if (r.isHidden(RoomElement.Chat)) {
+			return;
+		}
+		handler.appendJavaScript(chat.syncRoom(r, seq));
+	}
+
 	public void roomExit(Room r, IPartialPageRequestHandler handler) {
 		if (r.isHidden(RoomElement.Chat)) {
 			return;
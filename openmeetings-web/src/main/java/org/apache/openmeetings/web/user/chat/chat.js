@@ -34,6 +34,7 @@ var Chat = function() {
 		, typingTimer
 		, doneTypingInterval = 5000 //time in ms, 5 second for example
 		, audio
+		, seqs = {} //last sequence number seen, per room tab
 		;
 	try {
 		audio = new Audio('./public/chat_message.mp3');
@@ -117,6 +118,7 @@ var Chat = function() {
 			});
 		}
 		, removeTab: function(id) {
+			delete seqs[id];
 			$('li[aria-controls="' + id + '"]').remove();
 			$('#' + id).remove();
 			if (isInited()) {
@@ -158,6 +160,9 @@ var Chat = function() {
 						});
 					}
 				}
+				if (!!m.seq && m.msg.length) {
+					this.setSeq(m.msg[0].scope, m.seq);
+				}
 				var msg, cm;
 				while (!!(cm = m.msg.pop())) {
 					var area = $('#' + cm.scope);
@@ -181,9 +186,8 @@ var Chat = function() {
 						this.addTab(cm.scope, cm.scopeName);
 						area = $('#' + cm.scope);
 					}
-					if (m.mode == "accept") {
-						$('#chat-msg-id-' + cm.id).remove();
-					}
+					// message might be re-sent on accept or sync
+					$('#chat-msg-id-' + cm.id).remove();
 					var btm = area.scrollTop() + area.innerHeight() >= area[0].scrollHeight;
 					area.append(msg);
 					if (btm) {
@@ -194,6 +198,14 @@ var Chat = function() {
 				}
 			}
 		}
+		, setSeq: function(scope, seq) {
+			if (!seqs[scope] || seqs[scope] < seq) {
+				seqs[scope] = seq;
+			}
+		}
+		, getSeqs: function() {
+			return seqs;
+		}
 		, open: function() {
 			if (isClosed()) {
 				$('#chatPopup .control.block .ui-icon').removeClass('ui-icon-caret-1-n').addClass('ui-icon-caret-1-s');
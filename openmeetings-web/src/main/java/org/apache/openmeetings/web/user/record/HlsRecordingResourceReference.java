@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.web.user.record;
+
+import static org.apache.openmeetings.util.OmFileHelper.EXTENSION_IDX;
+import static org.apache.openmeetings.util.OmFileHelper.EXTENSION_INIT_MP4;
+import static org.apache.openmeetings.util.OmFileHelper.EXTENSION_M3U8;
+import static org.apache.openmeetings.util.OmFileHelper.EXTENSION_M4S;
+import static org.apache.openmeetings.util.OmFileHelper.IDX_MIME_TYPE;
+import static org.apache.openmeetings.util.OmFileHelper.M3U8_MIME_TYPE;
+import static org.apache.openmeetings.util.OmFileHelper.M4S_MIME_TYPE;
+import static org.apache.openmeetings.util.OmFileHelper.MP4_MIME_TYPE;
+import static org.apache.openmeetings.util.OmFileHelper.recordingFileName;
+
+import java.io.File;
+
+import org.apache.openmeetings.db.entity.record.Recording;
+import org.apache.wicket.request.resource.IResource.Attributes;
+
+/**
+ * Serves HLS representation of the recording: playlist, fragmented MP4 segments
+ * (single file addressed by byte ranges) and index of key frames.
+ * Playlist refers segments by relative names, so all the files are mounted under the same path.
+ */
+public class HlsRecordingResourceReference extends RecordingResourceReference {
+	private static final long serialVersionUID = 1L;
+	public static final String PARAM_FILE = "file";
+	public static final String PLAYLIST = "index." + EXTENSION_M3U8;
+	public static final String INDEX = "keyframes." + EXTENSION_IDX;
+
+	public HlsRecordingResourceReference() {
+		super("hls-recording");
+	}
+
+	@Override
+	public String getMimeType() {
+		return M3U8_MIME_TYPE;
+	}
+
+	@Override
+	protected String getMimeType(Recording r, File f) {
+		String name = f.getName();
+		if (name.endsWith(EXTENSION_INIT_MP4)) {
+			return MP4_MIME_TYPE;
+		} else if (name.endsWith(EXTENSION_M4S)) {
+			return M4S_MIME_TYPE;
+		} else if (name.endsWith(EXTENSION_IDX)) {
+			return IDX_MIME_TYPE;
+		}
+		return getMimeType();
+	}
+
+	@Override
+	protected String getFileName(Recording r) {
+		return String.format("%s%s.%s", recordingFileName, r.getId(), EXTENSION_M3U8);
+	}
+
+	@Override
+	protected Recording getFileItem(Attributes attr) {
+		Recording r = super.getFileItem(attr);
+		return r == null || getFile(r, attr) == null ? null : r;
+	}
+
+	/**
+	 * @return requested file, <code>null</code> if there is no such file
+	 */
+	@Override
+	protected File getFile(Recording r, Attributes attr) {
+		String name = attr.getParameters().get(PARAM_FILE).toString("");
+		File f = null;
+		if (PLAYLIST.equals(name)) {
+			f = r.getFile(EXTENSION_M3U8);
+		} else if (INDEX.equals(name)) {
+			f = r.getFile(EXTENSION_IDX);
+		} else {
+			for (String ext : new String[] {EXTENSION_M4S, EXTENSION_INIT_MP4}) {
+				File seg = r.getFile(ext);
+				if (seg != null && seg.getName().equals(name)) {
+					f = seg;
+					break;
+				}
+			}
+		}
+		return f == null || !f.exists() ? null : f;
+	}
+}
@@ -18,6 +18,8 @@
  */
 package org.apache.openmeetings.web.user.record;
 
+import static org.apache.openmeetings.util.OmFileHelper.EXTENSION_M3U8;
+import static org.apache.openmeetings.util.OmFileHelper.M3U8_MIME_TYPE;
 import static org.apache.openmeetings.util.OmFileHelper.MP4_MIME_TYPE;
 
 import org.apache.openmeetings.db.entity.file.FileItem;
@@ -35,6 +37,7 @@ public class VideoPlayer extends Panel {
 	private static final long serialVersionUID = 1L;
 	private final WebMarkupContainer wait = new WebMarkupContainer("wait"); //FIXME not used
 	private final WebMarkupContainer container = new WebMarkupContainer("container");
+	private final HlsRecordingResourceReference hlsRecRes = new HlsRecordingResourceReference();
 	private final Mp4RecordingResourceReference mp4RecRes = new Mp4RecordingResourceReference();
 	private final JpgRecordingResourceReference posterRecRes = new JpgRecordingResourceReference();
 	private final RoomResourceReference mp4FileRes = new RoomResourceReference();
@@ -52,17 +55,20 @@ public class VideoPlayer extends Panel {
 			return true;
 		}
 	};
+	private final Source hlsRec = new Source("hls", hlsRecRes);
 	private final Source mp4Rec = new Source("mp4", mp4RecRes);
 	private final Source mp4File = new Source("mp4", mp4FileRes);
 
 	public VideoPlayer(String id) {
 		super(id);
 		add(container.setOutputMarkupPlaceholderTag(true));
+		hlsRec.setDisplayType(true);
+		hlsRec.setType(M3U8_MIME_TYPE);
 		mp4Rec.setDisplayType(true);
 		mp4Rec.setType(MP4_MIME_TYPE);
 		mp4File.setDisplayType(true);
 		mp4File.setType(MP4_MIME_TYPE);
-		player.add(mp4Rec);
+		player.add(hlsRec.setVisible(false), mp4Rec);
 		container.add(wait.setVisible(false), player);
 		update(null, null);
 	}
@@ -75,11 +81,15 @@ public class VideoPlayer extends Panel {
 				pp.add("id", r.getId());
 				mp4Rec.setPageParameters(pp);
 				player.replace(mp4Rec);
+				// browsers not supporting HLS will fall back to MP4
+				hlsRec.setPageParameters(new PageParameters(pp).add(HlsRecordingResourceReference.PARAM_FILE, HlsRecordingResourceReference.PLAYLIST));
+				hlsRec.setVisible(r.exists(EXTENSION_M3U8));
 				player.setPoster(posterRecRes, pp);
 			} else {
 				pp.add("id", r.getId()).add("uid", findParent(MainPanel.class).getClient().getUid());
 				mp4File.setPageParameters(pp);
 				player.replace(mp4File);
+				hlsRec.setVisible(false);
 				player.setPoster(posterFileRes, new PageParameters(pp).add("preview", true));
 			}
 		}
@@ -50,7 +50,7 @@ public abstract class FileItemResourceReference<T extends FileItem> extends File
 
 			@Override
 			protected String getMimeType() throws IOException {
-				return FileItemResourceReference.this.getMimeType(r);
+				return FileItemResourceReference.this.getMimeType(r, file);
 			}
 
 			@Override
@@ -72,6 +72,14 @@ public abstract class FileItemResourceReference<T extends FileItem> extends File
 	}
 
 	protected abstract String getMimeType(T r);
+
+	/**
+	 * Should be overridden by references serving several files of the same item
+	 */
+	protected String getMimeType(T r, File f) {
+		return getMimeType(r);
+	}
+
 	protected abstract String getFileName(T r);
 	protected abstract File getFile(T r, Attributes attr);
 	protected abstract T getFileItem(Attributes attr);
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.web.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of encoded profile pictures bounded by total size of the stored images.
+ * Key should identify version of the picture (i.e. contain its modification time),
+ * so stored entries never need to be invalidated, outdated ones are evicted eventually.
+ */
+public class ProfileImageCache {
+	private final long maxBytes;
+	private final int maxEntryBytes;
+	private final LinkedHashMap<String, Entry> cache = new LinkedHashMap<>(16, .75f, true);
+	private long bytes = 0;
+
+	public static class Entry {
+		private final byte[] data;
+		private final long modified;
+
+		public Entry(byte[] data, long modified) {
+			this.data = data;
+			this.modified = modified;
+		}
+
+		public byte[] getData() {
+			return data;
+		}
+
+		public long getModified() {
+			return modified;
+		}
+	}
+
+	public ProfileImageCache(long maxBytes, int maxEntryBytes) {
+		this.maxBytes = maxBytes;
+		this.maxEntryBytes = maxEntryBytes;
+	}
+
+	/**
+	 * @return max size of the image can be stored
+	 */
+	public int getMaxEntryBytes() {
+		return maxEntryBytes;
+	}
+
+	public static String getKey(Long userId, int size, String version) {
+		return String.format("%s_%s_%s", userId, size, version);
+	}
+
+	public synchronized Entry get(String key) {
+		return cache.get(key);
+	}
+
+	/**
+	 * @return <code>true</code> if image was stored, images bigger than max entry size are not cached
+	 */
+	public synchronized boolean put(String key, Entry e) {
+		if (e.data.length > maxEntryBytes) {
+			return false;
+		}
+		Entry old = cache.put(key, e);
+		if (old != null) {
+			bytes -= old.data.length;
+		}
+		bytes += e.data.length;
+		Iterator<Map.Entry<String, Entry>> iter = cache.entrySet().iterator();
+		while (bytes > maxBytes && iter.hasNext()) {
+			bytes -= iter.next().getValue().data.length;
+			iter.remove();
+		}
+		return true;
+	}
+
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	public synchronized int size() {
+		return cache.size();
+	}
+}
@@ -22,40 +22,68 @@ import static org.apache.openmeetings.util.OpenmeetingsVariables.webAppRootKey;
 import static org.apache.openmeetings.web.app.Application.getBean;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.InputStream;
+import java.io.IOException;
 import java.net.URI;
+import java.nio.file.Files;
+
+import javax.servlet.http.HttpServletResponse;
 
 import org.apache.openmeetings.db.dao.user.UserDao;
 import org.apache.openmeetings.db.entity.user.User;
 import org.apache.openmeetings.util.OmFileHelper;
 import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.request.http.WebRequest;
+import org.apache.wicket.request.http.WebResponse;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
-import org.apache.wicket.request.resource.ByteArrayResource;
+import org.apache.wicket.request.resource.AbstractResource;
 import org.apache.wicket.request.resource.IResource;
 import org.apache.wicket.request.resource.ResourceReference;
-import org.apache.wicket.util.io.IOUtils;
+import org.apache.wicket.util.time.Duration;
+import org.apache.wicket.util.time.Time;
 import org.red5.logging.Red5LoggerFactory;
 import org.slf4j.Logger;
 
+/**
+ * Serves profile pictures. Pre-generated thumbnails are used if size is requested,
+ * small pictures are kept in memory. Since URL contains modification time of the picture,
+ * response can be cached by the browser forever.
+ */
 public class ProfileImageResourceReference extends ResourceReference {
 	private static final long serialVersionUID = 1L;
 	private static final Logger log = Red5LoggerFactory.getLogger(ProfileImageResourceReference.class, webAppRootKey);
+	private static final String PARAM_ID = "id";
+	private static final String PARAM_SIZE = "size";
+	private static final String PARAM_ANTICACHE = "anticache";
+	private static final ProfileImageCache cache = new ProfileImageCache(8 * 1024 * 1024, 64 * 1024);
 
 	public ProfileImageResourceReference() {
 		super(ProfileImageResourceReference.class, "profile");
 	}
-	
+
 	public static String getUrl(RequestCycle rc, Long userId) {
-		return getUrl(rc, getBean(UserDao.class).get(userId));
+		return getUrl(rc, userId, 0);
 	}
-	
+
+	public static String getUrl(RequestCycle rc, Long userId, int size) {
+		return getUrl(rc, getBean(UserDao.class).get(userId), size);
+	}
+
 	public static String getUrl(RequestCycle rc, User u) {
+		return getUrl(rc, u, 0);
+	}
+
+	/**
+	 * @param size - one of {@link OmFileHelper#PROFILE_SIZES}, original picture is used for any other value
+	 */
+	public static String getUrl(RequestCycle rc, User u, int size) {
 		String uri = u.getPictureuri();
 		if (!isAbsolute(uri)) {
-			File img = OmFileHelper.getUserProfilePicture(u.getId(), uri);
-			uri = rc.urlFor(new ProfileImageResourceReference()
-					, new PageParameters().add("id", u.getId()).add("anticache", img.lastModified())).toString();
+			File img = OmFileHelper.getUserProfilePicture(u.getId(), uri, size);
+			PageParameters pp = new PageParameters().add(PARAM_ID, u.getId()).add(PARAM_ANTICACHE, img.lastModified());
+			if (size > 0) {
+				pp.add(PARAM_SIZE, size);
+			}
+			uri = rc.urlFor(new ProfileImageResourceReference(), pp).toString();
 		}
 		return uri;
 	}
@@ -69,35 +97,82 @@ public class ProfileImageResourceReference extends ResourceReference {
 		}
 		return absolute;
 	}
-	
+
 	@Override
 	public IResource getResource() {
-		return new ByteArrayResource("image/jpeg") {
+		return new AbstractResource() {
 			private static final long serialVersionUID = 1L;
-			private Long userId = null;
-			private String uri = null;
 
 			@Override
 			protected ResourceResponse newResourceResponse(Attributes attributes) {
 				PageParameters params = attributes.getParameters();
-				userId = params.get("id").toOptionalLong();
-				uri = getBean(UserDao.class).get(userId).getPictureuri();
-				ResourceResponse rr = super.newResourceResponse(attributes);
-				rr.disableCaching();
-				return rr;
-			}
-			
-			@Override
-			protected byte[] getData(Attributes attributes) {
-				if (!isAbsolute(uri)) {
-					File img = OmFileHelper.getUserProfilePicture(userId, uri);
-					try (InputStream is = new FileInputStream(img)) {
-						return IOUtils.toByteArray(is);
-					} catch (Exception e) {
-						log.error("failed to get bytes from image", e);
+				final Long userId = params.get(PARAM_ID).toOptionalLong();
+				final int size = params.get(PARAM_SIZE).toInt(0);
+				final String version = params.get(PARAM_ANTICACHE).toOptionalString();
+				final String key = ProfileImageCache.getKey(userId, size, version);
+				ResourceResponse rr = new ResourceResponse();
+				rr.setContentType("image/jpeg");
+
+				ProfileImageCache.Entry e = version == null ? null : cache.get(key);
+				File img = null;
+				if (e == null) {
+					User u = userId == null ? null : getBean(UserDao.class).get(userId);
+					if (u == null || isAbsolute(u.getPictureuri())) {
+						rr.setError(HttpServletResponse.SC_NOT_FOUND);
+						return rr;
+					}
+					img = OmFileHelper.getUserProfilePicture(userId, u.getPictureuri(), size);
+				}
+				final long modified = e == null ? img.lastModified() : e.getModified();
+				final String etag = String.format("\"%s-%s-%s\"", userId, size, modified);
+				rr.setLastModified(Time.millis(modified));
+				rr.getHeaders().addHeader("ETag", etag);
+				final boolean immutable = String.valueOf(modified).equals(version);
+				if (immutable) {
+					// URL is changed together with the picture
+					rr.setCacheDuration(Duration.days(365));
+					rr.setCacheScope(WebResponse.CacheScope.PUBLIC);
+				} else {
+					rr.disableCaching();
+				}
+				if (etag.equals(((WebRequest)attributes.getRequest()).getHeader("If-None-Match"))
+						|| !rr.dataNeedsToBeWritten(attributes))
+				{
+					rr.setStatusCode(HttpServletResponse.SC_NOT_MODIFIED);
+					rr.setWriteCallback(new WriteCallback() {
+						@Override
+						public void writeData(Attributes attributes) throws IOException {
+							//no-op
+						}
+					});
+					return rr;
+				}
+
+				byte[] data = e == null ? null : e.getData();
+				// pictures too big to be cached are streamed without loading them into memory
+				if (data == null && immutable && img.length() <= cache.getMaxEntryBytes()) {
+					try {
+						data = Files.readAllBytes(img.toPath());
+						cache.put(key, new ProfileImageCache.Entry(data, modified));
+					} catch (IOException ex) {
+						log.error("failed to get bytes from image", ex);
 					}
 				}
-				return null;
+				final byte[] bytes = data;
+				final File file = img;
+				rr.setContentLength(bytes == null ? file.length() : bytes.length);
+				rr.setWriteCallback(new WriteCallback() {
+					@Override
+					public void writeData(Attributes attributes) throws IOException {
+						if (bytes != null) {
+							attributes.getResponse().write(bytes);
+						} else {
+							// streamed, whole file is not loaded into memory
+							writeStream(attributes, Files.newInputStream(file.toPath()));
+						}
+					}
+				});
+				return rr;
 			}
 		};
 	}
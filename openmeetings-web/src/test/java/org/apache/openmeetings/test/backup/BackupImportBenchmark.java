@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.test.backup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.openmeetings.backup.BackupExport;
+import org.apache.openmeetings.backup.BackupImport;
+import org.apache.openmeetings.backup.ProgressHolder;
+import org.apache.openmeetings.db.dao.basic.ChatDao;
+import org.apache.openmeetings.db.entity.basic.ChatMessage;
+import org.apache.openmeetings.db.entity.user.User;
+import org.apache.openmeetings.test.AbstractJUnitDefaults;
+import org.apache.openmeetings.util.OmFileHelper;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Measures import of the generated large backup: every entity stored in its own transaction
+ * with entity types imported one by one (the way import worked before) vs. batched, concurrent import.
+ * Not executed as part of the build, usage:
+ *
+ * mvn test -Dtest=BackupImportBenchmark [-Dom.benchmark.messages=20000]
+ */
+public class BackupImportBenchmark extends AbstractJUnitDefaults {
+	@Autowired
+	private BackupExport backupExport;
+	@Autowired
+	private BackupImport backupImport;
+	@Autowired
+	private ChatDao chatDao;
+
+	private long run(File backup, int batchSize, int threads) throws Exception {
+		int prevBatch = backupImport.getBatchSize(), prevThreads = backupImport.getThreads();
+		backupImport.setBatchSize(batchSize);
+		backupImport.setThreads(threads);
+		try (InputStream is = new FileInputStream(backup)) {
+			long start = System.nanoTime();
+			backupImport.performImport(is);
+			return (System.nanoTime() - start) / 1000000;
+		} finally {
+			backupImport.setBatchSize(prevBatch);
+			backupImport.setThreads(prevThreads);
+		}
+	}
+
+	@Test
+	public void benchmark() throws Exception {
+		int count = Integer.getInteger("om.benchmark.messages", 20000);
+		User u = createUser();
+		List<ChatMessage> list = new ArrayList<>();
+		for (int i = 0; i < count; ++i) {
+			ChatMessage m = new ChatMessage();
+			m.setFromUser(u);
+			m.setToUser(u);
+			m.setMessage("benchmark message " + i);
+			list.add(m);
+			if (list.size() == BackupImport.BATCH_SIZE) {
+				chatDao.update(list);
+				list.clear();
+			}
+		}
+		chatDao.update(list);
+		File dir = new File(OmFileHelper.getUploadBackupDir(), "benchmark_" + System.currentTimeMillis());
+		dir.mkdirs();
+		try {
+			File backup = new File(dir, "backup.zip");
+			backupExport.performExport(backup, false, new ProgressHolder());
+			System.out.println(String.format("Backup: %s chat messages, %s bytes", count, backup.length()));
+			// first run warms up caches and JIT
+			run(backup, BackupImport.BATCH_SIZE, BackupImport.IMPORT_THREADS);
+			System.out.println(String.format("Entity per transaction, sequential: %s ms", run(backup, 1, 1)));
+			System.out.println(String.format("Batched, concurrent: %s ms", run(backup, BackupImport.BATCH_SIZE, BackupImport.IMPORT_THREADS)));
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.test.backup;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.openmeetings.backup.BackupImport;
+import org.apache.openmeetings.db.dao.basic.ChatDao;
+import org.apache.openmeetings.db.entity.basic.ChatMessage;
+import org.apache.openmeetings.db.entity.user.User;
+import org.apache.openmeetings.test.AbstractJUnitDefaults;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+public class TestBackupImportBatch extends AbstractJUnitDefaults {
+	@Autowired
+	private BackupImport backupImport;
+	@Autowired
+	private ChatDao chatDao;
+
+	@Test
+	public void testBadEntityDoesNotDiscardBatch() throws Exception {
+		User u = createUser();
+		List<ChatMessage> list = new ArrayList<>();
+		for (int i = 0; i < 10; ++i) {
+			ChatMessage m = new ChatMessage();
+			m.setFromUser(u);
+			m.setToUser(u);
+			m.setMessage("message " + i);
+			list.add(m);
+		}
+		final ChatMessage bad = list.get(3);
+		int batchSize = backupImport.getBatchSize();
+		try {
+			backupImport.setBatchSize(4);
+			backupImport.store(list, m -> {
+				if (m == bad) {
+					throw new IllegalStateException("Bad entity");
+				}
+				m.setId(null);
+				chatDao.update(m);
+			});
+		} finally {
+			backupImport.setBatchSize(batchSize);
+		}
+		List<ChatMessage> stored = chatDao.getUser(u.getId(), 0, 100);
+		assertEquals("All entities except the bad one should be stored", list.size() - 1, stored.size());
+		for (ChatMessage m : stored) {
+			assertEquals("Every entity should be stored only once", 1, stored.stream().filter(m1 -> m1.getMessage().equals(m.getMessage())).count());
+		}
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.test.backup;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_CRYPT_KEY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.openmeetings.backup.BackupExport;
+import org.apache.openmeetings.backup.BackupImport;
+import org.apache.openmeetings.backup.ProgressHolder;
+import org.apache.openmeetings.db.dao.basic.ChatDao;
+import org.apache.openmeetings.db.entity.basic.ChatMessage;
+import org.apache.openmeetings.db.entity.basic.Configuration;
+import org.apache.openmeetings.db.entity.user.User;
+import org.apache.openmeetings.test.AbstractJUnitDefaults;
+import org.apache.openmeetings.util.OmFileHelper;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+public class TestBackupRoundTrip extends AbstractJUnitDefaults {
+	// more than one export page
+	private static final int MESSAGES = 2500;
+	@Autowired
+	private BackupExport backupExport;
+	@Autowired
+	private BackupImport backupImport;
+	@Autowired
+	private ChatDao chatDao;
+	private String cryptClass = null;
+	private File work;
+
+	@Override
+	public void setUp() throws Exception {
+		super.setUp();
+		// Crypt class need to be preserved here to avoid overriding by backup import
+		cryptClass = cfgDao.getCryptKey();
+		work = new File(OmFileHelper.getUploadBackupDir(), "roundtrip_" + System.currentTimeMillis());
+		work.mkdirs();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		List<Configuration> cfgs = cfgDao.get(CONFIG_CRYPT_KEY);
+		assertNotNull("Not null list should be returned", cfgs);
+		assertEquals("There should be exactly 1 item", 1, cfgs.size());
+		Configuration c = cfgs.get(0);
+		c.setValue(cryptClass);
+		cfgDao.update(c, null);
+		FileUtils.deleteDirectory(work);
+	}
+
+	private Map<String, Integer> countStored(String prefix) {
+		Map<String, Integer> result = new HashMap<>();
+		for (ChatMessage m : chatDao.getAfter(0, Integer.MAX_VALUE)) {
+			if (m.getMessage() != null && m.getMessage().startsWith(prefix)) {
+				result.merge(m.getMessage(), 1, Integer::sum);
+			}
+		}
+		return result;
+	}
+
+	private static Map<String, Integer> countExported(File zip, String prefix) throws Exception {
+		Map<String, Integer> result = new HashMap<>();
+		try (ZipFile zf = new ZipFile(zip)) {
+			ZipEntry e = zf.getEntry("chat_messages.xml");
+			assertNotNull("Chat messages should be exported", e);
+			try (InputStream is = zf.getInputStream(e)) {
+				Matcher m = Pattern.compile(Pattern.quote(prefix) + "\\d+").matcher(IOUtils.toString(is, UTF_8));
+				while (m.find()) {
+					result.merge(m.group(), 1, Integer::sum);
+				}
+			}
+		}
+		return result;
+	}
+
+	@Test
+	public void testChatRoundTrip() throws Exception {
+		String prefix = "roundtrip-" + UUID.randomUUID() + "-";
+		User u = createUser();
+		List<ChatMessage> list = new ArrayList<>();
+		for (int i = 0; i < MESSAGES; ++i) {
+			ChatMessage m = new ChatMessage();
+			m.setFromUser(u);
+			m.setMessage(prefix + i);
+			list.add(m);
+		}
+		chatDao.update(list);
+
+		File zip = new File(work, "roundtrip.zip");
+		backupExport.performExport(zip, false, new ProgressHolder());
+		Map<String, Integer> exported = countExported(zip, prefix);
+		assertEquals("Every message should be exported", MESSAGES, exported.size());
+		for (Map.Entry<String, Integer> e : exported.entrySet()) {
+			assertEquals("Message should be exported exactly once: " + e.getKey(), 1, e.getValue().intValue());
+		}
+
+		try (InputStream is = new FileInputStream(zip)) {
+			backupImport.performImport(is);
+		}
+		Map<String, Integer> stored = countStored(prefix);
+		assertEquals("Every message should be stored", MESSAGES, stored.size());
+		for (Map.Entry<String, Integer> e : stored.entrySet()) {
+			assertEquals("Message should be imported exactly once: " + e.getKey(), 2, e.getValue().intValue());
+		}
+	}
+}
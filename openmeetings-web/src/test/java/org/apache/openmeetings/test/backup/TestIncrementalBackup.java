@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.test.backup;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.openmeetings.util.OmFileHelper.BCKP_ROOM_FILES;
+import static org.apache.openmeetings.util.OmFileHelper.FILES_DIR;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.openmeetings.backup.BackupExport;
+import org.apache.openmeetings.backup.BackupManifest;
+import org.apache.openmeetings.backup.ProgressHolder;
+import org.apache.openmeetings.test.AbstractJUnitDefaults;
+import org.apache.openmeetings.util.OmFileHelper;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+public class TestIncrementalBackup extends AbstractJUnitDefaults {
+	@Autowired
+	private BackupExport backupExport;
+	private File dir;
+	private File work;
+
+	@Override
+	public void setUp() throws Exception {
+		super.setUp();
+		dir = new File(OmFileHelper.getUploadFilesDir(), "incremental_" + System.currentTimeMillis());
+		work = new File(OmFileHelper.getUploadBackupDir(), "incremental_" + System.currentTimeMillis());
+		work.mkdirs();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		FileUtils.deleteDirectory(dir);
+		FileUtils.deleteDirectory(work);
+	}
+
+	private String getPath(File f) {
+		return BCKP_ROOM_FILES + "/" + FILES_DIR + "/" + dir.getName() + "/" + f.getName();
+	}
+
+	private static boolean hasEntry(File zip, String path) throws Exception {
+		try (ZipFile zf = new ZipFile(zip)) {
+			return zf.getEntry(path) != null;
+		}
+	}
+
+	@Test
+	public void testIncremental() throws Exception {
+		File unchanged = new File(dir, "unchanged.txt");
+		File changed = new File(dir, "changed.txt");
+		File deleted = new File(dir, "deleted.txt");
+		FileUtils.writeStringToFile(unchanged, "unchanged", UTF_8);
+		FileUtils.writeStringToFile(changed, "initial", UTF_8);
+		FileUtils.writeStringToFile(deleted, "deleted", UTF_8);
+
+		File full = new File(work, "full.zip");
+		backupExport.performExport(full, true, new ProgressHolder());
+		BackupManifest fm = BackupManifest.read(full);
+		assertNotNull("Full backup should have manifest", fm);
+		assertFalse("Full backup should not be incremental", fm.isIncremental());
+		assertTrue("All files should be stored in full backup", hasEntry(full, getPath(unchanged)) && hasEntry(full, getPath(changed)));
+
+		FileUtils.writeStringToFile(changed, "content was changed", UTF_8);
+		FileUtils.forceDelete(deleted);
+		File added = new File(dir, "added.txt");
+		FileUtils.writeStringToFile(added, "added", UTF_8);
+
+		File inc = new File(work, "inc.zip");
+		backupExport.performExport(inc, true, full, new ProgressHolder());
+		BackupManifest im = BackupManifest.read(inc);
+		assertNotNull("Incremental backup should have manifest", im);
+		assertEquals("Incremental backup should reference full one", fm.getId(), im.getBaseId());
+		assertFalse("Unchanged file should not be stored", hasEntry(inc, getPath(unchanged)));
+		assertTrue("Changed file should be stored", hasEntry(inc, getPath(changed)));
+		assertTrue("Added file should be stored", hasEntry(inc, getPath(added)));
+		assertNotNull("Unchanged file should be listed in manifest", im.getFile(getPath(unchanged)));
+		assertNull("Deleted file should not be listed in manifest", im.getFile(getPath(deleted)));
+		assertTrue("Deleted file should be marked", im.getDeleted().contains(getPath(deleted)));
+		assertEquals("Hash of unchanged file should be preserved"
+				, fm.getFile(getPath(unchanged)).getHash(), im.getFile(getPath(unchanged)).getHash());
+	}
+}
@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.test.calendar;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.httpclient.HttpState;
+import org.apache.openmeetings.db.dao.calendar.AppointmentDao;
+import org.apache.openmeetings.db.dao.calendar.OmCalendarDao;
+import org.apache.openmeetings.db.dao.user.UserDao;
+import org.apache.openmeetings.db.entity.calendar.Appointment;
+import org.apache.openmeetings.db.entity.calendar.OmCalendar;
+import org.apache.openmeetings.service.calendar.caldav.CalendarSyncService;
+import org.apache.openmeetings.test.AbstractJUnitDefaults;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class TestCalendarSyncService extends AbstractJUnitDefaults {
+	private static final String PATH = "/cal/";
+	private static final String EVENT = PATH + "event.ics";
+	@Autowired
+	private CalendarSyncService syncService;
+	@Autowired
+	private OmCalendarDao calendarDao;
+	@Autowired
+	private AppointmentDao appointmentDao;
+	@Autowired
+	private UserDao userDao;
+	private HttpServer server;
+	private final AtomicInteger reports = new AtomicInteger();
+	private volatile String tag = "tag1";
+	private volatile String title = "Synced event";
+	private volatile boolean fail = false;
+
+	@Override
+	public void setUp() throws Exception {
+		super.setUp();
+		// minimal CalDAV stand-in: single calendar with single event
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext(PATH, this::handle);
+		server.start();
+	}
+
+	@After
+	public void tearDown() {
+		server.stop(0);
+	}
+
+	private void handle(HttpExchange ex) throws IOException {
+		try (InputStream is = ex.getRequestBody()) {
+			while (is.read() > -1) {
+				// request body is not needed
+			}
+		}
+		String body;
+		if ("PROPFIND".equals(ex.getRequestMethod())) {
+			body = response(PATH, String.format("<d:getetag>\"%s\"</d:getetag>", tag));
+		} else if ("REPORT".equals(ex.getRequestMethod())) {
+			reports.incrementAndGet();
+			if (fail) {
+				ex.sendResponseHeaders(500, -1);
+				ex.close();
+				return;
+			}
+			body = response(EVENT, String.format("<d:getetag>\"%s\"</d:getetag><c:calendar-data>%s</c:calendar-data>", tag, getIcal()));
+		} else {
+			ex.sendResponseHeaders(200, -1);
+			ex.close();
+			return;
+		}
+		byte[] b = body.getBytes(UTF_8);
+		ex.getResponseHeaders().add("Content-Type", "application/xml; charset=utf-8");
+		ex.sendResponseHeaders(207, b.length);
+		try (OutputStream os = ex.getResponseBody()) {
+			os.write(b);
+		}
+	}
+
+	private static String response(String href, String props) {
+		return "<?xml version=\"1.0\" encoding=\"utf-8\"?>"
+				+ "<d:multistatus xmlns:d=\"DAV:\" xmlns:c=\"urn:ietf:params:xml:ns:caldav\">"
+				+ "<d:response><d:href>" + href + "</d:href>"
+				+ "<d:propstat><d:prop>" + props + "</d:prop><d:status>HTTP/1.1 200 OK</d:status></d:propstat>"
+				+ "</d:response></d:multistatus>";
+	}
+
+	private String getIcal() {
+		return String.join("\r\n"
+				, "BEGIN:VCALENDAR"
+				, "VERSION:2.0"
+				, "PRODID:-//Apache//OpenMeetings Test//EN"
+				, "BEGIN:VEVENT"
+				, "UID:sync-test-event"
+				, "DTSTAMP:20170101T090000Z"
+				, "DTSTART:20170101T100000Z"
+				, "DTEND:20170101T110000Z"
+				, "SUMMARY:" + title
+				, "END:VEVENT"
+				, "END:VCALENDAR"
+				, "");
+	}
+
+	private List<Appointment> sync(OmCalendar c) throws Exception {
+		syncService.sync(c, new HttpState()).get(30, TimeUnit.SECONDS);
+		return appointmentDao.getbyCalendar(c.getId());
+	}
+
+	private OmCalendar createCalendar() {
+		OmCalendar c = new OmCalendar();
+		c.setOwner(userDao.get(1L));
+		c.setTitle("Sync test");
+		c.setHref(String.format("http://localhost:%s%s", server.getAddress().getPort(), PATH));
+		c.setSyncType(OmCalendar.SyncType.ETAG);
+		return calendarDao.update(c);
+	}
+
+	@Test
+	public void testSync() throws Exception {
+		OmCalendar c = createCalendar();
+
+		List<Appointment> list = sync(c);
+		assertEquals("Event should be fetched", 1, list.size());
+		assertEquals("Event should be parsed", title, list.get(0).getTitle());
+		assertEquals("Events should be fetched with single report", 1, reports.get());
+
+		sync(c);
+		assertEquals("Unchanged calendar should be skipped", 1, reports.get());
+
+		tag = "tag2";
+		title = "Updated event";
+		list = sync(c);
+		assertEquals("Changed calendar should be synced", 3, reports.get());
+		assertEquals("Event should be updated", title, list.get(0).getTitle());
+	}
+
+	@Test
+	public void testFailedSyncIsRetried() throws Exception {
+		OmCalendar c = createCalendar();
+
+		fail = true;
+		List<Appointment> list = sync(c);
+		assertEquals("Event should not be fetched", 0, list.size());
+		assertEquals("Report should be requested", 1, reports.get());
+
+		fail = false;
+		list = sync(c);
+		assertEquals("Failed sync should be retried even if calendar is not changed", 2, reports.get());
+		assertEquals("Event should be fetched", 1, list.size());
+
+		sync(c);
+		assertEquals("Calendar synced successfully should be skipped", 2, reports.get());
+		syncService.deleteCalendar(c);
+	}
+}
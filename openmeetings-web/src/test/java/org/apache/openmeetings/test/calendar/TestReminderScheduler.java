@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.test.calendar;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+
+import org.apache.openmeetings.db.dao.calendar.AppointmentDao;
+import org.apache.openmeetings.db.entity.calendar.Appointment;
+import org.apache.openmeetings.db.entity.calendar.Appointment.Reminder;
+import org.apache.openmeetings.service.calendar.ReminderScheduler;
+import org.apache.openmeetings.test.AbstractJUnitDefaults;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+public class TestReminderScheduler extends AbstractJUnitDefaults {
+	@Autowired
+	private ReminderScheduler scheduler;
+	@Autowired
+	private AppointmentDao appointmentDao;
+
+	private boolean waitForReminder(Long id) throws Exception {
+		for (int i = 0; i < 100; ++i) {
+			if (appointmentDao.get(id).isReminderEmailSend()) {
+				return true;
+			}
+			Thread.sleep(100);
+		}
+		return false;
+	}
+
+	@Test
+	public void testRemind() throws Exception {
+		scheduler.process();
+		Date start = new Date(System.currentTimeMillis() + 60 * 1000);
+		Appointment a = getAppointment(start, new Date(start.getTime() + ONE_HOUR));
+		a.setReminder(Reminder.email);
+		a = createAppointment(a);
+
+		scheduler.process();
+		assertTrue("Reminder should be sent", waitForReminder(a.getId()));
+		assertFalse("Reminder should be sent only once", appointmentDao.markReminderSent(a.getId()));
+	}
+
+	@Test
+	public void testFarAppointment() throws Exception {
+		scheduler.process();
+		Date start = new Date(System.currentTimeMillis() + 2 * 24 * ONE_HOUR);
+		Appointment a = getAppointment(start, new Date(start.getTime() + ONE_HOUR));
+		a.setReminder(Reminder.email);
+		a = createAppointment(a);
+
+		scheduler.process();
+		Thread.sleep(1000);
+		assertFalse("Reminder should not be sent in advance", appointmentDao.get(a.getId()).isReminderEmailSend());
+	}
+}
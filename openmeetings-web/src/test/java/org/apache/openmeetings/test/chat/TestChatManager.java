@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.test.chat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+import java.util.List;
+
+import org.apache.openmeetings.core.data.chat.ChatManager;
+import org.apache.openmeetings.db.dao.basic.ChatDao;
+import org.apache.openmeetings.db.dao.room.RoomDao;
+import org.apache.openmeetings.db.dao.user.UserDao;
+import org.apache.openmeetings.db.entity.basic.ChatMessage;
+import org.apache.openmeetings.db.entity.room.Room;
+import org.apache.openmeetings.test.AbstractJUnitDefaults;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+public class TestChatManager extends AbstractJUnitDefaults {
+	@Autowired
+	private ChatManager chatManager;
+	@Autowired
+	private ChatDao chatDao;
+	@Autowired
+	private RoomDao roomDao;
+	@Autowired
+	private UserDao userDao;
+
+	private ChatMessage getMessage(Room r, boolean moderated) {
+		ChatMessage m = new ChatMessage();
+		m.setMessage("test message " + System.nanoTime());
+		m.setFromUser(userDao.get(1L));
+		m.setToRoom(r);
+		m.setNeedModeration(moderated);
+		return m;
+	}
+
+	private static boolean contains(List<ChatMessage> list, ChatMessage m) {
+		for (ChatMessage c : list) {
+			if (c.getMessage().equals(m.getMessage())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Test
+	public void testWriteBehind() {
+		Room r = roomDao.get(1L);
+		ChatMessage m = chatManager.add(getMessage(r, false));
+		assertTrue("Message should be available immediately", contains(chatManager.getRoom(r.getId(), ChatManager.HISTORY_SIZE, false), m));
+		chatManager.flush();
+		assertEquals("All messages should be stored", 0, chatManager.getPendingCount());
+		assertTrue("Message should get real id", m.getId() > 0);
+		assertEquals("Message should be stored", m.getMessage(), chatDao.get(m.getId()).getMessage());
+		assertEquals("Newest message should be first", m.getMessage(), chatManager.getRoom(r.getId(), 1, true).get(0).getMessage());
+	}
+
+	@Test
+	public void testModeration() {
+		Room r = roomDao.get(1L);
+		ChatMessage m = chatManager.add(getMessage(r, true));
+		assertTrue("Moderated message should be stored immediately", m.getId() > 0);
+		assertFalse("Moderated message should be hidden", contains(chatManager.getRoom(r.getId(), ChatManager.HISTORY_SIZE, false), m));
+		assertTrue("Moderated message should be visible to moderators", contains(chatManager.getRoom(r.getId(), ChatManager.HISTORY_SIZE, true), m));
+
+		chatManager.accept(chatManager.get(r.getId(), m.getId()));
+		assertTrue("Accepted message should be visible", contains(chatManager.getRoom(r.getId(), ChatManager.HISTORY_SIZE, false), m));
+		assertFalse("Accepted state should be stored", chatDao.get(m.getId()).isNeedModeration());
+	}
+
+	@Test
+	public void testEvict() {
+		Room r = roomDao.get(1L);
+		ChatMessage m = chatManager.add(getMessage(r, false));
+		chatManager.evict(r.getId());
+		assertTrue("Pending message should be reloaded after evict", contains(chatManager.getRoom(r.getId(), ChatManager.HISTORY_SIZE, false), m));
+		assertEquals("Pending messages should be stored before reload", 0, chatManager.getPendingCount());
+	}
+
+	@Test
+	public void testUserHistoryBounded() {
+		for (long i = 1; i <= 1100; ++i) {
+			chatManager.getUserRecent(-i, new Date(0), 1);
+		}
+		assertTrue("Number of user histories should be bounded", chatManager.getUserHistoryCount() <= 1000);
+	}
+
+	@Test
+	public void testDelete() {
+		Room r = roomDao.get(1L);
+		chatManager.add(getMessage(r, false));
+		chatManager.deleteRoom(r.getId());
+		assertEquals("Pending messages should be stored before clean", 0, chatManager.getPendingCount());
+		assertTrue("History should be cleaned", chatManager.getRoom(r.getId(), ChatManager.HISTORY_SIZE, true).isEmpty());
+	}
+}
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.test.ldap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.openmeetings.core.ldap.LdapPool;
+
+/**
+ * Compares LDAP logins through the pool with logins connecting to the server every time.
+ * Not executed as part of the build, usage:
+ *
+ * LdapPoolBenchmark [threads] [logins]
+ */
+public class LdapPoolBenchmark {
+	private static double loginsPerSecond(LdapPool pool, int threads, int count) throws Exception {
+		ExecutorService exec = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			long start = System.nanoTime();
+			for (int i = 0; i < count; ++i) {
+				futures.add(exec.submit(() -> {
+					LdapServerStub.login(pool);
+					return null;
+				}));
+			}
+			for (Future<?> f : futures) {
+				f.get(1, TimeUnit.MINUTES);
+			}
+			return count * 1e9 / (System.nanoTime() - start);
+		} finally {
+			exec.shutdownNow();
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+		int count = args.length > 1 ? Integer.parseInt(args[1]) : 400;
+
+		LdapServerStub s = new LdapServerStub();
+		LdapPool pool = new LdapPool("benchmark", s, threads, 10000, 60000);
+		double pooled = loginsPerSecond(pool, threads, count);
+		pool.destroy();
+
+		LdapServerStub s1 = new LdapServerStub();
+		// pool without idle time, every login connects to the server
+		LdapPool unpooled = new LdapPool("benchmark", s1, threads, 10000, 0);
+		double plain = loginsPerSecond(unpooled, threads, count);
+		unpooled.destroy();
+
+		System.out.println(String.format("LDAP logins per second: pooled %.1f (%s connections), unpooled %.1f (%s connections)"
+				, pooled, s.getCreated(), plain, s1.getCreated()));
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.test.ldap;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.ldap.client.api.LdapConnection;
+import org.apache.openmeetings.core.ldap.LdapPool;
+
+/**
+ * In-memory stand-in of the directory server: establishing connection is expensive, bind is cheap
+ */
+class LdapServerStub implements LdapPool.Factory {
+	private static final long CONNECT_TIME = 20;
+	private static final long BIND_TIME = 1;
+	private final AtomicInteger created = new AtomicInteger();
+	private final AtomicInteger binds = new AtomicInteger();
+	private final List<AtomicBoolean> connections = new ArrayList<>();
+
+	@Override
+	public LdapConnection create() throws LdapException {
+		created.incrementAndGet();
+		sleep(CONNECT_TIME);
+		AtomicBoolean connected = new AtomicBoolean(true);
+		synchronized (connections) {
+			connections.add(connected);
+		}
+		return (LdapConnection)Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {LdapConnection.class}, (proxy, m, args) -> {
+			switch (m.getName()) {
+				case "isConnected":
+				case "isAuthenticated":
+					return connected.get();
+				case "close":
+					connected.set(false);
+					return null;
+				case "bind":
+					binds.incrementAndGet();
+					sleep(BIND_TIME);
+					return null;
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "equals":
+					return proxy == args[0];
+				default:
+					throw new UnsupportedOperationException(m.getName());
+			}
+		});
+	}
+
+	@Override
+	public boolean validate(LdapConnection conn) {
+		return conn.isAuthenticated();
+	}
+
+	void dropAll() {
+		synchronized (connections) {
+			for (AtomicBoolean c : connections) {
+				c.set(false);
+			}
+		}
+	}
+
+	int getCreated() {
+		return created.get();
+	}
+
+	int getBinds() {
+		return binds.get();
+	}
+
+	static void login(LdapPool pool) throws Exception {
+		LdapConnection conn = pool.borrow();
+		try {
+			conn.bind(new Dn(), "secret");
+		} finally {
+			pool.release(conn, true);
+		}
+	}
+
+	static void sleep(long ms) {
+		try {
+			Thread.sleep(ms);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
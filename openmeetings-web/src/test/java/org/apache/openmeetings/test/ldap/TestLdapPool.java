@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.test.ldap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.ldap.client.api.LdapConnection;
+import org.apache.openmeetings.core.ldap.LdapPool;
+import org.apache.openmeetings.core.ldap.LdapUserCache;
+import org.junit.Test;
+
+public class TestLdapPool {
+	@Test
+	public void testReuse() throws Exception {
+		LdapServerStub s = new LdapServerStub();
+		LdapPool pool = new LdapPool("test", s, 4, 1000, 60000);
+		for (int i = 0; i < 10; ++i) {
+			LdapServerStub.login(pool);
+		}
+		assertEquals("Connection should be reused", 1, s.getCreated());
+		assertEquals("Connection should be returned", 1, pool.getIdle());
+		assertEquals("Nothing should be borrowed", 0, pool.getActive());
+		pool.destroy();
+	}
+
+	@Test
+	public void testSizeLimit() throws Exception {
+		LdapPool pool = new LdapPool("test", new LdapServerStub(), 2, 100, 60000);
+		LdapConnection c1 = pool.borrow();
+		pool.borrow();
+		try {
+			pool.borrow();
+			fail("Pool size should be limited");
+		} catch (LdapException e) {
+			// expected
+		}
+		pool.release(c1, true);
+		assertNotNull("Returned connection should be available", pool.borrow());
+		pool.destroy();
+	}
+
+	@Test
+	public void testBrokenReplaced() throws Exception {
+		LdapServerStub s = new LdapServerStub();
+		LdapPool pool = new LdapPool("test", s, 2, 1000, 60000);
+		LdapServerStub.login(pool);
+		s.dropAll();
+		LdapConnection conn = pool.borrow();
+		assertTrue("Fresh connection should be returned", conn.isConnected());
+		assertEquals("Dropped connection should be replaced", 2, s.getCreated());
+		pool.release(conn, false);
+		assertEquals("Broken connection should not be kept", 0, pool.getIdle());
+		pool.destroy();
+	}
+
+	@Test
+	public void testConcurrentLogins() throws Exception {
+		final int threads = 8, count = 400;
+		LdapServerStub s = new LdapServerStub();
+		LdapPool pool = new LdapPool("test", s, threads, 10000, 60000);
+		ExecutorService exec = Executors.newFixedThreadPool(2 * threads);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < count; ++i) {
+				futures.add(exec.submit(() -> {
+					LdapServerStub.login(pool);
+					return null;
+				}));
+			}
+			for (Future<?> f : futures) {
+				f.get(1, TimeUnit.MINUTES);
+			}
+		} finally {
+			exec.shutdownNow();
+			pool.destroy();
+		}
+		assertTrue("Number of connections should not exceed pool size", s.getCreated() <= threads);
+		assertEquals("Every login should bind", count, s.getBinds());
+	}
+
+	@Test
+	public void testUserCache() throws Exception {
+		LdapUserCache cache = new LdapUserCache(100, 2);
+		Dn dn = new Dn();
+		cache.put(1L, "user1", dn, null);
+		assertEquals("User should be cached", dn, cache.get(1L, "user1").getDn());
+		assertNull("Users of other domains should be separated", cache.get(2L, "user1"));
+		cache.put(1L, "user2", dn, null);
+		cache.put(2L, "user1", dn, null);
+		assertEquals("Cache size should be limited", 2, cache.size());
+		cache.clear(2L);
+		assertNull("Domain should be cleared", cache.get(2L, "user1"));
+		LdapServerStub.sleep(150);
+		assertNull("Expired user should be removed", cache.get(1L, "user2"));
+	}
+}
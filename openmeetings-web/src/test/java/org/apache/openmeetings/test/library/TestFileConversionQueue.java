@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.test.library;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.Date;
+
+import javax.imageio.ImageIO;
+
+import org.apache.openmeetings.core.data.file.FileConversionQueue;
+import org.apache.openmeetings.core.data.file.FileProcessor;
+import org.apache.openmeetings.db.dao.file.FileExplorerItemDao;
+import org.apache.openmeetings.db.entity.file.FileExplorerItem;
+import org.apache.openmeetings.db.entity.file.FileExplorerItem.ConversionStatus;
+import org.apache.openmeetings.db.entity.file.FileItem.Type;
+import org.apache.openmeetings.test.AbstractJUnitDefaults;
+import org.apache.openmeetings.util.OmFileHelper;
+import org.apache.openmeetings.util.process.ConverterProcessResultList;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class TestFileConversionQueue extends AbstractJUnitDefaults {
+	@Autowired
+	private FileProcessor processor;
+	@Autowired
+	private FileExplorerItemDao fileDao;
+	@Autowired
+	private FileConversionQueue queue;
+	@Autowired
+	private PlatformTransactionManager txManager;
+
+	private static byte[] getImage() throws Exception {
+		BufferedImage img = new BufferedImage(16, 16, BufferedImage.TYPE_INT_RGB);
+		// content should be unique for each call
+		img.setRGB(0, 0, (int)System.nanoTime());
+		img.setRGB(1, 1, (int)(System.nanoTime() >> 24));
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ImageIO.write(img, "png", baos);
+		return baos.toByteArray();
+	}
+
+	private static FileExplorerItem getItem() {
+		FileExplorerItem f = new FileExplorerItem();
+		f.setName("conversion_" + System.currentTimeMillis() + ".png");
+		f.setOwnerId(1L);
+		f.setInsertedBy(1L);
+		return f;
+	}
+
+	private ConversionStatus waitForConversion(Long id) throws Exception {
+		ConversionStatus status = null;
+		for (int i = 0; i < 600; ++i) {
+			status = fileDao.get(id).getConversionStatus();
+			if (ConversionStatus.DONE == status || ConversionStatus.FAILED == status) {
+				break;
+			}
+			Thread.sleep(100);
+		}
+		return status;
+	}
+
+	@Test
+	public void testAsyncConversion() throws Exception {
+		FileExplorerItem f = getItem();
+		ConverterProcessResultList result = processor.processFile(f, new ByteArrayInputStream(getImage()));
+		assertFalse("Upload should be stored without errors", result.hasError());
+		assertNotNull("Item should be stored", result.getFileItemId());
+		assertEquals("Image should be detected", Type.Image, f.getType());
+		assertNotNull("Conversion should be scheduled", f.getConversionStatus());
+
+		ConversionStatus status = waitForConversion(result.getFileItemId());
+		// result depends on availability of ImageMagick, conversion should be complete anyway
+		assertTrue("Conversion should be complete", ConversionStatus.DONE == status || ConversionStatus.FAILED == status);
+	}
+
+	@Test
+	public void testSameContentShared() throws Exception {
+		byte[] img = getImage();
+		FileExplorerItem f1 = getItem();
+		processor.processFile(f1, new ByteArrayInputStream(img));
+		waitForConversion(f1.getId());
+		FileExplorerItem f2 = getItem();
+		processor.processFile(f2, new ByteArrayInputStream(img));
+		waitForConversion(f2.getId());
+		assertEquals("Same content should have same hash", f1.getHash(), f2.getHash());
+		assertEquals("Hash should be SHA-256", 64, f1.getHash().length());
+
+		File dir = new File(OmFileHelper.getUploadFilesDir(), f1.getHash());
+		assertTrue("Content should be stored", dir.exists());
+		fileDao.delete(fileDao.get(f1.getId()));
+		assertTrue("Content should be kept while referenced", dir.exists());
+		fileDao.delete(fileDao.get(f2.getId()));
+		assertFalse("Content should be removed when not referenced", dir.exists());
+	}
+
+	@Test
+	public void testContentKeptOnRollback() throws Exception {
+		FileExplorerItem f = getItem();
+		processor.processFile(f, new ByteArrayInputStream(getImage()));
+		waitForConversion(f.getId());
+		File dir = new File(OmFileHelper.getUploadFilesDir(), f.getHash());
+		assertTrue("Content should be stored", dir.exists());
+
+		final Long id = f.getId();
+		new TransactionTemplate(txManager).execute(status -> {
+			fileDao.delete(fileDao.get(id));
+			assertTrue("Content should be kept until deletion is committed", dir.exists());
+			status.setRollbackOnly();
+			return null;
+		});
+		assertTrue("Content should be kept if deletion is rolled back", dir.exists());
+		fileDao.delete(fileDao.get(id));
+		assertFalse("Content should be removed after deletion is committed", dir.exists());
+	}
+
+	@Test
+	public void testSameContentConcurrent() throws Exception {
+		byte[] img = getImage();
+		FileExplorerItem[] items = new FileExplorerItem[4];
+		for (int i = 0; i < items.length; ++i) {
+			items[i] = getItem();
+			processor.processFile(items[i], new ByteArrayInputStream(img));
+		}
+		ConversionStatus first = waitForConversion(items[0].getId());
+		for (FileExplorerItem f : items) {
+			// jobs waiting for the same content should be re-scheduled, not lost
+			assertEquals("All items of the same content should be complete with same result", first, waitForConversion(f.getId()));
+		}
+		for (FileExplorerItem f : items) {
+			fileDao.delete(fileDao.get(f.getId()));
+		}
+	}
+
+	@Test
+	public void testWrongType() throws Exception {
+		FileExplorerItem f = new FileExplorerItem();
+		f.setName("conversion_" + System.currentTimeMillis() + ".unknown_ext");
+		ConverterProcessResultList result = processor.processFile(f, new ByteArrayInputStream(new byte[] {1, 2, 3}));
+		assertTrue("Unknown file type should be rejected", result.hasError());
+		assertEquals("Nothing should be scheduled", null, f.getConversionStatus());
+	}
+
+	@Test
+	public void testResumeOwnOnly() throws Exception {
+		FileExplorerItem f = getItem();
+		f.setType(Type.Image);
+		f.setHash("resume_" + System.nanoTime());
+		f.setConversionStatus(ConversionStatus.QUEUED);
+		f.setConversionServer("other_" + System.nanoTime());
+		f = fileDao.update(f);
+		queue.resume();
+		Thread.sleep(1000);
+		assertEquals("Conversion of other node should not be resumed", ConversionStatus.QUEUED, fileDao.get(f.getId()).getConversionStatus());
+
+		long now = System.currentTimeMillis();
+		assertTrue("Fresh conversion of other node should be skipped", !FileConversionQueue.isResumable(f, null, now));
+		assertTrue("Abandoned conversion of other node should be resumed"
+				, FileConversionQueue.isResumable(f, null, now + FileConversionQueue.STALE_TIMEOUT + 1));
+		f.setUpdated(new Date(now));
+		f.setConversionServer(null);
+		assertTrue("Own conversion should be resumed", FileConversionQueue.isResumable(f, null, now));
+		fileDao.delete(fileDao.get(f.getId()));
+	}
+}
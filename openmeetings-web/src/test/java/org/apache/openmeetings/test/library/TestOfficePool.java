@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.test.library;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.openmeetings.core.converter.OfficePool;
+import org.junit.Test;
+
+public class TestOfficePool {
+	private static final File IN = new File("in.doc");
+	private static final File OUT = new File("out.pdf");
+
+	/**
+	 * Stand-in for office process, conversion takes given time
+	 */
+	private static class FakeOffice implements OfficePool.Worker {
+		private final AtomicInteger starts;
+		private final long delay;
+		private boolean running;
+
+		FakeOffice(AtomicInteger starts, long delay) {
+			this.starts = starts;
+			this.delay = delay;
+		}
+
+		@Override
+		public void start() throws Exception {
+			starts.incrementAndGet();
+			running = true;
+		}
+
+		@Override
+		public void convert(File in, File out) throws Exception {
+			Thread.sleep(delay);
+		}
+
+		@Override
+		public boolean isRunning() {
+			return running;
+		}
+
+		@Override
+		public void stop() {
+			running = false;
+		}
+	}
+
+	private static long convertAll(OfficePool pool, int count) throws Exception {
+		ExecutorService exec = Executors.newFixedThreadPool(count);
+		try {
+			long start = System.currentTimeMillis();
+			List<Future<?>> list = new ArrayList<>();
+			for (int i = 0; i < count; ++i) {
+				list.add(exec.submit(() -> {
+					pool.convert(IN, OUT);
+					return null;
+				}));
+			}
+			for (Future<?> f : list) {
+				f.get();
+			}
+			return System.currentTimeMillis() - start;
+		} finally {
+			exec.shutdown();
+		}
+	}
+
+	@Test
+	public void testThroughput() throws Exception {
+		AtomicInteger starts = new AtomicInteger();
+		OfficePool single = new OfficePool(idx -> new FakeOffice(starts, 200), 1, 10, 10000, 100);
+		OfficePool multi = new OfficePool(idx -> new FakeOffice(starts, 200), 4, 10, 10000, 100);
+		try {
+			long t1 = convertAll(single, 8);
+			long t4 = convertAll(multi, 8);
+			assertEquals("Workers should be started once", 5, starts.get());
+			assertTrue(String.format("Throughput should scale with pool size: %s ms vs %s ms", t1, t4), 2 * t4 < t1);
+		} finally {
+			single.destroy();
+			multi.destroy();
+		}
+	}
+
+	@Test
+	public void testRecycle() throws Exception {
+		AtomicInteger starts = new AtomicInteger();
+		OfficePool pool = new OfficePool(idx -> new FakeOffice(starts, 0), 1, 0, 1000, 2);
+		try {
+			for (int i = 0; i < 5; ++i) {
+				pool.convert(IN, OUT);
+			}
+			assertEquals("Worker should be restarted after given number of tasks", 3, starts.get());
+		} finally {
+			pool.destroy();
+		}
+	}
+
+	@Test
+	public void testWedged() throws Exception {
+		AtomicInteger starts = new AtomicInteger();
+		AtomicInteger count = new AtomicInteger();
+		OfficePool pool = new OfficePool(idx -> new FakeOffice(starts, count.getAndIncrement() == 0 ? 5000 : 0), 1, 0, 300, 100);
+		try {
+			try {
+				pool.convert(IN, OUT);
+				fail("Conversion should time out");
+			} catch (TimeoutException e) {
+				// expected
+			}
+			pool.convert(IN, OUT);
+			assertEquals("Wedged worker should be restarted", 2, starts.get());
+		} finally {
+			pool.destroy();
+		}
+	}
+
+	@Test
+	public void testNoOffice() throws Exception {
+		OfficePool pool = new OfficePool(idx -> new FakeOffice(new AtomicInteger(), 0) {
+			@Override
+			public void start() throws Exception {
+				throw new IllegalStateException("office not found");
+			}
+		}, 1, 0, 1000, 100);
+		try {
+			for (int i = 0; i < 2; ++i) {
+				try {
+					pool.convert(IN, OUT);
+					fail("Conversion should fail");
+				} catch (IllegalStateException e) {
+					// expected, worker should be available for the next attempt
+				}
+			}
+		} finally {
+			pool.destroy();
+		}
+	}
+
+	@Test(expected = RejectedExecutionException.class)
+	public void testQueueBound() throws Throwable {
+		OfficePool pool = new OfficePool(idx -> new FakeOffice(new AtomicInteger(), 500), 1, 1, 10000, 100);
+		try {
+			convertAll(pool, 3);
+		} catch (ExecutionException e) {
+			throw e.getCause();
+		} finally {
+			pool.destroy();
+		}
+	}
+}
@@ -0,0 +1,240 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.test.library;
+
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_STORAGE_QUOTA_USER;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.openmeetings.core.data.file.FileProcessor;
+import org.apache.openmeetings.core.data.file.StorageAccounting;
+import org.apache.openmeetings.db.dao.file.FileExplorerItemDao;
+import org.apache.openmeetings.db.dao.file.StorageUsageDao;
+import org.apache.openmeetings.db.entity.basic.Configuration;
+import org.apache.openmeetings.db.entity.file.FileExplorerItem;
+import org.apache.openmeetings.db.entity.file.FileExplorerItem.ConversionStatus;
+import org.apache.openmeetings.db.entity.file.FileItem.Type;
+import org.apache.openmeetings.db.entity.file.StorageUsage;
+import org.apache.openmeetings.test.AbstractJUnitDefaults;
+import org.apache.openmeetings.util.InitializationContainer;
+import org.apache.openmeetings.util.process.ConverterProcessResultList;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class TestStorageAccounting extends AbstractJUnitDefaults {
+	private static final Random rnd = new Random();
+	private static final int THREADS = 8;
+	@Autowired
+	private FileProcessor processor;
+	@Autowired
+	private FileExplorerItemDao fileDao;
+	@Autowired
+	private StorageUsageDao usageDao;
+	@Autowired
+	private StorageAccounting storage;
+	@Autowired
+	private PlatformTransactionManager txManager;
+
+	private static long getId() {
+		// unique scope for every test, so usage of other tests does not interfere
+		return 1000000L + rnd.nextInt(1000000);
+	}
+
+	private FileExplorerItem upload(Long ownerId, int size) throws Exception {
+		FileExplorerItem f = new FileExplorerItem();
+		f.setName("storage_" + System.nanoTime() + ".txt");
+		f.setOwnerId(ownerId);
+		f.setInsertedBy(1L);
+		byte[] content = new byte[size];
+		rnd.nextBytes(content);
+		ConverterProcessResultList result = processor.processFile(f, new ByteArrayInputStream(content));
+		assertFalse("Upload should be stored without errors", result.hasError());
+		// conversion result depends on availability of office, item should not be modified while it is running
+		for (int i = 0; i < 600; ++i) {
+			f = fileDao.get(result.getFileItemId());
+			if (ConversionStatus.DONE == f.getConversionStatus() || ConversionStatus.FAILED == f.getConversionStatus()) {
+				break;
+			}
+			Thread.sleep(100);
+		}
+		return f;
+	}
+
+	private FileExplorerItem addFolder(Long ownerId, Long roomId) {
+		FileExplorerItem f = new FileExplorerItem();
+		f.setName("folder_" + System.nanoTime());
+		f.setType(Type.Folder);
+		f.setOwnerId(ownerId);
+		f.setRoomId(roomId);
+		return fileDao.update(f);
+	}
+
+	@Test
+	public void testIncremental() throws Exception {
+		long userId = getId(), roomId = getId();
+		FileExplorerItem f = upload(userId, 1024);
+		assertNotNull("Size should be recorded", f.getStorageSize());
+		assertTrue("Size should include the content", f.getStorageSize() >= 1024);
+		assertEquals("Usage of the owner should be updated", (long)f.getStorageSize(), fileDao.getOwnSize(userId));
+
+		FileExplorerItem folder = addFolder(null, roomId);
+		fileDao.move(f.getId(), folder.getId(), userId, roomId);
+		assertEquals("Usage of the owner should be decreased on move", 0, fileDao.getOwnSize(userId));
+		assertEquals("Usage of the room should be increased on move", (long)f.getStorageSize(), fileDao.getRoomSize(roomId));
+
+		fileDao.delete(fileDao.get(folder.getId()));
+		assertEquals("Items of deleted folder should not be accounted", 0, fileDao.getRoomSize(roomId));
+	}
+
+	@Test
+	public void testReconcile() throws Exception {
+		InitializationContainer.initComplete = true;
+		long userId = getId();
+		FileExplorerItem f = upload(userId, 2048);
+		// counter drifted to 1 byte
+		usageDao.add(StorageUsage.Type.USER, userId, 1 - fileDao.getOwnSize(userId));
+		fileDao.setStorageSize(f.getId(), 1);
+		storage.reconcile();
+		FileExplorerItem f1 = fileDao.get(f.getId());
+		assertEquals("Size should be fixed", f.getStorageSize(), f1.getStorageSize());
+		assertEquals("Usage should be fixed", (long)f.getStorageSize(), fileDao.getOwnSize(userId));
+	}
+
+	@Test
+	public void testConcurrentCreate() throws Exception {
+		long groupId = getId();
+		ExecutorService exec = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			CountDownLatch start = new CountDownLatch(1);
+			for (int i = 0; i < THREADS; ++i) {
+				futures.add(exec.submit(() -> {
+					start.await();
+					usageDao.add(StorageUsage.Type.GROUP, groupId, 1);
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> f : futures) {
+				f.get(1, TimeUnit.MINUTES);
+			}
+		} finally {
+			exec.shutdownNow();
+		}
+		assertEquals("Every update should be counted", THREADS, fileDao.getGroupSize(groupId));
+		assertTrue("Counter should be fixed", usageDao.reconcile(StorageUsage.Type.GROUP, groupId));
+		assertEquals("Group without items should use nothing", 0, fileDao.getGroupSize(groupId));
+	}
+
+	/**
+	 * Counters are created by the concurrent transactions, each adding to both new and shared counter.
+	 * Is meaningful for the database locking index gaps, i.e. MySQL with REPEATABLE READ (-Pmysql -Dtest.db=mysql),
+	 * creation of the counter used to wait for the gap lock held by the caller's transaction
+	 */
+	@Test
+	public void testCreateInTransaction() throws Exception {
+		long groupId = getId();
+		ExecutorService exec = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			CountDownLatch started = new CountDownLatch(THREADS);
+			for (int i = 0; i < THREADS; ++i) {
+				final long roomId = groupId + i + 1;
+				futures.add(exec.submit(() -> new TransactionTemplate(txManager).execute(status -> {
+					usageDao.add(StorageUsage.Type.ROOM, roomId, 1);
+					usageDao.add(StorageUsage.Type.GROUP, groupId, 1);
+					started.countDown();
+					try {
+						// all the transactions are kept open, so their locks are held simultaneously
+						started.await(10, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					return null;
+				})));
+			}
+			for (Future<?> f : futures) {
+				f.get(1, TimeUnit.MINUTES);
+			}
+		} finally {
+			exec.shutdownNow();
+		}
+		assertEquals("Every update should be counted", THREADS, fileDao.getGroupSize(groupId));
+		for (int i = 0; i < THREADS; ++i) {
+			assertEquals("Every counter should be created", 1, fileDao.getRoomSize(groupId + i + 1));
+		}
+	}
+
+	@Test
+	public void testDetachedUpdate() throws Exception {
+		long userId = getId(), roomId = getId();
+		FileExplorerItem f = upload(userId, 1024);
+		// the same item is shown on two pages
+		FileExplorerItem f1 = fileDao.get(f.getId());
+		FileExplorerItem f2 = fileDao.get(f.getId());
+		f1.setOwnerId(null);
+		f1.setRoomId(roomId);
+		fileDao.update(f1);
+		assertEquals("Usage of the room should be increased", (long)f.getStorageSize(), fileDao.getRoomSize(roomId));
+
+		// stale copy moves the item back to the owner
+		f2.setName("renamed_" + f2.getName());
+		fileDao.update(f2);
+		assertEquals("Usage of the owner should be restored", (long)f.getStorageSize(), fileDao.getOwnSize(userId));
+		assertEquals("Usage of the room should be decreased", 0, fileDao.getRoomSize(roomId));
+	}
+
+	@Test
+	public void testQuota() throws Exception {
+		long userId = getId();
+		Configuration c = cfgDao.forceGet(CONFIG_STORAGE_QUOTA_USER);
+		if (c == null) {
+			c = cfgDao.add(CONFIG_STORAGE_QUOTA_USER, "1", null, null);
+		} else {
+			c.setValue("1");
+			c = cfgDao.update(c, null);
+		}
+		try {
+			upload(userId, 600 * 1024);
+			FileExplorerItem f = new FileExplorerItem();
+			f.setName("storage_quota.txt");
+			f.setOwnerId(userId);
+			ConverterProcessResultList result = processor.processFile(f, new ByteArrayInputStream(new byte[600 * 1024]));
+			assertTrue("Upload exceeding the quota should be rejected", result.hasError());
+			assertEquals("Nothing should be stored", null, f.getId());
+		} finally {
+			c.setValue("0");
+			cfgDao.update(c, null);
+		}
+	}
+}
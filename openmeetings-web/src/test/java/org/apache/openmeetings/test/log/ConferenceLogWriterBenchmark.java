@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.test.log;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.openmeetings.core.data.log.ConferenceLogWriter;
+import org.apache.openmeetings.db.dao.log.ConferenceLogDao;
+import org.apache.openmeetings.db.entity.log.ConferenceLog;
+import org.apache.openmeetings.db.entity.log.ConferenceLog.Type;
+
+/**
+ * Compares the time users spend on writing of the conference log while joining the room:
+ * synchronous insert per event against the queued writer.
+ * Not executed as part of the build, usage:
+ *
+ * ConferenceLogWriterBenchmark [users] [insert time, ms]
+ */
+public class ConferenceLogWriterBenchmark {
+	private static class SlowDao extends ConferenceLogDao {
+		private final long insertTime;
+
+		private SlowDao(long insertTime) {
+			this.insertTime = insertTime;
+		}
+
+		@Override
+		public ConferenceLog add(Type type, Long userId, String streamid, Long roomId, String userip, String scopeName) {
+			ConferenceLog l = create(type, userId, streamid, roomId, userip, scopeName);
+			add(Collections.singletonList(l));
+			return l;
+		}
+
+		@Override
+		public void add(List<ConferenceLog> list) {
+			try {
+				Thread.sleep(insertTime);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int users = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+		long insertTime = args.length > 1 ? Long.parseLong(args[1]) : 2;
+
+		SlowDao syncDao = new SlowDao(insertTime);
+		long start = System.nanoTime();
+		for (long i = 0; i < users; ++i) {
+			syncDao.add(Type.roomEnter, i, "0", 1L, "127.0.0.1", "1");
+		}
+		long sync = System.nanoTime() - start;
+
+		ConferenceLogWriter w = new ConferenceLogWriter(new SlowDao(insertTime), 10000, 100, 1000);
+		start = System.nanoTime();
+		for (long i = 0; i < users; ++i) {
+			w.add(Type.roomEnter, i, "0", 1L, "127.0.0.1", "1");
+		}
+		long queued = System.nanoTime() - start;
+		w.destroy();
+
+		System.out.println(String.format("%s joins, log writing time: synchronous %s ms, queued %s ms (%s stored, %s dropped)"
+				, users, sync / 1000000, queued / 1000000, w.getWritten(), w.getDropped()));
+	}
+}
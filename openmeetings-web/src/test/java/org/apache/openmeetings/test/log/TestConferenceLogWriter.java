@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.test.log;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.openmeetings.core.data.log.ConferenceLogWriter;
+import org.apache.openmeetings.core.util.WriteBehindQueue;
+import org.apache.openmeetings.db.dao.log.ConferenceLogDao;
+import org.apache.openmeetings.db.entity.log.ConferenceLog;
+import org.apache.openmeetings.db.entity.log.ConferenceLog.Type;
+import org.junit.Test;
+
+public class TestConferenceLogWriter {
+	private static final int USERS = 500;
+
+	/**
+	 * In-memory dao, storing can be blocked to check nobody waits for it
+	 */
+	private static class FakeDao extends ConferenceLogDao {
+		private final List<ConferenceLog> stored = new ArrayList<>();
+		private final AtomicInteger transactions = new AtomicInteger();
+		private final CountDownLatch called = new CountDownLatch(1);
+		private volatile CountDownLatch release = null;
+		private volatile boolean fail = false;
+
+		@Override
+		public void add(List<ConferenceLog> list) {
+			called.countDown();
+			CountDownLatch r = release;
+			if (r != null) {
+				try {
+					r.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			if (fail) {
+				throw new RuntimeException("Database is down");
+			}
+			transactions.incrementAndGet();
+			synchronized (stored) {
+				stored.addAll(list);
+			}
+		}
+
+		int getStored() {
+			synchronized (stored) {
+				return stored.size();
+			}
+		}
+	}
+
+	private static void sleep(long ms) {
+		try {
+			Thread.sleep(ms);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void join(ConferenceLogWriter w, long userId) {
+		w.add(Type.roomEnter, userId, "0", 1L, "127.0.0.1", "1");
+	}
+
+	@Test(timeout = 30000)
+	public void testJoinNotWaiting() throws Exception {
+		FakeDao dao = new FakeDao();
+		dao.release = new CountDownLatch(1);
+		ConferenceLogWriter w = new ConferenceLogWriter(dao, 10000, 100, 60000);
+		for (long i = 0; i < USERS; ++i) {
+			join(w, i);
+		}
+		// the writer is blocked in the dao, joins would never return if they waited for it
+		dao.called.await();
+		assertEquals("Nothing should be stored while the dao is blocked", 0, dao.getStored());
+		dao.release.countDown();
+		w.destroy();
+
+		assertEquals("All the events should be stored", USERS, dao.getStored());
+		assertEquals("All the events should be counted", USERS, w.getWritten());
+		assertTrue("Events should be stored in batches", dao.transactions.get() <= USERS / 100 + 1);
+		assertEquals("Nothing should be dropped", 0, w.getDropped());
+	}
+
+	@Test
+	public void testPoisonDropped() throws Exception {
+		FakeDao dao = new FakeDao() {
+			@Override
+			public void add(List<ConferenceLog> list) {
+				for (ConferenceLog l : list) {
+					if (l.getUserId() == 2L) {
+						throw new RuntimeException("Broken event");
+					}
+				}
+				super.add(list);
+			}
+		};
+		ConferenceLogWriter w = new ConferenceLogWriter(dao, 100, 100, 60000);
+		for (long i = 1; i <= 3; ++i) {
+			join(w, i);
+		}
+		for (int i = 0; i < WriteBehindQueue.MAX_ATTEMPTS; ++i) {
+			w.flush();
+		}
+		w.destroy();
+		assertEquals("Other events should be stored", 2, dao.getStored());
+		assertEquals("Events should be stored in order", 3L, (long)dao.stored.get(1).getUserId());
+		assertEquals("Broken event should be dropped", 1, w.getDropped());
+		assertEquals("Queue should be empty", 0, w.getQueued());
+	}
+
+	@Test
+	public void testFlushBySize() throws Exception {
+		FakeDao dao = new FakeDao();
+		ConferenceLogWriter w = new ConferenceLogWriter(dao, 1000, 10, 60000);
+		for (long i = 0; i < 10; ++i) {
+			join(w, i);
+		}
+		for (int i = 0; i < 100 && dao.getStored() < 10; ++i) {
+			sleep(10);
+		}
+		assertEquals("Full batch should be stored without waiting for the timer", 10, dao.getStored());
+		w.destroy();
+	}
+
+	@Test
+	public void testFlushByTime() throws Exception {
+		FakeDao dao = new FakeDao();
+		ConferenceLogWriter w = new ConferenceLogWriter(dao, 1000, 100, 50);
+		join(w, 1);
+		for (int i = 0; i < 100 && dao.getStored() < 1; ++i) {
+			sleep(10);
+		}
+		assertEquals("Event should be stored by the timer", 1, dao.getStored());
+		w.destroy();
+	}
+
+	@Test
+	public void testQueueBound() throws Exception {
+		FakeDao dao = new FakeDao();
+		dao.fail = true;
+		ConferenceLogWriter w = new ConferenceLogWriter(dao, 10, 100, 60000);
+		for (long i = 0; i < 15; ++i) {
+			join(w, i);
+		}
+		assertEquals("Queue should be bounded", 10, w.getQueued());
+		assertEquals("Extra events should be dropped", 5, w.getDropped());
+		dao.fail = false;
+		w.destroy();
+		assertEquals("Queued events should be stored on shutdown", 10, dao.getStored());
+		assertEquals("Queue should be empty", 0, w.getQueued());
+	}
+
+	@Test
+	public void testRetry() throws Exception {
+		FakeDao dao = new FakeDao();
+		dao.fail = true;
+		ConferenceLogWriter w = new ConferenceLogWriter(dao, 100, 100, 60000);
+		join(w, 1);
+		join(w, 2);
+		assertFalse("Flush should fail", w.flush());
+		assertEquals("Failed events should be kept", 2, w.getQueued());
+		dao.fail = false;
+		assertTrue("Flush should succeed", w.flush());
+		assertEquals("Events should be stored in order", 1L, (long)dao.stored.get(0).getUserId());
+		assertEquals("All events should be stored", 2, dao.getStored());
+		w.destroy();
+	}
+}
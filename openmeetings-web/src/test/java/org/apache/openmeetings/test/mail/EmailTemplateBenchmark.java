@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.test.mail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.apache.openmeetings.db.entity.calendar.Appointment;
+import org.apache.openmeetings.db.entity.user.User;
+import org.apache.openmeetings.service.mail.template.TemplateCache;
+import org.apache.openmeetings.service.mail.template.subject.AppointmentReminderTemplate;
+import org.apache.openmeetings.test.AbstractJUnitDefaults;
+import org.junit.Test;
+
+/**
+ * Measures per-recipient cost of rendering reminder emails: component tree rendered for each
+ * recipient vs. template compiled once per language.
+ * Not executed as part of the build, usage:
+ *
+ * mvn test -Dtest=EmailTemplateBenchmark [-Dom.benchmark.recipients=2000]
+ */
+public class EmailTemplateBenchmark extends AbstractJUnitDefaults {
+	private static final int WARMUP = 100;
+
+	private static TimeZone getTimeZone(User u) {
+		return TimeZone.getTimeZone(u.getTimeZoneId());
+	}
+
+	private static void report(String name, int count, long start) {
+		long ns = System.nanoTime() - start;
+		System.out.println(String.format("%s: %s ms total, %.1f us per recipient", name, ns / 1000000, ns / 1000. / count));
+	}
+
+	@Test
+	public void benchmark() throws Exception {
+		int count = Integer.getInteger("om.benchmark.recipients", 2000);
+		Appointment a = getAppointment();
+		List<User> users = new ArrayList<>();
+		for (int i = 0; i < count; ++i) {
+			users.add(getUser());
+		}
+		System.out.println(String.format("Recipients: %s", count));
+		for (int i = 0; i < WARMUP; ++i) {
+			TemplateCache.clear();
+			AppointmentReminderTemplate.get(users.get(i % count), a, getTimeZone(users.get(i % count)));
+		}
+
+		// cache is dropped before each recipient, so whole component tree is rendered each time
+		long start = System.nanoTime();
+		for (User u : users) {
+			TemplateCache.clear();
+			AppointmentReminderTemplate.get(u, a, getTimeZone(u));
+		}
+		report("Component tree", count, start);
+
+		start = System.nanoTime();
+		for (User u : users) {
+			AppointmentReminderTemplate.get(u, a, getTimeZone(u));
+		}
+		report("Compiled, sequential", count, start);
+
+		start = System.nanoTime();
+		AppointmentReminderTemplate.get(users, a, EmailTemplateBenchmark::getTimeZone);
+		report("Compiled, list", count, start);
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.test.mail;
+
+import static org.apache.commons.lang3.time.FastDateFormat.MEDIUM;
+import static org.apache.commons.lang3.time.FastDateFormat.SHORT;
+import static org.apache.openmeetings.service.mail.template.CompiledTemplate.param;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.apache.commons.lang3.time.FastDateFormat;
+import org.apache.openmeetings.db.entity.calendar.Appointment;
+import org.apache.openmeetings.db.entity.user.User;
+import org.apache.openmeetings.db.util.LocaleHelper;
+import org.apache.openmeetings.service.mail.template.CompiledTemplate;
+import org.apache.openmeetings.service.mail.template.InvitationTemplate;
+import org.apache.openmeetings.service.mail.template.TemplateCache;
+import org.apache.openmeetings.service.mail.template.subject.AppointmentReminderTemplate;
+import org.apache.openmeetings.service.mail.template.subject.SubjectEmail;
+import org.apache.openmeetings.test.AbstractJUnitDefaults;
+import org.apache.wicket.util.string.Strings;
+import org.junit.Test;
+
+public class TestEmailTemplates extends AbstractJUnitDefaults {
+	private static final String[] ZONES = {"Asia/Bangkok", "Europe/Berlin", "America/New_York", "UTC"};
+
+	private static TimeZone getTimeZone(User u) {
+		return TimeZone.getTimeZone(u.getTimeZoneId());
+	}
+
+	@Test
+	public void testCompile() {
+		CompiledTemplate t = CompiledTemplate.compile("<b>" + param("raw") + "</b><i>" + Strings.escapeMarkup(param("esc")) + "</i>" + param("missing"));
+		assertEquals("All parameters should be found", 3, t.getParamCount());
+		Map<String, String> params = new HashMap<>();
+		params.put("raw", "<u>a</u>");
+		params.put("esc", "<u>b</u>");
+		assertEquals("Values should be escaped as in source template", "<b><u>a</u></b><i>&lt;u&gt;b&lt;/u&gt;</i>", t.render(params));
+	}
+
+	@Test
+	public void testReminder() throws Exception {
+		User u = getUser();
+		Appointment a = getAppointment();
+		a.setTitle("<title>");
+		TimeZone tz = getTimeZone(u);
+		SubjectEmail t = AppointmentReminderTemplate.get(u, a, tz);
+		assertTrue("Title should be escaped in email", t.getEmail().contains("&lt;title&gt;"));
+		assertTrue("Description should be rendered", t.getEmail().contains(a.getDescription()));
+		assertTrue("Start should be rendered in time zone of the recipient"
+				, t.getEmail().contains(FastDateFormat.getDateTimeInstance(MEDIUM, MEDIUM, tz, LocaleHelper.getLocale(u)).format(a.getStart())));
+		assertTrue("Subject should contain title and dates", t.getSubject().contains("<title> "
+				+ FastDateFormat.getDateTimeInstance(SHORT, SHORT, tz, LocaleHelper.getLocale(u)).format(a.getStart())));
+		assertFalse("No markers should be left", t.getEmail().contains("{om") || t.getSubject().contains("{om"));
+
+		a.setDescription(null);
+		t = AppointmentReminderTemplate.get(u, a, tz);
+		assertFalse("Empty description should be hidden", t.getEmail().contains("appointmentDescription"));
+
+		int size = TemplateCache.size();
+		AppointmentReminderTemplate.get(getUser(), a, tz);
+		assertEquals("Template should be compiled once per language", size, TemplateCache.size());
+	}
+
+	@Test
+	public void testParallel() throws Exception {
+		Appointment a = getAppointment();
+		List<User> users = new ArrayList<>();
+		for (int i = 0; i < 50; ++i) {
+			User u = getUser();
+			u.setTimeZoneId(ZONES[i % ZONES.length]);
+			users.add(u);
+		}
+		List<SubjectEmail> emails = AppointmentReminderTemplate.get(users, a, TestEmailTemplates::getTimeZone);
+		assertEquals("All recipients should be rendered", users.size(), emails.size());
+		for (int i = 0; i < users.size(); ++i) {
+			SubjectEmail t = AppointmentReminderTemplate.get(users.get(i), a, getTimeZone(users.get(i)));
+			assertEquals("Order of recipients should be preserved", t.getEmail(), emails.get(i).getEmail());
+			assertEquals("Order of recipients should be preserved", t.getSubject(), emails.get(i).getSubject());
+		}
+	}
+
+	@Test
+	public void testInvitation() throws Exception {
+		User u = getUser();
+		String link = "http://localhost:5080/openmeetings/hash?invitation=abc";
+		String email = InvitationTemplate.getEmail(u, "<invitor>", "<b>message</b>", link);
+		assertTrue("Invitor should be escaped", email.contains("&lt;invitor&gt;"));
+		assertTrue("Message should not be escaped", email.contains("<b>message</b>"));
+		assertTrue("Link should be rendered", email.contains(link));
+
+		email = InvitationTemplate.getEmail(u, "invitor", "message", null);
+		assertFalse("Link should be hidden", email.contains(link));
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.test.poll;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.openmeetings.core.data.poll.PollManager;
+import org.apache.openmeetings.db.dao.room.PollDao;
+import org.apache.openmeetings.db.dao.room.RoomDao;
+import org.apache.openmeetings.db.dao.user.UserDao;
+import org.apache.openmeetings.db.entity.room.RoomPoll;
+import org.apache.openmeetings.test.AbstractJUnitDefaults;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+public class TestPollManager extends AbstractJUnitDefaults {
+	@Autowired
+	private PollManager pollManager;
+	@Autowired
+	private PollDao pollDao;
+	@Autowired
+	private RoomDao roomDao;
+	@Autowired
+	private UserDao userDao;
+
+	private RoomPoll create(RoomPoll.Type type) {
+		RoomPoll p = new RoomPoll();
+		p.setName("poll_" + System.currentTimeMillis());
+		p.setQuestion("question");
+		p.setType(type);
+		p.setCreator(userDao.get(1L));
+		p.setRoom(roomDao.get(1L));
+		return pollManager.create(p);
+	}
+
+	@Test
+	public void testVote() {
+		RoomPoll p = create(RoomPoll.Type.yesNo);
+		Long roomId = p.getRoom().getId();
+		assertEquals("New poll should be active", p.getId(), pollManager.getPoll(roomId).getId());
+		assertFalse("Invalid answer should be rejected", pollManager.vote(roomId, 1L, null, 5));
+		assertTrue("Vote should be accepted", pollManager.vote(roomId, 1L, true, null));
+		assertFalse("Second vote should be rejected", pollManager.vote(roomId, 1L, false, null));
+		assertTrue("Vote should be tracked", pollManager.hasVoted(roomId, 1L));
+		assertArrayEquals("Vote should be counted immediately", new int[] {1, 0}, pollManager.getCounts(roomId, p.getId()));
+
+		pollManager.flush();
+		assertEquals("All answers should be stored", 0, pollManager.getPendingCount());
+		assertEquals("Answer should be stored", 1, pollDao.get(p.getId()).getAnswers().size());
+	}
+
+	@Test
+	public void testRecovery() {
+		RoomPoll p = create(RoomPoll.Type.numeric);
+		Long roomId = p.getRoom().getId();
+		pollManager.vote(roomId, 1L, null, 7);
+		pollManager.flush();
+
+		// state of the new manager is the same as after restart
+		PollManager restarted = new PollManager(pollDao);
+		assertEquals("Active poll should be restored", p.getId(), restarted.getPoll(roomId).getId());
+		assertTrue("Voters should be restored", restarted.hasVoted(roomId, 1L));
+		assertFalse("User not voted should be checked", restarted.hasVoted(roomId, -1L));
+		assertFalse("Second vote should be rejected after restart", restarted.vote(roomId, 1L, null, 3));
+		int[] counts = restarted.getCounts(roomId, p.getId());
+		assertEquals("Numeric poll should have counter for each answer", PollManager.NUMERIC_MAX, counts.length);
+		assertEquals("Counts should be restored", 1, counts[6]);
+	}
+
+	@Test
+	public void testClose() {
+		RoomPoll p = create(RoomPoll.Type.yesNo);
+		Long roomId = p.getRoom().getId();
+		pollManager.vote(roomId, 1L, false, null);
+		assertTrue("Poll should be closed", pollManager.close(roomId));
+		assertNull("There should be no active poll", pollManager.getPoll(roomId));
+		assertTrue("Room should have archived polls", pollManager.hasArchived(roomId));
+		assertFalse("Votes should be rejected after close", pollManager.vote(roomId, 1L, true, null));
+		assertEquals("Pending answers should be stored before close", 1, pollDao.get(p.getId()).getAnswers().size());
+	}
+
+	@Test
+	public void testOtherNode() {
+		RoomPoll p = create(RoomPoll.Type.yesNo);
+		Long roomId = p.getRoom().getId();
+		// managers of two nodes of the cluster, state is reloaded in RELOAD_DELAY after the first access
+		PollManager node = new PollManager(pollDao), other = new PollManager(pollDao);
+		try {
+			assertEquals("New poll should be active", p.getId(), node.getPoll(roomId).getId());
+			assertTrue("Vote should be accepted by the other node", other.vote(roomId, 1L, true, null));
+			assertTrue("Answer should be stored", other.flush());
+			assertFalse("Vote made on the other node should be checked", node.vote(roomId, 1L, false, null));
+
+			node.reload();
+			assertArrayEquals("Votes made on the other node should be reloaded", new int[] {1, 0}, node.getCounts(roomId, p.getId()));
+			other.close(roomId);
+			assertEquals("Closed poll is still active until reload", p.getId(), node.getPoll(roomId).getId());
+			node.reload();
+			assertNull("Poll closed on the other node should be reloaded", node.getPoll(roomId));
+		} finally {
+			node.destroy();
+			other.destroy();
+		}
+	}
+
+	@Test
+	public void testEvict() {
+		RoomPoll p = create(RoomPoll.Type.yesNo);
+		Long roomId = p.getRoom().getId();
+		PollManager node = new PollManager(pollDao);
+		try {
+			assertEquals("New poll should be active", p.getId(), node.getPoll(roomId).getId());
+			pollDao.close(roomId);
+			assertEquals("State should be kept in memory", p.getId(), node.getPoll(roomId).getId());
+			node.evict(roomId);
+			assertNull("State should be loaded after eviction", node.getPoll(roomId));
+		} finally {
+			node.destroy();
+		}
+	}
+}
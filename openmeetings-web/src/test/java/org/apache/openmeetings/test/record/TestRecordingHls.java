@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.test.record;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.openmeetings.util.OmFileHelper.EXTENSION_IDX;
+import static org.apache.openmeetings.util.OmFileHelper.EXTENSION_INIT_MP4;
+import static org.apache.openmeetings.util.OmFileHelper.EXTENSION_M3U8;
+import static org.apache.openmeetings.util.OmFileHelper.EXTENSION_M4S;
+import static org.apache.openmeetings.util.OmFileHelper.EXTENSION_MP4;
+import static org.apache.openmeetings.util.OmFileHelper.IDX_MIME_TYPE;
+import static org.apache.openmeetings.util.OmFileHelper.M3U8_MIME_TYPE;
+import static org.apache.openmeetings.util.OmFileHelper.M4S_MIME_TYPE;
+import static org.apache.openmeetings.util.OpenmeetingsVariables.CONFIG_RECORDING_HLS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.openmeetings.core.converter.BaseConverter;
+import org.apache.openmeetings.db.dao.record.RecordingDao;
+import org.apache.openmeetings.db.entity.basic.Configuration;
+import org.apache.openmeetings.db.entity.file.FileItem.Type;
+import org.apache.openmeetings.db.entity.record.Recording;
+import org.apache.openmeetings.test.AbstractWicketTester;
+import org.apache.openmeetings.util.process.ConverterProcessResult;
+import org.apache.openmeetings.web.user.record.HlsRecordingResourceReference;
+import org.apache.wicket.protocol.http.mock.MockHttpServletResponse;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+public class TestRecordingHls extends AbstractWicketTester {
+	private static final String KEYFRAMES = "0.000000,48\n6.000000,1024\n";
+	// fake ffmpeg writes HLS files named by its arguments
+	private static final String FFMPEG = "#!/bin/sh\n"
+			+ "seg=''; init=''\n"
+			+ "while [ $# -gt 1 ]; do\n"
+			+ "  case \"$1\" in\n"
+			+ "    -hls_segment_filename) seg=\"$2\"; shift;;\n"
+			+ "    -hls_fmp4_init_filename) init=\"$2\"; shift;;\n"
+			+ "  esac\n"
+			+ "  shift\n"
+			+ "done\n"
+			+ "printf 'init' > \"$(dirname \"$1\")/$init\"\n"
+			+ "printf 'segments' > \"$seg\"\n"
+			+ "printf '#EXTM3U\\n#EXT-X-MAP:URI=\"%s\"\\n#EXTINF:6.0,\\n#EXT-X-BYTERANGE:8@0\\n%s\\n#EXT-X-ENDLIST\\n' \"$init\" \"$(basename \"$seg\")\" > \"$1\"\n";
+	private static final String FFPROBE = "#!/bin/sh\nprintf '" + KEYFRAMES.replace("\n", "\\n") + "'\n";
+
+	@Autowired
+	private RecordingDao recordingDao;
+
+	private static class HlsConverter extends BaseConverter {
+		void convert(Recording r, String mp4path, List<ConverterProcessResult> logs) throws IOException {
+			convertToHls(r, mp4path, logs);
+		}
+	}
+
+	private String setConfig(String key, String value) {
+		Configuration c = cfgDao.forceGet(key);
+		String prev = null;
+		if (c == null) {
+			cfgDao.add(key, value, null, null);
+		} else {
+			prev = c.getValue();
+			c.setValue(value);
+			cfgDao.update(c, null);
+		}
+		return prev;
+	}
+
+	private static File script(File dir, String name, String content) throws IOException {
+		File f = new File(dir, name + BaseConverter.EXEC_EXT);
+		FileUtils.writeStringToFile(f, content, UTF_8);
+		assertTrue("Script should be executable", f.setExecutable(true));
+		return f;
+	}
+
+	private Recording getRecording() throws IOException {
+		Recording r = new Recording();
+		r.setType(Type.Recording);
+		r.setHash(UUID.randomUUID().toString());
+		r.setComment("Created by Unit Tests");
+		r = recordingDao.update(r);
+		FileUtils.writeStringToFile(r.getFile(EXTENSION_MP4), "mp4", UTF_8);
+		return r;
+	}
+
+	private static void delete(Recording r) {
+		for (String ext : RecordingDao.FILE_EXTENSIONS) {
+			FileUtils.deleteQuietly(r.getFile(ext));
+		}
+	}
+
+	private HlsConverter getConverter() {
+		HlsConverter c = new HlsConverter();
+		applicationContext.getAutowireCapableBeanFactory().autowireBean(c);
+		return c;
+	}
+
+	private MockHttpServletResponse get(Recording r, String file) {
+		tester.executeUrl(String.format("recordings/hls/%s/%s", r.getId(), file));
+		return tester.getLastResponse();
+	}
+
+	@Test
+	public void testHls() throws Exception {
+		assumeTrue("Fake ffmpeg requires shell", BaseConverter.EXEC_EXT.isEmpty());
+		File bin = Files.createTempDirectory("ffmpeg").toFile();
+		script(bin, "ffmpeg", FFMPEG);
+		script(bin, "ffprobe", FFPROBE);
+		String prevPath = setConfig("ffmpeg_path", bin.getCanonicalPath());
+		String prevHls = setConfig(CONFIG_RECORDING_HLS, "1");
+		Recording r = getRecording();
+		try {
+			List<ConverterProcessResult> logs = new ArrayList<>();
+			getConverter().convert(r, r.getFile(EXTENSION_MP4).getCanonicalPath(), logs);
+			assertEquals("HLS and index should be generated", 2, logs.size());
+			for (ConverterProcessResult res : logs) {
+				assertTrue("Generation should be successful: " + res.buildLogMessage(), res.isOk());
+			}
+			for (String ext : new String[] {EXTENSION_M3U8, EXTENSION_M4S, EXTENSION_INIT_MP4, EXTENSION_IDX}) {
+				assertTrue("File should be created: " + ext, r.exists(ext));
+			}
+			assertEquals("Key frame index should be stored", KEYFRAMES, FileUtils.readFileToString(r.getFile(EXTENSION_IDX), UTF_8));
+
+			login(null, null);
+			MockHttpServletResponse resp = get(r, HlsRecordingResourceReference.PLAYLIST);
+			assertEquals("Playlist should be served", 200, resp.getStatus());
+			assertTrue("Playlist type should be set", resp.getContentType().startsWith(M3U8_MIME_TYPE));
+			String segments = r.getFile(EXTENSION_M4S).getName();
+			assertTrue("Playlist should refer segments by relative name", resp.getDocument().contains("\n" + segments + "\n"));
+
+			resp = get(r, segments);
+			assertEquals("Segments should be served", 200, resp.getStatus());
+			assertTrue("Segments type should be set", resp.getContentType().startsWith(M4S_MIME_TYPE));
+			assertEquals("Segments should be served", "segments", resp.getDocument());
+
+			resp = get(r, HlsRecordingResourceReference.INDEX);
+			assertTrue("Index type should be set", resp.getContentType().startsWith(IDX_MIME_TYPE));
+			assertEquals("Index should be served", KEYFRAMES, resp.getDocument());
+
+			resp = get(r, r.getFile(EXTENSION_MP4).getName());
+			assertEquals("Only HLS files should be served", 404, resp.getStatus());
+		} finally {
+			delete(r);
+			setConfig("ffmpeg_path", prevPath == null ? "" : prevPath);
+			setConfig(CONFIG_RECORDING_HLS, prevHls == null ? "0" : prevHls);
+			FileUtils.deleteDirectory(bin);
+		}
+	}
+
+	@Test
+	public void testDisabled() throws Exception {
+		String prevHls = setConfig(CONFIG_RECORDING_HLS, "0");
+		Recording r = getRecording();
+		try {
+			List<ConverterProcessResult> logs = new ArrayList<>();
+			getConverter().convert(r, r.getFile(EXTENSION_MP4).getCanonicalPath(), logs);
+			assertTrue("Nothing should be generated", logs.isEmpty());
+			assertFalse("Playlist should not be created", r.exists(EXTENSION_M3U8));
+
+			login(null, null);
+			assertEquals("Missing playlist should not be served", 404, get(r, HlsRecordingResourceReference.PLAYLIST).getStatus());
+		} finally {
+			delete(r);
+			setConfig(CONFIG_RECORDING_HLS, prevHls == null ? "0" : prevHls);
+		}
+	}
+}
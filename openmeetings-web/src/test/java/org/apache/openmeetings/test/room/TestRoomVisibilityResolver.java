@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.test.room;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.openmeetings.core.data.conference.RoomVisibilityResolver;
+import org.apache.openmeetings.core.data.conference.RoomVisibilityResolver.VisibleRoom;
+import org.apache.openmeetings.db.dao.room.RoomDao;
+import org.apache.openmeetings.db.dao.user.GroupDao;
+import org.apache.openmeetings.db.dao.user.UserDao;
+import org.apache.openmeetings.db.entity.room.Room;
+import org.apache.openmeetings.db.entity.room.RoomGroup;
+import org.apache.openmeetings.db.entity.user.Group;
+import org.apache.openmeetings.db.entity.user.GroupUser;
+import org.apache.openmeetings.db.entity.user.User;
+import org.apache.openmeetings.db.util.ChangeVersions;
+import org.apache.openmeetings.test.AbstractJUnitDefaults;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class TestRoomVisibilityResolver extends AbstractJUnitDefaults {
+	@Autowired
+	private RoomVisibilityResolver resolver;
+	@Autowired
+	private RoomDao roomDao;
+	@Autowired
+	private GroupDao groupDao;
+	@Autowired
+	private UserDao userDao;
+	@Autowired
+	private ChangeVersions versions;
+	@Autowired
+	private PlatformTransactionManager txManager;
+
+	private Room createGroupRoom(Group g, String name) {
+		Room r = new Room();
+		r.setName(name);
+		r.setType(Room.Type.conference);
+		r.getRoomGroups().add(new RoomGroup(g, r));
+		return roomDao.update(r, null);
+	}
+
+	private static List<VisibleRoom> getPrivate(List<VisibleRoom> list) {
+		List<VisibleRoom> result = new ArrayList<>();
+		for (VisibleRoom vr : list) {
+			if (RoomVisibilityResolver.TYPE_PRIVATE.equals(vr.getType())) {
+				result.add(vr);
+			}
+		}
+		return result;
+	}
+
+	@Test
+	public void testGroupRooms() throws Exception {
+		Group g = new Group();
+		g.setName("visibility" + UUID.randomUUID().toString());
+		g = groupDao.update(g, null);
+		User u = createUser();
+		u.getGroupUsers().add(new GroupUser(g, u));
+		u = userDao.update(u, null);
+		Room r1 = createGroupRoom(g, "a room");
+
+		List<VisibleRoom> list = resolver.getRooms(userDao.get(u.getId()));
+		assertEquals("Personal rooms should go first", RoomVisibilityResolver.TYPE_MY, list.get(0).getType());
+		assertEquals("Personal rooms should go first", RoomVisibilityResolver.TYPE_MY, list.get(1).getType());
+		List<VisibleRoom> priv = getPrivate(list);
+		assertEquals("Group room should be visible", 1, priv.size());
+		assertEquals("Group room should be visible", r1.getId(), priv.get(0).getRoom().getId());
+		assertEquals("Group name should be set", g.getName(), priv.get(0).getGroup());
+		assertTrue("First room of the group should be marked", priv.get(0).isFirst());
+
+		// personal rooms might be created by first call, cache is valid starting from the second one
+		list = resolver.getRooms(userDao.get(u.getId()));
+		assertTrue("Cached rooms should be returned", list.get(0).getRoom() == resolver.getRooms(userDao.get(u.getId())).get(0).getRoom());
+
+		Room r2 = createGroupRoom(g, "b room");
+		priv = getPrivate(resolver.getRooms(userDao.get(u.getId())));
+		assertEquals("New group room should be visible", 2, priv.size());
+		assertEquals("New group room should be visible", r2.getId(), priv.get(1).getRoom().getId());
+		assertTrue("Only first room of the group should be marked", !priv.get(1).isFirst());
+
+		u = userDao.get(u.getId());
+		u.getGroupUsers().clear();
+		u = userDao.update(u, null);
+		priv = getPrivate(resolver.getRooms(userDao.get(u.getId())));
+		assertEquals("Group rooms should not be visible after user is removed from group", 0, priv.size());
+	}
+
+	@Test
+	public void testVersionAfterCommit() throws Exception {
+		long rooms = versions.getRooms();
+		new TransactionTemplate(txManager).execute(status -> {
+			Room r = new Room();
+			r.setName("version room");
+			r.setType(Room.Type.conference);
+			roomDao.update(r, null);
+			assertEquals("Version should not be changed before commit", rooms, versions.getRooms());
+			return null;
+		});
+		assertTrue("Version should be changed after commit", versions.getRooms() > rooms);
+
+		long groups = versions.getGroups();
+		new TransactionTemplate(txManager).execute(status -> {
+			Group g = new Group();
+			g.setName("version" + UUID.randomUUID().toString());
+			groupDao.update(g, null);
+			status.setRollbackOnly();
+			return null;
+		});
+		assertFalse("Version should not be changed by rolled back transaction", versions.getGroups() > groups);
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.test.session;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.apache.openmeetings.core.util.RoomEventLog;
+import org.apache.openmeetings.core.util.RoomEventLog.Event;
+import org.junit.Test;
+
+public class TestRoomEventLog {
+	@Test
+	public void testSequence() {
+		RoomEventLog log = new RoomEventLog(10);
+		assertEquals("Sequence should start from 1", 1, log.add("a"));
+		assertEquals("Events not stored should also be numbered", 2, log.next());
+		assertEquals("Sequence should be monotonic", 3, log.add("b"));
+		List<Event> events = log.getSince(1);
+		assertNotNull("Events should be available", events);
+		assertEquals("Only stored events should be returned", 1, events.size());
+		assertEquals("Missed event should be returned", "b", events.get(0).getData());
+		assertTrue("Nothing should be returned for up to date client", log.getSince(3).isEmpty());
+	}
+
+	@Test
+	public void testTooFarBehind() {
+		RoomEventLog log = new RoomEventLog(3);
+		for (int i = 0; i < 5; ++i) {
+			log.add(i);
+		}
+		assertNull("Snapshot should be required if events were evicted", log.getSince(1));
+		List<Event> events = log.getSince(2);
+		assertNotNull("All missed events are still stored", events);
+		assertEquals("All missed events should be returned", 3, events.size());
+		assertEquals("Events should be ordered", 3L, events.get(0).getSeq());
+		assertNull("Snapshot should be required for unknown sequence", log.getSince(6));
+	}
+
+	@Test
+	public void testRemove() {
+		Long roomId = -1L;
+		RoomEventLog log = RoomEventLog.get(roomId);
+		log.add("a");
+		long seq = log.add("b");
+		RoomEventLog.remove(roomId);
+		assertFalse("Log of the empty room should be removed", RoomEventLog.exists(roomId));
+
+		RoomEventLog next = RoomEventLog.get(roomId);
+		assertNotSame("New log should be created", log, next);
+		assertNull("Snapshot should be required for the client behind removed log", next.getSince(seq - 1));
+		assertTrue("Client which has seen all events of removed log is up to date", next.getSince(seq).isEmpty());
+		assertTrue("Sequence should continue after removed log", next.add("c") > seq);
+		assertEquals("Only new events should be returned", "c", next.getSince(seq).get(0).getData());
+		RoomEventLog.remove(roomId);
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.test.session;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.apache.openmeetings.core.session.store.HashMapStore;
+import org.apache.openmeetings.db.entity.room.StreamClient;
+import org.junit.Test;
+
+public class TestRoomOccupancy {
+	private static StreamClient getClient(String streamId, Long roomId, boolean screen) {
+		StreamClient c = new StreamClient();
+		c.setStreamid(streamId);
+		c.setPublicSID(streamId);
+		c.setRoomId(roomId);
+		c.setScreenClient(screen);
+		return c;
+	}
+
+	@Test
+	public void testIndex() {
+		HashMapStore store = new HashMapStore();
+		store.put("1", getClient("1", 1L, false));
+		store.put("2", getClient("2", 1L, false));
+		store.put("3", getClient("3", 1L, true));
+		store.put("4", getClient("4", 2L, false));
+		store.put("5", getClient("5", null, false));
+
+		Map<Long, Integer> occupancy = store.getRoomOccupancy();
+		assertEquals("Screen sharing clients should not be counted", Integer.valueOf(2), occupancy.get(1L));
+		assertEquals(Integer.valueOf(1), occupancy.get(2L));
+		assertEquals("Clients without room should not be counted", 2, occupancy.size());
+		assertEquals("All clients of the room should be found", 3, store.getClientsByRoomId(1L).size());
+		assertEquals(2, store.getRoomsIdsByServer(null).size());
+
+		// room change
+		StreamClient c = store.get(null, "4");
+		c.setRoomId(1L);
+		store.put("4", c);
+		occupancy = store.getRoomOccupancy();
+		assertEquals(Integer.valueOf(3), occupancy.get(1L));
+		assertNull("Empty room should be removed", occupancy.get(2L));
+		assertTrue(store.getClientsByRoomId(2L).isEmpty());
+
+		// disconnect
+		store.remove(null, "1");
+		store.remove(null, "3");
+		assertEquals(Integer.valueOf(2), store.getRoomOccupancy().get(1L));
+		assertEquals(2, store.getClientsByRoomId(1L).size());
+
+		store.clear();
+		assertTrue("Index should be cleaned", store.getRoomOccupancy().isEmpty());
+		assertTrue(store.getClientsByRoomId(1L).isEmpty());
+	}
+}
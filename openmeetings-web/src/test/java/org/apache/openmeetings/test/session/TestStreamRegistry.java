@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.test.session;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.openmeetings.core.remote.StreamRegistry;
+import org.apache.openmeetings.core.remote.StreamRegistry.Streams;
+import org.apache.openmeetings.db.dao.server.ISessionManager;
+import org.apache.openmeetings.db.entity.room.StreamClient;
+import org.apache.openmeetings.test.AbstractJUnitDefaults;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+public class TestStreamRegistry extends AbstractJUnitDefaults {
+	private static final Long ROOM_ID = 5L;
+	private static final Long OTHER_ROOM_ID = 6L;
+	@Autowired
+	private ISessionManager sessionManager;
+	@Autowired
+	private StreamRegistry streamRegistry;
+
+	private static StreamClient getClient(String streamId, String avsettings) {
+		StreamClient c = new StreamClient();
+		c.setStreamid(streamId);
+		c.setRoomId(ROOM_ID);
+		c.setUserId(1L);
+		c.setAvsettings(avsettings);
+		return c;
+	}
+
+	@Test
+	public void testVersions() {
+		sessionManager.clearCache();
+		StreamClient c1 = sessionManager.add(getClient("registry1", "av"), null);
+		sessionManager.add(getClient("registry2", ""), null);
+
+		Streams s = streamRegistry.get(ROOM_ID);
+		assertEquals("Only publishing clients should be listed", 1, s.getList().size());
+		long version = s.getVersion();
+		assertTrue("Same streams should be returned", s == streamRegistry.get(ROOM_ID));
+
+		c1.setIsMod(true);
+		sessionManager.updateClientByStreamId(c1.getStreamid(), c1, false, null);
+		assertEquals("Version should not be changed if streams are the same", version, streamRegistry.get(ROOM_ID).getVersion());
+
+		c1.setAvsettings("a");
+		sessionManager.updateClientByStreamId(c1.getStreamid(), c1, false, null);
+		s = streamRegistry.get(ROOM_ID);
+		assertTrue("Version should be changed", version != s.getVersion());
+		assertEquals("Stream should be updated", "a", s.getList().get(0).get("avsettings"));
+		version = s.getVersion();
+
+		sessionManager.removeClient(c1.getStreamid(), null);
+		s = streamRegistry.get(ROOM_ID);
+		assertTrue("Version should be changed", version != s.getVersion());
+		assertEquals("Removed stream should not be listed", 0, s.getList().size());
+		sessionManager.clearCache();
+	}
+
+	@Test
+	public void testScreenClient() {
+		sessionManager.clearCache();
+		StreamClient c = getClient("registry3", "av");
+		c.setScreenClient(true);
+		sessionManager.add(c, null);
+		sessionManager.add(getClient("registry4", "av"), null);
+		assertEquals("Screen sharing clients should not be listed", 1, streamRegistry.get(ROOM_ID).getList().size());
+		sessionManager.clearCache();
+	}
+
+	@Test
+	public void testMove() {
+		sessionManager.clearCache();
+		StreamClient c1 = sessionManager.add(getClient("registry5", "av"), null);
+		sessionManager.add(getClient("registry6", "av"), null);
+		Streams s = streamRegistry.get(ROOM_ID);
+		assertEquals("Both streams should be listed", 2, s.getList().size());
+
+		// client is updated in place
+		c1.setRoomId(OTHER_ROOM_ID);
+		sessionManager.updateClientByStreamId(c1.getStreamid(), c1, false, null);
+		assertEquals("Moved stream should be removed from the previous room", 1, streamRegistry.get(ROOM_ID).getList().size());
+		assertEquals("Moved stream should be listed in the new room", 1, streamRegistry.get(OTHER_ROOM_ID).getList().size());
+
+		sessionManager.removeClient(c1.getStreamid(), null);
+		assertTrue("Room without clients should be empty", Streams.EMPTY == streamRegistry.get(OTHER_ROOM_ID));
+		assertTrue("Room without id should be empty", Streams.EMPTY == streamRegistry.get(null));
+		sessionManager.clearCache();
+	}
+}
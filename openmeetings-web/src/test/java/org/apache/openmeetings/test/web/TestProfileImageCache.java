@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.test.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.openmeetings.web.util.ProfileImageCache;
+import org.apache.openmeetings.web.util.ProfileImageCache.Entry;
+import org.junit.Test;
+
+public class TestProfileImageCache {
+	@Test
+	public void testEviction() {
+		ProfileImageCache cache = new ProfileImageCache(30, 10);
+		assertEquals("Max entry size should be reported", 10, cache.getMaxEntryBytes());
+		assertFalse("Big entries should not be cached", cache.put("big", new Entry(new byte[11], 1)));
+		for (int i = 0; i < 3; ++i) {
+			assertTrue("Entry should be cached", cache.put("k" + i, new Entry(new byte[10], i)));
+		}
+		assertEquals("Cache should be full", 30, cache.getBytes());
+		assertNotNull("Access should make entry recently used", cache.get("k0"));
+		cache.put("k3", new Entry(new byte[10], 3));
+		assertEquals("Size should be bounded", 30, cache.getBytes());
+		assertEquals("One entry should be evicted", 3, cache.size());
+		assertNull("Least recently used entry should be evicted", cache.get("k1"));
+		assertNotNull("Recently used entry should be kept", cache.get("k0"));
+	}
+
+	@Test
+	public void testReplace() {
+		ProfileImageCache cache = new ProfileImageCache(30, 10);
+		String key = ProfileImageCache.getKey(1L, 40, "1");
+		cache.put(key, new Entry(new byte[10], 1));
+		cache.put(key, new Entry(new byte[5], 1));
+		assertEquals("Replaced entry should not be counted", 5, cache.getBytes());
+		assertEquals("Entry should be replaced", 5, cache.get(key).getData().length);
+	}
+}
@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License") +  you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openmeetings.test.webservice;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.openmeetings.db.dto.basic.ServiceResult;
+import org.apache.openmeetings.db.dto.room.RoomCountDTO;
+import org.junit.Test;
+
+public class TestRoomService extends AbstractWebServiceTest {
+	public final static String ROOM_SERVICE_URL = BASE_SERVICES_URL + "/room";
+
+	@Test
+	public void testOccupancy() throws Exception {
+		ServiceResult sr = login();
+		Collection<? extends RoomCountDTO> rooms = getClient(ROOM_SERVICE_URL).path("/occupancy").query("sid", sr.getMessage())
+				.query("start", 0).query("max", 10).getCollection(RoomCountDTO.class);
+		assertNotNull("Valid collection should be returned", rooms);
+		assertFalse("Collection of the rooms should not be empty", rooms.isEmpty());
+		assertTrue("Page size should be respected", rooms.size() <= 10);
+		List<RoomCountDTO> list = new ArrayList<>(rooms);
+		for (int i = 1; i < list.size(); ++i) {
+			assertTrue("Rooms should be ordered by number of users", list.get(i - 1).getRoomCount() >= list.get(i).getRoomCount());
+		}
+		assertTrue("Only occupied rooms should be returned", getClient(ROOM_SERVICE_URL).path("/occupancy").query("sid", sr.getMessage())
+				.query("max", 10).query("min", Integer.MAX_VALUE).getCollection(RoomCountDTO.class).isEmpty());
+	}
+}
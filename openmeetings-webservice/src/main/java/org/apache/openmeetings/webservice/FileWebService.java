@@ -241,11 +241,11 @@ public class FileWebService {
 
 				// Home File List
 				List<FileExplorerItem> fList = fileDao.getByOwner(userId);
-				fileExplorerObject.setUser(fList, fileDao.getSize(fList));
+				fileExplorerObject.setUser(fList, fileDao.getOwnSize(userId));
 
 				// Public File List
 				List<FileExplorerItem> rList = fileDao.getByRoom(roomId);
-				fileExplorerObject.setRoom(rList, fileDao.getSize(rList));
+				fileExplorerObject.setRoom(rList, fileDao.getRoomSize(roomId));
 
 				return fileExplorerObject;
 			} else {
@@ -40,6 +40,7 @@ import javax.ws.rs.core.MediaType;
 
 import org.apache.cxf.feature.Features;
 import org.apache.openmeetings.IApplication;
+import org.apache.openmeetings.core.data.conference.RoomManager;
 import org.apache.openmeetings.core.util.WebSocketHelper;
 import org.apache.openmeetings.db.dao.room.IInvitationManager;
 import org.apache.openmeetings.db.dao.room.InvitationDao;
@@ -91,6 +92,8 @@ public class RoomWebService {
 	private IInvitationManager invitationManager;
 	@Autowired
 	private RoomDao roomDao;
+	@Autowired
+	private RoomManager roomManager;
 
 	/**
 	 * Returns an Object of Type RoomsList which contains a list of
@@ -449,6 +452,42 @@ public class RoomWebService {
 		return roomBeans;
 	}
 
+	/**
+	 * Returns summaries of the rooms ordered by number of current users
+	 *
+	 * @param sid - The SID of the User. This SID must be marked as Loggedin
+	 * @param start - first record
+	 * @param max - max number of records
+	 * @param asc - rooms with less users go first if <code>true</code>
+	 * @param min - only rooms having at least this number of users are returned
+	 * @param externalType - only rooms of this external type are returned, all the rooms if not set
+	 * @return - id, name, capacity and number of current users of each room
+	 * @throws ServiceException
+	 */
+	@WebMethod
+	@GET
+	@Path("/occupancy")
+	public List<RoomCountDTO> occupancy(@WebParam(name="sid") @QueryParam("sid") String sid
+			, @WebParam(name="start") @QueryParam("start") int start
+			, @WebParam(name="max") @QueryParam("max") int max
+			, @WebParam(name="asc") @QueryParam("asc") boolean asc
+			, @WebParam(name="min") @QueryParam("min") int min
+			, @WebParam(name="externalType") @QueryParam("externalType") String externalType) throws ServiceException {
+		try {
+			Sessiondata sd = sessionDao.check(sid);
+			if (AuthLevelUtil.hasWebServiceLevel(userDao.getRights(sd.getUserId()))) {
+				return roomManager.getRoomsByOccupancy(start, max, asc, min, externalType);
+			} else {
+				throw new ServiceException("Insufficient permissions"); //TODO code -26
+			}
+		} catch (ServiceException err) {
+			throw err;
+		} catch (Exception err) {
+			log.error("[occupancy]", err);
+			throw new ServiceException(err.getMessage());
+		}
+	}
+
 	/**
 	 * Method to get invitation hash with given parameters
 	 *